@@ -22,9 +22,14 @@ package org.neo4j.graphalgo;
 import org.neo4j.graphalgo.impl.path.AStar;
 import org.neo4j.graphalgo.impl.path.AllPaths;
 import org.neo4j.graphalgo.impl.path.AllSimplePaths;
+import org.neo4j.graphalgo.impl.path.CompactAStar;
+import org.neo4j.graphalgo.impl.path.CompactDijkstra;
+import org.neo4j.graphalgo.impl.path.CompactShortestPath;
 import org.neo4j.graphalgo.impl.path.Dijkstra;
+import org.neo4j.graphalgo.impl.path.KShortestPaths;
 import org.neo4j.graphalgo.impl.path.ShortestPath;
 import org.neo4j.graphalgo.impl.util.DoubleEvaluator;
+import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
@@ -72,6 +77,42 @@ public abstract class GraphAlgoFactory
         return new AllSimplePaths( maxDepth, expander );
     }
 
+    /**
+     * Returns an algorithm which finds at most {@code maxResultCount} of the
+     * paths {@link #allPaths(RelationshipExpander, int)} would find. It stops
+     * exploring the graph as soon as that many paths have been found.
+     * @see AllPaths
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param maxDepth the max {@link Path#length()} returned paths are
+     * allowed to have.
+     * @param maxResultCount the maximum number of {@link Path}s to return.
+     * @return an algorithm which finds paths between two nodes.
+     */
+    public static PathFinder<Path> allPaths( RelationshipExpander expander, int maxDepth,
+            int maxResultCount )
+    {
+        return new AllPaths( maxDepth, expander, maxResultCount );
+    }
+
+    /**
+     * Returns an algorithm which finds at most {@code maxResultCount} of the
+     * paths {@link #allSimplePaths(RelationshipExpander, int)} would find. It
+     * stops exploring the graph as soon as that many paths have been found.
+     * @see AllSimplePaths
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param maxDepth the max {@link Path#length()} returned paths are
+     * allowed to have.
+     * @param maxResultCount the maximum number of {@link Path}s to return.
+     * @return an algorithm which finds simple paths between two nodes.
+     */
+    public static PathFinder<Path> allSimplePaths( RelationshipExpander expander,
+            int maxDepth, int maxResultCount )
+    {
+        return new AllSimplePaths( maxDepth, expander, maxResultCount );
+    }
+
     /**
      * Returns an algorithm which can find all shortest paths (that is paths
      * with as short {@link Path#length()} as possible) between two nodes. These
@@ -126,6 +167,71 @@ public abstract class GraphAlgoFactory
     {
         return new ShortestPath( length, expander, Integer.MAX_VALUE, true );
     }
+
+    /**
+     * See {@link #pathsWithLength(RelationshipExpander, int)}, but stops as
+     * soon as {@code maxResultCount} paths have been found.
+     * 
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param length the {@link Path#length()} returned paths will have, if any
+     * paths were found.
+     * @param maxResultCount the maximum number of {@link Path}s to return.
+     * @return an algorithm which finds paths of a certain length between two nodes.
+     */
+    public static PathFinder<Path> pathsWithLength( RelationshipExpander expander, int length,
+            int maxResultCount )
+    {
+        return new ShortestPath( length, expander, maxResultCount, true );
+    }
+
+    /**
+     * Returns an algorithm which finds the {@code k} cheapest paths between
+     * two nodes, cheapest first, where the cost of each relationship is
+     * returned from {@code costEvaluator}. These returned paths cannot
+     * contain loops (i.e. a node cannot occur more than once in any
+     * returned path). The paths are found one at a time, as they are
+     * requested from the returned {@link Iterable}, and no more than
+     * {@code k} paths are ever looked for.
+     * 
+     * See http://en.wikipedia.org/wiki/Yen%27s_algorithm for more
+     * information.
+     * 
+     * @see KShortestPaths
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param costEvaluator evaluator that can return the cost represented
+     * by each relationship the algorithm traverses.
+     * @param k the maximum number of paths to return.
+     * @return an algorithm which finds the {@code k} cheapest paths between
+     * two nodes.
+     */
+    public static PathFinder<WeightedPath> kShortestPaths( RelationshipExpander expander,
+            CostEvaluator<Double> costEvaluator, int k )
+    {
+        return new KShortestPaths( expander, costEvaluator, k );
+    }
+
+    /**
+     * See {@link #kShortestPaths(RelationshipExpander, CostEvaluator, int)},
+     * where every relationship costs 1, i.e. the {@code k} shortest paths.
+     * 
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param k the maximum number of paths to return.
+     * @return an algorithm which finds the {@code k} shortest paths between
+     * two nodes.
+     */
+    public static PathFinder<WeightedPath> kShortestPaths( RelationshipExpander expander, int k )
+    {
+        return kShortestPaths( expander, new CostEvaluator<Double>()
+        {
+            public Double getCost( Relationship relationship, Direction direction )
+            {
+                return 1d;
+            }
+        }, k );
+    }
     
     /**
      * Returns an {@link PathFinder} which uses the A* algorithm to find the
@@ -198,4 +304,82 @@ public abstract class GraphAlgoFactory
     {
         return dijkstra( expander, new DoubleEvaluator( relationshipPropertyRepresentingCost ) );
     }
+
+    /**
+     * Returns an algorithm which finds the same paths as
+     * {@link #shortestPath(RelationshipExpander, int)}, but keeps track of
+     * the nodes it has reached by id in primitive arrays instead of in maps
+     * keyed by {@link Node}. It produces much less garbage and scales
+     * better when the number of nodes reached gets big.
+     * 
+     * @see CompactShortestPath
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     *            {@link Relationship}s for each {@link Node}.
+     * @param maxDepth the max {@link Path#length()} returned paths are allowed
+     *            to have.
+     * @return an algorithm which finds shortest paths between two nodes.
+     */
+    public static PathFinder<Path> compactShortestPath( RelationshipExpander expander, int maxDepth )
+    {
+        return new CompactShortestPath( maxDepth, expander );
+    }
+
+    /**
+     * See {@link #compactShortestPath(RelationshipExpander, int)}.
+     * 
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     *            {@link Relationship}s for each {@link Node}.
+     * @param maxDepth the max {@link Path#length()} returned paths are allowed
+     *            to have.
+     * @param maxHitCount the maximum number of {@link Path}s to return.
+     * @return an algorithm which finds shortest paths between two nodes.
+     */
+    public static PathFinder<Path> compactShortestPath( RelationshipExpander expander, int maxDepth,
+            int maxHitCount )
+    {
+        return new CompactShortestPath( maxDepth, expander, maxHitCount );
+    }
+
+    /**
+     * Returns an algorithm which finds the same paths as
+     * {@link #dijkstra(RelationshipExpander, CostEvaluator)}, but keeps track
+     * of the nodes it has reached by id in primitive arrays and of the nodes
+     * to visit next in a primitive, indexed, heap.
+     * 
+     * @see CompactDijkstra
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param costEvaluator evaluator that can return the cost represented
+     * by each relationship the algorithm traverses.
+     * @return an algorithm which finds the cheapest paths between two nodes
+     * using the Dijkstra algorithm.
+     */
+    public static PathFinder<WeightedPath> compactDijkstra( RelationshipExpander expander,
+            CostEvaluator<Double> costEvaluator )
+    {
+        return new CompactDijkstra( expander, costEvaluator );
+    }
+
+    /**
+     * Returns an algorithm which finds the same path as
+     * {@link #aStar(RelationshipExpander, CostEvaluator, EstimateEvaluator)},
+     * but with the primitive, id based, bookkeeping of
+     * {@link #compactDijkstra(RelationshipExpander, CostEvaluator)}.
+     * 
+     * @see CompactAStar
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param lengthEvaluator evaluator that can return the cost represented
+     * by each relationship the algorithm traverses.
+     * @param estimateEvaluator evaluator that returns an (optimistic)
+     * estimation of the cost to get from the current node (in the traversal)
+     * to the end node.
+     * @return an algorithm which finds the cheapest path between two nodes
+     * using the A* algorithm.
+     */
+    public static PathFinder<WeightedPath> compactAStar( RelationshipExpander expander,
+            CostEvaluator<Double> lengthEvaluator, EstimateEvaluator<Double> estimateEvaluator )
+    {
+        return new CompactAStar( expander, lengthEvaluator, estimateEvaluator );
+    }
 }
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.concurrent.ExecutorService;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Betweenness centrality, like {@link BetweennessCentrality}, computed with
+ * the algorithm by Ulrik Brandes (2001) on a {@link CompactGraph}, with the
+ * source nodes spread out over several threads. As in
+ * {@link BetweennessCentrality} the values are halved for projections in
+ * {@link Direction#BOTH}, since every path is then found from both its ends.
+ * @complexity O(n * m) for unweighted and O(n * m * log(n)) for weighted
+ *             projections, divided by the number of threads.
+ */
+public class ParallelBetweennessCentrality extends ParallelShortestPathCentrality
+{
+    private final double globalFactor;
+
+    /**
+     * @param graph the projection to compute the centrality for.
+     * @param executor the executor to run the computation in, or {@code null}
+     * for a thread pool with one thread per available processor.
+     */
+    public ParallelBetweennessCentrality( CompactGraph graph, ExecutorService executor )
+    {
+        this( graph, executor, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param graph the projection to compute the centrality for.
+     * @param executor the executor to run the computation in, or {@code null}
+     * for a thread pool of {@code parallelism} threads.
+     * @param parallelism the number of threads to split the computation on.
+     */
+    public ParallelBetweennessCentrality( CompactGraph graph, ExecutorService executor,
+            int parallelism )
+    {
+        super( graph, executor, parallelism );
+        this.globalFactor = graph.direction() == Direction.BOTH ? 0.5 : 1.0;
+    }
+
+    @Override
+    protected void process( Search search, double[] result )
+    {
+        double[] dependencies = search.scratch;
+        // Go through the nodes from the farthest away and back, so that the
+        // dependencies of the nodes further down a path are known
+        for ( int i = search.reached - 1; i >= 0; i-- )
+        {
+            int node = search.order[i];
+            double dependency = 0;
+            for ( int edge = graph.firstEdge( node ), end = edge + graph.degree( node );
+                    edge < end; edge++ )
+            {
+                if ( search.onShortestPath( node, edge ) )
+                {
+                    int target = graph.target( edge );
+                    dependency += search.pathCounts[node] / search.pathCounts[target]
+                            * (1 + dependencies[target]);
+                }
+            }
+            dependencies[node] = dependency;
+            if ( node != search.source )
+            {
+                result[node] += dependency * globalFactor;
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Node;
+
+/**
+ * Base for centrality measures computed on a {@link CompactGraph} by several
+ * threads at once. The result is a value per node in the projection, computed
+ * the first time it's asked for. If no {@link ExecutorService} is given a
+ * thread pool with one thread per available processor is used for the
+ * duration of the computation.
+ */
+abstract class ParallelCentrality
+{
+    protected final CompactGraph graph;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private double[] centralities;
+
+    ParallelCentrality( CompactGraph graph, ExecutorService executor, int parallelism )
+    {
+        this.graph = graph;
+        this.executor = executor;
+        this.parallelism = Math.max( 1, parallelism );
+    }
+
+    /**
+     * @param node the node to get the centrality for.
+     * @return the centrality of {@code node}, or {@code null} if it isn't part
+     * of the projection.
+     */
+    public Double getCentrality( Node node )
+    {
+        int index = graph.index( node.getId() );
+        return index == -1 ? null : getCentralities()[index];
+    }
+
+    /**
+     * @return the centralities of all the nodes, by their index in the
+     * {@link CompactGraph}.
+     */
+    public double[] getCentralities()
+    {
+        calculate();
+        return centralities;
+    }
+
+    /**
+     * This resets the calculation if we for some reason would like to redo it.
+     */
+    public void reset()
+    {
+        centralities = null;
+    }
+
+    /**
+     * Internal calculate method that will do the calculation. This can however
+     * be called externally to manually trigger the calculation.
+     */
+    public void calculate()
+    {
+        if ( centralities != null )
+        {
+            return;
+        }
+        ExecutorService executor = this.executor;
+        if ( executor == null )
+        {
+            executor = Executors.newFixedThreadPool( parallelism );
+        }
+        try
+        {
+            centralities = compute( executor );
+        }
+        finally
+        {
+            if ( executor != this.executor )
+            {
+                executor.shutdown();
+            }
+        }
+    }
+
+    protected abstract double[] compute( ExecutorService executor );
+
+    protected int parallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Runs {@code task} for every chunk of the node range, one chunk per
+     * thread, and returns the results in chunk order.
+     */
+    protected <T> List<T> forEachChunk( ExecutorService executor, final ChunkTask<T> task )
+    {
+        int nodeCount = graph.nodeCount();
+        int chunkSize = (nodeCount + parallelism - 1) / parallelism;
+        List<Callable<T>> tasks = new ArrayList<Callable<T>>();
+        for ( int start = 0; start < nodeCount; start += chunkSize )
+        {
+            final int from = start;
+            final int to = Math.min( nodeCount, start + chunkSize );
+            tasks.add( new Callable<T>()
+            {
+                public T call() throws Exception
+                {
+                    return task.run( from, to );
+                }
+            } );
+        }
+        return invokeAll( executor, tasks );
+    }
+
+    protected static <T> List<T> invokeAll( ExecutorService executor,
+            List<? extends Callable<T>> tasks )
+    {
+        try
+        {
+            List<T> results = new ArrayList<T>();
+            for ( Future<T> future : executor.invokeAll( tasks ) )
+            {
+                results.add( future.get() );
+            }
+            return results;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            if ( e.getCause() instanceof Error )
+            {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+    protected interface ChunkTask<T>
+    {
+        T run( int from, int to );
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.concurrent.ExecutorService;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+
+/**
+ * Closeness centrality, like {@link ClosenessCentrality}, i.e. one divided
+ * by the sum of the distances from a node to all the nodes it can reach,
+ * computed on a {@link CompactGraph} with the source nodes spread out over
+ * several threads. Nodes which can't reach any other node get 0.
+ * @complexity O(n * m) for unweighted and O(n * m * log(n)) for weighted
+ *             projections, divided by the number of threads.
+ */
+public class ParallelClosenessCentrality extends ParallelShortestPathCentrality
+{
+    /**
+     * @param graph the projection to compute the centrality for.
+     * @param executor the executor to run the computation in, or {@code null}
+     * for a thread pool with one thread per available processor.
+     */
+    public ParallelClosenessCentrality( CompactGraph graph, ExecutorService executor )
+    {
+        this( graph, executor, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param graph the projection to compute the centrality for.
+     * @param executor the executor to run the computation in, or {@code null}
+     * for a thread pool of {@code parallelism} threads.
+     * @param parallelism the number of threads to split the computation on.
+     */
+    public ParallelClosenessCentrality( CompactGraph graph, ExecutorService executor,
+            int parallelism )
+    {
+        super( graph, executor, parallelism );
+    }
+
+    @Override
+    protected void process( Search search, double[] result )
+    {
+        double sum = 0;
+        for ( int i = 0; i < search.reached; i++ )
+        {
+            sum += search.distances[search.order[i]];
+        }
+        result[search.source] = sum > 0 ? 1.0 / sum : 0;
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+
+/**
+ * Computing eigenvector centrality with the "power method", like
+ * {@link EigenvectorCentralityPower}, on a {@link CompactGraph}. Each
+ * iteration computes the new value of every node from the values of the nodes
+ * with edges to it, so the nodes can be split up in ranges, one per thread,
+ * without the threads ever writing to the same place.
+ * @complexity O(i(n + m)) when i iterations are done, divided by the number
+ *             of threads.
+ */
+public class ParallelEigenvectorCentrality extends ParallelCentrality implements
+    EigenvectorCentrality
+{
+    private final double precision;
+    private int maxIterations = Integer.MAX_VALUE;
+    private int totalIterations;
+
+    /**
+     * @param graph the projection to compute the centrality for, where the
+     * weights are the values of the adjacency matrix.
+     * @param executor the executor to run the computation in, or {@code null}
+     * for a thread pool with one thread per available processor.
+     * @param precision Precision factor (ex. 0.01 for 1% error). Note that
+     * this is not the error from the correct values, but the amount of change
+     * tolerated in one iteration.
+     */
+    public ParallelEigenvectorCentrality( CompactGraph graph, ExecutorService executor,
+            double precision )
+    {
+        this( graph, executor, Runtime.getRuntime().availableProcessors(), precision );
+    }
+
+    public ParallelEigenvectorCentrality( CompactGraph graph, ExecutorService executor,
+            int parallelism, double precision )
+    {
+        super( graph, executor, parallelism );
+        this.precision = precision;
+    }
+
+    @Override
+    protected double[] compute( ExecutorService executor )
+    {
+        final CompactGraph incoming = graph.transpose();
+        double[] values = new double[graph.nodeCount()];
+        double[] newValues = new double[graph.nodeCount()];
+        Arrays.fill( values, 1.0 / Math.sqrt( graph.nodeCount() ) );
+        totalIterations = 0;
+        while ( totalIterations < maxIterations )
+        {
+            totalIterations++;
+            final double[] oldVector = values;
+            final double[] newVector = newValues;
+            // "matrix multiplication"
+            double squareSum = 0;
+            for ( double chunkSum : forEachChunk( executor, new ChunkTask<Double>()
+            {
+                public Double run( int from, int to )
+                {
+                    double sum = 0;
+                    for ( int node = from; node < to; node++ )
+                    {
+                        double value = 0;
+                        for ( int edge = incoming.firstEdge( node ), end = edge
+                                + incoming.degree( node ); edge < end; edge++ )
+                        {
+                            value += oldVector[incoming.target( edge )] * incoming.weight( edge );
+                        }
+                        newVector[node] = value;
+                        sum += value * value;
+                    }
+                    return sum;
+                }
+            } ) )
+            {
+                squareSum += chunkSum;
+            }
+
+            final double length = Math.sqrt( squareSum );
+            boolean converged = true;
+            for ( boolean chunkConverged : forEachChunk( executor, new ChunkTask<Boolean>()
+            {
+                public Boolean run( int from, int to )
+                {
+                    boolean converged = true;
+                    for ( int node = from; node < to; node++ )
+                    {
+                        if ( length > 0.0 )
+                        {
+                            newVector[node] /= length;
+                        }
+                        converged &= withinPrecision( oldVector[node], newVector[node] );
+                    }
+                    return converged;
+                }
+            } ) )
+            {
+                converged &= chunkConverged;
+            }
+
+            values = newVector;
+            newValues = oldVector;
+            if ( converged )
+            {
+                break;
+            }
+        }
+        return values;
+    }
+
+    private boolean withinPrecision( double oldValue, double newValue )
+    {
+        if ( oldValue == 0.0 )
+        {
+            return Math.abs( newValue ) <= precision;
+        }
+        double factor = Math.abs( newValue / oldValue );
+        return factor - precision <= 1.0 && factor + precision >= 1.0;
+    }
+
+    /**
+     * @return the number of iterations made.
+     */
+    public int getTotalIterations()
+    {
+        return totalIterations;
+    }
+
+    /**
+     * Limit the maximum number of iterations to run. Per default,
+     * the maximum iterations are set to Integer.MAX_VALUE, which should
+     * be limited to 50-100 normally.
+     * @param maxIterations
+     *            the maxIterations to set
+     */
+    public void setMaxIterations( int maxIterations )
+    {
+        this.maxIterations = maxIterations;
+    }
+}
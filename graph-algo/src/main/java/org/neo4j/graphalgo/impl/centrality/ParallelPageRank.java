@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+
+/**
+ * PageRank, computed with power iterations on a {@link CompactGraph} split up
+ * in ranges of nodes, one per thread. A node passes on its rank to the nodes
+ * it has edges to, in proportion to the weights of the edges. The rank of
+ * nodes without any edges is spread out over all nodes.
+ * @complexity O(i(n + m)) when i iterations are done, divided by the number
+ *             of threads.
+ */
+public class ParallelPageRank extends ParallelCentrality
+{
+    private final double dampingFactor;
+    private final double tolerance;
+    private int maxIterations = 100;
+    private int totalIterations;
+
+    /**
+     * @param graph the projection to compute the page rank for.
+     * @param executor the executor to run the computation in, or {@code null}
+     * for a thread pool with one thread per available processor.
+     * @param dampingFactor the probability to follow an edge rather than to
+     * jump to a random node, typically 0.85.
+     * @param tolerance the iterations stop when the sum of the changes of
+     * all ranks in an iteration is smaller than this.
+     */
+    public ParallelPageRank( CompactGraph graph, ExecutorService executor,
+            double dampingFactor, double tolerance )
+    {
+        this( graph, executor, Runtime.getRuntime().availableProcessors(), dampingFactor,
+                tolerance );
+    }
+
+    public ParallelPageRank( CompactGraph graph, ExecutorService executor, int parallelism,
+            double dampingFactor, double tolerance )
+    {
+        super( graph, executor, parallelism );
+        this.dampingFactor = dampingFactor;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    protected double[] compute( ExecutorService executor )
+    {
+        final int nodeCount = graph.nodeCount();
+        final CompactGraph incoming = graph.transpose();
+        final double[] outWeights = new double[nodeCount];
+        forEachChunk( executor, new ChunkTask<Void>()
+        {
+            public Void run( int from, int to )
+            {
+                for ( int node = from; node < to; node++ )
+                {
+                    for ( int edge = graph.firstEdge( node ), end = edge + graph.degree( node );
+                            edge < end; edge++ )
+                    {
+                        outWeights[node] += graph.weight( edge );
+                    }
+                }
+                return null;
+            }
+        } );
+
+        double[] ranks = new double[nodeCount];
+        double[] newRanks = new double[nodeCount];
+        final double[] contributions = new double[nodeCount];
+        Arrays.fill( ranks, 1.0 / nodeCount );
+        totalIterations = 0;
+        while ( totalIterations < maxIterations )
+        {
+            totalIterations++;
+            final double[] oldVector = ranks;
+            final double[] newVector = newRanks;
+            double danglingRank = 0;
+            for ( double chunkDangling : forEachChunk( executor, new ChunkTask<Double>()
+            {
+                public Double run( int from, int to )
+                {
+                    double dangling = 0;
+                    for ( int node = from; node < to; node++ )
+                    {
+                        if ( outWeights[node] > 0 )
+                        {
+                            contributions[node] = oldVector[node] / outWeights[node];
+                        }
+                        else
+                        {
+                            contributions[node] = 0;
+                            dangling += oldVector[node];
+                        }
+                    }
+                    return dangling;
+                }
+            } ) )
+            {
+                danglingRank += chunkDangling;
+            }
+
+            final double base = (1 - dampingFactor) / nodeCount + dampingFactor * danglingRank
+                    / nodeCount;
+            double change = 0;
+            for ( double chunkChange : forEachChunk( executor, new ChunkTask<Double>()
+            {
+                public Double run( int from, int to )
+                {
+                    double change = 0;
+                    for ( int node = from; node < to; node++ )
+                    {
+                        double sum = 0;
+                        for ( int edge = incoming.firstEdge( node ), end = edge
+                                + incoming.degree( node ); edge < end; edge++ )
+                        {
+                            sum += contributions[incoming.target( edge )] * incoming.weight( edge );
+                        }
+                        newVector[node] = base + dampingFactor * sum;
+                        change += Math.abs( newVector[node] - oldVector[node] );
+                    }
+                    return change;
+                }
+            } ) )
+            {
+                change += chunkChange;
+            }
+
+            ranks = newVector;
+            newRanks = oldVector;
+            if ( change < tolerance )
+            {
+                break;
+            }
+        }
+        return ranks;
+    }
+
+    /**
+     * @return the number of iterations made.
+     */
+    public int getTotalIterations()
+    {
+        return totalIterations;
+    }
+
+    /**
+     * Limit the maximum number of iterations to run, 100 per default.
+     * @param maxIterations the maxIterations to set
+     */
+    public void setMaxIterations( int maxIterations )
+    {
+        this.maxIterations = maxIterations;
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphalgo.impl.util.IndexedMinHeap;
+
+/**
+ * Base for the centrality measures which are computed from the shortest
+ * paths from every node, i.e. {@link ParallelBetweennessCentrality} and
+ * {@link ParallelClosenessCentrality}. The source nodes are handed out to the
+ * threads one at a time and each thread does a breadth first search, or
+ * Dijkstra search for weighted projections, from each of its sources with
+ * its own reusable arrays, into its own result array. The result arrays are
+ * summed up at the end.
+ */
+abstract class ParallelShortestPathCentrality extends ParallelCentrality
+{
+    ParallelShortestPathCentrality( CompactGraph graph, ExecutorService executor, int parallelism )
+    {
+        super( graph, executor, parallelism );
+    }
+
+    @Override
+    protected double[] compute( ExecutorService executor )
+    {
+        final AtomicInteger nextSource = new AtomicInteger();
+        List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+        for ( int i = 0; i < parallelism(); i++ )
+        {
+            tasks.add( new Callable<double[]>()
+            {
+                public double[] call()
+                {
+                    Search search = new Search( graph );
+                    double[] result = new double[graph.nodeCount()];
+                    for ( int source; (source = nextSource.getAndIncrement()) < graph.nodeCount(); )
+                    {
+                        search.run( source );
+                        process( search, result );
+                    }
+                    return result;
+                }
+            } );
+        }
+        double[] total = new double[graph.nodeCount()];
+        for ( double[] result : invokeAll( executor, tasks ) )
+        {
+            for ( int node = 0; node < total.length; node++ )
+            {
+                total[node] += result[node];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Accumulates the outcome of a single source search into {@code result}.
+     */
+    protected abstract void process( Search search, double[] result );
+
+    /**
+     * The shortest paths from one source node: the distance to, and the
+     * number of shortest paths to, each reached node, and the reached nodes
+     * in the order of non-decreasing distance. There's also a scratch array,
+     * one value per node, for the centrality measures to use.
+     */
+    static final class Search
+    {
+        private final CompactGraph graph;
+        final double[] distances;
+        final double[] pathCounts;
+        final int[] order;
+        final double[] scratch;
+        int reached;
+        int source;
+        private final IndexedMinHeap queue;
+
+        Search( CompactGraph graph )
+        {
+            this.graph = graph;
+            this.distances = new double[graph.nodeCount()];
+            this.pathCounts = new double[graph.nodeCount()];
+            this.order = new int[graph.nodeCount()];
+            this.scratch = new double[graph.nodeCount()];
+            this.queue = graph.weighted() ? new IndexedMinHeap() : null;
+            Arrays.fill( distances, Double.POSITIVE_INFINITY );
+        }
+
+        void run( int source )
+        {
+            // Only reset what the previous search touched
+            for ( int i = 0; i < reached; i++ )
+            {
+                distances[order[i]] = Double.POSITIVE_INFINITY;
+                pathCounts[order[i]] = 0;
+            }
+            this.source = source;
+            reached = 0;
+            distances[source] = 0;
+            pathCounts[source] = 1;
+            if ( queue == null )
+            {
+                breadthFirst( source );
+            }
+            else
+            {
+                dijkstra( source );
+            }
+        }
+
+        private void breadthFirst( int source )
+        {
+            order[reached++] = source;
+            for ( int head = 0; head < reached; head++ )
+            {
+                int node = order[head];
+                double distance = distances[node] + 1;
+                for ( int edge = graph.firstEdge( node ), end = edge + graph.degree( node );
+                        edge < end; edge++ )
+                {
+                    int target = graph.target( edge );
+                    if ( distances[target] == Double.POSITIVE_INFINITY )
+                    {
+                        distances[target] = distance;
+                        order[reached++] = target;
+                    }
+                    if ( distances[target] == distance )
+                    {
+                        pathCounts[target] += pathCounts[node];
+                    }
+                }
+            }
+        }
+
+        private void dijkstra( int source )
+        {
+            queue.offer( source, 0 );
+            while ( !queue.isEmpty() )
+            {
+                int node = queue.poll();
+                order[reached++] = node;
+                for ( int edge = graph.firstEdge( node ), end = edge + graph.degree( node );
+                        edge < end; edge++ )
+                {
+                    int target = graph.target( edge );
+                    double distance = distances[node] + graph.weight( edge );
+                    if ( distance < distances[target] )
+                    {
+                        distances[target] = distance;
+                        pathCounts[target] = pathCounts[node];
+                        queue.offer( target, distance );
+                    }
+                    else if ( distance == distances[target] && target != source )
+                    {
+                        pathCounts[target] += pathCounts[node];
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return whether or not {@code edge}, from {@code node}, is on a
+         * shortest path from the source.
+         */
+        boolean onShortestPath( int node, int edge )
+        {
+            int target = graph.target( edge );
+            return distances[target] != Double.POSITIVE_INFINITY && target != node
+                    && distances[target] == distances[node] + graph.weight( edge );
+        }
+    }
+}
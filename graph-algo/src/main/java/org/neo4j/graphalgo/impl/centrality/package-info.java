@@ -19,6 +19,8 @@
  */
 /**
  * Centrality graph algorithms which are allright to use, but doesn't scale
- * to bigger graphs.
+ * to bigger graphs. The {@code Parallel*} ones work on an in-memory
+ * {@link org.neo4j.graphalgo.impl.util.CompactGraph} instead and spread the
+ * work over several threads.
  */
 package org.neo4j.graphalgo.impl.centrality;
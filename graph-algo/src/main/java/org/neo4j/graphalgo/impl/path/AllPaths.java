@@ -26,6 +26,7 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.RelationshipExpander;
 import org.neo4j.helpers.Predicate;
+import org.neo4j.helpers.collection.PrefetchingIterator;
 import org.neo4j.kernel.Traversal;
 import org.neo4j.kernel.Uniqueness;
 
@@ -33,11 +34,26 @@ public class AllPaths implements PathFinder<Path>
 {
     private final RelationshipExpander expander;
     private final int maxDepth;
+    private final int maxResultCount;
 
     public AllPaths( int maxDepth, RelationshipExpander expander )
+    {
+        this( maxDepth, expander, Integer.MAX_VALUE );
+    }
+
+    /**
+     * @param maxDepth the max {@link Path#length()} returned paths are
+     * allowed to have.
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * relationships for each {@link Node}.
+     * @param maxResultCount the maximum number of paths to return, the
+     * traversal stops as soon as that many paths have been found.
+     */
+    public AllPaths( int maxDepth, RelationshipExpander expander, int maxResultCount )
     {
         this.maxDepth = maxDepth;
         this.expander = expander;
+        this.maxResultCount = maxResultCount;
     }
 
     public Iterable<Path> findAllPaths( Node start, final Node end )
@@ -50,8 +66,35 @@ public class AllPaths implements PathFinder<Path>
             }
         };
 
-        return Traversal.description().expand( expander ).depthFirst().filter( filter ).prune(
-                Traversal.pruneAfterDepth( maxDepth ) ).uniqueness( uniqueness() ).traverse( start );
+        final Iterable<Path> paths = Traversal.description().expand( expander ).depthFirst().filter(
+                filter ).prune( Traversal.pruneAfterDepth( maxDepth ) ).uniqueness(
+                uniqueness() ).traverse( start );
+        if ( maxResultCount == Integer.MAX_VALUE )
+        {
+            return paths;
+        }
+        return new Iterable<Path>()
+        {
+            public Iterator<Path> iterator()
+            {
+                final Iterator<Path> source = paths.iterator();
+                return new PrefetchingIterator<Path>()
+                {
+                    private int count;
+
+                    @Override
+                    protected Path fetchNextOrNull()
+                    {
+                        if ( count >= maxResultCount || !source.hasNext() )
+                        {
+                            return null;
+                        }
+                        count++;
+                        return source.next();
+                    }
+                };
+            }
+        };
     }
 
     protected Uniqueness uniqueness()
@@ -29,6 +29,11 @@ public class AllSimplePaths extends AllPaths
         super( maxDepth, expander );
     }
 
+    public AllSimplePaths( int maxDepth, RelationshipExpander expander, int maxResultCount )
+    {
+        super( maxDepth, expander, maxResultCount );
+    }
+
     @Override
     protected Uniqueness uniqueness()
     {
@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.EstimateEvaluator;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipExpander;
+
+/**
+ * Finds the cheapest path between two nodes using the A* algorithm, just
+ * like {@link AStar}, but with the primitive, id based, bookkeeping of
+ * {@link CompactDijkstra}. Like {@link AStar} it only finds a single path.
+ */
+public class CompactAStar extends CompactDijkstra
+{
+    public CompactAStar( RelationshipExpander expander,
+            CostEvaluator<Double> lengthEvaluator, EstimateEvaluator<Double> estimateEvaluator )
+    {
+        super( expander, lengthEvaluator, estimateEvaluator );
+    }
+
+    @Override
+    public Iterable<WeightedPath> findAllPaths( Node start, Node end )
+    {
+        return paths( start, end, 1 );
+    }
+}
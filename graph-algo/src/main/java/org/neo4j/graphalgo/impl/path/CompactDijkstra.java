@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.EstimateEvaluator;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.IndexedMinHeap;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphalgo.impl.util.WeightedPathImpl;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipExpander;
+
+/**
+ * Finds the cheapest paths between two nodes using the Dijkstra algorithm,
+ * just like {@link Dijkstra}, but keeps the nodes reached by id in primitive
+ * arrays and the nodes to visit next in an {@link IndexedMinHeap} of their
+ * slots, instead of in maps and heaps of {@link Node} instances.
+ * <p>
+ * Given an {@link EstimateEvaluator} it's the A* algorithm instead, see
+ * {@link CompactAStar}.
+ */
+public class CompactDijkstra implements PathFinder<WeightedPath>
+{
+    private final RelationshipExpander expander;
+    private final CostEvaluator<Double> costEvaluator;
+    private final EstimateEvaluator<Double> estimateEvaluator;
+
+    public CompactDijkstra( RelationshipExpander expander, CostEvaluator<Double> costEvaluator )
+    {
+        this( expander, costEvaluator, null );
+    }
+
+    CompactDijkstra( RelationshipExpander expander, CostEvaluator<Double> costEvaluator,
+            EstimateEvaluator<Double> estimateEvaluator )
+    {
+        this.expander = expander;
+        this.costEvaluator = costEvaluator;
+        this.estimateEvaluator = estimateEvaluator;
+    }
+
+    public Iterable<WeightedPath> findAllPaths( Node start, Node end )
+    {
+        return paths( start, end, Integer.MAX_VALUE );
+    }
+
+    public WeightedPath findSinglePath( Node start, Node end )
+    {
+        Iterator<WeightedPath> paths = paths( start, end, 1 ).iterator();
+        return paths.hasNext() ? paths.next() : null;
+    }
+
+    Collection<WeightedPath> paths( Node start, Node end, int maxCount )
+    {
+        GraphDatabaseService graphDb = start.getGraphDatabase();
+        long endId = end.getId();
+        IdSearchSpace nodes = new IdSearchSpace();
+        IndexedMinHeap queue = new IndexedMinHeap();
+        double[] estimates = estimateEvaluator != null ? new double[1024] : null;
+
+        int startSlot = nodes.add( start.getId(), 0, 0 );
+        queue.offer( startSlot, estimate( estimates, startSlot, start, end ) );
+        boolean[] settled = new boolean[1024];
+        while ( !queue.isEmpty() )
+        {
+            int slot = queue.poll();
+            settled = ensureCapacity( settled, slot );
+            settled[slot] = true;
+            if ( nodes.id( slot ) == endId )
+            {
+                return toPaths( nodes, slot, start, graphDb, maxCount );
+            }
+
+            Node node = graphDb.getNodeById( nodes.id( slot ) );
+            double cost = nodes.cost( slot );
+            int depth = nodes.depth( slot );
+            for ( Relationship relationship : expander.expand( node ) )
+            {
+                Node other = relationship.getOtherNode( node );
+                long otherId = other.getId();
+                double otherCost = cost + costEvaluator.getCost( relationship, Direction.OUTGOING );
+                int otherSlot = nodes.slot( otherId );
+                if ( otherSlot == IdSearchSpace.NONE )
+                {
+                    otherSlot = nodes.add( otherId, otherCost, depth + 1 );
+                    nodes.addPredecessor( otherSlot, slot, relationship.getId() );
+                    estimates = ensureCapacity( estimates, otherSlot );
+                    queue.offer( otherSlot, otherCost + estimate( estimates, otherSlot, other, end ) );
+                }
+                else if ( otherSlot < settled.length && settled[otherSlot] )
+                {
+                    continue;
+                }
+                else if ( otherCost < nodes.cost( otherSlot ) )
+                {
+                    nodes.setPredecessor( otherSlot, slot, relationship.getId(), otherCost, depth + 1 );
+                    queue.offer( otherSlot, otherCost + estimate( estimates, otherSlot ) );
+                }
+                else if ( otherCost == nodes.cost( otherSlot ) )
+                {
+                    nodes.addPredecessor( otherSlot, slot, relationship.getId() );
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private double estimate( double[] estimates, int slot, Node node, Node end )
+    {
+        if ( estimates == null )
+        {
+            return 0;
+        }
+        estimates[slot] = estimateEvaluator.getCost( node, end );
+        return estimates[slot];
+    }
+
+    private double estimate( double[] estimates, int slot )
+    {
+        return estimates == null ? 0 : estimates[slot];
+    }
+
+    private static double[] ensureCapacity( double[] array, int index )
+    {
+        if ( array == null || index < array.length )
+        {
+            return array;
+        }
+        double[] result = new double[Math.max( array.length * 2, index + 1 )];
+        System.arraycopy( array, 0, result, 0, array.length );
+        return result;
+    }
+
+    private static boolean[] ensureCapacity( boolean[] array, int index )
+    {
+        if ( index < array.length )
+        {
+            return array;
+        }
+        boolean[] result = new boolean[Math.max( array.length * 2, index + 1 )];
+        System.arraycopy( array, 0, result, 0, array.length );
+        return result;
+    }
+
+    private static Collection<WeightedPath> toPaths( IdSearchSpace nodes, int slot, Node start,
+            GraphDatabaseService graphDb, int maxCount )
+    {
+        Collection<WeightedPath> result = new ArrayList<WeightedPath>();
+        for ( LinkedList<Relationship> relationships : nodes.paths( slot, graphDb, maxCount ) )
+        {
+            PathImpl.Builder builder = new PathImpl.Builder( start );
+            for ( Relationship relationship : relationships )
+            {
+                builder = builder.push( relationship );
+            }
+            result.add( new WeightedPathImpl( nodes.cost( slot ), builder.build() ) );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipExpander;
+
+/**
+ * Finds the shortest paths between two nodes, just like {@link ShortestPath},
+ * by going one depth level at a time from both ends. It always expands the
+ * side with the fewest nodes on its latest level.
+ * <p>
+ * The nodes reached are kept by id, in primitive arrays, instead of in maps
+ * keyed by {@link Node}, so only the nodes of the levels currently being
+ * expanded are held as {@link Node} instances. This makes a big difference in
+ * speed and garbage produced when the searches get big.
+ *
+ * Relationships are traversed in the specified directions from the start node,
+ * but in the reverse direction ( {@link Direction#reverse()} ) from the
+ * end node. This doesn't affect {@link Direction#BOTH}.
+ */
+public class CompactShortestPath implements PathFinder<Path>
+{
+    private final int maxDepth;
+    private final int maxResultCount;
+    private final RelationshipExpander expander;
+
+    public CompactShortestPath( int maxDepth, RelationshipExpander expander )
+    {
+        this( maxDepth, expander, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Constructs a new shortest path algorithm.
+     * @param maxDepth the maximum depth for the traversal. Returned paths
+     * will never have a greater {@link Path#length()} than {@code maxDepth}.
+     * @param expander the {@link RelationshipExpander} to use for deciding
+     * which relationships to expand for each {@link Node}.
+     * @param maxResultCount the maximum number of paths to return.
+     */
+    public CompactShortestPath( int maxDepth, RelationshipExpander expander, int maxResultCount )
+    {
+        this.maxDepth = maxDepth;
+        this.expander = expander;
+        this.maxResultCount = maxResultCount;
+    }
+
+    public Iterable<Path> findAllPaths( Node start, Node end )
+    {
+        return paths( start, end, maxResultCount );
+    }
+
+    public Path findSinglePath( Node start, Node end )
+    {
+        Iterator<Path> paths = paths( start, end, 1 ).iterator();
+        return paths.hasNext() ? paths.next() : null;
+    }
+
+    private Collection<Path> paths( Node start, Node end, int maxCount )
+    {
+        if ( start.equals( end ) )
+        {
+            return Arrays.asList( PathImpl.singular( start ) );
+        }
+
+        Side startSide = new Side( start, expander );
+        Side endSide = new Side( end, expander.reversed() );
+        List<Long> hits = new ArrayList<Long>();
+        while ( hits.isEmpty() && !startSide.frontier.isEmpty() && !endSide.frontier.isEmpty()
+                && startSide.depth + endSide.depth < maxDepth )
+        {
+            if ( startSide.frontier.size() <= endSide.frontier.size() )
+            {
+                startSide.expandLevel( endSide, hits );
+            }
+            else
+            {
+                endSide.expandLevel( startSide, hits );
+            }
+        }
+        if ( hits.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        GraphDatabaseService graphDb = start.getGraphDatabase();
+        Collection<Path> result = new ArrayList<Path>();
+        for ( long nodeId : hits )
+        {
+            for ( LinkedList<Relationship> startPath : startSide.nodes.paths(
+                    startSide.nodes.slot( nodeId ), graphDb, maxCount - result.size() ) )
+            {
+                PathImpl.Builder startBuilder = toBuilder( start, startPath );
+                for ( LinkedList<Relationship> endPath : endSide.nodes.paths(
+                        endSide.nodes.slot( nodeId ), graphDb, maxCount - result.size() ) )
+                {
+                    result.add( startBuilder.build( toBuilder( end, endPath ) ) );
+                    if ( result.size() >= maxCount )
+                    {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static PathImpl.Builder toBuilder( Node startNode, LinkedList<Relationship> rels )
+    {
+        PathImpl.Builder builder = new PathImpl.Builder( startNode );
+        for ( Relationship rel : rels )
+        {
+            builder = builder.push( rel );
+        }
+        return builder;
+    }
+
+    private static class Side
+    {
+        private final IdSearchSpace nodes = new IdSearchSpace();
+        private final RelationshipExpander expander;
+        private List<Node> frontier = new ArrayList<Node>();
+        private int depth;
+
+        Side( Node startNode, RelationshipExpander expander )
+        {
+            this.expander = expander;
+            nodes.add( startNode.getId(), 0, 0 );
+            frontier.add( startNode );
+        }
+
+        void expandLevel( Side otherSide, List<Long> hits )
+        {
+            depth++;
+            List<Node> nextFrontier = new ArrayList<Node>();
+            for ( Node node : frontier )
+            {
+                int fromSlot = nodes.slot( node.getId() );
+                for ( Relationship relationship : expander.expand( node ) )
+                {
+                    Node other = relationship.getOtherNode( node );
+                    long otherId = other.getId();
+                    int slot = nodes.slot( otherId );
+                    if ( slot == IdSearchSpace.NONE )
+                    {
+                        slot = nodes.add( otherId, depth, depth );
+                        nodes.addPredecessor( slot, fromSlot, relationship.getId() );
+                        nextFrontier.add( other );
+                        if ( otherSide.nodes.slot( otherId ) != IdSearchSpace.NONE )
+                        {
+                            hits.add( otherId );
+                        }
+                    }
+                    else if ( nodes.depth( slot ) == depth )
+                    {
+                        nodes.addPredecessor( slot, fromSlot, relationship.getId() );
+                    }
+                }
+            }
+            frontier = nextFrontier;
+        }
+    }
+}
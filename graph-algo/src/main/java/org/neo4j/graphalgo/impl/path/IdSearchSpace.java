@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+
+import org.neo4j.graphalgo.impl.util.PrimitiveLongIntMap;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * The nodes reached by a search, kept by id in primitive arrays instead of
+ * in maps keyed by node. Each reached node gets a slot, with its id, cost,
+ * depth and its predecessors, i.e. the relationships (and the slots of the
+ * nodes at their other ends) which the node was reached the cheapest way
+ * through. Predecessors are kept in a pool of linked lists of ints, so that a
+ * node reached several equally cheap ways can produce all those paths.
+ */
+class IdSearchSpace
+{
+    static final int NONE = -1;
+
+    private final PrimitiveLongIntMap slots;
+    private long[] ids;
+    private double[] costs;
+    private int[] depths;
+    private int[] firstPredecessors;
+    private int size;
+
+    private long[] predecessorRelationships;
+    private int[] predecessorSlots;
+    private int[] nextPredecessors;
+    private int predecessorCount;
+
+    IdSearchSpace()
+    {
+        this( 1024 );
+    }
+
+    IdSearchSpace( int expectedSize )
+    {
+        expectedSize = Math.max( 16, expectedSize );
+        this.slots = new PrimitiveLongIntMap( expectedSize );
+        this.ids = new long[expectedSize];
+        this.costs = new double[expectedSize];
+        this.depths = new int[expectedSize];
+        this.firstPredecessors = new int[expectedSize];
+        this.predecessorRelationships = new long[expectedSize];
+        this.predecessorSlots = new int[expectedSize];
+        this.nextPredecessors = new int[expectedSize];
+    }
+
+    /**
+     * @return the slot of the node with the given id, or {@link #NONE} if it
+     * hasn't been reached.
+     */
+    int slot( long nodeId )
+    {
+        return slots.get( nodeId );
+    }
+
+    int add( long nodeId, double cost, int depth )
+    {
+        if ( size == ids.length )
+        {
+            int length = size * 2;
+            ids = Arrays.copyOf( ids, length );
+            costs = Arrays.copyOf( costs, length );
+            depths = Arrays.copyOf( depths, length );
+            firstPredecessors = Arrays.copyOf( firstPredecessors, length );
+        }
+        int slot = size++;
+        ids[slot] = nodeId;
+        costs[slot] = cost;
+        depths[slot] = depth;
+        firstPredecessors[slot] = NONE;
+        slots.put( nodeId, slot );
+        return slot;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    long id( int slot )
+    {
+        return ids[slot];
+    }
+
+    double cost( int slot )
+    {
+        return costs[slot];
+    }
+
+    int depth( int slot )
+    {
+        return depths[slot];
+    }
+
+    /**
+     * Makes the given relationship the only predecessor of {@code slot}, for
+     * when a cheaper way to it has been found.
+     */
+    void setPredecessor( int slot, int fromSlot, long relationshipId, double cost, int depth )
+    {
+        costs[slot] = cost;
+        depths[slot] = depth;
+        firstPredecessors[slot] = NONE;
+        addPredecessor( slot, fromSlot, relationshipId );
+    }
+
+    /**
+     * Adds the given relationship as a predecessor of {@code slot}, for when
+     * another way to it, as cheap as the ones already known, has been found.
+     */
+    void addPredecessor( int slot, int fromSlot, long relationshipId )
+    {
+        if ( predecessorCount == predecessorSlots.length )
+        {
+            int length = predecessorCount * 2;
+            predecessorRelationships = Arrays.copyOf( predecessorRelationships, length );
+            predecessorSlots = Arrays.copyOf( predecessorSlots, length );
+            nextPredecessors = Arrays.copyOf( nextPredecessors, length );
+        }
+        int predecessor = predecessorCount++;
+        predecessorRelationships[predecessor] = relationshipId;
+        predecessorSlots[predecessor] = fromSlot;
+        nextPredecessors[predecessor] = firstPredecessors[slot];
+        firstPredecessors[slot] = predecessor;
+    }
+
+    /**
+     * Returns the relationships of the paths from the start of the search to
+     * the node in {@code slot}, all the cheapest ways there, but no more than
+     * {@code maxCount} of them.
+     */
+    Collection<LinkedList<Relationship>> paths( int slot, GraphDatabaseService graphDb,
+            int maxCount )
+    {
+        Collection<LinkedList<Relationship>> result = new ArrayList<LinkedList<Relationship>>();
+        collectPaths( slot, graphDb, new LinkedList<Relationship>(), result, maxCount );
+        return result;
+    }
+
+    private void collectPaths( int slot, GraphDatabaseService graphDb,
+            LinkedList<Relationship> suffix, Collection<LinkedList<Relationship>> result,
+            int maxCount )
+    {
+        int predecessor = firstPredecessors[slot];
+        if ( predecessor == NONE )
+        {
+            result.add( new LinkedList<Relationship>( suffix ) );
+            return;
+        }
+        for ( ; predecessor != NONE && result.size() < maxCount;
+                predecessor = nextPredecessors[predecessor] )
+        {
+            suffix.addFirst( graphDb.getRelationshipById( predecessorRelationships[predecessor] ) );
+            collectPaths( predecessorSlots[predecessor], graphDb, suffix, result, maxCount );
+            suffix.removeFirst();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphalgo.impl.util.WeightedPathImpl;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipExpander;
+import org.neo4j.helpers.Predicate;
+import org.neo4j.helpers.collection.FilteringIterable;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+
+/**
+ * Finds the K cheapest simple paths between two nodes, cheapest first, using
+ * Yen's algorithm. The first path is the one {@link CompactDijkstra} finds.
+ * Every path after that is the cheapest of the candidates made by deviating
+ * from the previous path at each of its nodes (a "spur" search with
+ * {@link CompactDijkstra} where the nodes before the deviation, and the
+ * relationships that earlier paths took from there, are excluded).
+ * <p>
+ * The paths are computed lazily: a path is only searched for when the
+ * returned {@link Iterable} is asked for it, and the search stops after
+ * {@code k} paths, so asking for the 10 cheapest routes costs about 10 times
+ * the length of a route in Dijkstra searches, no matter how many paths
+ * there are between the nodes.
+ */
+public class KShortestPaths implements PathFinder<WeightedPath>
+{
+    private static final Comparator<WeightedPath> CHEAPEST_FIRST = new Comparator<WeightedPath>()
+    {
+        public int compare( WeightedPath o1, WeightedPath o2 )
+        {
+            int result = Double.compare( o1.weight(), o2.weight() );
+            return result != 0 ? result : o1.length() - o2.length();
+        }
+    };
+
+    private final RelationshipExpander expander;
+    private final CostEvaluator<Double> costEvaluator;
+    private final int k;
+
+    /**
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param costEvaluator evaluator that can return the cost represented
+     * by each relationship the algorithm traverses.
+     * @param k the maximum number of paths to return.
+     */
+    public KShortestPaths( RelationshipExpander expander, CostEvaluator<Double> costEvaluator,
+            int k )
+    {
+        this.expander = expander;
+        this.costEvaluator = costEvaluator;
+        this.k = k;
+    }
+
+    public Iterable<WeightedPath> findAllPaths( final Node start, final Node end )
+    {
+        return new Iterable<WeightedPath>()
+        {
+            public Iterator<WeightedPath> iterator()
+            {
+                return new PathIterator( start, end );
+            }
+        };
+    }
+
+    public WeightedPath findSinglePath( Node start, Node end )
+    {
+        return k > 0 ? new CompactDijkstra( expander, costEvaluator ).findSinglePath( start, end )
+                : null;
+    }
+
+    private double cost( Relationship relationship )
+    {
+        return costEvaluator.getCost( relationship, Direction.OUTGOING );
+    }
+
+    private class PathIterator extends PrefetchingIterator<WeightedPath>
+    {
+        private final Node start;
+        private final Node end;
+        private final List<List<Relationship>> found = new ArrayList<List<Relationship>>();
+        private final PriorityQueue<WeightedPath> candidates = new PriorityQueue<WeightedPath>(
+                16, CHEAPEST_FIRST );
+        private final Set<List<Long>> seen = new HashSet<List<Long>>();
+
+        PathIterator( Node start, Node end )
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected WeightedPath fetchNextOrNull()
+        {
+            if ( found.size() >= k )
+            {
+                return null;
+            }
+            WeightedPath next;
+            if ( found.isEmpty() )
+            {
+                next = new CompactDijkstra( expander, costEvaluator ).findSinglePath( start, end );
+                if ( next != null )
+                {
+                    seen.add( ids( next.relationships() ) );
+                }
+            }
+            else
+            {
+                addCandidatesFrom( found.get( found.size() - 1 ) );
+                next = candidates.poll();
+            }
+            if ( next != null )
+            {
+                found.add( relationships( next ) );
+            }
+            return next;
+        }
+
+        private void addCandidatesFrom( List<Relationship> previous )
+        {
+            Set<Long> rootNodes = new HashSet<Long>();
+            PathImpl.Builder root = new PathImpl.Builder( start );
+            double rootCost = 0;
+            Node spurNode = start;
+            for ( int i = 0; i < previous.size(); i++ )
+            {
+                final Set<Long> excludedNodes = new HashSet<Long>( rootNodes );
+                final Set<Long> excludedRelationships = new HashSet<Long>();
+                List<Relationship> rootRelationships = previous.subList( 0, i );
+                for ( List<Relationship> path : found )
+                {
+                    if ( path.size() > i && path.subList( 0, i ).equals( rootRelationships ) )
+                    {
+                        excludedRelationships.add( path.get( i ).getId() );
+                    }
+                }
+
+                WeightedPath spur = new CompactDijkstra( new ExcludingExpander( expander,
+                        excludedNodes, excludedRelationships ), costEvaluator ).findSinglePath(
+                        spurNode, end );
+                if ( spur != null )
+                {
+                    PathImpl.Builder candidate = root;
+                    for ( Relationship relationship : spur.relationships() )
+                    {
+                        candidate = candidate.push( relationship );
+                    }
+                    WeightedPath path = new WeightedPathImpl( rootCost + spur.weight(),
+                            candidate.build() );
+                    if ( seen.add( ids( path.relationships() ) ) )
+                    {
+                        candidates.add( path );
+                    }
+                }
+
+                Relationship relationship = previous.get( i );
+                rootNodes.add( spurNode.getId() );
+                root = root.push( relationship );
+                rootCost += cost( relationship );
+                spurNode = relationship.getOtherNode( spurNode );
+            }
+        }
+    }
+
+    private static List<Relationship> relationships( WeightedPath path )
+    {
+        List<Relationship> result = new ArrayList<Relationship>( path.length() );
+        for ( Relationship relationship : path.relationships() )
+        {
+            result.add( relationship );
+        }
+        return result;
+    }
+
+    private static List<Long> ids( Iterable<Relationship> relationships )
+    {
+        List<Long> result = new ArrayList<Long>();
+        for ( Relationship relationship : relationships )
+        {
+            result.add( relationship.getId() );
+        }
+        return result;
+    }
+
+    /**
+     * Expands what the wrapped expander does, except the excluded
+     * relationships and the relationships leading to excluded nodes.
+     */
+    private static class ExcludingExpander implements RelationshipExpander
+    {
+        private final RelationshipExpander source;
+        private final Set<Long> excludedNodes;
+        private final Set<Long> excludedRelationships;
+
+        ExcludingExpander( RelationshipExpander source, Set<Long> excludedNodes,
+                Set<Long> excludedRelationships )
+        {
+            this.source = source;
+            this.excludedNodes = excludedNodes;
+            this.excludedRelationships = excludedRelationships;
+        }
+
+        public Iterable<Relationship> expand( final Node node )
+        {
+            if ( excludedNodes.contains( node.getId() ) )
+            {
+                return new ArrayList<Relationship>();
+            }
+            return new FilteringIterable<Relationship>( source.expand( node ),
+                    new Predicate<Relationship>()
+                    {
+                        public boolean accept( Relationship item )
+                        {
+                            return !excludedRelationships.contains( item.getId() )
+                                   && !excludedNodes.contains( item.getOtherNode( node ).getId() );
+                        }
+                    } );
+        }
+
+        public RelationshipExpander reversed()
+        {
+            return new ExcludingExpander( source.reversed(), excludedNodes,
+                    excludedRelationships );
+        }
+    }
+}
@@ -0,0 +1,590 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.shortestpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+
+/**
+ * The Floyd Warshall algorithm, like {@link FloydWarshall}, but for a
+ * {@link CompactGraph} and with the distance matrix split up in square tiles
+ * of {@code float}s (and {@code int}s for the predecessors) which are
+ * processed by several threads. For every block k of nodes it first does
+ * Floyd Warshall on the tile on the diagonal, then updates the other tiles in
+ * row and column k from it and finally all remaining tiles from those. Each
+ * tile is small enough to stay in the processor cache while it's updated.
+ * <p>
+ * The tiles are kept in memory, or if a file is given, in that file so that
+ * graphs which are too big for the matrix to fit in memory can be processed
+ * as well. Only the tiles needed for the current step are in memory then.
+ * <p>
+ * Negative weights are allowed, negative cycles are not detected.
+ * @complexity O(n^3) as for {@link FloydWarshall}, divided by the number of
+ *             threads, with n^2 floats (and ints if paths are kept) of
+ *             memory or disk.
+ */
+public class BlockedFloydWarshall
+{
+    /**
+     * The default tile size, a tile of 128*128 floats and ints fits well in
+     * the cache of most processors.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128;
+
+    private static final int NO_PREDECESSOR = -1;
+
+    private final CompactGraph graph;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int blockSize;
+    private final int blockCount;
+    private final boolean keepPaths;
+    private final File file;
+    private Tiles tiles;
+
+    /**
+     * Computes all shortest paths in memory, with a thread pool with one
+     * thread per available processor.
+     *
+     * @param graph the graph to compute the shortest paths in.
+     */
+    public BlockedFloydWarshall( CompactGraph graph )
+    {
+        this( graph, null, Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_SIZE,
+                true, null );
+    }
+
+    /**
+     * @param graph the graph to compute the shortest paths in.
+     * @param executor the executor to run the computation in, or
+     * {@code null} for a thread pool of {@code parallelism} threads.
+     * @param parallelism the number of tasks to split the work in.
+     * @param blockSize the width and height of the tiles.
+     * @param keepPaths whether or not to keep the predecessor matrix needed
+     * by {@link #getPath(Node, Node)}, which doubles the memory needed.
+     * @param file the file to keep the tiles in, or {@code null} to keep
+     * them in memory. The file is deleted on {@link #reset()}.
+     */
+    public BlockedFloydWarshall( CompactGraph graph, ExecutorService executor, int parallelism,
+            int blockSize, boolean keepPaths, File file )
+    {
+        this.graph = graph;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.blockSize = blockSize;
+        this.blockCount = (graph.nodeCount() + blockSize - 1) / blockSize;
+        this.keepPaths = keepPaths;
+        this.file = file;
+    }
+
+    /**
+     * This resets the calculation if we for some reason would like to redo
+     * it, and releases the memory or file used by the tiles.
+     */
+    public void reset()
+    {
+        if ( tiles != null )
+        {
+            tiles.close();
+            tiles = null;
+        }
+    }
+
+    /**
+     * Internal calculate method that will do the calculation. This can however
+     * be called externally to manually trigger the calculation.
+     */
+    public void calculate()
+    {
+        // Don't do it more than once
+        if ( tiles != null )
+        {
+            return;
+        }
+        tiles = file != null ? new FileTiles( file, blockSize, blockCount, keepPaths )
+                : new MemoryTiles( blockCount );
+        ExecutorService executor = this.executor != null ? this.executor
+                : Executors.newFixedThreadPool( parallelism );
+        try
+        {
+            initialize( executor );
+            for ( int k = 0; k < blockCount; k++ )
+            {
+                iterate( executor, k );
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            reset();
+            throw e;
+        }
+        finally
+        {
+            if ( this.executor == null )
+            {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private void initialize( ExecutorService executor )
+    {
+        Collection<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for ( int row = 0; row < blockCount; row++ )
+        {
+            final int blockRow = row;
+            tasks.add( new Callable<Void>()
+            {
+                public Void call() throws IOException
+                {
+                    Tile[] rowTiles = new Tile[blockCount];
+                    for ( int column = 0; column < blockCount; column++ )
+                    {
+                        rowTiles[column] = newTile();
+                    }
+                    int first = blockRow * blockSize;
+                    int last = Math.min( first + blockSize, graph.nodeCount() );
+                    for ( int node = first; node < last; node++ )
+                    {
+                        int i = node - first;
+                        Tile diagonal = rowTiles[blockRow];
+                        diagonal.costs[i * blockSize + i] = 0;
+                        for ( int edge = graph.firstEdge( node ), end = edge
+                                + graph.degree( node ); edge < end; edge++ )
+                        {
+                            int target = graph.target( edge );
+                            Tile tile = rowTiles[target / blockSize];
+                            int position = i * blockSize + target % blockSize;
+                            float cost = (float) graph.weight( edge );
+                            if ( cost < tile.costs[position] && target != node )
+                            {
+                                tile.costs[position] = cost;
+                                if ( keepPaths )
+                                {
+                                    tile.predecessors[position] = node;
+                                }
+                            }
+                        }
+                    }
+                    for ( int column = 0; column < blockCount; column++ )
+                    {
+                        tiles.write( blockRow, column, rowTiles[column] );
+                    }
+                    return null;
+                }
+            } );
+        }
+        invokeAll( executor, tasks );
+    }
+
+    private Tile newTile()
+    {
+        Tile tile = new Tile( blockSize, keepPaths );
+        Arrays.fill( tile.costs, Float.POSITIVE_INFINITY );
+        if ( keepPaths )
+        {
+            Arrays.fill( tile.predecessors, NO_PREDECESSOR );
+        }
+        return tile;
+    }
+
+    private void iterate( ExecutorService executor, final int k )
+    {
+        // phase 1: the tile on the diagonal by itself
+        final Tile diagonal = read( k, k );
+        update( diagonal, diagonal, diagonal );
+        write( k, k, diagonal );
+
+        // phase 2: the rest of row and column k, from the diagonal tile
+        final Tile[] kRow = new Tile[blockCount];
+        kRow[k] = diagonal;
+        Collection<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for ( int other = 0; other < blockCount; other++ )
+        {
+            if ( other == k )
+            {
+                continue;
+            }
+            final int block = other;
+            tasks.add( new Callable<Void>()
+            {
+                public Void call() throws IOException
+                {
+                    Tile rowTile = tiles.read( k, block );
+                    update( rowTile, diagonal, rowTile );
+                    tiles.write( k, block, rowTile );
+                    kRow[block] = rowTile;
+
+                    Tile columnTile = tiles.read( block, k );
+                    update( columnTile, columnTile, diagonal );
+                    tiles.write( block, k, columnTile );
+                    return null;
+                }
+            } );
+        }
+        invokeAll( executor, tasks );
+
+        // phase 3: all other tiles, from row and column k
+        tasks.clear();
+        for ( int row = 0; row < blockCount; row++ )
+        {
+            if ( row == k )
+            {
+                continue;
+            }
+            final int blockRow = row;
+            tasks.add( new Callable<Void>()
+            {
+                public Void call() throws IOException
+                {
+                    Tile columnTile = tiles.read( blockRow, k );
+                    for ( int column = 0; column < blockCount; column++ )
+                    {
+                        if ( column == k )
+                        {
+                            continue;
+                        }
+                        Tile tile = tiles.read( blockRow, column );
+                        if ( update( tile, columnTile, kRow[column] ) )
+                        {
+                            tiles.write( blockRow, column, tile );
+                        }
+                    }
+                    return null;
+                }
+            } );
+        }
+        invokeAll( executor, tasks );
+    }
+
+    /**
+     * target[i][j] = min( target[i][j], left[i][v] + top[v][j] ) for every v
+     * in the block, where target may be the same tile as left or top.
+     *
+     * @return whether or not target was changed.
+     */
+    private boolean update( Tile target, Tile left, Tile top )
+    {
+        boolean changed = false;
+        float[] costs = target.costs;
+        float[] leftCosts = left.costs;
+        float[] topCosts = top.costs;
+        for ( int v = 0; v < blockSize; v++ )
+        {
+            int topRow = v * blockSize;
+            for ( int i = 0; i < blockSize; i++ )
+            {
+                float leftCost = leftCosts[i * blockSize + v];
+                if ( leftCost == Float.POSITIVE_INFINITY )
+                {
+                    continue;
+                }
+                int row = i * blockSize;
+                for ( int j = 0; j < blockSize; j++ )
+                {
+                    float alternative = leftCost + topCosts[topRow + j];
+                    if ( alternative < costs[row + j] )
+                    {
+                        costs[row + j] = alternative;
+                        if ( keepPaths )
+                        {
+                            target.predecessors[row + j] = top.predecessors[topRow + j];
+                        }
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private Tile read( int row, int column )
+    {
+        try
+        {
+            return tiles.read( row, column );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    private void write( int row, int column, Tile tile )
+    {
+        try
+        {
+            tiles.write( row, column, tile );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    private static void invokeAll( ExecutorService executor, Collection<Callable<Void>> tasks )
+    {
+        try
+        {
+            for ( Future<Void> future : executor.invokeAll( tasks ) )
+            {
+                future.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+    private int index( Node node )
+    {
+        int index = graph.index( node.getId() );
+        if ( index == -1 )
+        {
+            throw new IllegalArgumentException( node + " isn't part of the graph" );
+        }
+        return index;
+    }
+
+    /**
+     * This returns the cost for the shortest path between two nodes.
+     * @param node1
+     *            The start node.
+     * @param node2
+     *            The end node.
+     * @return The cost for the shortest path, or
+     *         {@link Double#POSITIVE_INFINITY} if there is no path.
+     */
+    public Double getCost( Node node1, Node node2 )
+    {
+        calculate();
+        int from = index( node1 );
+        int to = index( node2 );
+        return (double) read( from / blockSize, to / blockSize ).costs[(from % blockSize)
+                * blockSize + to % blockSize];
+    }
+
+    /**
+     * This returns the shortest path between two nodes as list of nodes.
+     * @param startNode
+     *            The start node.
+     * @param targetNode
+     *            The end node.
+     * @return The shortest path as a list of nodes, or {@code null} if there
+     *         is no path.
+     */
+    public List<Node> getPath( Node startNode, Node targetNode )
+    {
+        if ( !keepPaths )
+        {
+            throw new UnsupportedOperationException( "Paths weren't kept" );
+        }
+        calculate();
+        GraphDatabaseService graphDb = startNode.getGraphDatabase();
+        int start = index( startNode );
+        int index = index( targetNode );
+        int startOffset = (start % blockSize) * blockSize;
+        int tileColumn = -1;
+        Tile tile = null;
+        LinkedList<Node> path = new LinkedList<Node>();
+        while ( index != start )
+        {
+            path.addFirst( graphDb.getNodeById( graph.nodeId( index ) ) );
+            if ( index / blockSize != tileColumn )
+            {
+                tileColumn = index / blockSize;
+                tile = read( start / blockSize, tileColumn );
+            }
+            index = tile.predecessors[startOffset + index % blockSize];
+            if ( index == NO_PREDECESSOR )
+            {
+                return null;
+            }
+        }
+        path.addFirst( startNode );
+        return path;
+    }
+
+    private static final class Tile
+    {
+        final float[] costs;
+        final int[] predecessors;
+
+        Tile( int blockSize, boolean keepPaths )
+        {
+            this.costs = new float[blockSize * blockSize];
+            this.predecessors = keepPaths ? new int[blockSize * blockSize] : null;
+        }
+    }
+
+    private interface Tiles
+    {
+        Tile read( int row, int column ) throws IOException;
+
+        void write( int row, int column, Tile tile ) throws IOException;
+
+        void close();
+    }
+
+    private static final class MemoryTiles implements Tiles
+    {
+        private final int blockCount;
+        private final Tile[] tiles;
+
+        MemoryTiles( int blockCount )
+        {
+            this.blockCount = blockCount;
+            this.tiles = new Tile[blockCount * blockCount];
+        }
+
+        public Tile read( int row, int column )
+        {
+            return tiles[row * blockCount + column];
+        }
+
+        public void write( int row, int column, Tile tile )
+        {
+            tiles[row * blockCount + column] = tile;
+        }
+
+        public void close()
+        {
+        }
+    }
+
+    /**
+     * Keeps each tile at a fixed position in a file, costs followed by
+     * predecessors. Reads and writes are positional so that several threads
+     * can use the file at the same time.
+     */
+    private static final class FileTiles implements Tiles
+    {
+        private final File file;
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private final int blockSize;
+        private final int blockCount;
+        private final boolean keepPaths;
+        private final int tileBytes;
+
+        FileTiles( File file, int blockSize, int blockCount, boolean keepPaths )
+        {
+            this.file = file;
+            this.blockSize = blockSize;
+            this.blockCount = blockCount;
+            this.keepPaths = keepPaths;
+            this.tileBytes = blockSize * blockSize * (keepPaths ? 8 : 4);
+            try
+            {
+                this.randomAccessFile = new RandomAccessFile( file, "rw" );
+                this.channel = randomAccessFile.getChannel();
+            }
+            catch ( IOException e )
+            {
+                throw new RuntimeException( "Couldn't create " + file, e );
+            }
+        }
+
+        private long position( int row, int column )
+        {
+            return ((long) row * blockCount + column) * tileBytes;
+        }
+
+        public Tile read( int row, int column ) throws IOException
+        {
+            ByteBuffer buffer = ByteBuffer.allocate( tileBytes );
+            long position = position( row, column );
+            while ( buffer.hasRemaining() )
+            {
+                if ( channel.read( buffer, position + buffer.position() ) == -1 )
+                {
+                    throw new IOException( "Tile " + row + "," + column + " missing in " + file );
+                }
+            }
+            buffer.flip();
+            Tile tile = new Tile( blockSize, keepPaths );
+            buffer.asFloatBuffer().get( tile.costs );
+            if ( keepPaths )
+            {
+                buffer.position( tile.costs.length * 4 );
+                buffer.asIntBuffer().get( tile.predecessors );
+            }
+            return tile;
+        }
+
+        public void write( int row, int column, Tile tile ) throws IOException
+        {
+            ByteBuffer buffer = ByteBuffer.allocate( tileBytes );
+            buffer.asFloatBuffer().put( tile.costs );
+            if ( keepPaths )
+            {
+                buffer.position( tile.costs.length * 4 );
+                buffer.asIntBuffer().put( tile.predecessors );
+            }
+            buffer.position( 0 );
+            long position = position( row, column );
+            while ( buffer.hasRemaining() )
+            {
+                channel.write( buffer, position + buffer.position() );
+            }
+        }
+
+        public void close()
+        {
+            try
+            {
+                channel.close();
+                randomAccessFile.close();
+            }
+            catch ( IOException e )
+            {
+                // Nothing to do about it, the file is deleted below
+            }
+            file.delete();
+        }
+    }
+}
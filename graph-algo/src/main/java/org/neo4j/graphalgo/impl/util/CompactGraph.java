@@ -0,0 +1,346 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.Arrays;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * An in-memory projection of (a part of) a graph, in compressed sparse row
+ * form: the nodes are numbered 0..n-1 and the edges of each node are stored
+ * next to each other in one array of target node indexes, optionally with a
+ * weight per edge. It's meant for algorithms which visit the whole graph many
+ * times over, like the centrality measures, which then don't have to go
+ * through the {@link Node} and {@link Relationship} API for every visit.
+ * <p>
+ * Edges follow relationships in a {@link Direction}, so a relationship
+ * {@code (a)-->(b)} gives an edge a->b for {@link Direction#OUTGOING}, b->a
+ * for {@link Direction#INCOMING} and both for {@link Direction#BOTH}. Weights
+ * are the costs given by a {@link CostEvaluator}, called with the direction
+ * the relationship is followed in.
+ */
+public final class CompactGraph
+{
+    private final Direction direction;
+    private final long[] nodeIds;
+    private final PrimitiveLongIntMap indexes;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+
+    private CompactGraph( Direction direction, long[] nodeIds, PrimitiveLongIntMap indexes,
+            int[] offsets, int[] targets, double[] weights )
+    {
+        this.direction = direction;
+        this.nodeIds = nodeIds;
+        this.indexes = indexes;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Projects all the nodes in the graph and their relationships of the
+     * given types.
+     *
+     * @param graphDb the graph to project.
+     * @param direction the direction to follow the relationships in.
+     * @param costEvaluator gives the weights of the edges, or {@code null} for
+     * an unweighted projection.
+     * @param types the relationship types to include, all types if none
+     * are given.
+     * @return the projection.
+     */
+    public static CompactGraph fromStore( GraphDatabaseService graphDb, Direction direction,
+            CostEvaluator<Double> costEvaluator, RelationshipType... types )
+    {
+        return from( graphDb.getAllNodes(), direction, costEvaluator, types );
+    }
+
+    /**
+     * Projects the given nodes and their relationships of the given types
+     * amongst each other.
+     *
+     * @param nodes the nodes to project.
+     * @param direction the direction to follow the relationships in.
+     * @param costEvaluator gives the weights of the edges, or {@code null} for
+     * an unweighted projection.
+     * @param types the relationship types to include, all types if none
+     * are given.
+     * @return the projection.
+     */
+    public static CompactGraph from( Iterable<Node> nodes, Direction direction,
+            CostEvaluator<Double> costEvaluator, RelationshipType... types )
+    {
+        Builder builder = new Builder( direction, costEvaluator != null );
+        for ( Node node : nodes )
+        {
+            builder.addNode( node.getId() );
+        }
+        for ( Node node : nodes )
+        {
+            int source = builder.indexes.get( node.getId() );
+            Iterable<Relationship> relationships = types.length == 0 ?
+                    node.getRelationships( direction ) : node.getRelationships( direction, types );
+            for ( Relationship relationship : relationships )
+            {
+                int target = builder.indexes.get( relationship.getOtherNode( node ).getId() );
+                if ( target != PrimitiveLongIntMap.NO_VALUE )
+                {
+                    builder.addEdge( source, target, costEvaluator, relationship,
+                            relationship.getStartNode().equals( node ) ? Direction.OUTGOING
+                                    : Direction.INCOMING );
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Projects the given nodes and relationships, which is what the
+     * centrality algorithms in {@code org.neo4j.graphalgo.impl.centrality}
+     * take as input. Relationships with a node outside of {@code nodes} are
+     * left out.
+     *
+     * @param nodes the nodes to project.
+     * @param relationships the relationships to project.
+     * @param direction the direction to follow the relationships in.
+     * @param costEvaluator gives the weights of the edges, or {@code null} for
+     * an unweighted projection.
+     * @return the projection.
+     */
+    public static CompactGraph from( Iterable<Node> nodes, Iterable<Relationship> relationships,
+            Direction direction, CostEvaluator<Double> costEvaluator )
+    {
+        Builder builder = new Builder( direction, costEvaluator != null );
+        for ( Node node : nodes )
+        {
+            builder.addNode( node.getId() );
+        }
+        for ( Relationship relationship : relationships )
+        {
+            int start = builder.indexes.get( relationship.getStartNode().getId() );
+            int end = builder.indexes.get( relationship.getEndNode().getId() );
+            if ( start == PrimitiveLongIntMap.NO_VALUE || end == PrimitiveLongIntMap.NO_VALUE )
+            {
+                continue;
+            }
+            if ( direction != Direction.INCOMING )
+            {
+                builder.addEdge( start, end, costEvaluator, relationship, Direction.OUTGOING );
+            }
+            if ( direction != Direction.OUTGOING )
+            {
+                builder.addEdge( end, start, costEvaluator, relationship, Direction.INCOMING );
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return a projection of the same nodes, with every edge reversed, f.ex.
+     * for algorithms which need to look at the edges pointing to a node.
+     */
+    public CompactGraph transpose()
+    {
+        int nodeCount = nodeCount();
+        int[] newOffsets = new int[nodeCount + 1];
+        for ( int edge = 0; edge < targets.length; edge++ )
+        {
+            newOffsets[targets[edge] + 1]++;
+        }
+        for ( int node = 0; node < nodeCount; node++ )
+        {
+            newOffsets[node + 1] += newOffsets[node];
+        }
+        int[] positions = Arrays.copyOf( newOffsets, nodeCount );
+        int[] newTargets = new int[targets.length];
+        double[] newWeights = weights != null ? new double[weights.length] : null;
+        for ( int node = 0; node < nodeCount; node++ )
+        {
+            for ( int edge = offsets[node]; edge < offsets[node + 1]; edge++ )
+            {
+                int position = positions[targets[edge]]++;
+                newTargets[position] = node;
+                if ( newWeights != null )
+                {
+                    newWeights[position] = weights[edge];
+                }
+            }
+        }
+        return new CompactGraph( direction.reverse(), nodeIds, indexes, newOffsets,
+                newTargets, newWeights );
+    }
+
+    public Direction direction()
+    {
+        return direction;
+    }
+
+    public int nodeCount()
+    {
+        return nodeIds.length;
+    }
+
+    public int edgeCount()
+    {
+        return targets.length;
+    }
+
+    public boolean weighted()
+    {
+        return weights != null;
+    }
+
+    /**
+     * @return the id of the node with the given index.
+     */
+    public long nodeId( int node )
+    {
+        return nodeIds[node];
+    }
+
+    /**
+     * @return the index of the node with the given id, or {@code -1} if it
+     * isn't part of this projection.
+     */
+    public int index( long nodeId )
+    {
+        return indexes.get( nodeId );
+    }
+
+    /**
+     * @return the first edge of the given node, its edges are
+     * {@code firstEdge(node)} until, but not including,
+     * {@code firstEdge(node + 1)}.
+     */
+    public int firstEdge( int node )
+    {
+        return offsets[node];
+    }
+
+    public int degree( int node )
+    {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    /**
+     * @return the index of the node the given edge goes to.
+     */
+    public int target( int edge )
+    {
+        return targets[edge];
+    }
+
+    /**
+     * @return the weight of the given edge, 1 for unweighted projections.
+     */
+    public double weight( int edge )
+    {
+        return weights != null ? weights[edge] : 1d;
+    }
+
+    private static class Builder
+    {
+        private final Direction direction;
+        private final PrimitiveLongIntMap indexes = new PrimitiveLongIntMap();
+        private long[] nodeIds = new long[64];
+        private int nodeCount;
+        private int[] sources = new int[64];
+        private int[] targets = new int[64];
+        private double[] weights;
+        private int edgeCount;
+
+        Builder( Direction direction, boolean weighted )
+        {
+            this.direction = direction;
+            this.weights = weighted ? new double[64] : null;
+        }
+
+        void addNode( long nodeId )
+        {
+            if ( indexes.get( nodeId ) != PrimitiveLongIntMap.NO_VALUE )
+            {
+                return;
+            }
+            if ( nodeCount == nodeIds.length )
+            {
+                nodeIds = Arrays.copyOf( nodeIds, nodeCount * 2 );
+            }
+            indexes.put( nodeId, nodeCount );
+            nodeIds[nodeCount++] = nodeId;
+        }
+
+        void addEdge( int source, int target, CostEvaluator<Double> costEvaluator,
+                Relationship relationship, Direction followedIn )
+        {
+            if ( edgeCount == sources.length )
+            {
+                sources = Arrays.copyOf( sources, edgeCount * 2 );
+                targets = Arrays.copyOf( targets, edgeCount * 2 );
+                if ( weights != null )
+                {
+                    weights = Arrays.copyOf( weights, edgeCount * 2 );
+                }
+            }
+            sources[edgeCount] = source;
+            targets[edgeCount] = target;
+            if ( weights != null )
+            {
+                weights[edgeCount] = costEvaluator.getCost( relationship, followedIn );
+            }
+            edgeCount++;
+        }
+
+        CompactGraph build()
+        {
+            // Sort the edges by source node, keeping their order otherwise
+            int[] offsets = new int[nodeCount + 1];
+            for ( int edge = 0; edge < edgeCount; edge++ )
+            {
+                offsets[sources[edge] + 1]++;
+            }
+            for ( int node = 0; node < nodeCount; node++ )
+            {
+                offsets[node + 1] += offsets[node];
+            }
+            int[] positions = Arrays.copyOf( offsets, nodeCount );
+            int[] sortedTargets = new int[edgeCount];
+            double[] sortedWeights = weights != null ? new double[edgeCount] : null;
+            for ( int edge = 0; edge < edgeCount; edge++ )
+            {
+                int position = positions[sources[edge]]++;
+                sortedTargets[position] = targets[edge];
+                if ( sortedWeights != null )
+                {
+                    sortedWeights[position] = weights[edge];
+                }
+            }
+            return new CompactGraph( direction, Arrays.copyOf( nodeIds, nodeCount ), indexes,
+                    offsets, sortedTargets, sortedWeights );
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of {@code int} elements, f.ex. slots of nodes in a search,
+ * prioritized by {@code double} values. It keeps track of where each element
+ * is in the heap so that the priority of an element already in the heap can
+ * be decreased in place, which is what Dijkstra and A* need. Compared to
+ * {@link FibonacciHeap} it doesn't create any objects per element.
+ */
+public final class IndexedMinHeap
+{
+    private static final int NOT_IN_HEAP = -1;
+
+    private int[] heap = new int[16];
+    private double[] priorities = new double[16];
+    private int[] positions = new int[16];
+    private int size;
+
+    public IndexedMinHeap()
+    {
+        Arrays.fill( positions, NOT_IN_HEAP );
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean contains( int element )
+    {
+        return element < positions.length && positions[element] != NOT_IN_HEAP;
+    }
+
+    /**
+     * Adds {@code element} with the given priority, or if it's already in the
+     * heap and {@code priority} is lower than its current priority, decreases
+     * its priority.
+     *
+     * @param element the element, must not be negative.
+     * @param priority the priority of the element, lowest first.
+     * @return whether or not the heap was modified.
+     */
+    public boolean offer( int element, double priority )
+    {
+        if ( contains( element ) )
+        {
+            if ( priority >= priorities[element] )
+            {
+                return false;
+            }
+            priorities[element] = priority;
+            siftUp( positions[element] );
+            return true;
+        }
+        ensureCapacity( element );
+        priorities[element] = priority;
+        heap[size] = element;
+        positions[element] = size;
+        siftUp( size++ );
+        return true;
+    }
+
+    public int peek()
+    {
+        return size == 0 ? NOT_IN_HEAP : heap[0];
+    }
+
+    public double peekPriority()
+    {
+        return priorities[heap[0]];
+    }
+
+    /**
+     * Removes and returns the element with the lowest priority.
+     *
+     * @return the element with the lowest priority, or {@code -1} if empty.
+     */
+    public int poll()
+    {
+        if ( size == 0 )
+        {
+            return NOT_IN_HEAP;
+        }
+        int result = heap[0];
+        positions[result] = NOT_IN_HEAP;
+        if ( --size > 0 )
+        {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown( 0 );
+        }
+        return result;
+    }
+
+    private void ensureCapacity( int element )
+    {
+        if ( size == heap.length )
+        {
+            heap = Arrays.copyOf( heap, heap.length * 2 );
+        }
+        if ( element >= positions.length )
+        {
+            int length = Math.max( positions.length * 2, element + 1 );
+            int oldLength = positions.length;
+            positions = Arrays.copyOf( positions, length );
+            Arrays.fill( positions, oldLength, length, NOT_IN_HEAP );
+            priorities = Arrays.copyOf( priorities, length );
+        }
+    }
+
+    private void siftUp( int index )
+    {
+        int element = heap[index];
+        double priority = priorities[element];
+        while ( index > 0 )
+        {
+            int parentIndex = (index - 1) >>> 1;
+            int parent = heap[parentIndex];
+            if ( priorities[parent] <= priority )
+            {
+                break;
+            }
+            heap[index] = parent;
+            positions[parent] = index;
+            index = parentIndex;
+        }
+        heap[index] = element;
+        positions[element] = index;
+    }
+
+    private void siftDown( int index )
+    {
+        int element = heap[index];
+        double priority = priorities[element];
+        int half = size >>> 1;
+        while ( index < half )
+        {
+            int childIndex = 2 * index + 1;
+            int child = heap[childIndex];
+            int rightIndex = childIndex + 1;
+            if ( rightIndex < size && priorities[heap[rightIndex]] < priorities[child] )
+            {
+                childIndex = rightIndex;
+                child = heap[childIndex];
+            }
+            if ( priority <= priorities[child] )
+            {
+                break;
+            }
+            heap[index] = child;
+            positions[child] = index;
+            index = childIndex;
+        }
+        heap[index] = element;
+        positions[element] = index;
+    }
+}
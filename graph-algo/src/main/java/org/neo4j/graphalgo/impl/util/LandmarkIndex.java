@@ -0,0 +1,294 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.EstimateEvaluator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+/**
+ * Keeps {@link Landmarks} for a graph database up to date. It listens to
+ * committed transactions and as soon as one of them changes the
+ * relationships the distances were computed on, created, deleted or with
+ * changed properties, the landmarks are stale and the
+ * {@link #estimateEvaluator() estimates} are 0 until they've been
+ * recomputed. That way an A* search using them is always correct, it just
+ * degrades into a Dijkstra search while the landmarks are stale.
+ * <p>
+ * The distances are recomputed, for the same landmarks, by
+ * {@link #refresh()}, which can be called after a batch of changes or on a
+ * schedule, see {@link #refreshEvery(ScheduledExecutorService, long, TimeUnit)}.
+ * If a file is given the landmarks are written to it on every refresh and
+ * read from it when the index is created, so that they don't have to be
+ * computed again when the database is restarted. It's up to the user to not
+ * reuse a file after changes have been made to the graph without a
+ * {@link LandmarkIndex} registered.
+ */
+public class LandmarkIndex implements TransactionEventHandler<Boolean>
+{
+    private final GraphDatabaseService graphDb;
+    private final Direction direction;
+    private final CostEvaluator<Double> costEvaluator;
+    private final RelationshipType[] types;
+    private final Set<String> typeNames = new HashSet<String>();
+    private final int count;
+    private final File file;
+    private final AtomicLong changes = new AtomicLong();
+    private volatile Landmarks landmarks;
+    private volatile long computedAtChanges;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    /**
+     * Creates the index and registers it with {@code graphDb}.
+     *
+     * @param graphDb the graph database to compute the landmarks for.
+     * @param direction the direction the searches follow relationships in.
+     * @param costEvaluator the cost of the relationships, the same as
+     * searches use, or {@code null} if all of them cost 1.
+     * @param count the number of landmarks to select.
+     * @param file the file to keep the landmarks in, or {@code null} to not
+     * write them anywhere.
+     * @param types the relationship types the searches follow, all types if
+     * none are given.
+     * @throws IOException if {@code file} exists, but couldn't be read.
+     */
+    public LandmarkIndex( GraphDatabaseService graphDb, Direction direction,
+            CostEvaluator<Double> costEvaluator, int count, File file,
+            RelationshipType... types ) throws IOException
+    {
+        this.graphDb = graphDb;
+        this.direction = direction;
+        this.costEvaluator = costEvaluator;
+        this.count = count;
+        this.file = file;
+        this.types = types;
+        for ( RelationshipType type : types )
+        {
+            typeNames.add( type.name() );
+        }
+        if ( file != null && file.exists() )
+        {
+            landmarks = Landmarks.read( file );
+        }
+        graphDb.registerTransactionEventHandler( this );
+        if ( landmarks == null )
+        {
+            refresh();
+        }
+    }
+
+    /**
+     * @return the landmarks currently in use.
+     */
+    public Landmarks landmarks()
+    {
+        return landmarks;
+    }
+
+    /**
+     * @return whether or not the graph has changed since the landmarks
+     * were computed.
+     */
+    public boolean isStale()
+    {
+        return changes.get() != computedAtChanges;
+    }
+
+    /**
+     * @return an {@link EstimateEvaluator} for A* based on the current
+     * landmarks, which gives 0 while they are stale.
+     */
+    public EstimateEvaluator<Double> estimateEvaluator()
+    {
+        return new EstimateEvaluator<Double>()
+        {
+            public Double getCost( Node node, Node goal )
+            {
+                // check staleness first, refresh() replaces the landmarks
+                // before it marks them as up to date
+                if ( isStale() )
+                {
+                    return 0d;
+                }
+                return landmarks.estimate( node.getId(), goal.getId() );
+            }
+        };
+    }
+
+    /**
+     * Recomputes the distances from the current state of the graph, for the
+     * same landmarks if they are still there, otherwise for new ones. The old
+     * distances are used (or not, if they are stale) until the new ones are
+     * in place.
+     *
+     * @throws IOException if the file couldn't be written.
+     */
+    public synchronized void refresh() throws IOException
+    {
+        long changesSeen = changes.get();
+        CompactGraph graph = CompactGraph.fromStore( graphDb, direction, costEvaluator, types );
+        Landmarks refreshed = null;
+        if ( landmarks != null )
+        {
+            long[] landmarkIds = new long[landmarks.count()];
+            for ( int i = 0; i < landmarkIds.length; i++ )
+            {
+                landmarkIds[i] = landmarks.landmark( i );
+            }
+            refreshed = Landmarks.compute( graph, landmarkIds );
+            if ( refreshed.count() < Math.min( count, graph.nodeCount() ) )
+            {
+                refreshed = null;
+            }
+        }
+        if ( refreshed == null )
+        {
+            refreshed = Landmarks.select( graph, count );
+        }
+        if ( file != null )
+        {
+            refreshed.write( file );
+        }
+        landmarks = refreshed;
+        computedAtChanges = changesSeen;
+    }
+
+    /**
+     * Refreshes the landmarks with the given interval, if they are stale.
+     * Only one schedule can be active at a time, a new one replaces the
+     * previous one.
+     *
+     * @param scheduler the scheduler to run the refreshes in.
+     * @param interval the time between two checks.
+     * @param unit the unit of {@code interval}.
+     */
+    public synchronized void refreshEvery( ScheduledExecutorService scheduler, long interval,
+            TimeUnit unit )
+    {
+        cancelScheduledRefresh();
+        scheduledRefresh = scheduler.scheduleWithFixedDelay( new Runnable()
+        {
+            public void run()
+            {
+                if ( isStale() )
+                {
+                    try
+                    {
+                        refresh();
+                    }
+                    catch ( IOException e )
+                    {
+                        throw new RuntimeException( e );
+                    }
+                }
+            }
+        }, interval, interval, unit );
+    }
+
+    private void cancelScheduledRefresh()
+    {
+        if ( scheduledRefresh != null )
+        {
+            scheduledRefresh.cancel( false );
+            scheduledRefresh = null;
+        }
+    }
+
+    /**
+     * Stops refreshing the landmarks and unregisters the index from the
+     * graph database.
+     */
+    public synchronized void shutdown()
+    {
+        cancelScheduledRefresh();
+        graphDb.unregisterTransactionEventHandler( this );
+    }
+
+    public Boolean beforeCommit( TransactionData data ) throws Exception
+    {
+        return affects( data.createdRelationships() ) || affects( data.deletedRelationships() )
+               || affectsProperties( data.assignedRelationshipProperties() )
+               || affectsProperties( data.removedRelationshipProperties() );
+    }
+
+    private boolean affects( Iterable<Relationship> relationships )
+    {
+        for ( Relationship relationship : relationships )
+        {
+            if ( typeNames.isEmpty() || typeNames.contains( relationship.getType().name() ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean affectsProperties( Iterable<PropertyEntry<Relationship>> entries )
+    {
+        if ( costEvaluator == null )
+        {
+            return false;
+        }
+        for ( PropertyEntry<Relationship> entry : entries )
+        {
+            if ( typeNames.isEmpty() || typeNames.contains( entry.entity().getType().name() ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void afterCommit( TransactionData data, Boolean affected )
+    {
+        if ( affected )
+        {
+            changes.incrementAndGet();
+        }
+    }
+
+    public void afterRollback( TransactionData data, Boolean affected )
+    {
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "[" + direction + ", " + Arrays.toString( types ) +
+               ", " + count + " landmarks]";
+    }
+}
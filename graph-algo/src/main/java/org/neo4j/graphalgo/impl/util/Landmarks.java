@@ -0,0 +1,430 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.neo4j.graphalgo.EstimateEvaluator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+
+/**
+ * Distances from and to a few chosen nodes, landmarks, which gives lower
+ * bounds of the distance between any two nodes through the triangle
+ * inequality: for a landmark L the distance from n to g is at least
+ * d(L,g) - d(L,n) and at least d(n,L) - d(g,L). The biggest of those bounds
+ * is a good {@link EstimateEvaluator estimate} for A* on graphs where there
+ * is nothing else to base an estimate on, such as coordinates.
+ * <p>
+ * The distances are computed on a {@link CompactGraph} and stored as
+ * {@code float}s, one per node and landmark and direction (only one for
+ * projections in {@link Direction#BOTH}), both in memory and in the file
+ * written by {@link #write(File)}. The estimates compensate for the
+ * precision lost so that they never overestimate.
+ * <p>
+ * The estimates are only valid for the graph the distances were computed
+ * on, see {@link LandmarkIndex} for keeping them up to date.
+ */
+public final class Landmarks
+{
+    private static final int FORMAT_VERSION = 1;
+
+    private final long[] landmarks;
+    private final long[] nodeIds;
+    private final PrimitiveLongIntMap indexes;
+    private final float[][] from;
+    private final float[][] to;
+
+    private Landmarks( long[] landmarks, long[] nodeIds, PrimitiveLongIntMap indexes,
+            float[][] from, float[][] to )
+    {
+        this.landmarks = landmarks;
+        this.nodeIds = nodeIds;
+        this.indexes = indexes;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Selects {@code count} landmarks in {@code graph} and computes the
+     * distances from and to them. The landmarks are selected one at a time
+     * as the node the furthest away from the ones already selected, which
+     * places them at the edges of the graph where they give the best
+     * estimates.
+     *
+     * @param graph the graph to compute the distances in.
+     * @param count the number of landmarks to select, more landmarks gives
+     * better estimates, but needs more memory and time to compute.
+     * @return the landmarks.
+     */
+    public static Landmarks select( CompactGraph graph, int count )
+    {
+        count = Math.min( count, graph.nodeCount() );
+        CompactGraph transpose = transposeIfDirected( graph );
+        long[] landmarks = new long[count];
+        float[][] from = new float[count][];
+        float[][] to = transpose != null ? new float[count][] : from;
+        double[] closest = new double[graph.nodeCount()];
+        Arrays.fill( closest, Double.POSITIVE_INFINITY );
+        int landmark = count > 0 ? furthest( toDoubles( distances( graph, 0 ) ) ) : -1;
+        for ( int i = 0; i < count; i++ )
+        {
+            landmarks[i] = graph.nodeId( landmark );
+            from[i] = distances( graph, landmark );
+            if ( transpose != null )
+            {
+                to[i] = distances( transpose, landmark );
+            }
+            for ( int node = 0; node < closest.length; node++ )
+            {
+                closest[node] = Math.min( closest[node], Math.min( from[i][node], to[i][node] ) );
+            }
+            landmark = furthest( closest );
+        }
+        return new Landmarks( landmarks, nodeIdsOf( graph ), indexesOf( graph ), from, to );
+    }
+
+    /**
+     * Computes the distances from and to the given landmarks in
+     * {@code graph}, f.ex. to recompute the distances for the same landmarks
+     * after the graph has changed. Landmarks which aren't in {@code graph}
+     * are left out.
+     *
+     * @param graph the graph to compute the distances in.
+     * @param landmarkIds the ids of the landmark nodes.
+     * @return the landmarks.
+     */
+    public static Landmarks compute( CompactGraph graph, long... landmarkIds )
+    {
+        CompactGraph transpose = transposeIfDirected( graph );
+        long[] landmarks = new long[landmarkIds.length];
+        int count = 0;
+        for ( long landmarkId : landmarkIds )
+        {
+            if ( graph.index( landmarkId ) != PrimitiveLongIntMap.NO_VALUE )
+            {
+                landmarks[count++] = landmarkId;
+            }
+        }
+        landmarks = Arrays.copyOf( landmarks, count );
+        float[][] from = new float[count][];
+        float[][] to = transpose != null ? new float[count][] : from;
+        for ( int i = 0; i < count; i++ )
+        {
+            int landmark = graph.index( landmarks[i] );
+            from[i] = distances( graph, landmark );
+            if ( transpose != null )
+            {
+                to[i] = distances( transpose, landmark );
+            }
+        }
+        return new Landmarks( landmarks, nodeIdsOf( graph ), indexesOf( graph ), from, to );
+    }
+
+    private static CompactGraph transposeIfDirected( CompactGraph graph )
+    {
+        return graph.direction() == Direction.BOTH ? null : graph.transpose();
+    }
+
+    private static long[] nodeIdsOf( CompactGraph graph )
+    {
+        long[] nodeIds = new long[graph.nodeCount()];
+        for ( int node = 0; node < nodeIds.length; node++ )
+        {
+            nodeIds[node] = graph.nodeId( node );
+        }
+        return nodeIds;
+    }
+
+    private static PrimitiveLongIntMap indexesOf( long[] nodeIds )
+    {
+        PrimitiveLongIntMap indexes = new PrimitiveLongIntMap( nodeIds.length );
+        for ( int node = 0; node < nodeIds.length; node++ )
+        {
+            indexes.put( nodeIds[node], node );
+        }
+        return indexes;
+    }
+
+    private static PrimitiveLongIntMap indexesOf( CompactGraph graph )
+    {
+        return indexesOf( nodeIdsOf( graph ) );
+    }
+
+    /**
+     * Dijkstra from {@code source} to all nodes, unreachable nodes get
+     * {@link Float#POSITIVE_INFINITY}.
+     */
+    private static float[] distances( CompactGraph graph, int source )
+    {
+        double[] distances = new double[graph.nodeCount()];
+        Arrays.fill( distances, Double.POSITIVE_INFINITY );
+        distances[source] = 0;
+        IndexedMinHeap queue = new IndexedMinHeap();
+        queue.offer( source, 0 );
+        while ( !queue.isEmpty() )
+        {
+            int node = queue.poll();
+            for ( int edge = graph.firstEdge( node ), end = edge + graph.degree( node );
+                    edge < end; edge++ )
+            {
+                int target = graph.target( edge );
+                double distance = distances[node] + graph.weight( edge );
+                if ( distance < distances[target] )
+                {
+                    distances[target] = distance;
+                    queue.offer( target, distance );
+                }
+            }
+        }
+        float[] result = new float[distances.length];
+        for ( int node = 0; node < result.length; node++ )
+        {
+            result[node] = (float) distances[node];
+        }
+        return result;
+    }
+
+    private static double[] toDoubles( float[] distances )
+    {
+        double[] values = new double[distances.length];
+        for ( int node = 0; node < values.length; node++ )
+        {
+            values[node] = distances[node];
+        }
+        return values;
+    }
+
+    /**
+     * @return the node with the biggest distance, where unreachable nodes,
+     * i.e. nodes in other components of the graph, count as the furthest
+     * away. Nodes at distance 0 are the landmarks themselves and are skipped.
+     */
+    private static int furthest( double[] distances )
+    {
+        int furthest = 0;
+        double furthestDistance = 0;
+        for ( int node = 0; node < distances.length; node++ )
+        {
+            if ( distances[node] > furthestDistance )
+            {
+                furthest = node;
+                furthestDistance = distances[node];
+            }
+        }
+        return furthest;
+    }
+
+    /**
+     * @return the number of landmarks.
+     */
+    public int count()
+    {
+        return landmarks.length;
+    }
+
+    /**
+     * @return the id of the landmark with the given index.
+     */
+    public long landmark( int index )
+    {
+        return landmarks[index];
+    }
+
+    /**
+     * @return whether or not the node with the given id was in the graph
+     * the distances were computed on.
+     */
+    public boolean contains( long nodeId )
+    {
+        return indexes.get( nodeId ) != PrimitiveLongIntMap.NO_VALUE;
+    }
+
+    /**
+     * Estimates the distance from one node to another, which is never
+     * more than the actual distance. Nodes which weren't in the graph
+     * the distances were computed on get the estimate 0.
+     *
+     * @param nodeId the id of the node to estimate the distance from.
+     * @param goalId the id of the node to estimate the distance to.
+     * @return a lower bound of the distance between the two nodes.
+     */
+    public double estimate( long nodeId, long goalId )
+    {
+        int node = indexes.get( nodeId );
+        int goal = indexes.get( goalId );
+        if ( node == PrimitiveLongIntMap.NO_VALUE || goal == PrimitiveLongIntMap.NO_VALUE )
+        {
+            return 0d;
+        }
+        double estimate = 0d;
+        for ( int i = 0; i < landmarks.length; i++ )
+        {
+            estimate = Math.max( estimate, bound( from[i][goal], from[i][node] ) );
+            if ( to != from )
+            {
+                estimate = Math.max( estimate, bound( to[i][node], to[i][goal] ) );
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * @return {@code longer - shorter}, rounded down to make up for the
+     * rounding of both to {@code float}, or 0 if any of them is unreachable.
+     */
+    private static double bound( float longer, float shorter )
+    {
+        if ( longer == Float.POSITIVE_INFINITY || shorter == Float.POSITIVE_INFINITY )
+        {
+            return 0d;
+        }
+        return (double) longer - shorter - Math.ulp( longer ) - Math.ulp( shorter );
+    }
+
+    /**
+     * @return an {@link EstimateEvaluator} which gives the estimates of
+     * {@link #estimate(long, long)}.
+     */
+    public EstimateEvaluator<Double> estimateEvaluator()
+    {
+        return new EstimateEvaluator<Double>()
+        {
+            public Double getCost( Node node, Node goal )
+            {
+                return estimate( node.getId(), goal.getId() );
+            }
+        };
+    }
+
+    /**
+     * Writes the landmarks and distances to {@code file}, to be read back
+     * with {@link #read(File)}.
+     *
+     * @param file the file to write to, it's overwritten if it exists.
+     * @throws IOException if the file couldn't be written.
+     */
+    public void write( File file ) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream(
+                new FileOutputStream( file ) ) );
+        try
+        {
+            out.writeInt( FORMAT_VERSION );
+            out.writeInt( landmarks.length );
+            out.writeInt( nodeIds.length );
+            out.writeBoolean( to != from );
+            for ( long landmark : landmarks )
+            {
+                out.writeLong( landmark );
+            }
+            for ( long nodeId : nodeIds )
+            {
+                out.writeLong( nodeId );
+            }
+            writeDistances( out, from );
+            if ( to != from )
+            {
+                writeDistances( out, to );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static void writeDistances( DataOutputStream out, float[][] distances )
+            throws IOException
+    {
+        for ( float[] landmarkDistances : distances )
+        {
+            for ( float distance : landmarkDistances )
+            {
+                out.writeFloat( distance );
+            }
+        }
+    }
+
+    /**
+     * Reads landmarks and distances written by {@link #write(File)}.
+     *
+     * @param file the file to read from.
+     * @return the landmarks.
+     * @throws IOException if the file couldn't be read or wasn't written
+     * by {@link #write(File)}.
+     */
+    public static Landmarks read( File file ) throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream(
+                new FileInputStream( file ) ) );
+        try
+        {
+            int version = in.readInt();
+            if ( version != FORMAT_VERSION )
+            {
+                throw new IOException( "Unknown landmark file version " + version + " in " +
+                        file );
+            }
+            int count = in.readInt();
+            int nodeCount = in.readInt();
+            boolean directed = in.readBoolean();
+            long[] landmarks = new long[count];
+            for ( int i = 0; i < count; i++ )
+            {
+                landmarks[i] = in.readLong();
+            }
+            long[] nodeIds = new long[nodeCount];
+            for ( int node = 0; node < nodeCount; node++ )
+            {
+                nodeIds[node] = in.readLong();
+            }
+            float[][] from = readDistances( in, count, nodeCount );
+            float[][] to = directed ? readDistances( in, count, nodeCount ) : from;
+            return new Landmarks( landmarks, nodeIds, indexesOf( nodeIds ), from, to );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static float[][] readDistances( DataInputStream in, int count, int nodeCount )
+            throws IOException
+    {
+        float[][] distances = new float[count][nodeCount];
+        for ( float[] landmarkDistances : distances )
+        {
+            for ( int node = 0; node < nodeCount; node++ )
+            {
+                landmarkDistances[node] = in.readFloat();
+            }
+        }
+        return distances;
+    }
+}
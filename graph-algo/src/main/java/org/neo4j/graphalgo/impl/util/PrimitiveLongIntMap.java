@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * A map from {@code long} keys, f.ex. node ids, to non-negative {@code int}
+ * values, f.ex. slots in arrays of per-node data. Uses open addressing so
+ * that no objects are created per entry.
+ */
+public final class PrimitiveLongIntMap
+{
+    public static final int NO_VALUE = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public PrimitiveLongIntMap()
+    {
+        this( 16 );
+    }
+
+    public PrimitiveLongIntMap( int expectedSize )
+    {
+        int capacity = 16;
+        while ( capacity < expectedSize * 2 )
+        {
+            capacity <<= 1;
+        }
+        allocate( capacity );
+    }
+
+    private void allocate( int capacity )
+    {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill( values, NO_VALUE );
+    }
+
+    /**
+     * @param key the key to look up.
+     * @return the value associated with {@code key}, or {@link #NO_VALUE}.
+     */
+    public int get( long key )
+    {
+        int mask = keys.length - 1;
+        for ( int i = hash( key ) & mask; values[i] != NO_VALUE; i = (i + 1) & mask )
+        {
+            if ( keys[i] == key )
+            {
+                return values[i];
+            }
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Associates {@code value} with {@code key}.
+     *
+     * @param key the key.
+     * @param value the value, must not be negative.
+     */
+    public void put( long key, int value )
+    {
+        if ( value < 0 )
+        {
+            throw new IllegalArgumentException( "Negative value " + value );
+        }
+        if ( (size + 1) * 2 > keys.length )
+        {
+            rehash();
+        }
+        if ( insert( key, value ) )
+        {
+            size++;
+        }
+    }
+
+    private boolean insert( long key, int value )
+    {
+        int mask = keys.length - 1;
+        int i = hash( key ) & mask;
+        for ( ; values[i] != NO_VALUE; i = (i + 1) & mask )
+        {
+            if ( keys[i] == key )
+            {
+                values[i] = value;
+                return false;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        return true;
+    }
+
+    private void rehash()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate( keys.length * 2 );
+        for ( int i = 0; i < oldKeys.length; i++ )
+        {
+            if ( oldValues[i] != NO_VALUE )
+            {
+                insert( oldKeys[i], oldValues[i] );
+            }
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    private static int hash( long key )
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.centrality;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.impl.centrality.ParallelBetweennessCentrality;
+import org.neo4j.graphalgo.impl.centrality.ParallelClosenessCentrality;
+import org.neo4j.graphalgo.impl.centrality.ParallelPageRank;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Direction;
+
+import common.Neo4jAlgoTestCase;
+
+public class ParallelCentralityTest extends Neo4jAlgoTestCase
+{
+    private CompactGraph projection( Direction direction )
+    {
+        return CompactGraph.from( graph.getAllNodes(), direction, null, MyRelTypes.R1,
+                MyRelTypes.R2, MyRelTypes.R3 );
+    }
+
+    private void assertCentrality( Double expected, Double actual )
+    {
+        assertEquals( expected, actual, 0.00001 );
+    }
+
+    @Test
+    public void testBetweennessInBox()
+    {
+        graph.makeEdgeChain( "a,b,c,d,a" );
+        ParallelBetweennessCentrality centrality = new ParallelBetweennessCentrality(
+                projection( Direction.BOTH ), null, 2 );
+        for ( String node : new String[] { "a", "b", "c", "d" } )
+        {
+            assertCentrality( 0.5, centrality.getCentrality( graph.getNode( node ) ) );
+        }
+    }
+
+    @Test
+    public void testBetweennessInChain()
+    {
+        graph.makeEdgeChain( "a,b,c,d,e" );
+        ParallelBetweennessCentrality centrality = new ParallelBetweennessCentrality(
+                projection( Direction.BOTH ), null, 2 );
+        assertCentrality( 0.0, centrality.getCentrality( graph.getNode( "a" ) ) );
+        assertCentrality( 3.0, centrality.getCentrality( graph.getNode( "b" ) ) );
+        assertCentrality( 4.0, centrality.getCentrality( graph.getNode( "c" ) ) );
+        assertCentrality( 3.0, centrality.getCentrality( graph.getNode( "d" ) ) );
+        assertCentrality( 0.0, centrality.getCentrality( graph.getNode( "e" ) ) );
+    }
+
+    @Test
+    public void testBetweennessInPlusShapeWithGivenExecutor()
+    {
+        graph.makeEdgeChain( "a,b,c" );
+        graph.setCurrentRelType( MyRelTypes.R3 );
+        graph.makeEdgeChain( "d,b,e" );
+        ExecutorService executor = Executors.newFixedThreadPool( 3 );
+        try
+        {
+            ParallelBetweennessCentrality centrality = new ParallelBetweennessCentrality(
+                    projection( Direction.BOTH ), executor, 3 );
+            assertCentrality( 6.0, centrality.getCentrality( graph.getNode( "b" ) ) );
+            assertCentrality( 0.0, centrality.getCentrality( graph.getNode( "a" ) ) );
+            centrality.reset();
+            assertCentrality( 6.0, centrality.getCentrality( graph.getNode( "b" ) ) );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBetweennessWithDirection()
+    {
+        graph.makeEdgeChain( "a,b,c" );
+        ParallelBetweennessCentrality centrality = new ParallelBetweennessCentrality(
+                projection( Direction.OUTGOING ), null, 2 );
+        assertCentrality( 1.0, centrality.getCentrality( graph.getNode( "b" ) ) );
+    }
+
+    @Test
+    public void testCloseness()
+    {
+        graph.makeEdgeChain( "a,b,c,d,e" );
+        ParallelClosenessCentrality centrality = new ParallelClosenessCentrality(
+                projection( Direction.BOTH ), null, 2 );
+        assertCentrality( 1.0 / 10, centrality.getCentrality( graph.getNode( "a" ) ) );
+        assertCentrality( 1.0 / 7, centrality.getCentrality( graph.getNode( "b" ) ) );
+        assertCentrality( 1.0 / 6, centrality.getCentrality( graph.getNode( "c" ) ) );
+        assertCentrality( 1.0 / 10, centrality.getCentrality( graph.getNode( "e" ) ) );
+    }
+
+    @Test
+    public void testPageRank()
+    {
+        graph.makeEdgeChain( "a,b,c,a" );
+        graph.makeEdge( "d", "a" );
+        ParallelPageRank pageRank = new ParallelPageRank( projection( Direction.OUTGOING ),
+                null, 2, 0.85, 0.000001 );
+        double sum = 0;
+        for ( double rank : pageRank.getCentralities() )
+        {
+            sum += rank;
+        }
+        assertCentrality( 1.0, sum );
+        assertTrue( pageRank.getCentrality( graph.getNode( "a" ) ) > pageRank.getCentrality(
+                graph.getNode( "b" ) ) );
+        assertTrue( pageRank.getCentrality( graph.getNode( "c" ) ) > pageRank.getCentrality(
+                graph.getNode( "d" ) ) );
+        assertCentrality( 0.15 / 4, pageRank.getCentrality( graph.getNode( "d" ) ) );
+    }
+
+    @Test
+    public void testNodesOutsideOfProjection()
+    {
+        graph.makeEdgeChain( "a,b" );
+        CompactGraph projection = projection( Direction.BOTH );
+        graph.makeEdge( "c", "d" );
+        assertNull( new ParallelClosenessCentrality( projection, null, 2 )
+                .getCentrality( graph.getNode( "c" ) ) );
+    }
+}
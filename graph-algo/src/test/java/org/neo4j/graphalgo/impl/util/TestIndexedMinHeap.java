@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestIndexedMinHeap
+{
+    @Test
+    public void pollsInPriorityOrderAndDecreasesInPlace()
+    {
+        IndexedMinHeap heap = new IndexedMinHeap();
+        assertTrue( heap.offer( 0, 5d ) );
+        assertTrue( heap.offer( 1, 4d ) );
+        assertFalse( heap.offer( 1, 4d ) );
+        assertTrue( heap.offer( 1, 3d ) );
+        assertTrue( heap.offer( 100, 10d ) );
+        assertTrue( heap.offer( 100, 1d ) );
+        assertEquals( 3, heap.size() );
+        assertEquals( 100, heap.poll() );
+        assertEquals( 1, heap.poll() );
+        assertEquals( 0, heap.poll() );
+        assertTrue( heap.isEmpty() );
+        assertEquals( -1, heap.poll() );
+    }
+
+    @Test
+    public void staysOrderedUnderRandomOperations()
+    {
+        Random random = new Random( 1234 );
+        IndexedMinHeap heap = new IndexedMinHeap();
+        double[] priorities = new double[1000];
+        for ( int i = 0; i < priorities.length; i++ )
+        {
+            priorities[i] = random.nextDouble() * 100;
+            heap.offer( i, priorities[i] );
+        }
+        for ( int i = 0; i < 500; i++ )
+        {
+            int element = random.nextInt( priorities.length );
+            double priority = random.nextDouble() * 100;
+            heap.offer( element, priority );
+            priorities[element] = Math.min( priorities[element], priority );
+        }
+        double last = -1;
+        while ( !heap.isEmpty() )
+        {
+            int element = heap.poll();
+            assertTrue( priorities[element] >= last );
+            last = priorities[element];
+        }
+    }
+}
@@ -57,7 +57,7 @@ public class TestAStar extends Neo4jAlgoTestCase
         }
     };
 
-    private PathFinder<WeightedPath> newFinder()
+    protected PathFinder<WeightedPath> newFinder()
     {
         return GraphAlgoFactory.aStar( Traversal.expanderForAllTypes(),
                 CommonEvaluators.doubleCostEvaluator( "length" ), ESTIMATE_EVALUATOR );
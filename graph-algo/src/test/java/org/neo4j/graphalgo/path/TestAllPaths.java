@@ -19,10 +19,13 @@
  */
 package org.neo4j.graphalgo.path;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Test;
 import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphdb.Path;
+import org.neo4j.helpers.collection.IteratorUtil;
 import org.neo4j.kernel.Traversal;
 
 import common.Neo4jAlgoTestCase;
@@ -75,4 +78,18 @@ public class TestAllPaths extends Neo4jAlgoTestCase
                 "a,b,c,b,c,d", "a,b,c,b,c,d", "a,b,c,b,c,d", "a,b,c,b,c,d",
                 "a,b,c,b,c,d", "a,b,c,b,c,d" );
     }
+
+    @Test
+    public void canLimitTheNumberOfPaths()
+    {
+        graph.makeEdge( "a", "b" );
+        graph.makeEdge( "b", "c" );
+        graph.makeEdge( "b", "c" );
+        graph.makeEdge( "b", "c" );
+        graph.makeEdge( "c", "d" );
+
+        PathFinder<Path> finder = GraphAlgoFactory.allPaths( Traversal.expanderForAllTypes(), 10, 2 );
+        assertEquals( 2, IteratorUtil.count( finder.findAllPaths( graph.getNode( "a" ),
+                graph.getNode( "d" ) ) ) );
+    }
 }
@@ -19,6 +19,8 @@
  */
 package org.neo4j.graphalgo.path;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import static org.neo4j.helpers.collection.MapUtil.map;
 
@@ -126,6 +128,31 @@ public class TestDijkstra extends Neo4jAlgoTestCase
         }
     }
     
+    @Test
+    public void testSmallGraphWithCompactDijkstra()
+    {
+        Relationship shortCTOXRelationship = createGraph( true );
+        
+        PathFinder<WeightedPath> finder = GraphAlgoFactory.compactDijkstra(
+                Traversal.expanderForTypes( MyRelTypes.R1, Direction.OUTGOING ),
+                CommonEvaluators.doubleCostEvaluator( "cost" ) );
+        
+        Node startNode = graph.getNode( "start" );
+        Node endNode = graph.getNode( "x" );
+        assertPaths( finder.findAllPaths( startNode, endNode ),
+                "start,a,b,c,x", "start,a,b,c,d,e,x" );
+        for ( WeightedPath path : finder.findAllPaths( startNode, endNode ) )
+        {
+            assertEquals( 6d, path.weight(), 0d );
+            if ( getPathDef( path ).equals( "start,a,b,c,x" ) )
+            {
+                assertContainsRelationship( path, shortCTOXRelationship );
+            }
+        }
+        assertEquals( 8d, finder.findSinglePath( startNode, graph.getNode( "y" ) ).weight(), 0d );
+        assertNull( finder.findSinglePath( graph.getNode( "y" ), startNode ) );
+    }
+    
     private void assertContainsRelationship( WeightedPath path,
             Relationship relationship )
     {
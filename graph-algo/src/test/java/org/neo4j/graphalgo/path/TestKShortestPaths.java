@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.GraphAlgoFactory;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.kernel.Traversal;
+
+import common.Neo4jAlgoTestCase;
+
+public class TestKShortestPaths extends Neo4jAlgoTestCase
+{
+    private PathFinder<WeightedPath> newFinder( int k )
+    {
+        return GraphAlgoFactory.kShortestPaths( Traversal.expanderForAllTypes( Direction.OUTGOING ),
+                CommonEvaluators.doubleCostEvaluator( "length" ), k );
+    }
+
+    /**
+     * The graph from the Yen's algorithm article on wikipedia, with the
+     * three cheapest paths C,E,F,H (5), C,E,G,H (7) and C,D,F,H (8).
+     */
+    private void createYenGraph()
+    {
+        graph.makeEdge( "C", "D", "length", 3d );
+        graph.makeEdge( "C", "E", "length", 2d );
+        graph.makeEdge( "D", "F", "length", 4d );
+        graph.makeEdge( "E", "D", "length", 1d );
+        graph.makeEdge( "E", "F", "length", 2d );
+        graph.makeEdge( "E", "G", "length", 3d );
+        graph.makeEdge( "F", "G", "length", 2d );
+        graph.makeEdge( "F", "H", "length", 1d );
+        graph.makeEdge( "G", "H", "length", 2d );
+    }
+
+    @Test
+    public void findsTheCheapestPathsInOrder()
+    {
+        createYenGraph();
+        List<WeightedPath> paths = new ArrayList<WeightedPath>();
+        for ( WeightedPath path : newFinder( 3 ).findAllPaths( graph.getNode( "C" ),
+                graph.getNode( "H" ) ) )
+        {
+            paths.add( path );
+        }
+        assertEquals( 3, paths.size() );
+        assertPathDef( paths.get( 0 ), "C", "E", "F", "H" );
+        assertEquals( 5d, paths.get( 0 ).weight(), 0 );
+        assertPathDef( paths.get( 1 ), "C", "E", "G", "H" );
+        assertEquals( 7d, paths.get( 1 ).weight(), 0 );
+        assertEquals( 8d, paths.get( 2 ).weight(), 0 );
+    }
+
+    @Test
+    public void weightsNeverDecrease()
+    {
+        createYenGraph();
+        double previous = 0;
+        int count = 0;
+        for ( WeightedPath path : newFinder( 100 ).findAllPaths( graph.getNode( "C" ),
+                graph.getNode( "H" ) ) )
+        {
+            assertTrue( path.weight() >= previous );
+            previous = path.weight();
+            count++;
+        }
+        // C,E,F,H C,E,G,H C,D,F,H C,E,D,F,H C,E,F,G,H C,D,F,G,H C,E,D,F,G,H
+        assertEquals( 7, count );
+    }
+
+    @Test
+    public void findsNothingWhenThereIsNoPath()
+    {
+        createYenGraph();
+        Iterator<WeightedPath> paths = newFinder( 3 ).findAllPaths( graph.getNode( "H" ),
+                graph.getNode( "C" ) ).iterator();
+        assertFalse( paths.hasNext() );
+        assertNull( newFinder( 3 ).findSinglePath( graph.getNode( "H" ), graph.getNode( "C" ) ) );
+    }
+
+    @Test
+    public void shortestByLength()
+    {
+        graph.makeEdgeChain( "a,b,c,d" );
+        graph.makeEdgeChain( "a,e,d" );
+        graph.makeEdgeChain( "a,f,g,h,d" );
+        Iterator<WeightedPath> paths = GraphAlgoFactory.kShortestPaths(
+                Traversal.expanderForAllTypes(), 2 ).findAllPaths( graph.getNode( "a" ),
+                graph.getNode( "d" ) ).iterator();
+        assertPathDef( paths.next(), "a", "e", "d" );
+        assertPathDef( paths.next(), "a", "b", "c", "d" );
+        assertFalse( paths.hasNext() );
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.EstimateEvaluator;
+import org.neo4j.graphalgo.GraphAlgoFactory;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphalgo.impl.util.LandmarkIndex;
+import org.neo4j.graphalgo.impl.util.Landmarks;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.kernel.Traversal;
+
+import common.Neo4jAlgoTestCase;
+
+public class TestLandmarks extends Neo4jAlgoTestCase
+{
+    private static final CostEvaluator<Double> LENGTH =
+            CommonEvaluators.doubleCostEvaluator( "length" );
+
+    /**
+     * A 4x4 grid with edges going right and down, of different lengths.
+     */
+    private void createGrid()
+    {
+        for ( int x = 0; x < 4; x++ )
+        {
+            for ( int y = 0; y < 4; y++ )
+            {
+                if ( x < 3 )
+                {
+                    graph.makeEdge( name( x, y ), name( x + 1, y ), "length",
+                            (double) (1 + (x * y) % 3) );
+                }
+                if ( y < 3 )
+                {
+                    graph.makeEdge( name( x, y ), name( x, y + 1 ), "length",
+                            (double) (1 + (x + y) % 2) );
+                }
+            }
+        }
+    }
+
+    private static String name( int x, int y )
+    {
+        return x + "_" + y;
+    }
+
+    private Double distance( Node start, Node end, Direction direction )
+    {
+        WeightedPath path = GraphAlgoFactory.dijkstra(
+                Traversal.expanderForAllTypes( direction ), LENGTH ).findSinglePath( start, end );
+        return path != null ? path.weight() : null;
+    }
+
+    private void assertAdmissible( EstimateEvaluator<Double> estimates, Direction direction )
+    {
+        int estimated = 0;
+        for ( Node node : graph.getAllNodes() )
+        {
+            for ( Node goal : graph.getAllNodes() )
+            {
+                Double distance = distance( node, goal, direction );
+                double estimate = estimates.getCost( node, goal );
+                if ( distance != null )
+                {
+                    assertTrue( estimate + " > " + distance, estimate <= distance );
+                }
+                if ( estimate > 0 )
+                {
+                    estimated++;
+                }
+            }
+        }
+        assertTrue( estimated > 0 );
+    }
+
+    @Test
+    public void estimatesNeverOverestimateUndirected()
+    {
+        createGrid();
+        Landmarks landmarks = Landmarks.select( CompactGraph.from( graph.getAllNodes(),
+                graph.getAllEdges(), Direction.BOTH, LENGTH ), 3 );
+        assertEquals( 3, landmarks.count() );
+        assertAdmissible( landmarks.estimateEvaluator(), Direction.BOTH );
+    }
+
+    @Test
+    public void estimatesNeverOverestimateDirected()
+    {
+        createGrid();
+        Landmarks landmarks = Landmarks.select( CompactGraph.from( graph.getAllNodes(),
+                graph.getAllEdges(), Direction.OUTGOING, LENGTH ), 2 );
+        assertAdmissible( landmarks.estimateEvaluator(), Direction.OUTGOING );
+    }
+
+    @Test
+    public void landmarksAreExactBetweenOppositeCorners()
+    {
+        createGrid();
+        Landmarks landmarks = Landmarks.select( CompactGraph.from( graph.getAllNodes(),
+                graph.getAllEdges(), Direction.BOTH, LENGTH ), 2 );
+        Node start = graph.getNode( name( 0, 0 ) );
+        Node end = graph.getNode( name( 3, 3 ) );
+        assertEquals( distance( start, end, Direction.BOTH ),
+                landmarks.estimate( start.getId(), end.getId() ), 0.0001 );
+    }
+
+    @Test
+    public void aStarWithLandmarksFindsCheapestPath()
+    {
+        createGrid();
+        Landmarks landmarks = Landmarks.select( CompactGraph.from( graph.getAllNodes(),
+                graph.getAllEdges(), Direction.BOTH, LENGTH ), 2 );
+        PathFinder<WeightedPath> finder = GraphAlgoFactory.aStar(
+                Traversal.expanderForAllTypes(), LENGTH, landmarks.estimateEvaluator() );
+        Node start = graph.getNode( name( 0, 3 ) );
+        Node end = graph.getNode( name( 2, 1 ) );
+        assertEquals( distance( start, end, Direction.BOTH ),
+                finder.findSinglePath( start, end ).weight(), 0.0001 );
+    }
+
+    @Test
+    public void canWriteAndReadLandmarks() throws Exception
+    {
+        createGrid();
+        Landmarks landmarks = Landmarks.select( CompactGraph.from( graph.getAllNodes(),
+                graph.getAllEdges(), Direction.OUTGOING, LENGTH ), 2 );
+        File file = new File( "target/var/landmarks" );
+        landmarks.write( file );
+        Landmarks read = Landmarks.read( file );
+        assertEquals( landmarks.count(), read.count() );
+        for ( Node node : graph.getAllNodes() )
+        {
+            for ( Node goal : graph.getAllNodes() )
+            {
+                assertEquals( landmarks.estimate( node.getId(), goal.getId() ),
+                        read.estimate( node.getId(), goal.getId() ), 0 );
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void indexIsStaleUntilRefreshedAfterChanges() throws Exception
+    {
+        createGrid();
+        restartTx();
+        LandmarkIndex index = new LandmarkIndex( graphDb, Direction.BOTH, LENGTH, 2, null );
+        try
+        {
+            Node start = graph.getNode( name( 0, 0 ) );
+            Node end = graph.getNode( name( 3, 3 ) );
+            EstimateEvaluator<Double> estimates = index.estimateEvaluator();
+            assertFalse( index.isStale() );
+            assertTrue( estimates.getCost( start, end ) > 0 );
+
+            graph.makeEdge( name( 0, 0 ), name( 3, 3 ), "length", 1d );
+            restartTx();
+            assertTrue( index.isStale() );
+            assertEquals( 0d, estimates.getCost( start, end ), 0 );
+
+            index.refresh();
+            assertFalse( index.isStale() );
+            assertAdmissible( estimates, Direction.BOTH );
+        }
+        finally
+        {
+            index.shutdown();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.shortestpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.shortestpath.BlockedFloydWarshall;
+import org.neo4j.graphalgo.impl.shortestpath.FloydWarshall;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+
+import common.Neo4jAlgoTestCase;
+
+public class BlockedFloydWarshallTest extends Neo4jAlgoTestCase
+{
+    private static final CostEvaluator<Double> COST = CommonEvaluators.doubleCostEvaluator( "cost" );
+
+    private BlockedFloydWarshall newFloydWarshall( Direction direction, int blockSize, File file )
+    {
+        return new BlockedFloydWarshall( CompactGraph.from( graph.getAllNodes(),
+                graph.getAllEdges(), direction, COST ), null, 2, blockSize, true, file );
+    }
+
+    @Test
+    public void testMinimal()
+    {
+        graph.makeEdge( "a", "b", "cost", (double) 1 );
+        graph.makeEdge( "a", "c", "cost", (double) 1 );
+        graph.makeEdge( "a", "d", "cost", (double) 1 );
+        graph.makeEdge( "a", "e", "cost", (double) 1 );
+        graph.makeEdge( "b", "c", "cost", (double) 1 );
+        graph.makeEdge( "c", "d", "cost", (double) 1 );
+        graph.makeEdge( "d", "e", "cost", (double) 1 );
+        graph.makeEdge( "e", "b", "cost", (double) 1 );
+        BlockedFloydWarshall floydWarshall = newFloydWarshall( Direction.OUTGOING, 2, null );
+        assertEquals( 0.0, floydWarshall.getCost( graph.getNode( "a" ), graph.getNode( "a" ) ), 0 );
+        assertEquals( 1.0, floydWarshall.getCost( graph.getNode( "a" ), graph.getNode( "b" ) ), 0 );
+        assertEquals( 3.0, floydWarshall.getCost( graph.getNode( "c" ), graph.getNode( "b" ) ), 0 );
+        assertTrue( floydWarshall.getCost( graph.getNode( "b" ), graph.getNode( "a" ) )
+                .isInfinite() );
+        assertNull( floydWarshall.getPath( graph.getNode( "b" ), graph.getNode( "a" ) ) );
+    }
+
+    @Test
+    public void testPath()
+    {
+        graph.makeEdgeChain( "a,b,c,d,e,f", "cost", (double) 1 );
+        BlockedFloydWarshall floydWarshall = newFloydWarshall( Direction.OUTGOING, 4, null );
+        List<Node> path = floydWarshall.getPath( graph.getNode( "a" ), graph.getNode( "f" ) );
+        assertEquals( 6, path.size() );
+        String[] names = { "a", "b", "c", "d", "e", "f" };
+        for ( int i = 0; i < names.length; i++ )
+        {
+            assertEquals( graph.getNode( names[i] ), path.get( i ) );
+        }
+    }
+
+    @Test
+    public void sameCostsAsFloydWarshallInMemory()
+    {
+        assertSameCostsAsFloydWarshall( null );
+    }
+
+    @Test
+    public void sameCostsAsFloydWarshallInFile()
+    {
+        assertSameCostsAsFloydWarshall( new File( "target/var/floyd-warshall-tiles" ) );
+    }
+
+    private void assertSameCostsAsFloydWarshall( File file )
+    {
+        // FloydWarshall takes the cost of the last of parallel relationships,
+        // rather than of the cheapest, so only make one per pair of nodes
+        Random random = new Random( 1234 );
+        Set<String> pairs = new HashSet<String>();
+        for ( int i = 0; i < 60; i++ )
+        {
+            String start = "n" + random.nextInt( 20 );
+            String end = "n" + random.nextInt( 20 );
+            if ( !start.equals( end ) && pairs.add( start + "," + end ) )
+            {
+                graph.makeEdge( start, end, "cost", (double) (1 + random.nextInt( 10 )) );
+            }
+        }
+        FloydWarshall<Double> expected = new FloydWarshall<Double>( 0.0, Double.POSITIVE_INFINITY,
+                Direction.OUTGOING, COST, new org.neo4j.graphalgo.impl.util.DoubleAdder(),
+                new org.neo4j.graphalgo.impl.util.DoubleComparator(), graph.getAllNodes(),
+                graph.getAllEdges() );
+        BlockedFloydWarshall actual = newFloydWarshall( Direction.OUTGOING, 3, file );
+        try
+        {
+            for ( Node start : graph.getAllNodes() )
+            {
+                for ( Node end : graph.getAllNodes() )
+                {
+                    assertEquals( expected.getCost( start, end ), actual.getCost( start, end ),
+                            0.0001 );
+                    List<Node> path = actual.getPath( start, end );
+                    if ( path != null )
+                    {
+                        assertEquals( start, path.get( 0 ) );
+                        assertEquals( end, path.get( path.size() - 1 ) );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            actual.reset();
+        }
+        if ( file != null )
+        {
+            assertTrue( !file.exists() );
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.neo4j.graphdb.index;
 
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.neo4j.graphdb.PropertyContainer;
 
@@ -89,4 +90,22 @@ public interface AutoIndexer<T extends PropertyContainer>
      *         empty.
      */
     Set<String> getAutoIndexedProperties();
+
+    /**
+     * Waits until changes committed before this call are visible in the
+     * auto index. This only makes a difference if the database is
+     * configured with {@code auto_indexing_async=true}, otherwise changes
+     * are in the index as soon as they are committed and this method
+     * returns {@code true} right away.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of {@code timeout}.
+     * @return {@code true} if the auto index caught up within the given
+     *         time, {@code false} otherwise.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws RuntimeException if changes could not be applied to the auto
+     *             index since this method was last called. Each failure is
+     *             only reported once.
+     */
+    boolean awaitIndexing( long timeout, TimeUnit unit ) throws InterruptedException;
 }
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphdb.traversal;
+
+import org.neo4j.graphdb.Node;
+
+/**
+ * Represents a description of a bidirectional traversal, i.e. a traversal
+ * between a start node and an end node which is traversed from both ends at
+ * the same time. Each side is described by a {@link TraversalDescription} of
+ * its own, with its own expander, uniqueness, evaluators and ordering. The
+ * traversal yields a path from the start node to the end node every time a
+ * branch from one side reaches a node which a branch from the other side has
+ * reached already, as decided by the {@link BranchCollisionPolicy}. Which side
+ * to go further on is decided by the {@link SideSelectorPolicy}.
+ * <p>
+ * A branch takes part in collisions if the evaluators of its side include it,
+ * the paths formed by collisions are then evaluated by the collision
+ * evaluator before being returned.
+ * <p>
+ * Just like a {@link TraversalDescription} a bidirectional traversal
+ * description is immutable, each method returns a new instance with the
+ * modification.
+ */
+public interface BidirectionalTraversalDescription
+{
+    /**
+     * Sets the description of the start side, i.e. the side traversed from
+     * the start node.
+     *
+     * @param startSide the {@link TraversalDescription} of the start side.
+     * @return a new traversal description with the new modifications.
+     */
+    BidirectionalTraversalDescription startSide( TraversalDescription startSide );
+
+    /**
+     * Sets the description of the end side, i.e. the side traversed from the
+     * end node. Note that its expander is expected to expand relationships as
+     * seen from the end node, so for a directed traversal the directions must
+     * be reversed compared to the start side.
+     *
+     * @param endSide the {@link TraversalDescription} of the end side.
+     * @return a new traversal description with the new modifications.
+     */
+    BidirectionalTraversalDescription endSide( TraversalDescription endSide );
+
+    /**
+     * Uses {@code sideDescription} for the start side and a mirror of it, with
+     * the expander reversed, for the end side.
+     *
+     * @param sideDescription the {@link TraversalDescription} of the start
+     * side, mirrored for the end side.
+     * @return a new traversal description with the new modifications.
+     */
+    BidirectionalTraversalDescription mirroredSides( TraversalDescription sideDescription );
+
+    /**
+     * Sets the {@link BranchCollisionPolicy} to use for detecting collisions
+     * between the two sides.
+     *
+     * @param collisionDetection the {@link BranchCollisionPolicy} to use.
+     * @return a new traversal description with the new modifications.
+     */
+    BidirectionalTraversalDescription collisionPolicy( BranchCollisionPolicy collisionDetection );
+
+    /**
+     * Adds {@code collisionEvaluator} to the evaluators which the full paths,
+     * formed by collisions, are evaluated by.
+     *
+     * @param collisionEvaluator the {@link Evaluator} to add.
+     * @return a new traversal description with the new modifications.
+     */
+    BidirectionalTraversalDescription collisionEvaluator( Evaluator collisionEvaluator );
+
+    /**
+     * Sets the {@link SideSelectorPolicy} to use for deciding which side to
+     * go further on, f.ex. always the side which is cheapest to expand.
+     *
+     * @param sideSelector the {@link SideSelectorPolicy} to use.
+     * @param maxDepth the maximum length of the paths to find, i.e. the
+     * maximum combined depth of the two sides.
+     * @return a new traversal description with the new modifications.
+     */
+    BidirectionalTraversalDescription sideSelector( SideSelectorPolicy sideSelector, int maxDepth );
+
+    /**
+     * Traverses between {@code start} and {@code end} according to the rules
+     * of this description.
+     *
+     * @param start the node to start the start side from.
+     * @param end the node to start the end side from.
+     * @return a {@link Traverser} of the paths from {@code start} to
+     * {@code end}.
+     */
+    Traverser traverse( Node start, Node end );
+}
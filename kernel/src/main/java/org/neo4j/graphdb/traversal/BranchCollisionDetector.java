@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphdb.traversal;
+
+import java.util.Collection;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Path;
+
+/**
+ * Keeps track of the branches of a bidirectional traversal and detects when a
+ * branch from one side reaches a node which has been reached by branches from
+ * the other side. Every such collision forms a path from the start node to
+ * the end node.
+ */
+public interface BranchCollisionDetector
+{
+    /**
+     * Registers {@code branch} as reached from the given side and returns the
+     * paths it forms together with the branches from the other side which have
+     * reached the same node.
+     *
+     * @param branch the {@link TraversalBranch} to register.
+     * @param direction the side the branch was reached from,
+     * {@link org.neo4j.graphdb.Direction#OUTGOING} for the start side and
+     * {@link org.neo4j.graphdb.Direction#INCOMING} for the end side.
+     * @return the paths, from the start node to the end node, formed by this
+     * collision, or {@code null} if there were none.
+     */
+    Collection<Path> evaluate( TraversalBranch branch, Direction direction );
+
+    /**
+     * Returns whether or not this detector has found all the paths it is
+     * interested in, in which case the traversal ends.
+     *
+     * @return {@code true} if the traversal should end.
+     */
+    boolean done();
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphdb.traversal;
+
+import org.neo4j.graphdb.Direction;
+
+/**
+ * A {@link BranchSelector} for a bidirectional traversal, which selects
+ * branches from both the start side and the end side of the traversal.
+ * Each side is still traversed by its own {@link BranchSelector}, the
+ * side selector only decides which of them to pull the next branch from.
+ */
+public interface SideSelector extends BranchSelector
+{
+    /**
+     * Returns the side which the {@link TraversalBranch} last returned from
+     * {@link #next()} was selected from, {@link Direction#OUTGOING} for the
+     * start side and {@link Direction#INCOMING} for the end side.
+     *
+     * @return the side of the branch last returned from {@link #next()}.
+     */
+    Direction currentSide();
+}
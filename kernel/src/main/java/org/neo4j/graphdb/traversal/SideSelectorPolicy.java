@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphdb.traversal;
+
+/**
+ * Creator of {@link SideSelector} instances for a bidirectional traversal,
+ * given the {@link BranchSelector}s of the start and end sides.
+ */
+public interface SideSelectorPolicy
+{
+    /**
+     * Instantiates a {@link SideSelector} which selects branches from
+     * {@code start} and {@code end}.
+     *
+     * @param start the {@link BranchSelector} of the start side.
+     * @param end the {@link BranchSelector} of the end side.
+     * @param maxDepth the maximum combined depth of the two sides, i.e. the
+     * length of the longest path the traversal may find.
+     * @return a new {@link SideSelector} for the two sides.
+     */
+    SideSelector create( BranchSelector start, BranchSelector end, int maxDepth );
+}
@@ -19,6 +19,8 @@
  */
 package org.neo4j.graphdb.traversal;
 
+import java.util.concurrent.ExecutorService;
+
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
@@ -165,6 +167,56 @@ public interface TraversalDescription
      */
     TraversalDescription breadthFirst();
 
+    /**
+     * Makes the traversal expand branches on the threads of {@code executor}
+     * instead of only on the thread iterating over the result. This pays
+     * off for traversals with a wide fan-out, where expanding relationships
+     * and evaluating paths is what takes time. Any previously set
+     * {@link #order(BranchOrderingPolicy) ordering} is replaced by the
+     * ordering of the parallel traversal:
+     * <ul>
+     * <li>{@code ordered == true}: breadth first, one depth at a time.
+     * All branches on a depth are expanded and evaluated in parallel, but
+     * uniqueness is checked in the order a single threaded breadth first
+     * traversal would, so that the same paths are returned in the same
+     * order as with {@link #breadthFirst()}.</li>
+     * <li>{@code ordered == false}: depth first, where each thread traverses
+     * its own part of the graph and hands over parts of it to idle threads.
+     * Paths are returned as soon as they're found, in no particular order,
+     * and the threads wait when more paths than the iterating thread has
+     * caught up with are found. The iterator is a
+     * {@link org.neo4j.helpers.collection.ClosableIterator}, close it to
+     * stop the threads if the result isn't iterated through.</li>
+     * </ul>
+     * {@link Evaluator}s and {@link RelationshipExpander}s will be called
+     * from several threads at the same time and must be thread safe,
+     * a {@link UniquenessFilter} is only called by one thread at a time.
+     * Since the traversal runs on other threads it won't see changes made in
+     * a transaction which isn't yet committed.
+     *
+     * @param executor the {@link ExecutorService} to run the traversal on.
+     * @param ordered whether or not to return paths in breadth first order.
+     * @return a new traversal description with the new modifications.
+     */
+    TraversalDescription parallel( ExecutorService executor, boolean ordered );
+
+    /**
+     * Makes the traversal keep track of its branches as node and relationship
+     * ids in primitive arrays, reusing the space of branches which are done,
+     * instead of as one object per branch. Paths are only put together from
+     * the ids when asked for, which makes a big difference in memory usage
+     * and garbage for traversals visiting millions of branches. This applies
+     * to the {@link #depthFirst()} and {@link #breadthFirst()} orderings with
+     * the global, path or bitmap based {@link org.neo4j.kernel.Uniqueness}
+     * modes, other traversals run as usual.
+     *
+     * A {@link Path} given to an {@link Evaluator} may only be used during
+     * that call, unless the path is included in the result.
+     *
+     * @return a new traversal description with the new modifications.
+     */
+    TraversalDescription compact();
+
     /**
      * Adds {@code type} to the list of relationship types to traverse.
      * There's no priority or order in which types to traverse.
@@ -23,6 +23,8 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.index.AutoIndexer;
@@ -32,19 +34,23 @@ import org.neo4j.graphdb.index.ReadableIndex;
 
 /**
  * Default implementation of the AutoIndexer, binding to the beforeCommit hook
- * as a TransactionEventHandler
+ * as a TransactionEventHandler. If {@link Config#AUTO_INDEXING_ASYNC} is set
+ * changes are instead applied after commit by an {@link AutoIndexWorker}.
  *
  * @param <T> The database primitive type auto indexed
  */
 abstract class AbstractAutoIndexerImpl<T extends PropertyContainer> implements
         PropertyTracker<T>, AutoIndexer<T>
 {
-    private final Set<String> propertyKeysToInclude = new HashSet<String>();
+    private final Set<String> propertyKeysToInclude = new CopyOnWriteArraySet<String>();
 
     private final EmbeddedGraphDbImpl gdb;
 
     private volatile boolean enabled;
 
+    // Only set if auto indexing is asynchronous
+    private AutoIndexWorker<T> worker;
+
     public AbstractAutoIndexerImpl( EmbeddedGraphDbImpl gdb )
     {
         this.gdb = gdb;
@@ -55,11 +61,24 @@ abstract class AbstractAutoIndexerImpl<T extends PropertyContainer> implements
         resolveConfig();
     }
 
+    void stop()
+    {
+        if ( worker != null )
+        {
+            worker.stop();
+        }
+    }
+
     public void propertyAdded( T primitive, String propertyName,
             Object propertyValue )
     {
         if ( propertyKeysToInclude.contains( propertyName ) )
         {
+            if ( worker != null )
+            {
+                worker.changed( primitive, propertyName );
+                return;
+            }
             getIndexInternal().add( primitive, propertyName, propertyValue );
         }
     }
@@ -67,6 +86,14 @@ abstract class AbstractAutoIndexerImpl<T extends PropertyContainer> implements
     public void propertyChanged( T primitive, String propertyName,
             Object oldValue, Object newValue )
     {
+        if ( worker != null )
+        {
+            if ( propertyKeysToInclude.contains( propertyName ) )
+            {
+                worker.changed( primitive, propertyName );
+            }
+            return;
+        }
         if ( oldValue != null )
         {
             getIndexInternal().remove( primitive, propertyName, oldValue );
@@ -80,6 +107,14 @@ abstract class AbstractAutoIndexerImpl<T extends PropertyContainer> implements
     public void propertyRemoved( T primitive, String propertyName,
             Object propertyValue )
     {
+        if ( worker != null )
+        {
+            if ( propertyKeysToInclude.contains( propertyName ) )
+            {
+                worker.changed( primitive, propertyName );
+            }
+            return;
+        }
         getIndexInternal().remove( primitive, propertyName, propertyValue );
     }
 
@@ -118,6 +153,12 @@ abstract class AbstractAutoIndexerImpl<T extends PropertyContainer> implements
         return Collections.unmodifiableSet( propertyKeysToInclude );
     }
 
+    @Override
+    public boolean awaitIndexing( long timeout, TimeUnit unit ) throws InterruptedException
+    {
+        return worker == null || worker.awaitIndexing( timeout, unit );
+    }
+
     protected EmbeddedGraphDbImpl getGraphDbImpl()
     {
         return gdb;
@@ -158,6 +199,12 @@ abstract class AbstractAutoIndexerImpl<T extends PropertyContainer> implements
     private void resolveConfig()
     {
         Config config = gdb.getConfig();
+        if ( Boolean.parseBoolean( (String) config.getParams().get( Config.AUTO_INDEXING_ASYNC ) ) )
+        {
+            String maxLag = (String) config.getParams().get( Config.AUTO_INDEXING_MAX_LAG );
+            worker = new AutoIndexWorker<T>( this, gdb, maxLag != null ? Integer.parseInt( maxLag )
+                    : AutoIndexWorker.DEFAULT_MAX_LAG );
+        }
         boolean enable = Boolean.parseBoolean( (String) ( config.getParams().get( getEnableConfigName() ) ) );
         setEnabled( enable );
 
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.traversal.BranchSelector;
+import org.neo4j.graphdb.traversal.SideSelector;
+
+/**
+ * Base for {@link SideSelector}s, keeping the {@link BranchSelector}s of the
+ * two sides, which of them are exhausted and how deep each side has got.
+ * Side 0 is the start side and side 1 the end side.
+ */
+abstract class AbstractSelectorOrderer implements SideSelector
+{
+    private static final Direction[] DIRECTIONS = { Direction.OUTGOING, Direction.INCOMING };
+
+    private final BranchSelector[] selectors;
+    private final boolean[] exhausted = new boolean[2];
+    final int[] depths = new int[2];
+    final int maxDepth;
+    private int currentSide;
+
+    AbstractSelectorOrderer( BranchSelector start, BranchSelector end, int maxDepth )
+    {
+        this.selectors = new BranchSelector[] { start, end };
+        this.maxDepth = maxDepth;
+    }
+
+    BranchSelector selector( int side )
+    {
+        return selectors[side];
+    }
+
+    boolean exhausted( int side )
+    {
+        return exhausted[side];
+    }
+
+    void exhaust( int side )
+    {
+        exhausted[side] = true;
+    }
+
+    boolean bothExhausted()
+    {
+        return exhausted[0] && exhausted[1];
+    }
+
+    /*
+     * Whether a branch at the given depth on the given side still can be part
+     * of a path no longer than maxDepth.
+     */
+    boolean withinDepth( int side, int depth )
+    {
+        return (long) depth + depths[other( side )] <= maxDepth;
+    }
+
+    void selected( int side, int depth )
+    {
+        currentSide = side;
+        depths[side] = Math.max( depths[side], depth );
+    }
+
+    static int other( int side )
+    {
+        return 1 - side;
+    }
+
+    public Direction currentSide()
+    {
+        return DIRECTIONS[currentSide];
+    }
+}
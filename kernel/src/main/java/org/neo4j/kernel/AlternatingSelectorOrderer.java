@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel;
+
+import org.neo4j.graphdb.traversal.BranchSelector;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+
+/**
+ * Selects one branch from each side in turn. Branches which are too deep to
+ * be part of a path within the max depth are skipped, but since they might
+ * still be expanded it's a good idea to limit the depth of the sides
+ * themselves as well, f.ex. with {@link org.neo4j.graphdb.traversal.Evaluators#toDepth(int)}.
+ */
+class AlternatingSelectorOrderer extends AbstractSelectorOrderer
+{
+    private int side;
+
+    AlternatingSelectorOrderer( BranchSelector start, BranchSelector end, int maxDepth )
+    {
+        super( start, end, maxDepth );
+    }
+
+    public TraversalBranch next()
+    {
+        while ( !bothExhausted() )
+        {
+            int current = exhausted( side ) ? other( side ) : side;
+            side = other( current );
+            TraversalBranch branch = selector( current ).next();
+            if ( branch == null )
+            {
+                exhaust( current );
+            }
+            else if ( withinDepth( current, branch.depth() ) )
+            {
+                selected( current, branch.depth() );
+                return branch;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel;
+
+import org.neo4j.graphdb.traversal.TraversalBranch;
+
+/**
+ * Remembers visited ids in a bloom filter of a fixed size. An id may be
+ * considered visited although it isn't, in which case it's skipped. With
+ * about ten bits per expected id and seven hash functions that happens for
+ * about one percent of the ids while the expected number of ids isn't
+ * exceeded, more often after that.
+ */
+class ApproximatelyUnique extends AbstractUniquenessFilter
+{
+    private static final int DEFAULT_EXPECTED_COUNT = 10000000;
+    private static final int BITS_PER_ID = 10;
+    private static final int HASH_FUNCTIONS = 7;
+
+    private final long[] bits;
+    private final long bitCount;
+
+    ApproximatelyUnique( PrimitiveTypeFetcher type, Object parameter )
+    {
+        super( type );
+        long expected = parameter != null ? ((Number) parameter).longValue() : DEFAULT_EXPECTED_COUNT;
+        long longs = Math.min( Integer.MAX_VALUE - 8, Math.max( 1, expected * BITS_PER_ID / 64 ) );
+        bits = new long[(int) longs];
+        bitCount = longs * 64;
+    }
+
+    public boolean check( TraversalBranch branch )
+    {
+        long id = type.getId( branch );
+        long hash1 = mix( id );
+        long hash2 = mix( hash1 ) | 1;
+        boolean added = false;
+        for ( int i = 0; i < HASH_FUNCTIONS; i++ )
+        {
+            long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << (bit & 63);
+            if ( (bits[index] & mask) == 0 )
+            {
+                bits[index] |= mask;
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    private static long mix( long value )
+    {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.helpers.Pair;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * Applies auto index changes on a background thread, used when
+ * {@link Config#AUTO_INDEXING_ASYNC} is set. Property changes are noted per
+ * transaction and handed over when that transaction has committed. What's
+ * handed over is only which entity/key pairs are dirty, the worker reads
+ * the current value when it gets to them. That way it doesn't matter in
+ * which order transactions are handed over, several changes to the same
+ * property collapse into one, and many changes go into the same index
+ * transaction.
+ *
+ * If more than {@link Config#AUTO_INDEXING_MAX_LAG} changes are waiting,
+ * committing transactions wait for the worker to catch up. They wait at most
+ * {@link #MAX_LAG_WAIT_MILLIS} though, since they are held in a commit hook,
+ * after that their changes are queued regardless.
+ */
+class AutoIndexWorker<T extends PropertyContainer> implements Runnable
+{
+    static final int DEFAULT_MAX_LAG = 100000;
+    static final int BATCH_SIZE = 10000;
+    static final long MAX_LAG_WAIT_MILLIS = 5000;
+
+    private final AbstractAutoIndexerImpl<T> indexer;
+    private final EmbeddedGraphDbImpl gdb;
+    private final TransactionManager txManager;
+    private final int maxLag;
+    private final Map<Transaction, Set<Pair<T, String>>> txChanges =
+            new ConcurrentHashMap<Transaction, Set<Pair<T, String>>>();
+
+    // Guarded by this
+    private final LinkedHashSet<Pair<T, String>> pending = new LinkedHashSet<Pair<T, String>>();
+    private long enqueued;
+    private long applied;
+    private long failed;
+    private RuntimeException failure;
+    private boolean stopped;
+    private Thread thread;
+
+    AutoIndexWorker( AbstractAutoIndexerImpl<T> indexer, EmbeddedGraphDbImpl gdb, int maxLag )
+    {
+        this.indexer = indexer;
+        this.gdb = gdb;
+        this.txManager = gdb.getConfig().getTxModule().getTxManager();
+        this.maxLag = maxLag;
+    }
+
+    /**
+     * Notes that {@code key} of {@code entity} has changed in the current
+     * transaction.
+     */
+    void changed( T entity, String key )
+    {
+        Transaction tx;
+        try
+        {
+            tx = txManager.getTransaction();
+        }
+        catch ( SystemException e )
+        {
+            throw new RuntimeException( "Unable to get current transaction", e );
+        }
+        if ( tx == null )
+        {
+            enqueue( Collections.singleton( Pair.of( entity, key ) ) );
+            return;
+        }
+        Set<Pair<T, String>> changes = txChanges.get( tx );
+        if ( changes == null )
+        {
+            changes = new LinkedHashSet<Pair<T, String>>();
+            try
+            {
+                tx.registerSynchronization( new HandOver( tx ) );
+            }
+            catch ( Exception e )
+            {
+                throw new RuntimeException( "Unable to register auto index synchronization", e );
+            }
+            txChanges.put( tx, changes );
+        }
+        changes.add( Pair.of( entity, key ) );
+    }
+
+    private synchronized void enqueue( Set<Pair<T, String>> changes )
+    {
+        try
+        {
+            long deadline = System.currentTimeMillis() + MAX_LAG_WAIT_MILLIS;
+            while ( pending.size() >= maxLag && !stopped )
+            {
+                long left = deadline - System.currentTimeMillis();
+                if ( left <= 0 )
+                {
+                    break;
+                }
+                wait( left );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        if ( thread == null && !stopped )
+        {
+            thread = new Thread( this, "Auto indexer [" + indexer.getAutoIndexName() + "]" );
+            thread.setDaemon( true );
+            thread.start();
+        }
+        for ( Pair<T, String> change : changes )
+        {
+            if ( pending.add( change ) )
+            {
+                enqueued++;
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Waits until all changes handed over before this call have been applied.
+     *
+     * @return {@code true} if they were applied within the given time.
+     * @throws RuntimeException if changes failed to be applied since this was
+     *             last called, with the first such failure as its cause.
+     */
+    synchronized boolean awaitIndexing( long timeout, TimeUnit unit ) throws InterruptedException
+    {
+        long target = enqueued;
+        long deadline = System.currentTimeMillis() + unit.toMillis( timeout );
+        while ( applied + failed < target )
+        {
+            long left = deadline - System.currentTimeMillis();
+            if ( left <= 0 )
+            {
+                return false;
+            }
+            wait( left );
+        }
+        if ( failure != null )
+        {
+            RuntimeException cause = failure;
+            failure = null;
+            throw new RuntimeException( "Unable to apply some changes to " + indexer.getAutoIndexName(), cause );
+        }
+        return true;
+    }
+
+    /**
+     * Applies what's pending and stops the worker thread.
+     */
+    void stop()
+    {
+        Thread toJoin;
+        synchronized ( this )
+        {
+            stopped = true;
+            notifyAll();
+            toJoin = thread;
+        }
+        if ( toJoin != null )
+        {
+            try
+            {
+                toJoin.join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void run()
+    {
+        while ( true )
+        {
+            List<Pair<T, String>> batch = new ArrayList<Pair<T, String>>();
+            synchronized ( this )
+            {
+                while ( pending.isEmpty() && !stopped )
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        // Check again
+                    }
+                }
+                if ( pending.isEmpty() )
+                {
+                    return;
+                }
+                for ( Iterator<Pair<T, String>> iterator = pending.iterator();
+                        iterator.hasNext() && batch.size() < BATCH_SIZE; )
+                {
+                    batch.add( iterator.next() );
+                    iterator.remove();
+                }
+                notifyAll();
+            }
+
+            RuntimeException batchFailure = apply( batch );
+            synchronized ( this )
+            {
+                if ( batchFailure == null )
+                {
+                    applied += batch.size();
+                }
+                else
+                {
+                    failed += batch.size();
+                    if ( failure == null )
+                    {
+                        failure = batchFailure;
+                    }
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return why the batch couldn't be applied, or null if it was.
+     */
+    private RuntimeException apply( List<Pair<T, String>> batch )
+    {
+        RuntimeException batchFailure = null;
+        try
+        {
+            org.neo4j.graphdb.Transaction tx = gdb.beginTx();
+            try
+            {
+                Index<T> index = indexer.getIndexInternal();
+                Set<String> keys = indexer.getAutoIndexedProperties();
+                for ( Pair<T, String> change : batch )
+                {
+                    T entity = change.first();
+                    String key = change.other();
+                    try
+                    {
+                        index.remove( entity, key );
+                        Object value = entity.getProperty( key, null );
+                        if ( value != null && keys.contains( key ) )
+                        {
+                            index.add( entity, key, value );
+                        }
+                    }
+                    catch ( NotFoundException e )
+                    {
+                        // Deleted since, stale entries for it are cleaned
+                        // up by the index when queries run into them
+                    }
+                }
+                tx.success();
+            }
+            catch ( RuntimeException e )
+            {
+                batchFailure = e;
+                tx.failure();
+            }
+            finally
+            {
+                tx.finish();
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            if ( batchFailure == null )
+            {
+                batchFailure = e;
+            }
+        }
+        if ( batchFailure != null )
+        {
+            StringLogger.getLogger( gdb.getStoreDir() ).logMessage(
+                    "Unable to apply " + batch.size() + " changes to " + indexer.getAutoIndexName(), batchFailure );
+        }
+        return batchFailure;
+    }
+
+    private class HandOver implements Synchronization
+    {
+        private final Transaction tx;
+
+        HandOver( Transaction tx )
+        {
+            this.tx = tx;
+        }
+
+        public void beforeCompletion()
+        {
+        }
+
+        public void afterCompletion( int status )
+        {
+            Set<Pair<T, String>> changes = txChanges.remove( tx );
+            if ( status == Status.STATUS_COMMITTED && changes != null )
+            {
+                enqueue( changes );
+            }
+        }
+    }
+}
@@ -183,6 +183,25 @@ public class Config
     @Documented
     public static final String RELATIONSHIP_AUTO_INDEXING = "relationship_auto_indexing";
 
+    /**
+     * Boolean value (one of true, false) that makes the auto indexers apply
+     * changes to the auto indexes in the background, after the transactions
+     * making them have committed, instead of as part of those transactions.
+     * Auto index lookups may then briefly miss recent changes.
+     * The default is false.
+     */
+    @Documented
+    public static final String AUTO_INDEXING_ASYNC = "auto_indexing_async";
+
+    /**
+     * The maximum number of committed property changes which may wait to be
+     * applied to an auto index when {@link #AUTO_INDEXING_ASYNC} is set.
+     * Committing transactions are held back, for a few seconds at most,
+     * while there are more than that. The default is 100000.
+     */
+    @Documented
+    public static final String AUTO_INDEXING_MAX_LAG = "auto_indexing_max_lag";
+
     static final String LOAD_EXTENSIONS = "load_kernel_extensions";
 
     private final AdaptiveCacheManager cacheManager;
@@ -350,6 +350,7 @@ class EmbeddedGraphDbImpl
             {
                 try
                 {
+                    indexManager.stop();
                     sendShutdownEvent();
                 }
                 finally
@@ -64,6 +64,12 @@ class IndexManagerImpl implements IndexManager
         relAutoIndexer.start();
     }
 
+    void stop()
+    {
+        nodeAutoIndexer.stop();
+        relAutoIndexer.stop();
+    }
+
     private IndexImplementation getIndexProvider( String provider )
     {
         if ( provider == null )
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel;
+
+import org.neo4j.graphdb.traversal.BranchSelector;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+
+/**
+ * Selects a whole depth level of branches from one side before switching
+ * side, which suits sides traversed breadth first. Either the sides are
+ * switched after every level or, if {@code cheapest} is set, the side with
+ * the fewest branches on its latest level is selected, since that's the side
+ * with the smallest frontier to expand from.
+ * <p>
+ * Since the depths of the sides only increase a side is considered exhausted
+ * as soon as it reaches a depth where it can't be part of a path within the
+ * max depth anymore.
+ */
+class LevelSelectorOrderer extends AbstractSelectorOrderer
+{
+    private final boolean cheapest;
+    private final TraversalBranch[] lookahead = new TraversalBranch[2];
+    private final long[] levelSizes = new long[2];
+    private final long[] lastLevelSizes = new long[2];
+    private int side;
+
+    LevelSelectorOrderer( BranchSelector start, BranchSelector end, int maxDepth,
+            boolean cheapest )
+    {
+        super( start, end, maxDepth );
+        this.cheapest = cheapest;
+    }
+
+    public TraversalBranch next()
+    {
+        while ( !bothExhausted() )
+        {
+            if ( exhausted( side ) )
+            {
+                side = other( side );
+            }
+            TraversalBranch branch = lookahead[side];
+            boolean levelStart = branch != null;
+            if ( levelStart )
+            {
+                lookahead[side] = null;
+            }
+            else
+            {
+                branch = selector( side ).next();
+            }
+
+            if ( branch == null || !withinDepth( side, branch.depth() ) )
+            {
+                exhaust( side );
+                continue;
+            }
+            if ( !levelStart && branch.depth() > depths[side] )
+            {
+                lastLevelSizes[side] = levelSizes[side];
+                levelSizes[side] = 0;
+                if ( !exhausted( other( side ) ) )
+                {
+                    // This side has completed a level, go on from the side
+                    // which seems cheapest to expand
+                    lookahead[side] = branch;
+                    side = nextSide( side );
+                    continue;
+                }
+            }
+            levelSizes[side]++;
+            selected( side, branch.depth() );
+            return branch;
+        }
+        return null;
+    }
+
+    private int nextSide( int completedSide )
+    {
+        int otherSide = other( completedSide );
+        if ( cheapest && lastLevelSizes[completedSide] < lastLevelSizes[otherSide] )
+        {
+            return completedSide;
+        }
+        return otherSide;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel;
+
+import java.util.Collection;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+
+/**
+ * Only lets through the paths of the same length as the first one found and
+ * is done as soon as the sides have got so deep that any new collision would
+ * form a longer path than that. This finds the shortest paths given that the
+ * sides are traversed breadth first and that the side selector goes one
+ * level at a time, like {@link SideSelectorPolicies#LEVEL}.
+ */
+class ShortestPathsBranchCollisionDetector extends StandardBranchCollisionDetector
+{
+    private final int[] depths = new int[2];
+    private int length = -1;
+
+    ShortestPathsBranchCollisionDetector( Evaluator evaluator )
+    {
+        super( evaluator );
+    }
+
+    @Override
+    public Collection<Path> evaluate( TraversalBranch branch, Direction direction )
+    {
+        int side = direction == Direction.OUTGOING ? 0 : 1;
+        depths[side] = Math.max( depths[side], branch.depth() );
+        if ( done() )
+        {
+            return null;
+        }
+        return super.evaluate( branch, direction );
+    }
+
+    @Override
+    protected boolean includePath( Path path )
+    {
+        if ( length != -1 && path.length() > length )
+        {
+            return false;
+        }
+        if ( !super.includePath( path ) )
+        {
+            return false;
+        }
+        if ( length == -1 )
+        {
+            length = path.length();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean done()
+    {
+        return length != -1 && depths[0] + depths[1] > length;
+    }
+}
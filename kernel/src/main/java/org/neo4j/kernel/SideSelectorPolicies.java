@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel;
+
+import org.neo4j.graphdb.traversal.BranchSelector;
+import org.neo4j.graphdb.traversal.SideSelector;
+import org.neo4j.graphdb.traversal.SideSelectorPolicy;
+
+public enum SideSelectorPolicies implements SideSelectorPolicy
+{
+    /**
+     * Selects one branch from each side in turn.
+     */
+    ALTERNATING
+    {
+        public SideSelector create( BranchSelector start, BranchSelector end, int maxDepth )
+        {
+            return new AlternatingSelectorOrderer( start, end, maxDepth );
+        }
+    },
+    /**
+     * Selects a whole depth level from one side, then a whole level from the
+     * other side and so on.
+     */
+    LEVEL
+    {
+        public SideSelector create( BranchSelector start, BranchSelector end, int maxDepth )
+        {
+            return new LevelSelectorOrderer( start, end, maxDepth, false );
+        }
+    },
+    /**
+     * Selects a whole depth level at a time, from the side with the fewest
+     * branches on its latest level, i.e. the side which is cheapest to expand.
+     */
+    CHEAPEST_LEVEL
+    {
+        public SideSelector create( BranchSelector start, BranchSelector end, int maxDepth )
+        {
+            return new LevelSelectorOrderer( start, end, maxDepth, true );
+        }
+    };
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.BranchCollisionDetector;
+import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.kernel.impl.traversal.BidirectionalTraversalBranchPath;
+
+/**
+ * Remembers, per node, the branches from each side which have reached it and
+ * forms a path out of every pair of branches from different sides meeting
+ * in the same node. Since the same path is formed in every node along it
+ * which both sides have reached, the paths already returned are remembered
+ * so that each path is returned once.
+ */
+class StandardBranchCollisionDetector implements BranchCollisionDetector
+{
+    private final Map<Node, Sides> branches = new HashMap<Node, Sides>();
+    private final Set<Path> returnedPaths = new HashSet<Path>();
+    private final Evaluator evaluator;
+
+    StandardBranchCollisionDetector( Evaluator evaluator )
+    {
+        this.evaluator = evaluator;
+    }
+
+    public Collection<Path> evaluate( TraversalBranch branch, Direction direction )
+    {
+        Sides sides = branches.get( branch.node() );
+        if ( sides == null )
+        {
+            sides = new Sides();
+            branches.put( branch.node(), sides );
+        }
+        boolean fromStart = direction == Direction.OUTGOING;
+        (fromStart ? sides.start : sides.end).add( branch );
+        List<TraversalBranch> otherSide = fromStart ? sides.end : sides.start;
+        if ( otherSide.isEmpty() )
+        {
+            return null;
+        }
+
+        Collection<Path> result = null;
+        for ( TraversalBranch other : otherSide )
+        {
+            TraversalBranch startBranch = fromStart ? branch : other;
+            TraversalBranch endBranch = fromStart ? other : branch;
+            Path path = new BidirectionalTraversalBranchPath( startBranch, endBranch );
+            if ( includePath( path ) && returnedPaths.add( path ) )
+            {
+                if ( result == null )
+                {
+                    result = new ArrayList<Path>();
+                }
+                result.add( path );
+            }
+        }
+        return result;
+    }
+
+    protected boolean includePath( Path path )
+    {
+        return evaluator.evaluate( path ).includes();
+    }
+
+    public boolean done()
+    {
+        return false;
+    }
+
+    private static class Sides
+    {
+        private final List<TraversalBranch> start = new ArrayList<TraversalBranch>( 2 );
+        private final List<TraversalBranch> end = new ArrayList<TraversalBranch>( 2 );
+    }
+}
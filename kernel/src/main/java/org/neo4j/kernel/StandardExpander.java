@@ -42,6 +42,7 @@ import org.neo4j.helpers.Predicate;
 import org.neo4j.helpers.collection.FilteringIterator;
 import org.neo4j.helpers.collection.IteratorWrapper;
 import org.neo4j.helpers.collection.NestingIterator;
+import org.neo4j.kernel.impl.core.RelationshipIdFilter;
 
 public abstract class StandardExpander implements Expander
 {
@@ -49,6 +50,15 @@ public abstract class StandardExpander implements Expander
     {
     }
 
+    /**
+     * A filter on the id of the {@link Node} at the other end of an expanded
+     * relationship, see {@link StandardExpander#addNodeIdFilter(NodeIdPredicate)}.
+     */
+    public interface NodeIdPredicate
+    {
+        boolean accept( long nodeId );
+    }
+
     static abstract class StandardExpansion<T> implements Expansion<T>
     {
         final StandardExpander expander;
@@ -281,6 +291,22 @@ public abstract class StandardExpander implements Expander
                     start.getRelationships( direction ).iterator();
         }
 
+        @Override
+        Iterator<Relationship> doExpand( Node start, NodeIdFilter[] filters )
+        {
+            Iterable<Relationship> relationships = RelationshipIdFilter.getRelationships( start,
+                    new IdFilter( filters )
+                    {
+                        @Override
+                        public Direction direction( String type )
+                        {
+                            return direction;
+                        }
+                    } );
+            return relationships != null ? relationships.iterator() : super.doExpand( start,
+                    filters );
+        }
+
         @Override
         public StandardExpander add( RelationshipType type, Direction dir )
         {
@@ -414,20 +440,44 @@ public abstract class StandardExpander implements Expander
         }
 
         @Override
-        Iterator<Relationship> doExpand( final Node start )
+        Iterator<Relationship> doExpand( Node start )
         {
-            return new FilteringIterator<Relationship>(
+            return doExpand( start, NO_NODE_ID_FILTERS );
+        }
+
+        @Override
+        Iterator<Relationship> doExpand( final Node start, NodeIdFilter[] filters )
+        {
+            // Types and directions are decided from the relationship id
+            // arrays of the node, without looking at the relationships
+            Iterable<Relationship> relationships = RelationshipIdFilter.getRelationships( start,
+                    new IdFilter( filters )
+                    {
+                        @Override
+                        public Direction direction( String type )
+                        {
+                            return exclusion( type ).direction;
+                        }
+                    } );
+            if ( relationships != null )
+            {
+                return relationships.iterator();
+            }
+            return filterNodeIds( start, new FilteringIterator<Relationship>(
                     start.getRelationships().iterator(),
                     new Predicate<Relationship>()
                     {
                         public boolean accept( Relationship rel )
                         {
-                            Exclusion exclude = exclusion.get( rel.getType().name() );
-                            exclude = ( exclude == null ) ? defaultExclusion
-                                    : exclude;
-                            return exclude.accept( start, rel );
+                            return exclusion( rel.getType().name() ).accept( start, rel );
                         }
-                    } );
+                    } ), filters );
+        }
+
+        private Exclusion exclusion( String type )
+        {
+            Exclusion exclude = exclusion.get( type );
+            return ( exclude == null ) ? defaultExclusion : exclude;
         }
 
         @Override
@@ -580,11 +630,31 @@ public abstract class StandardExpander implements Expander
     {
         private final StandardExpander expander;
         private final Filter[] filters;
+        private final NodeIdFilter[] nodeIdFilters;
+        private final Filter[] otherFilters;
 
         FilteringExpander( StandardExpander expander, Filter... filters )
         {
             this.expander = expander;
             this.filters = filters;
+            // Node id filters are cheap, so they go first and can be pushed
+            // down to the relationship id arrays. Other filters, which may
+            // look at properties, only see the relationships that are left.
+            Collection<NodeIdFilter> nodeIdFilters = new ArrayList<NodeIdFilter>();
+            Collection<Filter> otherFilters = new ArrayList<Filter>();
+            for ( Filter filter : filters )
+            {
+                if ( filter instanceof NodeIdFilter )
+                {
+                    nodeIdFilters.add( (NodeIdFilter) filter );
+                }
+                else
+                {
+                    otherFilters.add( filter );
+                }
+            }
+            this.nodeIdFilters = nodeIdFilters.toArray( NO_NODE_ID_FILTERS );
+            this.otherFilters = otherFilters.toArray( new Filter[otherFilters.size()] );
         }
 
         @Override
@@ -602,12 +672,18 @@ public abstract class StandardExpander implements Expander
         @Override
         Iterator<Relationship> doExpand( final Node start )
         {
+            Iterator<Relationship> relationships = nodeIdFilters.length == 0 ?
+                    expander.doExpand( start ) : expander.doExpand( start, nodeIdFilters );
+            if ( otherFilters.length == 0 )
+            {
+                return relationships;
+            }
             return new FilteringIterator<Relationship>(
-                    expander.doExpand( start ), new Predicate<Relationship>()
+                    relationships, new Predicate<Relationship>()
                     {
                         public boolean accept( Relationship item )
                         {
-                            for ( Filter filter : filters )
+                            for ( Filter filter : otherFilters )
                             {
                                 if ( filter.exclude( start, item ) )
                                     return false;
@@ -632,6 +708,13 @@ public abstract class StandardExpander implements Expander
                     new RelationshipFilter( filter ) ) );
         }
 
+        @Override
+        public StandardExpander addNodeIdFilter( NodeIdPredicate filter )
+        {
+            return new FilteringExpander( expander, append( filters,
+                    new NodeIdFilter( filter ) ) );
+        }
+
         @Override
         public StandardExpander add( RelationshipType type, Direction direction )
         {
@@ -710,18 +793,42 @@ public abstract class StandardExpander implements Expander
         }
 
         @Override
-        Iterator<Relationship> doExpand( final Node start )
+        Iterator<Relationship> doExpand( Node start )
         {
-            return new FilteringIterator<Relationship>(
+            return doExpand( start, NO_NODE_ID_FILTERS );
+        }
+
+        @Override
+        Iterator<Relationship> doExpand( final Node start, NodeIdFilter[] filters )
+        {
+            Iterable<Relationship> relationships = RelationshipIdFilter.getRelationships( start,
+                    new IdFilter( filters )
+                    {
+                        @Override
+                        public Direction direction( String type )
+                        {
+                            Direction excluded = exclusion.get( type );
+                            if ( excluded == null )
+                            {
+                                return Direction.BOTH;
+                            }
+                            return excluded == Direction.BOTH ? null : excluded.reverse();
+                        }
+                    } );
+            if ( relationships != null )
+            {
+                return relationships.iterator();
+            }
+            return filterNodeIds( start, new FilteringIterator<Relationship>(
                     start.getRelationships().iterator(),
                     new Predicate<Relationship>()
                     {
                         public boolean accept( Relationship item )
                         {
                             Direction dir = exclusion.get( item.getType().name() );
-                            return !matchDirection( dir, start, item );
+                            return dir == null || !matchDirection( dir, start, item );
                         }
-                    } );
+                    } ), filters );
         }
 
         @Override
@@ -818,6 +925,69 @@ public abstract class StandardExpander implements Expander
         }
     }
 
+    private static final class NodeIdFilter extends Filter
+    {
+        private final NodeIdPredicate predicate;
+
+        NodeIdFilter( NodeIdPredicate predicate )
+        {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public String toString()
+        {
+            return predicate.toString();
+        }
+
+        @Override
+        boolean exclude( Node start, Relationship item )
+        {
+            return !predicate.accept( item.getOtherNode( start ).getId() );
+        }
+
+        static boolean acceptAll( NodeIdFilter[] filters, long nodeId )
+        {
+            for ( NodeIdFilter filter : filters )
+            {
+                if ( !filter.predicate.accept( nodeId ) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final NodeIdFilter[] NO_NODE_ID_FILTERS = new NodeIdFilter[0];
+
+    /*
+     * Selects relationships on the relationship id arrays of a node, the
+     * subclass decides the types and directions, the node id filters the
+     * other nodes.
+     */
+    private static abstract class IdFilter extends RelationshipIdFilter
+    {
+        private final NodeIdFilter[] filters;
+
+        IdFilter( NodeIdFilter[] filters )
+        {
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean filtersOtherNodes()
+        {
+            return filters.length > 0;
+        }
+
+        @Override
+        public boolean acceptOtherNode( long otherNodeId )
+        {
+            return NodeIdFilter.acceptAll( filters, otherNodeId );
+        }
+    }
+
     private static final class RelationshipFilter extends Filter
     {
         private final Predicate<? super Relationship> predicate;
@@ -893,6 +1063,33 @@ public abstract class StandardExpander implements Expander
 
     abstract Iterator<Relationship> doExpand( Node start );
 
+    /*
+     * The relationships of doExpand(start) to the nodes which all the filters
+     * accept. Expanders which take their relationships straight from the
+     * relationship id arrays of the node override this to filter the node
+     * ids there, before any relationships are created.
+     */
+    Iterator<Relationship> doExpand( Node start, NodeIdFilter[] filters )
+    {
+        return filterNodeIds( start, doExpand( start ), filters );
+    }
+
+    static Iterator<Relationship> filterNodeIds( final Node start,
+            Iterator<Relationship> relationships, final NodeIdFilter[] filters )
+    {
+        if ( filters.length == 0 )
+        {
+            return relationships;
+        }
+        return new FilteringIterator<Relationship>( relationships, new Predicate<Relationship>()
+        {
+            public boolean accept( Relationship item )
+            {
+                return NodeIdFilter.acceptAll( filters, item.getOtherNode( start ).getId() );
+            }
+        } );
+    }
+
     @Override
     public final String toString()
     {
@@ -927,6 +1124,22 @@ public abstract class StandardExpander implements Expander
         return new FilteringExpander( this, new RelationshipFilter( filter ) );
     }
     
+    /**
+     * Add a filter on the ids of the {@link Node}s at the other end of the
+     * expanded relationships. Unlike the filters added with
+     * {@link #addNodeFilter(Predicate)} it's evaluated before any other
+     * filters and, where possible, on the relationship ids of the node before
+     * any {@link Relationship} or {@link Node} is created, f.ex. to skip
+     * nodes which have already been visited.
+     *
+     * @param filter filter to use
+     * @return new instance
+     */
+    public StandardExpander addNodeIdFilter( NodeIdPredicate filter )
+    {
+        return new FilteringExpander( this, new NodeIdFilter( filter ) );
+    }
+
     public StandardExpander addRelationsipFilter(
             Predicate<? super Relationship> filter )
     {
@@ -103,6 +103,63 @@ public enum Uniqueness implements UniquenessFactory
             return new RecentlyUnique( PrimitiveTypeFetcher.RELATIONSHIP, optionalParameter );
         }
     },
+    /**
+     * Same as {@link Uniqueness#NODE_GLOBAL}, but visited nodes are kept
+     * track of in a bitmap keyed by node id instead of a set of ids. The
+     * bitmap is divided into pages, allocated as nodes in their id range are
+     * visited, which makes it a fraction of the size of the set for
+     * traversals visiting a lot of nodes. Supply {@code true} as parameter
+     * to have the bitmap kept off the java heap.
+     */
+    NODE_GLOBAL_BITMAP
+    {
+        public UniquenessFilter create( Object optionalParameter )
+        {
+            acceptBooleanOrNull( optionalParameter );
+            return new BitmapUnique( PrimitiveTypeFetcher.NODE, optionalParameter );
+        }
+    },
+    /**
+     * Same as for {@link Uniqueness#NODE_GLOBAL_BITMAP}, but for
+     * relationships.
+     */
+    RELATIONSHIP_GLOBAL_BITMAP
+    {
+        public UniquenessFilter create( Object optionalParameter )
+        {
+            acceptBooleanOrNull( optionalParameter );
+            return new BitmapUnique( PrimitiveTypeFetcher.RELATIONSHIP, optionalParameter );
+        }
+    },
+    /**
+     * A best effort version of {@link Uniqueness#NODE_GLOBAL} which keeps
+     * track of visited nodes in a bloom filter of a fixed size. A node is
+     * never traversed more than once, but a small fraction of the nodes
+     * (about one percent) may be skipped although they weren't visited
+     * before. Together with this {@link Uniqueness} you can supply the
+     * expected number of visited nodes, which the size of the filter is
+     * based on (ten bits per node).
+     */
+    NODE_GLOBAL_APPROXIMATE
+    {
+        public UniquenessFilter create( Object optionalParameter )
+        {
+            acceptIntegerOrNull( optionalParameter );
+            return new ApproximatelyUnique( PrimitiveTypeFetcher.NODE, optionalParameter );
+        }
+    },
+    /**
+     * Same as for {@link Uniqueness#NODE_GLOBAL_APPROXIMATE}, but for
+     * relationships.
+     */
+    RELATIONSHIP_GLOBAL_APPROXIMATE
+    {
+        public UniquenessFilter create( Object optionalParameter )
+        {
+            acceptIntegerOrNull( optionalParameter );
+            return new ApproximatelyUnique( PrimitiveTypeFetcher.RELATIONSHIP, optionalParameter );
+        }
+    },
     /**
      * No restriction (the user will have to manage it).
      */
@@ -126,6 +183,15 @@ public enum Uniqueness implements UniquenessFactory
         }
     }
     
+    private static void acceptBooleanOrNull( Object parameter )
+    {
+        if ( parameter != null && !( parameter instanceof Boolean ) )
+        {
+            throw new IllegalArgumentException( "Only accepts boolean parameter, was " +
+                    parameter );
+        }
+    }
+
     private static void acceptIntegerOrNull( Object parameter )
     {
         if ( parameter == null )
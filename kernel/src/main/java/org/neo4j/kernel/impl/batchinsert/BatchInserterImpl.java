@@ -350,6 +350,80 @@ public class BatchInserterImpl implements BatchInserter
         return Collections.emptyMap();
     }
 
+    /**
+     * @return the upper bound (exclusive) of node ids that may be in use,
+     * i.e. the range to cover when scanning the node store.
+     */
+    public long getNodeHighId()
+    {
+        return getNodeStore().getHighId();
+    }
+
+    /**
+     * @return the upper bound (exclusive) of relationship ids that may be in
+     * use, i.e. the range to cover when scanning the relationship store.
+     */
+    public long getRelationshipHighId()
+    {
+        return getRelationshipStore().getHighId();
+    }
+
+    /**
+     * Reads the properties of a node straight from the store, decoding only
+     * the values of {@code keys}. Meant for store scans: a node id which
+     * isn't in use gives {@code null} instead of an exception and the
+     * method may be called from several threads at the same time, as long
+     * as nothing is written to the store meanwhile.
+     *
+     * @param nodeId the node to read properties from.
+     * @param keys the property keys to read, others are skipped.
+     * @return the properties of the node with any of the given keys, or
+     * {@code null} if there's no node with that id.
+     */
+    public Map<String,Object> getNodeProperties( long nodeId, Collection<String> keys )
+    {
+        NodeRecord record;
+        try
+        {
+            record = getNodeStore().getRecord( nodeId );
+        }
+        catch ( InvalidRecordException e )
+        {
+            return null;
+        }
+        if ( record.getNextProp() != Record.NO_NEXT_PROPERTY.intValue() )
+        {
+            return getPropertyChain( record.getNextProp(), keys );
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * The relationship version of {@link #getNodeProperties(long, Collection)}.
+     *
+     * @param relId the relationship to read properties from.
+     * @param keys the property keys to read, others are skipped.
+     * @return the properties of the relationship with any of the given keys,
+     * or {@code null} if there's no relationship with that id.
+     */
+    public Map<String,Object> getRelationshipProperties( long relId, Collection<String> keys )
+    {
+        RelationshipRecord record;
+        try
+        {
+            record = getRelationshipStore().getRecord( relId );
+        }
+        catch ( InvalidRecordException e )
+        {
+            return null;
+        }
+        if ( record.getNextProp() != Record.NO_NEXT_PROPERTY.intValue() )
+        {
+            return getPropertyChain( record.getNextProp(), keys );
+        }
+        return Collections.emptyMap();
+    }
+
     public void shutdown()
     {
         graphDbService.clearCaches();
@@ -469,6 +543,26 @@ public class BatchInserterImpl implements BatchInserter
         return properties;
     }
 
+    private Map<String,Object> getPropertyChain( long propertyId, Collection<String> keys )
+    {
+        PropertyStore propStore = getPropertyStore();
+        Map<String,Object> properties = new HashMap<String,Object>();
+        long nextProperty = propertyId;
+        while ( nextProperty != Record.NO_NEXT_PROPERTY.intValue() )
+        {
+            PropertyRecord propertyRecord = propStore.getRecord( nextProperty );
+            nextProperty = propertyRecord.getNextProp();
+            String key = indexHolder.getStringKey( propertyRecord.getKeyIndexId() );
+            if ( keys.contains( key ) )
+            {
+                // Only load dynamic records for the values we're going to use
+                propStore.makeHeavy( propertyRecord );
+                properties.put( key, propStore.getValue( propertyRecord ) );
+            }
+        }
+        return properties;
+    }
+
     private int createNewPropertyIndex( String stringKey )
     {
         PropertyIndexStore idxStore = getPropertyIndexStore();
@@ -42,6 +42,7 @@ class IntArrayIterator extends PrefetchingIterator<Relationship> implements Iter
     private final NodeManager nodeManager;
     private final RelationshipType types[];
     private final List<RelIdIterator> rels;
+    private final RelationshipIdFilter filter;
     
     // This is just for optimization
     private boolean isFullyLoaded;
@@ -49,8 +50,16 @@ class IntArrayIterator extends PrefetchingIterator<Relationship> implements Iter
     IntArrayIterator( List<RelIdIterator> rels, NodeImpl fromNode,
         DirectionWrapper direction, NodeManager nodeManager, RelationshipType[] types,
         boolean isFullyLoaded )
+    {
+        this( rels, fromNode, direction, nodeManager, types, isFullyLoaded, null );
+    }
+
+    IntArrayIterator( List<RelIdIterator> rels, NodeImpl fromNode,
+        DirectionWrapper direction, NodeManager nodeManager, RelationshipType[] types,
+        boolean isFullyLoaded, RelationshipIdFilter filter )
     {
         this.rels = rels;
+        this.filter = filter;
         this.isFullyLoaded = isFullyLoaded;
         this.typeIterator = rels.iterator();
         this.currentTypeIterator = typeIterator.hasNext() ? typeIterator.next() : RelIdArray.EMPTY.iterator( direction );
@@ -75,7 +84,10 @@ class IntArrayIterator extends PrefetchingIterator<Relationship> implements Iter
                 long nextId = currentTypeIterator.next();
                 try
                 {
-                    return new RelationshipProxy( nextId, nodeManager );
+                    if ( acceptOtherNode( nextId ) )
+                    {
+                        return new RelationshipProxy( nextId, nodeManager );
+                    }
                 }
                 catch ( NotFoundException e )
                 { // ok deleted 
@@ -120,9 +132,14 @@ class IntArrayIterator extends PrefetchingIterator<Relationship> implements Iter
                             RelIdIterator itr = newRels.get( type );
                             if ( itr == null )
                             {
+                                DirectionWrapper typeDirection = NodeImpl.direction( type, direction, filter );
+                                if ( typeDirection == null )
+                                {
+                                    continue;
+                                }
                                 Collection<Long> remove = nodeManager.getCowRelationshipRemoveMap( fromNode, type );
-                                itr = remove == null ? ids.iterator( direction ) :
-                                        RelIdArray.from( ids, null, remove ).iterator( direction );
+                                itr = remove == null ? ids.iterator( typeDirection ) :
+                                        RelIdArray.from( ids, null, remove ).iterator( typeDirection );
                                 newRels.put( type, itr );
                             }
                             else
@@ -149,4 +166,14 @@ class IntArrayIterator extends PrefetchingIterator<Relationship> implements Iter
         // no next element found
         return null;
     }
+
+    private boolean acceptOtherNode( long relId )
+    {
+        if ( filter == null || !filter.filtersOtherNodes() )
+        {
+            return true;
+        }
+        // Relationships that are filtered out shouldn't be loaded into the cache
+        return filter.acceptOtherNode( nodeManager.getOtherNodeId( relId, fromNode.getId() ) );
+    }
 }
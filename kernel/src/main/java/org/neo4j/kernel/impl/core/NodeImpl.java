@@ -116,6 +116,16 @@ class NodeImpl extends Primitive
     }
 
     List<RelIdIterator> getAllRelationships( NodeManager nodeManager, DirectionWrapper direction )
+    {
+        return getAllRelationships( nodeManager, direction, null );
+    }
+
+    /*
+     * With a filter the direction of each type comes from the filter,
+     * types it has no direction for are left out
+     */
+    private List<RelIdIterator> getAllRelationships( NodeManager nodeManager,
+            DirectionWrapper defaultDirection, RelationshipIdFilter filter )
     {
         ensureRelationshipMapNotNull( nodeManager );
         List<RelIdIterator> relTypeList = new LinkedList<RelIdIterator>();
@@ -129,6 +139,11 @@ class NodeImpl extends Primitive
         for ( RelIdArray src : relationships )
         {
             String type = src.getType();
+            DirectionWrapper direction = direction( type, defaultDirection, filter );
+            if ( direction == null )
+            {
+                continue;
+            }
             Collection<Long> remove = null;
             RelIdArray add = null;
             RelIdIterator iterator = null;
@@ -151,7 +166,8 @@ class NodeImpl extends Primitive
         {
             for ( String type : addMap.keySet() )
             {
-                if ( getRelIdArray( type ) == null )
+                DirectionWrapper direction = direction( type, defaultDirection, filter );
+                if ( getRelIdArray( type ) == null && direction != null )
                 {
                     Collection<Long> remove = nodeManager.getCowRelationshipRemoveMap( this, type );
                     RelIdArray add = addMap.get( type );
@@ -162,6 +178,17 @@ class NodeImpl extends Primitive
         return relTypeList;
     }
 
+    static DirectionWrapper direction( String type, DirectionWrapper defaultDirection,
+            RelationshipIdFilter filter )
+    {
+        if ( filter == null )
+        {
+            return defaultDirection;
+        }
+        Direction direction = filter.direction( type );
+        return direction != null ? RelIdArray.wrap( direction ) : null;
+    }
+
     List<RelIdIterator> getAllRelationshipsOfType( NodeManager nodeManager,
         DirectionWrapper direction, RelationshipType... types)
     {
@@ -196,6 +223,14 @@ class NodeImpl extends Primitive
             DirectionWrapper.BOTH, nodeManager, new RelationshipType[0], !hasMoreRelationshipsToLoad() );
     }
 
+    public Iterable<Relationship> getRelationships( NodeManager nodeManager,
+            RelationshipIdFilter filter )
+    {
+        return new IntArrayIterator( getAllRelationships( nodeManager, DirectionWrapper.BOTH, filter ),
+            this, DirectionWrapper.BOTH, nodeManager, new RelationshipType[0],
+            !hasMoreRelationshipsToLoad(), filter );
+    }
+
     public Iterable<Relationship> getRelationships( NodeManager nodeManager, Direction dir )
     {
         DirectionWrapper direction = RelIdArray.wrap( dir );
@@ -587,6 +587,34 @@ public class NodeManager
         }
     }
 
+    /**
+     * Returns the id of the node at the other end of a relationship, reading
+     * it from the relationship record if the relationship isn't cached,
+     * without creating and caching a {@link RelationshipImpl} for it.
+     */
+    long getOtherNodeId( long relId, long nodeId )
+    {
+        long firstNode, secondNode;
+        RelationshipImpl relationship = relCache.get( relId );
+        if ( relationship != null )
+        {
+            firstNode = relationship.getStartNodeId();
+            secondNode = relationship.getEndNodeId();
+        }
+        else
+        {
+            RelationshipRecord data = persistenceManager.loadLightRelationship( relId );
+            if ( data == null )
+            {
+                throw new NotFoundException( "Relationship[" + relId
+                    + "] not found." );
+            }
+            firstNode = data.getFirstNode();
+            secondNode = data.getSecondNode();
+        }
+        return firstNode == nodeId ? secondNode : firstNode;
+    }
+
     public void removeNodeFromCache( long nodeId )
     {
         nodeCache.remove( nodeId );
@@ -62,6 +62,11 @@ class NodeProxy implements Node
         return nm.getNodeForProxy( nodeId ).getRelationships( nm );
     }
 
+    Iterable<Relationship> getRelationships( RelationshipIdFilter filter )
+    {
+        return nm.getNodeForProxy( nodeId ).getRelationships( nm, filter );
+    }
+
     public boolean hasRelationship()
     {
         return nm.getNodeForProxy( nodeId ).hasRelationship( nm );
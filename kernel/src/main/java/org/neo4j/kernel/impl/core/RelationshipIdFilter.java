@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * Decides which relationships of a node to return from the relationship id
+ * arrays of the node, before any {@link Relationship} is created for them.
+ * The type and direction of a relationship is given by which of the arrays
+ * it's in, so filtering on those doesn't cost anything per relationship.
+ * Filtering on the id of the other node costs a look in the relationship
+ * cache (or store), but still doesn't create any proxies.
+ */
+public abstract class RelationshipIdFilter
+{
+    /**
+     * @param type the name of a relationship type the node has
+     * relationships of.
+     * @return the direction to return relationships of {@code type} in, or
+     * {@code null} to not return any relationships of that type.
+     */
+    public abstract Direction direction( String type );
+
+    /**
+     * @return whether or not {@link #acceptOtherNode(long)} should be asked
+     * for each relationship.
+     */
+    public boolean filtersOtherNodes()
+    {
+        return false;
+    }
+
+    /**
+     * @param otherNodeId the id of the node at the other end of a
+     * relationship.
+     * @return whether or not to return the relationship.
+     */
+    public boolean acceptOtherNode( long otherNodeId )
+    {
+        return true;
+    }
+
+    /**
+     * Returns the relationships of {@code node} which {@code filter}
+     * accepts.
+     *
+     * @param node the node to get the relationships for.
+     * @param filter the filter to apply on the relationship id arrays.
+     * @return the accepted relationships, or {@code null} if {@code node}
+     * isn't a node of an embedded graph database, in which case the caller
+     * will have to filter the relationships itself.
+     */
+    public static Iterable<Relationship> getRelationships( Node node, RelationshipIdFilter filter )
+    {
+        if ( !( node instanceof NodeProxy ) )
+        {
+            return null;
+        }
+        return ( (NodeProxy) node ).getRelationships( filter );
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.kernel.Traversal;
+
+/**
+ * A {@link Path} formed by a branch from the start side and a branch from the
+ * end side of a bidirectional traversal, which have met in the same node. It
+ * goes from the start node of the start side to the start node of the end
+ * side.
+ */
+public class BidirectionalTraversalBranchPath implements Path
+{
+    private final TraversalBranch start;
+    private final TraversalBranch end;
+    private LinkedList<Node> nodes;
+    private LinkedList<Relationship> relationships;
+
+    public BidirectionalTraversalBranchPath( TraversalBranch start, TraversalBranch end )
+    {
+        this.start = start;
+        this.end = end;
+    }
+
+    private void ensureEntitiesAreGathered()
+    {
+        if ( nodes == null )
+        {
+            LinkedList<Node> nodesList = new LinkedList<Node>();
+            LinkedList<Relationship> relationshipsList = new LinkedList<Relationship>();
+            for ( TraversalBranch stepper = start; stepper != null; stepper = stepper.parent() )
+            {
+                nodesList.addFirst( stepper.node() );
+                if ( stepper.relationship() != null )
+                {
+                    relationshipsList.addFirst( stepper.relationship() );
+                }
+            }
+            // The node where the two sides meet is already added
+            for ( TraversalBranch stepper = end; stepper != null; stepper = stepper.parent() )
+            {
+                if ( stepper != end )
+                {
+                    nodesList.addLast( stepper.node() );
+                }
+                if ( stepper.relationship() != null )
+                {
+                    relationshipsList.addLast( stepper.relationship() );
+                }
+            }
+            nodes = nodesList;
+            relationships = relationshipsList;
+        }
+    }
+
+    public Node startNode()
+    {
+        ensureEntitiesAreGathered();
+        return nodes.getFirst();
+    }
+
+    public Node endNode()
+    {
+        ensureEntitiesAreGathered();
+        return nodes.getLast();
+    }
+
+    public Relationship lastRelationship()
+    {
+        ensureEntitiesAreGathered();
+        return relationships.isEmpty() ? null : relationships.getLast();
+    }
+
+    public Iterable<Relationship> relationships()
+    {
+        ensureEntitiesAreGathered();
+        return relationships;
+    }
+
+    public Iterable<Node> nodes()
+    {
+        ensureEntitiesAreGathered();
+        return nodes;
+    }
+
+    public int length()
+    {
+        return start.depth() + end.depth();
+    }
+
+    public Iterator<PropertyContainer> iterator()
+    {
+        ensureEntitiesAreGathered();
+        return new Iterator<PropertyContainer>()
+        {
+            Iterator<? extends PropertyContainer> current = nodes().iterator();
+            Iterator<? extends PropertyContainer> next = relationships().iterator();
+
+            public boolean hasNext()
+            {
+                return current.hasNext();
+            }
+
+            public PropertyContainer next()
+            {
+                try
+                {
+                    return current.next();
+                }
+                finally
+                {
+                    Iterator<? extends PropertyContainer> temp = current;
+                    current = next;
+                    next = temp;
+                }
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return Traversal.defaultPathToString( this );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        ensureEntitiesAreGathered();
+        if ( relationships.isEmpty() )
+        {
+            return startNode().hashCode();
+        }
+        return relationships.hashCode();
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if ( this == obj )
+        {
+            return true;
+        }
+        if ( !(obj instanceof Path) )
+        {
+            return false;
+        }
+        Path other = (Path) obj;
+        if ( !startNode().equals( other.startNode() ) )
+        {
+            return false;
+        }
+        Iterator<Relationship> these = relationships().iterator();
+        Iterator<Relationship> those = other.relationships().iterator();
+        while ( these.hasNext() && those.hasNext() )
+        {
+            if ( !these.next().equals( those.next() ) )
+            {
+                return false;
+            }
+        }
+        return !these.hasNext() && !those.hasNext();
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.traversal.BidirectionalTraversalDescription;
+import org.neo4j.graphdb.traversal.BranchCollisionPolicy;
+import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.graphdb.traversal.Evaluators;
+import org.neo4j.graphdb.traversal.SideSelectorPolicy;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.graphdb.traversal.Traverser;
+import org.neo4j.kernel.BranchCollisionPolicies;
+import org.neo4j.kernel.SideSelectorPolicies;
+
+public final class BidirectionalTraversalDescriptionImpl implements BidirectionalTraversalDescription
+{
+    final TraversalDescriptionImpl start;
+    final TraversalDescriptionImpl end;
+    final BranchCollisionPolicy collisionPolicy;
+    final Evaluator collisionEvaluator;
+    final SideSelectorPolicy sideSelector;
+    final int maxDepth;
+
+    public BidirectionalTraversalDescriptionImpl()
+    {
+        this( (TraversalDescriptionImpl) new TraversalDescriptionImpl().breadthFirst(), null,
+                BranchCollisionPolicies.STANDARD, Evaluators.all(), SideSelectorPolicies.LEVEL,
+                Integer.MAX_VALUE );
+    }
+
+    private BidirectionalTraversalDescriptionImpl( TraversalDescriptionImpl start,
+            TraversalDescriptionImpl end, BranchCollisionPolicy collisionPolicy,
+            Evaluator collisionEvaluator, SideSelectorPolicy sideSelector, int maxDepth )
+    {
+        this.start = start;
+        this.end = end;
+        this.collisionPolicy = collisionPolicy;
+        this.collisionEvaluator = collisionEvaluator;
+        this.sideSelector = sideSelector;
+        this.maxDepth = maxDepth;
+    }
+
+    public BidirectionalTraversalDescription startSide( TraversalDescription startSide )
+    {
+        return new BidirectionalTraversalDescriptionImpl( impl( startSide ), end,
+                collisionPolicy, collisionEvaluator, sideSelector, maxDepth );
+    }
+
+    public BidirectionalTraversalDescription endSide( TraversalDescription endSide )
+    {
+        return new BidirectionalTraversalDescriptionImpl( start, impl( endSide ),
+                collisionPolicy, collisionEvaluator, sideSelector, maxDepth );
+    }
+
+    public BidirectionalTraversalDescription mirroredSides( TraversalDescription sideDescription )
+    {
+        TraversalDescriptionImpl side = impl( sideDescription );
+        return new BidirectionalTraversalDescriptionImpl( side,
+                (TraversalDescriptionImpl) side.expand( side.expander.reversed() ),
+                collisionPolicy, collisionEvaluator, sideSelector, maxDepth );
+    }
+
+    public BidirectionalTraversalDescription collisionPolicy( BranchCollisionPolicy collisionDetection )
+    {
+        nullCheck( collisionDetection, "BranchCollisionPolicy" );
+        return new BidirectionalTraversalDescriptionImpl( start, end,
+                collisionDetection, collisionEvaluator, sideSelector, maxDepth );
+    }
+
+    public BidirectionalTraversalDescription collisionEvaluator( Evaluator collisionEvaluator )
+    {
+        nullCheck( collisionEvaluator, "Evaluator" );
+        Evaluator evaluator = collisionEvaluator;
+        if ( this.collisionEvaluator instanceof MultiEvaluator )
+        {
+            evaluator = ((MultiEvaluator) this.collisionEvaluator).add( collisionEvaluator );
+        }
+        else if ( this.collisionEvaluator != Evaluators.all() )
+        {
+            evaluator = new MultiEvaluator( new Evaluator[] { this.collisionEvaluator, collisionEvaluator } );
+        }
+        return new BidirectionalTraversalDescriptionImpl( start, end,
+                collisionPolicy, evaluator, sideSelector, maxDepth );
+    }
+
+    public BidirectionalTraversalDescription sideSelector( SideSelectorPolicy sideSelector, int maxDepth )
+    {
+        nullCheck( sideSelector, "SideSelectorPolicy" );
+        return new BidirectionalTraversalDescriptionImpl( start, end,
+                collisionPolicy, collisionEvaluator, sideSelector, maxDepth );
+    }
+
+    public Traverser traverse( Node start, Node end )
+    {
+        return new BidirectionalTraverserImpl( this, start, end );
+    }
+
+    TraversalDescriptionImpl endSide()
+    {
+        return end != null ? end : (TraversalDescriptionImpl) start.expand( start.expander.reversed() );
+    }
+
+    private static TraversalDescriptionImpl impl( TraversalDescription description )
+    {
+        nullCheck( description, "TraversalDescription" );
+        if ( !(description instanceof TraversalDescriptionImpl) )
+        {
+            throw new IllegalArgumentException( "Can only traverse sides described by "
+                    + TraversalDescriptionImpl.class.getSimpleName() + ", not " + description );
+        }
+        return (TraversalDescriptionImpl) description;
+    }
+
+    private static void nullCheck( Object parameter, String typeName )
+    {
+        if ( parameter == null )
+        {
+            throw new IllegalArgumentException( typeName + " may not be null" );
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.BranchCollisionDetector;
+import org.neo4j.graphdb.traversal.SideSelector;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+
+/**
+ * Traverses from the start node and the end node at the same time, each side
+ * with its own description and uniqueness, and returns the paths formed where
+ * the two sides meet.
+ */
+class BidirectionalTraverserImpl extends TraverserImpl
+{
+    private final BidirectionalTraversalDescriptionImpl bidirectionalDescription;
+    private final Node endNode;
+
+    BidirectionalTraverserImpl( BidirectionalTraversalDescriptionImpl description,
+            Node startNode, Node endNode )
+    {
+        super( description.start, startNode );
+        this.bidirectionalDescription = description;
+        this.endNode = endNode;
+    }
+
+    @Override
+    public Iterator<Path> iterator()
+    {
+        return new BidirectionalIterator();
+    }
+
+    private class BidirectionalIterator extends PrefetchingIterator<Path>
+    {
+        private final SideSelector selector;
+        private final BranchCollisionDetector collisionDetector;
+        private final int maxDepth;
+        private Iterator<Path> found = Collections.<Path>emptyList().iterator();
+
+        BidirectionalIterator()
+        {
+            // Each side has its own uniqueness, the branches of both sides
+            // are pulled by the SideSelector
+            TraversalContext startSide = new TraversalContext( bidirectionalDescription.start );
+            TraversalContext endSide = new TraversalContext( bidirectionalDescription.endSide() );
+            this.maxDepth = bidirectionalDescription.maxDepth;
+            this.selector = bidirectionalDescription.sideSelector.create(
+                    startSide.description.branchSelector.create( new StartNodeTraversalBranch(
+                            startSide, startNode, startSide.description.expander ) ),
+                    endSide.description.branchSelector.create( new StartNodeTraversalBranch(
+                            endSide, endNode, endSide.description.expander ) ), maxDepth );
+            this.collisionDetector = bidirectionalDescription.collisionPolicy.create(
+                    bidirectionalDescription.collisionEvaluator );
+        }
+
+        @Override
+        protected Path fetchNextOrNull()
+        {
+            while ( true )
+            {
+                while ( found.hasNext() )
+                {
+                    Path path = found.next();
+                    if ( path.length() <= maxDepth )
+                    {
+                        return path;
+                    }
+                }
+                if ( collisionDetector.done() )
+                {
+                    return null;
+                }
+                TraversalBranch branch = selector.next();
+                if ( branch == null )
+                {
+                    return null;
+                }
+                if ( branch.evaluation().includes() )
+                {
+                    Direction side = selector.currentSide();
+                    Collection<Path> paths = collisionDetector.evaluate( branch, side );
+                    if ( paths != null )
+                    {
+                        found = paths.iterator();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+/**
+ * Keeps the branches of a traversal as node/relationship ids in primitive
+ * arrays, where a branch is an index (slot) into those arrays and refers to
+ * its parent by its slot. A slot is in use for as long as its branch is
+ * being expanded or any branch below it is, after that it's reused by new
+ * branches. This way the arena doesn't grow larger than the number of
+ * branches a traversal needs to keep track of at any given moment.
+ */
+final class BranchArena
+{
+    static final int NO_PARENT = -1;
+    static final long NO_RELATIONSHIP = -1;
+
+    private long[] nodes;
+    private long[] relationships;
+    private int[] parents;
+    private int[] depths;
+    // Number of children in use, plus one while the branch itself is open
+    private int[] references;
+    private int[] free;
+    private int freeCount;
+    private int highSlot;
+
+    BranchArena( int initialCapacity )
+    {
+        initialCapacity = Math.max( 16, initialCapacity );
+        nodes = new long[initialCapacity];
+        relationships = new long[initialCapacity];
+        parents = new int[initialCapacity];
+        depths = new int[initialCapacity];
+        references = new int[initialCapacity];
+        free = new int[initialCapacity];
+    }
+
+    /**
+     * Adds an open branch, which stays in the arena at least until it's
+     * {@link #close(int) closed}.
+     *
+     * @return the slot of the new branch.
+     */
+    int add( int parent, long node, long relationship )
+    {
+        int slot;
+        if ( freeCount > 0 )
+        {
+            slot = free[--freeCount];
+        }
+        else
+        {
+            if ( highSlot == nodes.length )
+            {
+                grow();
+            }
+            slot = highSlot++;
+        }
+        nodes[slot] = node;
+        relationships[slot] = relationship;
+        parents[slot] = parent;
+        references[slot] = 1;
+        if ( parent == NO_PARENT )
+        {
+            depths[slot] = 0;
+        }
+        else
+        {
+            depths[slot] = depths[parent] + 1;
+            references[parent]++;
+        }
+        return slot;
+    }
+
+    /**
+     * Marks the branch in {@code slot} as done, i.e. it won't get any more
+     * children. It's removed when none of its children are in use anymore,
+     * as are its ancestors when they in turn are done and unused.
+     */
+    void close( int slot )
+    {
+        while ( slot != NO_PARENT && --references[slot] == 0 )
+        {
+            free[freeCount++] = slot;
+            slot = parents[slot];
+        }
+    }
+
+    long node( int slot )
+    {
+        return nodes[slot];
+    }
+
+    long relationship( int slot )
+    {
+        return relationships[slot];
+    }
+
+    int parent( int slot )
+    {
+        return parents[slot];
+    }
+
+    int depth( int slot )
+    {
+        return depths[slot];
+    }
+
+    /**
+     * @return the number of slots in use.
+     */
+    int size()
+    {
+        return highSlot - freeCount;
+    }
+
+    private void grow()
+    {
+        int capacity = nodes.length * 2;
+        nodes = copy( nodes, capacity );
+        relationships = copy( relationships, capacity );
+        parents = copy( parents, capacity );
+        depths = copy( depths, capacity );
+        references = copy( references, capacity );
+        free = copy( free, capacity );
+    }
+
+    private static long[] copy( long[] array, int capacity )
+    {
+        long[] result = new long[capacity];
+        System.arraycopy( array, 0, result, 0, array.length );
+        return result;
+    }
+
+    private static int[] copy( int[] array, int capacity )
+    {
+        int[] result = new int[capacity];
+        System.arraycopy( array, 0, result, 0, array.length );
+        return result;
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.Traversal;
+
+/**
+ * A {@link Path} of a branch in a {@link BranchArena}. The end node and last
+ * relationship are known up front, the rest of the path is read from the
+ * arena as ids the first time it's needed and nodes/relationships are then
+ * looked up by id as they're iterated over. A path which outlives the
+ * branch in the arena must be {@link #detach() detached} before the branch
+ * slot is reused.
+ */
+class CompactPath implements Path
+{
+    private final GraphDatabaseService graphDb;
+    private final Node endNode;
+    private final Relationship lastRelationship;
+    private final int length;
+    private BranchArena arena;
+    private int slot;
+    private long[] nodeIds;
+    private long[] relationshipIds;
+
+    CompactPath( GraphDatabaseService graphDb, BranchArena arena, int slot, Node endNode,
+            Relationship lastRelationship )
+    {
+        this.graphDb = graphDb;
+        this.arena = arena;
+        this.slot = slot;
+        this.endNode = endNode;
+        this.lastRelationship = lastRelationship;
+        this.length = arena.depth( slot );
+    }
+
+    /**
+     * Reads the ids of the path from the arena, after this the path doesn't
+     * depend on the arena anymore.
+     */
+    CompactPath detach()
+    {
+        if ( arena != null )
+        {
+            long[] nodes = new long[length + 1];
+            long[] relationships = new long[length];
+            for ( int i = length, current = slot; i >= 0; i--, current = arena.parent( current ) )
+            {
+                nodes[i] = arena.node( current );
+                if ( i > 0 )
+                {
+                    relationships[i - 1] = arena.relationship( current );
+                }
+            }
+            nodeIds = nodes;
+            relationshipIds = relationships;
+            arena = null;
+        }
+        return this;
+    }
+
+    public Node startNode()
+    {
+        return length == 0 ? endNode : graphDb.getNodeById( detach().nodeIds[0] );
+    }
+
+    public Node endNode()
+    {
+        return endNode;
+    }
+
+    public Relationship lastRelationship()
+    {
+        return lastRelationship;
+    }
+
+    public Iterable<Node> nodes()
+    {
+        detach();
+        return new Iterable<Node>()
+        {
+            public Iterator<Node> iterator()
+            {
+                return new IdIterator<Node>( nodeIds )
+                {
+                    @Override
+                    Node get( int index, long id )
+                    {
+                        return index == length ? endNode : graphDb.getNodeById( id );
+                    }
+                };
+            }
+        };
+    }
+
+    public Iterable<Relationship> relationships()
+    {
+        detach();
+        return new Iterable<Relationship>()
+        {
+            public Iterator<Relationship> iterator()
+            {
+                return new IdIterator<Relationship>( relationshipIds )
+                {
+                    @Override
+                    Relationship get( int index, long id )
+                    {
+                        return index == length - 1 ? lastRelationship :
+                                graphDb.getRelationshipById( id );
+                    }
+                };
+            }
+        };
+    }
+
+    public Iterator<PropertyContainer> iterator()
+    {
+        final Iterator<Node> nodes = nodes().iterator();
+        final Iterator<Relationship> relationships = relationships().iterator();
+        return new PrefetchingIterator<PropertyContainer>()
+        {
+            private boolean node = true;
+
+            @Override
+            protected PropertyContainer fetchNextOrNull()
+            {
+                try
+                {
+                    if ( node )
+                    {
+                        return nodes.hasNext() ? nodes.next() : null;
+                    }
+                    return relationships.hasNext() ? relationships.next() : null;
+                }
+                finally
+                {
+                    node = !node;
+                }
+            }
+        };
+    }
+
+    public int length()
+    {
+        return length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Traversal.defaultPathToString( this );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        detach();
+        if ( length == 0 )
+        {
+            return endNode.hashCode();
+        }
+        // Same as the hash code of a list of the relationships
+        return Arrays.hashCode( relationshipIds );
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if ( this == obj )
+        {
+            return true;
+        }
+        else if ( obj instanceof CompactPath )
+        {
+            CompactPath other = ((CompactPath) obj).detach();
+            detach();
+            return nodeIds[0] == other.nodeIds[0] &&
+                    Arrays.equals( relationshipIds, other.relationshipIds );
+        }
+        else if ( obj instanceof Path )
+        {
+            Path other = (Path) obj;
+            if ( length != other.length() || !startNode().equals( other.startNode() ) )
+            {
+                return false;
+            }
+            int i = 0;
+            for ( Relationship relationship : other.relationships() )
+            {
+                if ( relationship.getId() != relationshipIds[i++] )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static abstract class IdIterator<T> implements Iterator<T>
+    {
+        private final long[] ids;
+        private int index;
+
+        IdIterator( long[] ids )
+        {
+            this.ids = ids;
+        }
+
+        public boolean hasNext()
+        {
+            return index < ids.length;
+        }
+
+        public T next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            int current = index++;
+            return get( current, ids[current] );
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        abstract T get( int index, long id );
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.Evaluation;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.Uniqueness;
+import org.neo4j.kernel.impl.util.PagedBitmap;
+
+/**
+ * A {@link TraverserImpl} for preorder depth first and breadth first
+ * traversals which keeps its branches in a {@link BranchArena} instead of
+ * as {@link TraversalBranchImpl} objects. Only branches which are being
+ * expanded hold on to their node and relationship iterator, queued up
+ * branches are nothing but ids. Uniqueness is checked on ids directly, so
+ * only the {@link Uniqueness} modes in {@link #SUPPORTED_UNIQUENESS} are
+ * supported, other traversals are left to {@link TraverserImpl}.
+ */
+class CompactTraverserImpl extends TraverserImpl
+{
+    private static final Set<Uniqueness> SUPPORTED_UNIQUENESS = EnumSet.of(
+            Uniqueness.NODE_GLOBAL, Uniqueness.RELATIONSHIP_GLOBAL, Uniqueness.NODE_PATH,
+            Uniqueness.RELATIONSHIP_PATH, Uniqueness.NODE_GLOBAL_BITMAP,
+            Uniqueness.RELATIONSHIP_GLOBAL_BITMAP, Uniqueness.NONE );
+
+    CompactTraverserImpl( TraversalDescriptionImpl description, Node startNode )
+    {
+        super( description, startNode );
+    }
+
+    static boolean supports( TraversalDescriptionImpl description )
+    {
+        return (description.branchSelector == Traversal.preorderDepthFirst() ||
+                description.branchSelector == Traversal.preorderBreadthFirst()) &&
+                SUPPORTED_UNIQUENESS.contains( description.uniqueness );
+    }
+
+    @Override
+    public Iterator<Path> iterator()
+    {
+        return new CompactIterator();
+    }
+
+    private class CompactIterator extends PrefetchingIterator<Path>
+    {
+        private final boolean breadthFirst =
+                description.branchSelector == Traversal.preorderBreadthFirst();
+        private final GraphDatabaseService graphDb = startNode.getGraphDatabase();
+        private final BranchArena arena = new BranchArena( 1024 );
+        private final Uniqueness uniqueness = (Uniqueness) description.uniqueness;
+        private final PrimitiveLongSet visited = new PrimitiveLongSet();
+        private PagedBitmap visitedBits;
+
+        // Branches being expanded, a stack of them for depth first
+        private int[] openSlots = new int[16];
+        private Node[] openNodes = new Node[16];
+        private Object[] openRelationships = new Object[16];
+        private int openCount;
+
+        // Branches waiting to be expanded, for breadth first
+        private int[] queue = new int[16];
+        private int queueHead;
+        private int queueSize;
+
+        private boolean started;
+
+        @Override
+        protected Path fetchNextOrNull()
+        {
+            if ( !started )
+            {
+                started = true;
+                Path start = startBranch();
+                if ( start != null )
+                {
+                    return start;
+                }
+            }
+            while ( true )
+            {
+                if ( openCount == 0 )
+                {
+                    if ( queueSize == 0 )
+                    {
+                        return null;
+                    }
+                    int slot = dequeue();
+                    open( slot, graphDb.getNodeById( arena.node( slot ) ) );
+                    continue;
+                }
+
+                int top = openCount - 1;
+                int parent = openSlots[top];
+                @SuppressWarnings( "unchecked" )
+                Iterator<Relationship> relationships = (Iterator<Relationship>) openRelationships[top];
+                if ( !relationships.hasNext() )
+                {
+                    openNodes[top] = null;
+                    openRelationships[top] = null;
+                    openCount--;
+                    arena.close( parent );
+                    continue;
+                }
+                Relationship relationship = relationships.next();
+                long relationshipId = relationship.getId();
+                if ( relationshipId == arena.relationship( parent ) )
+                {
+                    continue;
+                }
+                Node node = relationship.getOtherNode( openNodes[top] );
+                int slot = arena.add( parent, node.getId(), relationshipId );
+                if ( !unique( slot, false ) )
+                {
+                    arena.close( slot );
+                    continue;
+                }
+                CompactPath path = new CompactPath( graphDb, arena, slot, node, relationship );
+                Evaluation evaluation = description.evaluator.evaluate( path );
+                // The path must be detached before its slot can be reused
+                Path result = evaluation.includes() ? path.detach() : null;
+                if ( !evaluation.continues() )
+                {
+                    arena.close( slot );
+                }
+                else if ( breadthFirst )
+                {
+                    enqueue( slot );
+                }
+                else
+                {
+                    open( slot, node );
+                }
+                if ( result != null )
+                {
+                    return result;
+                }
+            }
+        }
+
+        private Path startBranch()
+        {
+            int slot = arena.add( BranchArena.NO_PARENT, startNode.getId(),
+                    BranchArena.NO_RELATIONSHIP );
+            if ( !unique( slot, true ) )
+            {
+                arena.close( slot );
+                return null;
+            }
+            CompactPath path = new CompactPath( graphDb, arena, slot, startNode, null );
+            Evaluation evaluation = description.evaluator.evaluate( path );
+            Path result = evaluation.includes() ? path.detach() : null;
+            // Like StartNodeTraversalBranch the start node is expanded
+            // regardless of evaluation
+            open( slot, startNode );
+            return result;
+        }
+
+        private boolean unique( int slot, boolean first )
+        {
+            switch ( uniqueness )
+            {
+            case NODE_GLOBAL:
+                return visited.add( arena.node( slot ) );
+            case RELATIONSHIP_GLOBAL:
+                return first || visited.add( arena.relationship( slot ) );
+            case NODE_PATH:
+                long nodeId = arena.node( slot );
+                for ( int parent = arena.parent( slot ); parent != BranchArena.NO_PARENT;
+                        parent = arena.parent( parent ) )
+                {
+                    if ( arena.node( parent ) == nodeId )
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            case RELATIONSHIP_PATH:
+                long relationshipId = arena.relationship( slot );
+                for ( int parent = arena.parent( slot ); !first && parent != BranchArena.NO_PARENT;
+                        parent = arena.parent( parent ) )
+                {
+                    if ( arena.relationship( parent ) == relationshipId )
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            case NODE_GLOBAL_BITMAP:
+                return visitedBits().set( arena.node( slot ) );
+            case RELATIONSHIP_GLOBAL_BITMAP:
+                return first || visitedBits().set( arena.relationship( slot ) );
+            case NONE:
+                return true;
+            default:
+                throw new IllegalStateException( "Unsupported uniqueness " + uniqueness );
+            }
+        }
+
+        private PagedBitmap visitedBits()
+        {
+            if ( visitedBits == null )
+            {
+                visitedBits = new PagedBitmap( Boolean.TRUE.equals( description.uniquenessParameter ) );
+            }
+            return visitedBits;
+        }
+
+        private void open( int slot, Node node )
+        {
+            if ( openCount == openSlots.length )
+            {
+                int capacity = openCount * 2;
+                int[] slots = new int[capacity];
+                System.arraycopy( openSlots, 0, slots, 0, openCount );
+                openSlots = slots;
+                Node[] nodes = new Node[capacity];
+                System.arraycopy( openNodes, 0, nodes, 0, openCount );
+                openNodes = nodes;
+                Object[] relationships = new Object[capacity];
+                System.arraycopy( openRelationships, 0, relationships, 0, openCount );
+                openRelationships = relationships;
+            }
+            openSlots[openCount] = slot;
+            openNodes[openCount] = node;
+            openRelationships[openCount] = description.expander.expand( node ).iterator();
+            openCount++;
+        }
+
+        private void enqueue( int slot )
+        {
+            if ( queueSize == queue.length )
+            {
+                int[] newQueue = new int[queue.length * 2];
+                for ( int i = 0; i < queueSize; i++ )
+                {
+                    newQueue[i] = queue[(queueHead + i) % queue.length];
+                }
+                queue = newQueue;
+                queueHead = 0;
+            }
+            queue[(queueHead + queueSize++) % queue.length] = slot;
+        }
+
+        private int dequeue()
+        {
+            int slot = queue[queueHead];
+            queueHead = (queueHead + 1) % queue.length;
+            queueSize--;
+            return slot;
+        }
+    }
+}
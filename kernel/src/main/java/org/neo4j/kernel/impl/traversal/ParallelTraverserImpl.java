@@ -0,0 +1,399 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.graphdb.traversal.UniquenessFilter;
+import org.neo4j.helpers.collection.ClosableIterator;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+
+/**
+ * A {@link TraverserImpl} which expands branches on the threads of the
+ * executor given to {@link TraversalDescriptionImpl#parallel}, either
+ * breadth first one depth at a time or depth first in no particular order.
+ */
+class ParallelTraverserImpl extends TraverserImpl
+{
+    private static final int MAX_BRANCHES_PER_TASK = 256;
+    private static final int TASKS_PER_PROCESSOR = 4;
+    private static final int MAX_QUEUED_PATHS = 1024;
+    private static final long POLL_MILLIS = 100;
+    private static final Object END = new Object();
+
+    ParallelTraverserImpl( TraversalDescriptionImpl description, Node startNode )
+    {
+        super( description, startNode );
+    }
+
+    @Override
+    public Iterator<Path> iterator()
+    {
+        return description.ordered ? new LevelIterator() : new UnorderedIterator();
+    }
+
+    private static int parallelism()
+    {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private static RuntimeException launder( ExecutionException e )
+    {
+        Throwable cause = e.getCause();
+        if ( cause instanceof RuntimeException )
+        {
+            return (RuntimeException) cause;
+        }
+        if ( cause instanceof Error )
+        {
+            throw (Error) cause;
+        }
+        return new RuntimeException( cause );
+    }
+
+    /**
+     * Breadth first, one depth at a time. The branches on a depth are
+     * initialized (evaluated) and expanded into candidates for the next depth
+     * in parallel. The candidates are then checked for uniqueness on the
+     * iterating thread in the order a single threaded breadth first
+     * traversal would see them.
+     */
+    private class LevelIterator extends PrefetchingIterator<Path>
+    {
+        private final TraversalContext context;
+        // Initialized branches, ready to be returned
+        private Iterator<TraversalBranch> levelIterator = Collections.<TraversalBranch>emptyList().iterator();
+        // Branches on the next depth, not yet initialized
+        private List<TraversalBranch> pending;
+
+        LevelIterator()
+        {
+            context = new TraversalContext( description );
+            TraversalBranch start = new StartNodeTraversalBranch( context, startNode,
+                    description.expander );
+            pending = start.next() != null ? Collections.singletonList( start ) :
+                    Collections.<TraversalBranch>emptyList();
+        }
+
+        @Override
+        protected Path fetchNextOrNull()
+        {
+            while ( true )
+            {
+                while ( levelIterator.hasNext() )
+                {
+                    TraversalBranch branch = levelIterator.next();
+                    if ( branch.evaluation().includes() )
+                    {
+                        return branch.position();
+                    }
+                }
+                if ( pending.isEmpty() )
+                {
+                    return null;
+                }
+                List<TraversalBranch> next = expand( pending );
+                levelIterator = pending.iterator();
+                pending = next;
+            }
+        }
+
+        private List<TraversalBranch> expand( List<TraversalBranch> depth )
+        {
+            List<Callable<List<TraversalBranch>>> tasks = new ArrayList<Callable<List<TraversalBranch>>>();
+            int size = depth.size();
+            int chunk = Math.max( 1, Math.min( MAX_BRANCHES_PER_TASK,
+                    size / (parallelism() * TASKS_PER_PROCESSOR) ) );
+            for ( int i = 0; i < size; i += chunk )
+            {
+                final List<TraversalBranch> branches = depth.subList( i, Math.min( size, i + chunk ) );
+                tasks.add( new Callable<List<TraversalBranch>>()
+                {
+                    public List<TraversalBranch> call()
+                    {
+                        List<TraversalBranch> candidates = new ArrayList<TraversalBranch>();
+                        for ( TraversalBranch branch : branches )
+                        {
+                            // The start branch is initialized and expanded already
+                            if ( branch.depth() > 0 )
+                            {
+                                branch.initialize();
+                            }
+                            TraversalBranch candidate;
+                            while ( (candidate = ((TraversalBranchImpl) branch).nextCandidate()) != null )
+                            {
+                                candidates.add( candidate );
+                            }
+                        }
+                        return candidates;
+                    }
+                } );
+            }
+
+            List<TraversalBranch> next = new ArrayList<TraversalBranch>();
+            try
+            {
+                for ( Future<List<TraversalBranch>> future : description.executor.invokeAll( tasks ) )
+                {
+                    for ( TraversalBranch candidate : future.get() )
+                    {
+                        if ( context.okToProceed( candidate ) )
+                        {
+                            next.add( candidate );
+                        }
+                    }
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( e );
+            }
+            catch ( ExecutionException e )
+            {
+                throw launder( e );
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Depth first, where each task traverses a part of the graph on its own
+     * and hands over the shallowest half of its not yet expanded branches to
+     * a new task whenever there are fewer tasks than processors. Paths are
+     * queued up for the iterating thread as soon as they're found. The queue
+     * is bounded, so tasks wait for the iterating thread when it falls
+     * behind. All tasks stop when one of them fails or when the iterator is
+     * closed.
+     */
+    private class UnorderedIterator extends PrefetchingIterator<Path> implements ClosableIterator<Path>
+    {
+        private final BlockingQueue<Object> found = new ArrayBlockingQueue<Object>( MAX_QUEUED_PATHS );
+        private final AtomicInteger tasks = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        private volatile boolean cancelled;
+        private boolean done;
+
+        UnorderedIterator()
+        {
+            TraversalContext context = new TraversalContext( description,
+                    new SynchronizedUniquenessFilter( description.uniqueness.create(
+                            description.uniquenessParameter ) ) );
+            TraversalBranch start = new StartNodeTraversalBranch( context, startNode,
+                    description.expander );
+            if ( start.next() != null )
+            {
+                Deque<TraversalBranch> branches = new ArrayDeque<TraversalBranch>();
+                branches.add( start );
+                submit( branches );
+            }
+            else
+            {
+                done = true;
+            }
+        }
+
+        /**
+         * Stops the tasks still traversing, the iterator returns no more
+         * paths after this.
+         */
+        public void close()
+        {
+            cancelled = true;
+            done = true;
+            found.clear();
+        }
+
+        boolean isRunning()
+        {
+            return tasks.get() > 0;
+        }
+
+        private void submit( final Deque<TraversalBranch> branches )
+        {
+            tasks.incrementAndGet();
+            try
+            {
+                description.executor.execute( new Runnable()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            traverse( branches );
+                        }
+                        catch ( Throwable t )
+                        {
+                            failure.compareAndSet( null, t );
+                            cancelled = true;
+                        }
+                        finally
+                        {
+                            // The iterating thread polls, so it's fine if
+                            // there's no room for the end marker
+                            if ( tasks.decrementAndGet() == 0 )
+                            {
+                                found.offer( END );
+                            }
+                        }
+                    }
+                } );
+            }
+            catch ( RuntimeException e )
+            {
+                tasks.decrementAndGet();
+                throw e;
+            }
+        }
+
+        private void traverse( Deque<TraversalBranch> branches ) throws InterruptedException
+        {
+            List<TraversalBranch> children = new ArrayList<TraversalBranch>();
+            TraversalBranch branch;
+            while ( !cancelled && (branch = branches.pollLast()) != null )
+            {
+                if ( branch.evaluation().includes() )
+                {
+                    queue( branch.position() );
+                }
+                TraversalBranch child;
+                while ( (child = branch.next()) != null )
+                {
+                    children.add( child );
+                }
+                for ( int i = children.size() - 1; i >= 0; i-- )
+                {
+                    branches.addLast( children.get( i ) );
+                }
+                children.clear();
+                if ( branches.size() > 1 && tasks.get() < parallelism() )
+                {
+                    Deque<TraversalBranch> handOver = new ArrayDeque<TraversalBranch>();
+                    for ( int i = branches.size() / 2; i > 0; i-- )
+                    {
+                        handOver.addLast( branches.pollFirst() );
+                    }
+                    submit( handOver );
+                }
+            }
+        }
+
+        private void queue( Path path ) throws InterruptedException
+        {
+            while ( !cancelled )
+            {
+                if ( found.offer( path, POLL_MILLIS, TimeUnit.MILLISECONDS ) )
+                {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        protected Path fetchNextOrNull()
+        {
+            while ( !done )
+            {
+                rethrowFailure();
+                Object next;
+                try
+                {
+                    next = found.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+                }
+                catch ( InterruptedException e )
+                {
+                    close();
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException( e );
+                }
+                if ( next == END || (next == null && !isRunning() && found.isEmpty()) )
+                {
+                    // A task which failed after the check above has set the
+                    // failure before it ended
+                    rethrowFailure();
+                    done = true;
+                }
+                else if ( next != null )
+                {
+                    return (Path) next;
+                }
+            }
+            return null;
+        }
+
+        private void rethrowFailure()
+        {
+            Throwable t = failure.get();
+            if ( t != null )
+            {
+                close();
+                if ( t instanceof RuntimeException )
+                {
+                    throw (RuntimeException) t;
+                }
+                if ( t instanceof Error )
+                {
+                    throw (Error) t;
+                }
+                throw new RuntimeException( t );
+            }
+        }
+    }
+
+    /**
+     * Lets one thread at a time check uniqueness, which is what the
+     * {@link UniquenessFilter}s expect.
+     */
+    private static class SynchronizedUniquenessFilter implements UniquenessFilter
+    {
+        private final UniquenessFilter filter;
+
+        SynchronizedUniquenessFilter( UniquenessFilter filter )
+        {
+            this.filter = filter;
+        }
+
+        public synchronized boolean checkFirst( TraversalBranch branch )
+        {
+            return filter.checkFirst( branch );
+        }
+
+        public synchronized boolean check( TraversalBranch branch )
+        {
+            return filter.check( branch );
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.Arrays;
+
+/**
+ * A set of non-negative longs using open addressing over a long[], so that
+ * no object is created per added value.
+ */
+final class PrimitiveLongSet
+{
+    private static final long EMPTY = -1;
+
+    private long[] table;
+    private int size;
+
+    PrimitiveLongSet()
+    {
+        table = newTable( 1 << 10 );
+    }
+
+    /**
+     * @return {@code true} if {@code value} wasn't already in the set.
+     */
+    boolean add( long value )
+    {
+        if ( size * 2 >= table.length )
+        {
+            rehash();
+        }
+        if ( insert( table, value ) )
+        {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    private static boolean insert( long[] table, long value )
+    {
+        int mask = table.length - 1;
+        for ( int index = hash( value ) & mask;; index = (index + 1) & mask )
+        {
+            long existing = table[index];
+            if ( existing == EMPTY )
+            {
+                table[index] = value;
+                return true;
+            }
+            if ( existing == value )
+            {
+                return false;
+            }
+        }
+    }
+
+    private static int hash( long value )
+    {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void rehash()
+    {
+        long[] newTable = newTable( table.length * 2 );
+        for ( long value : table )
+        {
+            if ( value != EMPTY )
+            {
+                insert( newTable, value );
+            }
+        }
+        table = newTable;
+    }
+
+    private static long[] newTable( int capacity )
+    {
+        long[] table = new long[capacity];
+        Arrays.fill( table, EMPTY );
+        return table;
+    }
+}
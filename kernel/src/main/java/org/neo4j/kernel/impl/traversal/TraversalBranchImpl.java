@@ -27,7 +27,6 @@ import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipExpander;
 import org.neo4j.graphdb.traversal.Evaluation;
 import org.neo4j.graphdb.traversal.TraversalBranch;
-import org.neo4j.kernel.impl.traversal.TraverserImpl.TraverserIterator;
 
 class TraversalBranchImpl implements TraversalBranch//, Path
 {
@@ -57,7 +56,7 @@ class TraversalBranchImpl implements TraversalBranch//, Path
     private Iterator<Relationship> relationships;
     private final Relationship howIGotHere;
     private final int depth;
-    final TraverserIterator traverser;
+    final TraversalContext traverser;
     private Path path;
     private int expandedCount;
     private Evaluation evaluation;
@@ -65,7 +64,7 @@ class TraversalBranchImpl implements TraversalBranch//, Path
     /*
      * For expansion sources for all nodes except the start node
      */
-    TraversalBranchImpl( TraverserIterator traverser, TraversalBranch parent, int depth,
+    TraversalBranchImpl( TraversalContext traverser, TraversalBranch parent, int depth,
             Node source, RelationshipExpander expander, Relationship toHere )
     {
         this.traverser = traverser;
@@ -84,7 +83,7 @@ class TraversalBranchImpl implements TraversalBranch//, Path
     /*
      * For the start node expansion source
      */
-    TraversalBranchImpl( TraverserIterator traverser, Node source,
+    TraversalBranchImpl( TraversalContext traverser, Node source,
             RelationshipExpander expander )
     {
         this.traverser = traverser;
@@ -124,6 +123,23 @@ class TraversalBranchImpl implements TraversalBranch//, Path
     }
 
     public TraversalBranch next()
+    {
+        TraversalBranch next;
+        while ( (next = nextCandidate()) != null )
+        {
+            if ( traverser.okToProceed( next ) )
+            {
+                next.initialize();
+                return next;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * The next branch from here, not yet checked for uniqueness nor initialized
+     */
+    TraversalBranch nextCandidate()
     {
         while ( relationships.hasNext() )
         {
@@ -134,13 +150,8 @@ class TraversalBranchImpl implements TraversalBranch//, Path
             }
             expandedCount++;
             Node node = relationship.getOtherNode( source );
-            TraversalBranch next = new TraversalBranchImpl( traverser, this, depth + 1, node,
+            return new TraversalBranchImpl( traverser, this, depth + 1, node,
                     traverser.description.expander, relationship );
-            if ( traverser.okToProceed( next ) )
-            {
-                next.initialize();
-                return next;
-            }
         }
         return null;
     }
@@ -19,6 +19,8 @@
  */
 package org.neo4j.kernel.impl.traversal;
 
+import java.util.concurrent.ExecutorService;
+
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Expander;
 import org.neo4j.graphdb.Node;
@@ -43,7 +45,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
     public TraversalDescriptionImpl()
     {
         this( StandardExpander.DEFAULT, Uniqueness.NODE_GLOBAL, null,
-                Evaluators.all(), Traversal.preorderDepthFirst() );
+                Evaluators.all(), Traversal.preorderDepthFirst(), null, false, false );
     }
 
     final Expander expander;
@@ -51,16 +53,23 @@ public final class TraversalDescriptionImpl implements TraversalDescription
     final Object uniquenessParameter;
     final Evaluator evaluator;
     final BranchOrderingPolicy branchSelector;
+    final ExecutorService executor;
+    final boolean ordered;
+    final boolean compact;
 
     private TraversalDescriptionImpl( Expander expander,
             UniquenessFactory uniqueness, Object uniquenessParameter,
-            Evaluator evaluator, BranchOrderingPolicy branchSelector )
+            Evaluator evaluator, BranchOrderingPolicy branchSelector,
+            ExecutorService executor, boolean ordered, boolean compact )
     {
         this.expander = expander;
         this.uniqueness = uniqueness;
         this.uniquenessParameter = uniquenessParameter;
         this.evaluator = evaluator;
         this.branchSelector = branchSelector;
+        this.executor = executor;
+        this.ordered = ordered;
+        this.compact = compact;
     }
 
     /* (non-Javadoc)
@@ -68,6 +77,14 @@ public final class TraversalDescriptionImpl implements TraversalDescription
      */
     public Traverser traverse( Node startNode )
     {
+        if ( executor != null )
+        {
+            return new ParallelTraverserImpl( this, startNode );
+        }
+        if ( compact && CompactTraverserImpl.supports( this ) )
+        {
+            return new CompactTraverserImpl( this, startNode );
+        }
         return new TraverserImpl( this, startNode );
     }
 
@@ -77,7 +94,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
     public TraversalDescription uniqueness( UniquenessFactory uniqueness )
     {
         return new TraversalDescriptionImpl( expander, uniqueness, null,
-                evaluator, branchSelector );
+                evaluator, branchSelector, executor, ordered, compact );
     }
 
     /* (non-Javadoc)
@@ -96,7 +113,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
         }
 
         return new TraversalDescriptionImpl( expander, uniqueness, parameter,
-                evaluator, branchSelector );
+                evaluator, branchSelector, executor, ordered, compact );
     }
     
     public TraversalDescription prune( PruneEvaluator pruning )
@@ -131,7 +148,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
         }
         nullCheck( evaluator, Evaluator.class, "RETURN_ALL" );
         return new TraversalDescriptionImpl( expander, uniqueness, uniquenessParameter,
-                addBlaEvaluator( evaluator ), branchSelector );
+                addBlaEvaluator( evaluator ), branchSelector, executor, ordered, compact );
     }
     
     private Evaluator addBlaEvaluator( Evaluator evaluator )
@@ -176,7 +193,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
             return this;
         }
         return new TraversalDescriptionImpl( expander, uniqueness, uniquenessParameter,
-                evaluator, selector );
+                evaluator, selector, null, false, compact );
     }
 
     public TraversalDescription depthFirst()
@@ -189,6 +206,27 @@ public final class TraversalDescriptionImpl implements TraversalDescription
         return order( Traversal.preorderBreadthFirst() );
     }
 
+    public TraversalDescription compact()
+    {
+        if ( compact )
+        {
+            return this;
+        }
+        return new TraversalDescriptionImpl( expander, uniqueness, uniquenessParameter,
+                evaluator, branchSelector, executor, ordered, true );
+    }
+
+    public TraversalDescription parallel( ExecutorService executor, boolean ordered )
+    {
+        nullCheck( executor, ExecutorService.class, "<an executor>" );
+        if ( this.executor == executor && this.ordered == ordered )
+        {
+            return this;
+        }
+        return new TraversalDescriptionImpl( expander, uniqueness, uniquenessParameter,
+                evaluator, branchSelector, executor, ordered, compact );
+    }
+
     /* (non-Javadoc)
      * @see org.neo4j.graphdb.traversal.TraversalDescription#relationships(org.neo4j.graphdb.RelationshipType)
      */
@@ -216,7 +254,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
             return this;
         }
         return new TraversalDescriptionImpl( Traversal.expander( expander ), uniqueness,
-                uniquenessParameter, evaluator, branchSelector );
+                uniquenessParameter, evaluator, branchSelector, executor, ordered, compact );
     }
     
     private static class WrappedPruneEvaluator implements Evaluator
@@ -27,15 +27,14 @@ import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.traversal.BranchSelector;
 import org.neo4j.graphdb.traversal.TraversalBranch;
 import org.neo4j.graphdb.traversal.Traverser;
-import org.neo4j.graphdb.traversal.UniquenessFilter;
 import org.neo4j.helpers.collection.CombiningIterator;
 import org.neo4j.helpers.collection.IterableWrapper;
 import org.neo4j.helpers.collection.PrefetchingIterator;
 
 class TraverserImpl implements Traverser
 {
-    private final TraversalDescriptionImpl description;
-    private final Node startNode;
+    final TraversalDescriptionImpl description;
+    final Node startNode;
 
     TraverserImpl( TraversalDescriptionImpl description, Node startNode )
     {
@@ -93,31 +92,17 @@ class TraverserImpl implements Traverser
 
     class TraverserIterator extends PrefetchingIterator<Path>
     {
-        final UniquenessFilter uniquness;
         private final BranchSelector sourceSelector;
-        final TraversalDescriptionImpl description;
         final Node startNode;
 
         TraverserIterator()
         {
-            this.description = TraverserImpl.this.description;
-            this.uniquness = description.uniqueness.create( description.uniquenessParameter );
             this.startNode = TraverserImpl.this.startNode;
             this.sourceSelector = description.branchSelector.create(
-                    new StartNodeTraversalBranch( this, startNode,
+                    new StartNodeTraversalBranch( new TraversalContext( description ), startNode,
                             description.expander ) );
         }
 
-        boolean okToProceedFirst( TraversalBranch source )
-        {
-            return this.uniquness.checkFirst( source );
-        }
-
-        boolean okToProceed( TraversalBranch source )
-        {
-            return this.uniquness.check( source );
-        }
-
         @Override
         protected Path fetchNextOrNull()
         {
@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * A set of non-negative longs, such as node or relationship ids, kept as a
+ * bitmap. The bitmap is divided into pages which are only allocated when a
+ * bit in them is set, so a sparse set of ids only costs memory for the id
+ * ranges it touches. Pages can be kept off the java heap, in direct buffers.
+ * Not thread safe.
+ */
+public class PagedBitmap
+{
+    private static final int PAGE_SHIFT = 16;
+    private static final int BITS_PER_PAGE = 1 << PAGE_SHIFT;
+    private static final int LONGS_PER_PAGE = BITS_PER_PAGE / Long.SIZE;
+
+    private final boolean offHeap;
+    private long[][] heapPages;
+    private LongBuffer[] directPages;
+    private long size;
+
+    public PagedBitmap( boolean offHeap )
+    {
+        this.offHeap = offHeap;
+        if ( offHeap )
+        {
+            directPages = new LongBuffer[16];
+        }
+        else
+        {
+            heapPages = new long[16][];
+        }
+    }
+
+    /**
+     * Sets the bit for {@code id}.
+     *
+     * @return {@code true} if it wasn't set before.
+     */
+    public boolean set( long id )
+    {
+        if ( id < 0 )
+        {
+            throw new IllegalArgumentException( "Negative id " + id );
+        }
+        int page = pageOf( id );
+        int index = (int) (id & (BITS_PER_PAGE - 1)) >>> 6;
+        long mask = 1L << (id & 63);
+        if ( offHeap )
+        {
+            LongBuffer buffer = directPage( page );
+            long bits = buffer.get( index );
+            if ( (bits & mask) != 0 )
+            {
+                return false;
+            }
+            buffer.put( index, bits | mask );
+        }
+        else
+        {
+            long[] bits = heapPage( page );
+            if ( (bits[index] & mask) != 0 )
+            {
+                return false;
+            }
+            bits[index] |= mask;
+        }
+        size++;
+        return true;
+    }
+
+    public boolean get( long id )
+    {
+        if ( id < 0 )
+        {
+            return false;
+        }
+        int page = pageOf( id );
+        int index = (int) (id & (BITS_PER_PAGE - 1)) >>> 6;
+        long mask = 1L << (id & 63);
+        if ( offHeap )
+        {
+            return page < directPages.length && directPages[page] != null &&
+                    (directPages[page].get( index ) & mask) != 0;
+        }
+        return page < heapPages.length && heapPages[page] != null &&
+                (heapPages[page][index] & mask) != 0;
+    }
+
+    /**
+     * @return the number of set bits.
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes used by allocated pages.
+     */
+    public long allocatedBytes()
+    {
+        long pages = 0;
+        Object[] all = offHeap ? directPages : heapPages;
+        for ( Object page : all )
+        {
+            if ( page != null )
+            {
+                pages++;
+            }
+        }
+        return pages * LONGS_PER_PAGE * 8;
+    }
+
+    private static int pageOf( long id )
+    {
+        long page = id >>> PAGE_SHIFT;
+        if ( page > Integer.MAX_VALUE - 8 )
+        {
+            throw new IllegalArgumentException( "Id " + id + " is too big" );
+        }
+        return (int) page;
+    }
+
+    private long[] heapPage( int page )
+    {
+        if ( page >= heapPages.length )
+        {
+            long[][] pages = new long[newLength( heapPages.length, page )][];
+            System.arraycopy( heapPages, 0, pages, 0, heapPages.length );
+            heapPages = pages;
+        }
+        long[] bits = heapPages[page];
+        if ( bits == null )
+        {
+            bits = heapPages[page] = new long[LONGS_PER_PAGE];
+        }
+        return bits;
+    }
+
+    private LongBuffer directPage( int page )
+    {
+        if ( page >= directPages.length )
+        {
+            LongBuffer[] pages = new LongBuffer[newLength( directPages.length, page )];
+            System.arraycopy( directPages, 0, pages, 0, directPages.length );
+            directPages = pages;
+        }
+        LongBuffer bits = directPages[page];
+        if ( bits == null )
+        {
+            // Direct buffers are zeroed when allocated
+            bits = directPages[page] = ByteBuffer.allocateDirect( LONGS_PER_PAGE * 8 ).order(
+                    ByteOrder.nativeOrder() ).asLongBuffer();
+        }
+        return bits;
+    }
+
+    private static int newLength( int length, int page )
+    {
+        long newLength = Math.max( (long) length * 2, (long) page + 1 );
+        return (int) Math.min( newLength, Integer.MAX_VALUE - 8 );
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.neo4j.kernel.Traversal.bidirectionalTraversal;
+import static org.neo4j.kernel.Traversal.description;
+
+import java.util.Iterator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.BidirectionalTraversalDescription;
+import org.neo4j.graphdb.traversal.Evaluators;
+import org.neo4j.kernel.BranchCollisionPolicies;
+import org.neo4j.kernel.SideSelectorPolicies;
+import org.neo4j.kernel.Uniqueness;
+
+public class TestBidirectionalTraversal extends AbstractTestBase
+{
+    @BeforeClass
+    public static void setupGraph()
+    {
+        /*
+         *     (B)-->(D)-->(E)
+         *     ^     ^      \
+         *    /     /        v
+         *  (A)-->(C)-->(G)-->(F)
+         */
+        createGraph( "A TO B", "A TO C", "B TO D", "C TO D", "D TO E", "E TO F", "C TO G",
+                "G TO F" );
+    }
+
+    private static BidirectionalTraversalDescription outgoingPaths()
+    {
+        return bidirectionalTraversal().mirroredSides( description().breadthFirst()
+                .uniqueness( Uniqueness.NODE_PATH )
+                .relationships( DynamicRelationshipType.withName( "TO" ), Direction.OUTGOING ) );
+    }
+
+    @Test
+    public void returnsEachPathBetweenStartAndEndOnce()
+    {
+        for ( SideSelectorPolicies sideSelector : SideSelectorPolicies.values() )
+        {
+            expectPaths( outgoingPaths().sideSelector( sideSelector, Integer.MAX_VALUE )
+                    .traverse( node( "A" ), node( "F" ) ),
+                    "A,B,D,E,F", "A,C,D,E,F", "A,C,G,F" );
+        }
+    }
+
+    @Test
+    public void respectsMaxDepth()
+    {
+        for ( SideSelectorPolicies sideSelector : SideSelectorPolicies.values() )
+        {
+            expectPaths( outgoingPaths().sideSelector( sideSelector, 3 ).traverse(
+                    node( "A" ), node( "F" ) ), "A,C,G,F" );
+        }
+    }
+
+    @Test
+    public void findsOnlyTheShortestPaths()
+    {
+        expectPaths( outgoingPaths().collisionPolicy( BranchCollisionPolicies.SHORTEST_PATH )
+                .traverse( node( "A" ), node( "E" ) ), "A,B,D,E", "A,C,D,E" );
+        expectPaths( outgoingPaths().collisionPolicy( BranchCollisionPolicies.SHORTEST_PATH )
+                .sideSelector( SideSelectorPolicies.CHEAPEST_LEVEL, Integer.MAX_VALUE )
+                .traverse( node( "A" ), node( "F" ) ), "A,C,G,F" );
+    }
+
+    @Test
+    public void sidesCanHaveDifferentDescriptions()
+    {
+        // Only G is within reach of both sides
+        BidirectionalTraversalDescription description = bidirectionalTraversal()
+                .startSide( description().breadthFirst().uniqueness( Uniqueness.NODE_PATH )
+                        .relationships( DynamicRelationshipType.withName( "TO" ), Direction.OUTGOING )
+                        .evaluator( Evaluators.toDepth( 2 ) ) )
+                .endSide( description().evaluator( Evaluators.toDepth( 1 ) ) );
+        expectPaths( description.traverse( node( "A" ), node( "F" ) ), "A,C,G,F" );
+    }
+
+    @Test
+    public void collisionEvaluatorFiltersPaths()
+    {
+        expectPaths( outgoingPaths().collisionEvaluator( Evaluators.atDepth( 4 ) ).traverse(
+                node( "A" ), node( "F" ) ), "A,B,D,E,F", "A,C,D,E,F" );
+    }
+
+    @Test
+    public void pathsGoFromStartToEnd()
+    {
+        Iterator<Path> paths = outgoingPaths().collisionPolicy(
+                BranchCollisionPolicies.SHORTEST_PATH ).traverse( node( "A" ), node( "F" ) ).iterator();
+        Path path = paths.next();
+        assertFalse( paths.hasNext() );
+        assertEquals( 3, path.length() );
+        assertEquals( node( "A" ), path.startNode() );
+        assertEquals( node( "F" ), path.endNode() );
+        assertEquals( node( "F" ), path.lastRelationship().getEndNode() );
+        assertEquals( node( "G" ), path.lastRelationship().getStartNode() );
+    }
+}
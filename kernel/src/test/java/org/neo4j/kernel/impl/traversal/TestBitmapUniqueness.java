@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.Uniqueness;
+
+public class TestBitmapUniqueness extends AbstractTestBase
+{
+    private static final int NODES = 200;
+
+    @BeforeClass
+    public static void setupGraph()
+    {
+        List<String> description = new ArrayList<String>();
+        for ( int i = 0; i < NODES; i++ )
+        {
+            for ( int j = 1; j <= 3; j++ )
+            {
+                description.add( i + " TO " + ((i * 7 + j) % NODES) );
+            }
+        }
+        createGraph( description.toArray( new String[description.size()] ) );
+    }
+
+    @Test
+    public void bitmapUniquenessVisitsSameNodesAsSetUniqueness()
+    {
+        List<Node> expected = nodes( Traversal.description().uniqueness( Uniqueness.NODE_GLOBAL ) );
+        assertEquals( NODES, expected.size() );
+        for ( Boolean offHeap : new Boolean[] { null, false, true } )
+        {
+            assertEquals( expected, nodes( Traversal.description().uniqueness(
+                    Uniqueness.NODE_GLOBAL_BITMAP, offHeap ) ) );
+        }
+
+        List<Relationship> expectedRelationships = relationships( Traversal.description()
+                .uniqueness( Uniqueness.RELATIONSHIP_GLOBAL ) );
+        assertEquals( expectedRelationships, relationships( Traversal.description().uniqueness(
+                Uniqueness.RELATIONSHIP_GLOBAL_BITMAP ) ) );
+    }
+
+    @Test
+    public void approximateUniquenessNeverVisitsNodesTwice()
+    {
+        List<Node> small = nodes( Traversal.description().uniqueness(
+                Uniqueness.NODE_GLOBAL_APPROXIMATE, 10 ) );
+        assertEquals( small.size(), new HashSet<Node>( small ).size() );
+        assertTrue( small.size() <= NODES );
+
+        List<Node> sized = nodes( Traversal.description().uniqueness(
+                Uniqueness.NODE_GLOBAL_APPROXIMATE, NODES * 100 ) );
+        assertEquals( new HashSet<Node>( sized ).size(), sized.size() );
+        assertTrue( sized.size() > NODES * 9 / 10 );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void bitmapUniquenessOnlyAcceptsBooleanParameter()
+    {
+        Traversal.description().uniqueness( Uniqueness.NODE_GLOBAL_BITMAP, 10 ).traverse(
+                node( "0" ) ).iterator();
+    }
+
+    private List<Node> nodes( TraversalDescription description )
+    {
+        List<Node> result = new ArrayList<Node>();
+        for ( Node node : description.traverse( node( "0" ) ).nodes() )
+        {
+            result.add( node );
+        }
+        return result;
+    }
+
+    private List<Relationship> relationships( TraversalDescription description )
+    {
+        List<Relationship> result = new ArrayList<Relationship>();
+        for ( Path path : description.traverse( node( "0" ) ) )
+        {
+            if ( path.lastRelationship() != null )
+            {
+                result.add( path.lastRelationship() );
+            }
+        }
+        Set<Relationship> unique = new HashSet<Relationship>( result );
+        assertEquals( unique.size(), result.size() );
+        return result;
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.Evaluation;
+import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.graphdb.traversal.Evaluators;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.graphdb.traversal.UniquenessFactory;
+import org.neo4j.graphdb.traversal.UniquenessFilter;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.Uniqueness;
+
+public class TestCompactTraversal extends AbstractTestBase
+{
+    private static final int NODES = 100;
+
+    @BeforeClass
+    public static void setupGraph()
+    {
+        List<String> description = new ArrayList<String>();
+        for ( int i = 0; i < NODES; i++ )
+        {
+            for ( int j = 1; j <= 3; j++ )
+            {
+                description.add( i + " TO " + ((i * 3 + j) % NODES) );
+            }
+        }
+        createGraph( description.toArray( new String[description.size()] ) );
+    }
+
+    @Test
+    public void compactTraversalReturnsSameAsRegularTraversal()
+    {
+        TraversalDescription base = Traversal.description().evaluator( Evaluators.toDepth( 4 ) );
+        for ( Uniqueness uniqueness : Uniqueness.values() )
+        {
+            for ( TraversalDescription description : new TraversalDescription[] {
+                    base.uniqueness( uniqueness ).depthFirst(),
+                    base.uniqueness( uniqueness ).breadthFirst() } )
+            {
+                List<Path> expected = paths( description );
+                List<Path> actual = paths( description.compact() );
+                assertEquals( uniqueness.name(), asStrings( expected ), asStrings( actual ) );
+                for ( int i = 0; i < expected.size(); i++ )
+                {
+                    assertEquals( expected.get( i ), actual.get( i ) );
+                    assertEquals( actual.get( i ), expected.get( i ) );
+                    assertEquals( expected.get( i ).hashCode(), actual.get( i ).hashCode() );
+                    assertEquals( expected.get( i ).length(), actual.get( i ).length() );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void evaluatorCanLookAtTheWholePath()
+    {
+        Evaluator evaluator = new Evaluator()
+        {
+            public Evaluation evaluate( Path path )
+            {
+                int count = 0;
+                for ( Iterator<?> iterator = path.iterator(); iterator.hasNext(); iterator.next() )
+                {
+                    count++;
+                }
+                assertEquals( path.length() * 2 + 1, count );
+                assertEquals( "0", path.startNode().getProperty( "name" ) );
+                return Evaluation.ofIncludes( path.length() % 2 == 0 );
+            }
+        };
+        TraversalDescription description = Traversal.description().evaluator(
+                Evaluators.toDepth( 5 ) ).evaluator( evaluator );
+        assertEquals( asStrings( paths( description ) ), asStrings( paths( description.compact() ) ) );
+    }
+
+    @Test
+    public void otherUniquenessIsLeftToTheRegularTraverser()
+    {
+        UniquenessFactory custom = new UniquenessFactory()
+        {
+            public UniquenessFilter create( Object optionalParameter )
+            {
+                return new UniquenessFilter()
+                {
+                    public boolean checkFirst( TraversalBranch branch )
+                    {
+                        return true;
+                    }
+
+                    public boolean check( TraversalBranch branch )
+                    {
+                        return branch.depth() <= 2 && branch.parent().node() != null;
+                    }
+                };
+            }
+        };
+        TraversalDescription description = Traversal.description().uniqueness( custom );
+        assertFalse( description.compact().traverse( node( "0" ) ) instanceof CompactTraverserImpl );
+        assertEquals( asStrings( paths( description ) ), asStrings( paths( description.compact() ) ) );
+        assertFalse( description.uniqueness( Uniqueness.NODE_RECENT ).compact().traverse(
+                node( "0" ) ) instanceof CompactTraverserImpl );
+        assertTrue( description.uniqueness( Uniqueness.NODE_PATH ).compact().traverse(
+                node( "0" ) ) instanceof CompactTraverserImpl );
+    }
+
+    @Test
+    public void arenaReusesSlotsOfBranchesWhichAreDone()
+    {
+        BranchArena arena = new BranchArena( 16 );
+        int root = arena.add( BranchArena.NO_PARENT, 0, BranchArena.NO_RELATIONSHIP );
+        int child = arena.add( root, 1, 10 );
+        int grandChild = arena.add( child, 2, 20 );
+        assertEquals( 2, arena.depth( grandChild ) );
+        arena.close( child );
+        assertEquals( 3, arena.size() );
+        arena.close( grandChild );
+        assertEquals( 1, arena.size() );
+        int other = arena.add( root, 3, 30 );
+        assertTrue( other == child || other == grandChild );
+        assertEquals( root, arena.parent( other ) );
+        assertEquals( 3, arena.node( other ) );
+        arena.close( root );
+        arena.close( other );
+        assertEquals( 0, arena.size() );
+    }
+
+    private List<Path> paths( TraversalDescription description )
+    {
+        List<Path> result = new ArrayList<Path>();
+        for ( Path path : description.traverse( node( "0" ) ) )
+        {
+            result.add( path );
+        }
+        return result;
+    }
+
+    private List<String> asStrings( List<Path> paths )
+    {
+        NodePathRepresentation representation = new NodePathRepresentation(
+                NAME_PROPERTY_REPRESENTATION );
+        List<String> result = new ArrayList<String>();
+        for ( Path path : paths )
+        {
+            result.add( representation.represent( path ) );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Expander;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.Predicate;
+import org.neo4j.kernel.AbstractGraphDatabase;
+import org.neo4j.kernel.StandardExpander;
+import org.neo4j.kernel.StandardExpander.NodeIdPredicate;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.impl.core.NodeManager;
+
+public class TestExpanderIdFilters extends AbstractTestBase
+{
+    private static final RelationshipType TO = DynamicRelationshipType.withName( "TO" );
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+
+    @BeforeClass
+    public static void setup()
+    {
+        createGraph( "a TO b", "a TO c", "d TO a", "a KNOWS e", "f KNOWS a" );
+    }
+
+    @Test
+    public void excludedTypesAreNotExpanded()
+    {
+        expectOtherNodes( Traversal.expanderForAllTypes().remove( KNOWS ), "b", "c", "d" );
+        expectOtherNodes( Traversal.expanderForAllTypes( Direction.INCOMING ).remove( TO ), "f" );
+    }
+
+    @Test
+    public void directionsAreSelectedPerType()
+    {
+        expectOtherNodes( Traversal.expanderForAllTypes( Direction.OUTGOING ).remove( KNOWS ).add(
+                KNOWS, Direction.INCOMING ), "b", "c", "f" );
+        expectOtherNodes( Traversal.expanderForAllTypes().remove( TO ).add( TO,
+                Direction.INCOMING ), "d", "e", "f" );
+    }
+
+    @Test
+    public void nodeIdFiltersSkipOtherNodes()
+    {
+        StandardExpander expander = StandardExpander.DEFAULT.addNodeIdFilter( not( "c", "f" ) );
+        expectOtherNodes( expander, "b", "d", "e" );
+        expectOtherNodes( expander.remove( KNOWS ), "b", "d" );
+        expectOtherNodes( expander.addNodeIdFilter( not( "b" ) ).addNodeFilter( new Predicate<Node>()
+        {
+            public boolean accept( Node item )
+            {
+                return !item.getProperty( "name" ).equals( "d" );
+            }
+        } ), "e" );
+    }
+
+    @Test
+    public void nodeIdFiltersSeeUncommittedRelationships()
+    {
+        Transaction tx = beginTx();
+        try
+        {
+            Node g = node( "a" ).getGraphDatabase().createNode();
+            g.setProperty( "name", "g" );
+            node( "a" ).createRelationshipTo( g, TO );
+            expectOtherNodes( outgoing().remove( KNOWS ).addNodeIdFilter( not( "b" ) ), "c", "g" );
+        }
+        finally
+        {
+            tx.finish();
+        }
+        expectOtherNodes( outgoing().remove( KNOWS ).addNodeIdFilter( not( "b" ) ), "c" );
+    }
+
+    @Test
+    public void nodeIdFiltersDontCacheFilteredOutRelationships()
+    {
+        Node start = node( "a" );
+        NodeManager nodeManager = ( (AbstractGraphDatabase) start.getGraphDatabase() ).getConfig()
+                .getGraphDbModule()
+                .getNodeManager();
+        Set<Long> relationships = new HashSet<Long>();
+        for ( Relationship relationship : start.getRelationships() )
+        {
+            relationships.add( relationship.getId() );
+            nodeManager.removeRelationshipFromCache( relationship.getId() );
+        }
+
+        expectOtherNodes( StandardExpander.DEFAULT.addNodeIdFilter( not( "b", "c", "d", "e", "f" ) ) );
+
+        for ( long relationship : relationships )
+        {
+            assertNull( nodeManager.getRelIfCached( relationship ) );
+        }
+    }
+
+    private static StandardExpander outgoing()
+    {
+        return (StandardExpander) Traversal.expanderForAllTypes( Direction.OUTGOING );
+    }
+
+    private static NodeIdPredicate not( String... names )
+    {
+        final Set<Long> ids = new HashSet<Long>();
+        for ( String name : names )
+        {
+            ids.add( node( name ).getId() );
+        }
+        return new NodeIdPredicate()
+        {
+            public boolean accept( long nodeId )
+            {
+                return !ids.contains( nodeId );
+            }
+        };
+    }
+
+    private static void expectOtherNodes( Expander expander, String... names )
+    {
+        Set<String> found = new HashSet<String>();
+        Node start = node( "a" );
+        for ( Relationship relationship : expander.expand( start ) )
+        {
+            found.add( (String) relationship.getOtherNode( start ).getProperty( "name" ) );
+        }
+        assertEquals( new HashSet<String>( Arrays.asList( names ) ), found );
+    }
+}
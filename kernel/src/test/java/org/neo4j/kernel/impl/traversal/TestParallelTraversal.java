@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.Evaluation;
+import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.graphdb.traversal.Evaluators;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.helpers.collection.ClosableIterator;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.Uniqueness;
+
+public class TestParallelTraversal extends AbstractTestBase
+{
+    private static final int NODES = 300;
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void setupGraph()
+    {
+        // Each node points to three others, with plenty of ways to reach
+        // the same node so that uniqueness matters
+        List<String> description = new ArrayList<String>();
+        for ( int i = 0; i < NODES; i++ )
+        {
+            for ( int j = 1; j <= 3; j++ )
+            {
+                description.add( i + " TO " + ((i * 3 + j) % NODES) );
+            }
+        }
+        createGraph( description.toArray( new String[description.size()] ) );
+        executor = Executors.newFixedThreadPool( 4 );
+    }
+
+    @AfterClass
+    public static void shutdownExecutor()
+    {
+        executor.shutdown();
+    }
+
+    @Test
+    public void orderedParallelTraversalReturnsSameAsBreadthFirst()
+    {
+        TraversalDescription description = Traversal.description().evaluator(
+                Evaluators.toDepth( 5 ) );
+        for ( Uniqueness uniqueness : new Uniqueness[] { Uniqueness.NODE_GLOBAL,
+                Uniqueness.RELATIONSHIP_GLOBAL, Uniqueness.NODE_PATH } )
+        {
+            TraversalDescription unique = description.uniqueness( uniqueness );
+            assertEquals( paths( unique.breadthFirst() ),
+                    paths( unique.parallel( executor, true ) ) );
+        }
+    }
+
+    @Test
+    public void unorderedParallelTraversalReturnsSameSetOfNodes()
+    {
+        TraversalDescription description = Traversal.description();
+        List<String> expected = nodes( description );
+        List<String> actual = nodes( description.parallel( executor, false ) );
+        assertEquals( NODES, actual.size() );
+        assertEquals( new HashSet<String>( expected ), new HashSet<String>( actual ) );
+
+        description = description.uniqueness( Uniqueness.NODE_PATH ).evaluator(
+                Evaluators.toDepth( 4 ) );
+        expected = paths( description );
+        actual = paths( description.parallel( executor, false ) );
+        assertEquals( expected.size(), actual.size() );
+        assertEquals( new HashSet<String>( expected ), new HashSet<String>( actual ) );
+    }
+
+    @Test
+    public void failingEvaluatorFailsTheTraversal()
+    {
+        Evaluator failing = new Evaluator()
+        {
+            public Evaluation evaluate( Path path )
+            {
+                if ( path.length() == 3 )
+                {
+                    throw new IllegalStateException( "Too deep" );
+                }
+                return Evaluation.INCLUDE_AND_CONTINUE;
+            }
+        };
+        for ( boolean ordered : new boolean[] { true, false } )
+        {
+            try
+            {
+                paths( Traversal.description().evaluator( failing ).parallel( executor, ordered ) );
+                fail( "Should have failed" );
+            }
+            catch ( IllegalStateException e )
+            {   // Good
+            }
+        }
+    }
+
+    @Test
+    public void closingUnorderedTraversalStopsItsThreads() throws Exception
+    {
+        // Far more paths than are ever iterated through
+        TraversalDescription description = Traversal.description().uniqueness(
+                Uniqueness.NODE_PATH ).evaluator( Evaluators.toDepth( 15 ) );
+        ExecutorService ownExecutor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            Iterator<Path> paths = description.parallel( ownExecutor, false ).traverse(
+                    node( "0" ) ).iterator();
+            for ( int i = 0; i < 10; i++ )
+            {
+                paths.next();
+            }
+            ((ClosableIterator<Path>) paths).close();
+            assertTrue( !paths.hasNext() );
+        }
+        finally
+        {
+            ownExecutor.shutdown();
+        }
+        assertTrue( ownExecutor.awaitTermination( 10, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void failingUnorderedTraversalStopsItsThreads() throws Exception
+    {
+        Evaluator failing = new Evaluator()
+        {
+            public Evaluation evaluate( Path path )
+            {
+                if ( path.length() == 5 )
+                {
+                    throw new IllegalStateException( "Too deep" );
+                }
+                return Evaluation.INCLUDE_AND_CONTINUE;
+            }
+        };
+        ExecutorService ownExecutor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            paths( Traversal.description().uniqueness( Uniqueness.NODE_PATH ).evaluator(
+                    failing ).parallel( ownExecutor, false ) );
+            fail( "Should have failed" );
+        }
+        catch ( IllegalStateException e )
+        {   // Good
+        }
+        finally
+        {
+            ownExecutor.shutdown();
+        }
+        assertTrue( ownExecutor.awaitTermination( 10, TimeUnit.SECONDS ) );
+    }
+
+    private List<String> paths( TraversalDescription description )
+    {
+        List<String> result = new ArrayList<String>();
+        NodePathRepresentation representation = new NodePathRepresentation(
+                NAME_PROPERTY_REPRESENTATION );
+        for ( Path path : description.traverse( node( "0" ) ) )
+        {
+            result.add( representation.represent( path ) );
+        }
+        return result;
+    }
+
+    private List<String> nodes( TraversalDescription description )
+    {
+        List<String> result = new ArrayList<String>();
+        for ( Path path : description.traverse( node( "0" ) ) )
+        {
+            result.add( (String) path.endNode().getProperty( "name" ) );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TestPagedBitmap
+{
+    @Test
+    public void testSetAndGet()
+    {
+        for ( boolean offHeap : new boolean[] { false, true } )
+        {
+            PagedBitmap bitmap = new PagedBitmap( offHeap );
+            Set<Long> ids = new HashSet<Long>();
+            Random random = new Random( 1234 );
+            for ( int i = 0; i < 10000; i++ )
+            {
+                long id = random.nextInt( 1 << 24 );
+                assertEquals( ids.add( id ), bitmap.set( id ) );
+            }
+            assertEquals( ids.size(), bitmap.size() );
+            for ( long id = 0; id < 1 << 24; id += 7 )
+            {
+                assertEquals( ids.contains( id ), bitmap.get( id ) );
+            }
+            for ( long id : ids )
+            {
+                assertTrue( bitmap.get( id ) );
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyAllocatesTouchedPages()
+    {
+        PagedBitmap bitmap = new PagedBitmap( false );
+        assertEquals( 0, bitmap.allocatedBytes() );
+        assertTrue( bitmap.set( 5L * Integer.MAX_VALUE ) );
+        assertFalse( bitmap.set( 5L * Integer.MAX_VALUE ) );
+        assertTrue( bitmap.set( 5L * Integer.MAX_VALUE + 1 ) );
+        assertEquals( 8192, bitmap.allocatedBytes() );
+        assertFalse( bitmap.get( 5L * Integer.MAX_VALUE + 2 ) );
+        assertFalse( bitmap.get( 0 ) );
+    }
+}
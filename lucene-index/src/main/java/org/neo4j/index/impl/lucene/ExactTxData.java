@@ -98,7 +98,16 @@ public class ExactTxData extends TxData
 
     private TxData toFullTxData()
     {
-        FullTxData data = new FullTxData( index );
+        return fill( new FullTxData( index ) );
+    }
+
+    private TxData toTermTxData()
+    {
+        return fill( new TermTxData( index ) );
+    }
+
+    private TxData fill( TxData data )
+    {
         if ( this.data != null )
         {
             for ( Map.Entry<String, Map<Object, Set<Object>>> entry : this.data.entrySet() )
@@ -130,9 +139,9 @@ public class ExactTxData extends TxData
             return Collections.<Long>emptyList();
         }
 
-        TxData fullTxData = toFullTxData();
-        holder.set( fullTxData );
-        return fullTxData.query( holder, query, contextOrNull );
+        TxData termTxData = toTermTxData();
+        holder.set( termTxData );
+        return termTxData.query( holder, query, contextOrNull );
     }
 
     @Override
@@ -145,9 +154,9 @@ public class ExactTxData extends TxData
         
         if ( key == null || value == null )
         {
-            TxData fullData = toFullTxData();
-            fullData.remove( holder, entityId, key, value );
-            holder.set( fullData );
+            TxData termData = toTermTxData();
+            termData.remove( holder, entityId, key, value );
+            holder.set( termData );
         }
         else
         {
@@ -22,6 +22,7 @@ package org.neo4j.index.impl.lucene;
 import static org.neo4j.index.impl.lucene.LuceneDataSource.LUCENE_VERSION;
 import static org.neo4j.index.impl.lucene.LuceneDataSource.getDirectory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -36,9 +37,13 @@ import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.neo4j.graphdb.index.BatchInserterIndex;
 import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.helpers.Pair;
@@ -46,30 +51,41 @@ import org.neo4j.index.lucene.ValueContext;
 import org.neo4j.kernel.impl.batchinsert.BatchInserter;
 import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
 import org.neo4j.kernel.impl.cache.LruCache;
+import org.neo4j.kernel.impl.util.FileUtils;
 import org.neo4j.kernel.impl.util.IoPrimitiveUtils;
+import org.neo4j.kernel.impl.util.StringLogger;
 
 class LuceneBatchInserterIndex implements BatchInserterIndex
 {
     private final IndexIdentifier identifier;
     private final IndexType type;
+    private final String dbStoreDir;
+    private final String storeDir;
+    private final int indexingThreads;
     
     private IndexWriter writer;
+    private PartialIndexWriters partialWriters;
     private boolean writerModified;
     private IndexSearcher searcher;
     private final boolean createdNow;
     private Map<String, LruCache<String, Collection<Long>>> cache;
     private int updateCount;
     private int commitBatchSize = 500000;
+    private long documentCount;
+    private long startTime;
 
     LuceneBatchInserterIndex( LuceneBatchInserterIndexProvider provider,
-            BatchInserter inserter, IndexIdentifier identifier, Map<String, String> config )
+            BatchInserter inserter, IndexIdentifier identifier, Map<String, String> config,
+            int indexingThreads )
     {
-        String dbStoreDir = ((BatchInserterImpl) inserter).getStore();
+        this.dbStoreDir = ((BatchInserterImpl) inserter).getStore();
         Pair<String, Boolean> storeDir = LuceneDataSource.getStoreDir( dbStoreDir );
         this.createdNow = storeDir.other();
+        this.storeDir = storeDir.first();
         this.identifier = identifier;
         this.type = IndexType.getIndexType( identifier, config );
-        this.writer = instantiateWriter( storeDir.first() );
+        this.indexingThreads = indexingThreads;
+        this.writer = instantiateWriter( getDirectory( this.storeDir, identifier ), false );
     }
     
     /**
@@ -85,6 +101,16 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
 
     public void add( long entityId, Map<String, Object> properties )
     {
+        if ( documentCount++ == 0 )
+        {
+            startTime = System.currentTimeMillis();
+        }
+        if ( indexingThreads > 1 )
+        {
+            addToPartialIndex( entityId, properties );
+            return;
+        }
+
         try
         {
             Document document = identifier.entityType.newDocument( entityId );
@@ -107,11 +133,67 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         }
     }
 
+    /**
+     * Only the base document is created here, the properties are added to it
+     * and analyzed by the {@link PartialIndexWriters} worker threads.
+     */
+    private void addToPartialIndex( long entityId, Map<String, Object> properties )
+    {
+        Document document = identifier.entityType.newDocument( entityId );
+        Collection<Pair<String, Object>> values = new ArrayList<Pair<String, Object>>();
+        for ( Map.Entry<String, Object> entry : properties.entrySet() )
+        {
+            String key = entry.getKey();
+            for ( Object oneValue : IoPrimitiveUtils.asArray( entry.getValue() ) )
+            {
+                oneValue = correctValue( oneValue );
+                values.add( Pair.of( key, oneValue ) );
+                if ( createdNow )
+                {
+                    addToCache( entityId, key, oneValue );
+                }
+            }
+        }
+        partialWriters().add( entityId, document, values );
+    }
+
+    private PartialIndexWriters partialWriters()
+    {
+        if ( partialWriters == null )
+        {
+            IndexWriter[] writers = new IndexWriter[indexingThreads];
+            for ( int i = 0; i < writers.length; i++ )
+            {
+                try
+                {
+                    writers[i] = instantiateWriter( FSDirectory.open( partialDirectory( i ) ), true );
+                }
+                catch ( IOException e )
+                {
+                    throw new RuntimeException( e );
+                }
+            }
+            partialWriters = new PartialIndexWriters( type, writers, commitBatchSize );
+        }
+        return partialWriters;
+    }
+
+    private File partialDirectory( int number )
+    {
+        File indexDirectory = LuceneDataSource.getFileDirectory( storeDir, identifier );
+        return new File( new File( new File( new File( storeDir, "lucene-partial" ),
+                indexDirectory.getParentFile().getName() ), identifier.indexName ), "" + number );
+    }
+
+    private static Object correctValue( Object value )
+    {
+        return value instanceof ValueContext ? ((ValueContext) value).getCorrectValue() : value.toString();
+    }
+
     private void addSingleProperty( long entityId, Document document, String key, Object value ) {
         for ( Object oneValue : IoPrimitiveUtils.asArray(value) )
         {
-            boolean isValueContext = oneValue instanceof ValueContext;
-            oneValue = isValueContext ? ((ValueContext) oneValue).getCorrectValue() : oneValue.toString();
+            oneValue = correctValue( oneValue );
             type.addToDocument( document, key, oneValue );
             if ( createdNow )
             {
@@ -185,6 +267,10 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         {
             removeFromCache( entityId );
             writer.deleteDocuments( type.idTermQuery( entityId ) );
+            if ( partialWriters != null )
+            {
+                partialWriters.deleteDocuments( type.idTermQuery( entityId ) );
+            }
             add( entityId, properties );
         }
         catch ( IOException e )
@@ -229,13 +315,19 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         }
     }
 
-    private IndexWriter instantiateWriter( String directory )
+    private IndexWriter instantiateWriter( Directory directory, boolean partial )
     {
         try
         {
             IndexWriterConfig writerConfig = new IndexWriterConfig( LUCENE_VERSION, type.analyzer );
-            writerConfig.setRAMBufferSizeMB( determineGoodBufferSize( writerConfig.getRAMBufferSizeMB() ) );
-            IndexWriter writer = new IndexWriter( getDirectory( directory, identifier ), writerConfig );
+            writerConfig.setRAMBufferSizeMB( determineGoodBufferSize( writerConfig.getRAMBufferSizeMB(),
+                    partial ? indexingThreads : 1 ) );
+            if ( partial )
+            {
+                // Leftovers from an earlier, interrupted, batch insertion
+                writerConfig.setOpenMode( OpenMode.CREATE );
+            }
+            IndexWriter writer = new IndexWriter( directory, writerConfig );
             return writer;
         }
         catch ( IOException e )
@@ -244,9 +336,9 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         }
     }
     
-    private double determineGoodBufferSize( double atLeast )
+    private double determineGoodBufferSize( double atLeast, int sharedBy )
     {
-        double heapHint = (double)(Runtime.getRuntime().maxMemory()/(1024*1024*14));
+        double heapHint = (double)(Runtime.getRuntime().maxMemory()/(1024*1024*14*sharedBy));
         double result = Math.max( atLeast, heapHint );
         return Math.min( result, 700 );
     }
@@ -276,6 +368,14 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
                     result.close();
                 }
                 IndexReader newReader = IndexReader.open( writer, true );
+                if ( partialWriters != null )
+                {
+                    IndexReader[] partialReaders = partialWriters.openReaders();
+                    IndexReader[] readers = new IndexReader[partialReaders.length+1];
+                    readers[0] = newReader;
+                    System.arraycopy( partialReaders, 0, readers, 1, partialReaders.length );
+                    newReader = new MultiReader( readers );
+                }
                 result = new IndexSearcher( newReader );
                 writerModified = false;
             }
@@ -297,7 +397,20 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         {
             if ( this.writer != null )
             {
+                long indexTime = System.currentTimeMillis() - startTime;
+                long mergeTime = 0;
+                if ( partialWriters != null )
+                {
+                    long mergeStart = System.currentTimeMillis();
+                    Directory[] partialDirectories = partialWriters.mergeInto( this.writer );
+                    indexTime = mergeStart - startTime;
+                    mergeTime = System.currentTimeMillis() - mergeStart;
+                    partialWriters = null;
+                    deletePartialDirectories( partialDirectories );
+                }
+                long optimizeStart = System.currentTimeMillis();
                 this.writer.optimize( true );
+                logStatistics( indexTime, mergeTime, System.currentTimeMillis() - optimizeStart );
             }
             LuceneUtil.close( this.writer );
         }
@@ -311,6 +424,28 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         }
     }
 
+    private void deletePartialDirectories( Directory[] directories ) throws IOException
+    {
+        for ( int i = 0; i < directories.length; i++ )
+        {
+            directories[i].close();
+            FileUtils.deleteRecursively( partialDirectory( i ) );
+        }
+    }
+
+    private void logStatistics( long indexTime, long mergeTime, long optimizeTime )
+    {
+        if ( documentCount == 0 )
+        {
+            return;
+        }
+        long docsPerSecond = indexTime > 0 ? documentCount*1000/indexTime : documentCount;
+        StringLogger.getLogger( dbStoreDir ).logMessage( "Batch indexed " + documentCount +
+                " documents into " + identifier + " in " + indexTime + "ms (" + docsPerSecond +
+                " docs/s, " + indexingThreads + " thread(s)), merged partial indexes in " +
+                mergeTime + "ms, optimized in " + optimizeTime + "ms", true );
+    }
+
     private IndexHits<Long> query( Query query, final String key, final Object value )
     {
         try
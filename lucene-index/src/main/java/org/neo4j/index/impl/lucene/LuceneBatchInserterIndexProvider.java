@@ -51,10 +51,31 @@ public class LuceneBatchInserterIndexProvider implements BatchInserterIndexProvi
     final IndexStore indexStore;
     final EntityType nodeEntityType;
     final EntityType relationshipEntityType;
+    private final int indexingThreads;
 
     public LuceneBatchInserterIndexProvider( final BatchInserter inserter )
     {
+        this( inserter, 1 );
+    }
+
+    /**
+     * Creates a provider whose indexes build and analyze documents on
+     * {@code indexingThreads} threads. Given more than one thread each index
+     * writes into that many partial indexes, which are merged into the real
+     * index when the index is shut down. Number of indexed documents,
+     * throughput and merge time is logged per index at that point.
+     *
+     * @param inserter the {@link BatchInserter} the indexes are used together with.
+     * @param indexingThreads number of threads to index documents with.
+     */
+    public LuceneBatchInserterIndexProvider( final BatchInserter inserter, int indexingThreads )
+    {
+        if ( indexingThreads < 1 )
+        {
+            throw new IllegalArgumentException( "Need at least one indexing thread, not " + indexingThreads );
+        }
         this.inserter = inserter;
+        this.indexingThreads = indexingThreads;
         this.indexStore = ((BatchInserterImpl) inserter).getIndexStore();
         this.nodeEntityType = new EntityType()
         {
@@ -136,11 +157,11 @@ public class LuceneBatchInserterIndexProvider implements BatchInserterIndexProvi
     private BatchInserterIndex index( IndexIdentifier identifier, Map<String, String> config )
     {
         // We don't care about threads here... c'mon... it's a
-        // single-threaded batch inserter
+        // single-threaded batch inserter (indexing threads are internal to each index)
         LuceneBatchInserterIndex index = indexes.get( identifier );
         if ( index == null )
         {
-            index = new LuceneBatchInserterIndex( this, inserter, identifier, config );
+            index = new LuceneBatchInserterIndex( this, inserter, identifier, config, indexingThreads );
             indexes.put( identifier, index );
         }
         return index;
@@ -232,6 +232,10 @@ public abstract class LuceneIndex<T extends PropertyContainer> implements Index<
             {
                 ids.addAll( luceneTx.getAddedIds( this, keyForDirectLookup, valueForDirectLookup ) );
             }
+            else if ( canMergeAdditionsAsIds( additionalParametersOrNull ) )
+            {
+                ids.addAll( luceneTx.getAddedIds( this, query, additionalParametersOrNull ) );
+            }
             else
             {
                 additionsSearcher = luceneTx.getAdditionsAsSearcher( this, additionalParametersOrNull );
@@ -287,6 +291,18 @@ public abstract class LuceneIndex<T extends PropertyContainer> implements Index<
         return newEntityIterator( idIterator );
     }
 
+    /**
+     * Transaction additions can be matched directly against the transaction
+     * state and merged in as ids, instead of merging in a searcher over a
+     * separate transaction Lucene index, as long as the result doesn't need
+     * to be sorted or ranked together with the committed hits.
+     */
+    private static boolean canMergeAdditionsAsIds( QueryContext contextOrNull )
+    {
+        return contextOrNull == null || (contextOrNull.getSorting() == null &&
+                contextOrNull.getTop() <= 0 && !contextOrNull.getTradeCorrectnessForSpeed());
+    }
+
     @Override
     public boolean isWriteable()
     {
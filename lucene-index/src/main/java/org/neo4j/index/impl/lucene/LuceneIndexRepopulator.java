@@ -0,0 +1,375 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.index.BatchInserterIndex;
+import org.neo4j.helpers.Pair;
+import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * (Re)builds lucene node and relationship indexes, auto indexes included,
+ * from what's in the graph store. The node/relationship store is split into
+ * id ranges which a number of threads scan in parallel, reading the
+ * property chains directly from the store without going through any cache.
+ * Properties with any of the requested keys are fed to a
+ * {@link BatchInserterIndex} from a {@link LuceneBatchInserterIndexProvider}.
+ *
+ * Since this is built on top of a {@link BatchInserterImpl} the database
+ * must not be running while repopulating. Any existing data in a
+ * repopulated index is removed first, so that it will contain exactly what
+ * the store says. Call {@link #shutdown()} when done to have the indexes
+ * written to disk, the {@link BatchInserterImpl} is then shut down
+ * separately.
+ */
+public class LuceneIndexRepopulator
+{
+    static final String NODE_AUTO_INDEX = "node_auto_index";
+    static final String RELATIONSHIP_AUTO_INDEX = "relationship_auto_index";
+
+    private static final int RANGE_SIZE = 10000;
+    private static final List<Pair<Long, Map<String, Object>>> END_OF_SCAN =
+            new ArrayList<Pair<Long, Map<String, Object>>>();
+
+    private final BatchInserterImpl inserter;
+    private final LuceneBatchInserterIndexProvider provider;
+    private final int scanThreads;
+    private final Set<IndexIdentifier> repopulated = new HashSet<IndexIdentifier>();
+
+    public LuceneIndexRepopulator( BatchInserterImpl inserter )
+    {
+        this( inserter, Runtime.getRuntime().availableProcessors(), 1 );
+    }
+
+    /**
+     * @param inserter the {@link BatchInserterImpl} to read the store with.
+     * @param scanThreads number of threads scanning the store in parallel.
+     * @param indexingThreads number of threads each index analyzes and writes
+     * documents with, see {@link LuceneBatchInserterIndexProvider}.
+     */
+    public LuceneIndexRepopulator( BatchInserterImpl inserter, int scanThreads, int indexingThreads )
+    {
+        if ( scanThreads < 1 )
+        {
+            throw new IllegalArgumentException( "Need at least one scan thread, not " + scanThreads );
+        }
+        this.inserter = inserter;
+        this.scanThreads = scanThreads;
+        this.provider = new LuceneBatchInserterIndexProvider( inserter, indexingThreads );
+    }
+
+    /**
+     * Repopulates the node index {@code indexName} with all node properties
+     * having any of the given keys.
+     *
+     * @param indexName the name of the index.
+     * @param config the configuration of the index, or {@code null} to use
+     * the configuration of an already existing index.
+     * @param keys the property keys to index.
+     * @return the number of indexed nodes.
+     */
+    public long repopulateNodeIndex( String indexName, Map<String, String> config,
+            Collection<String> keys )
+    {
+        IndexIdentifier identifier = new IndexIdentifier( LuceneCommand.NODE,
+                provider.nodeEntityType, indexName );
+        return repopulate( identifier, config, keys );
+    }
+
+    /**
+     * Repopulates the relationship index {@code indexName} with all
+     * relationship properties having any of the given keys.
+     *
+     * @param indexName the name of the index.
+     * @param config the configuration of the index, or {@code null} to use
+     * the configuration of an already existing index.
+     * @param keys the property keys to index.
+     * @return the number of indexed relationships.
+     */
+    public long repopulateRelationshipIndex( String indexName, Map<String, String> config,
+            Collection<String> keys )
+    {
+        IndexIdentifier identifier = new IndexIdentifier( LuceneCommand.RELATIONSHIP,
+                provider.relationshipEntityType, indexName );
+        return repopulate( identifier, config, keys );
+    }
+
+    /**
+     * Repopulates the node auto index with the given keys, which should be
+     * the keys configured as auto indexed for nodes.
+     *
+     * @param keys the auto indexed node property keys.
+     * @return the number of indexed nodes.
+     */
+    public long repopulateNodeAutoIndex( Collection<String> keys )
+    {
+        return repopulateNodeIndex( NODE_AUTO_INDEX, autoIndexConfig( Node.class,
+                NODE_AUTO_INDEX ), keys );
+    }
+
+    /**
+     * Repopulates the relationship auto index with the given keys, which
+     * should be the keys configured as auto indexed for relationships.
+     *
+     * @param keys the auto indexed relationship property keys.
+     * @return the number of indexed relationships.
+     */
+    public long repopulateRelationshipAutoIndex( Collection<String> keys )
+    {
+        return repopulateRelationshipIndex( RELATIONSHIP_AUTO_INDEX, autoIndexConfig(
+                Relationship.class, RELATIONSHIP_AUTO_INDEX ), keys );
+    }
+
+    private Map<String, String> autoIndexConfig( Class<? extends PropertyContainer> cls,
+            String indexName )
+    {
+        // The auto indexes are created with the default configuration
+        return provider.indexStore.has( cls, indexName ) ? null :
+                LuceneIndexImplementation.EXACT_CONFIG;
+    }
+
+    /**
+     * Writes the repopulated indexes to disk. Doesn't shut down the
+     * {@link BatchInserterImpl}.
+     */
+    public void shutdown()
+    {
+        provider.shutdown();
+    }
+
+    private long repopulate( IndexIdentifier identifier, Map<String, String> config,
+            Collection<String> keys )
+    {
+        if ( !repopulated.add( identifier ) )
+        {
+            throw new IllegalStateException( identifier + " has already been repopulated" );
+        }
+        boolean nodes = identifier.entityTypeByte == LuceneCommand.NODE;
+        if ( config == null && !provider.indexStore.has( nodes ? Node.class : Relationship.class,
+                identifier.indexName ) )
+        {
+            throw new IllegalArgumentException( "No configuration given for " + identifier +
+                    ", which doesn't exist" );
+        }
+
+        // Start from an empty index
+        File directory = LuceneDataSource.getFileDirectory( LuceneDataSource.getStoreDir(
+                inserter.getStore() ).first(), identifier );
+        try
+        {
+            FileUtils.deleteRecursively( directory );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+        BatchInserterIndex index = nodes ? provider.nodeIndex( identifier.indexName, config ) :
+                provider.relationshipIndex( identifier.indexName, config );
+
+        long startTime = System.currentTimeMillis();
+        long highId = nodes ? inserter.getNodeHighId() : inserter.getRelationshipHighId();
+        long count = scan( index, nodes, new HashSet<String>( keys ), highId );
+        StringLogger.getLogger( inserter.getStore() ).logMessage( "Repopulated " + identifier +
+                " with " + count + " entities of " + highId + " scanned ids in " +
+                (System.currentTimeMillis() - startTime) + "ms (" + scanThreads +
+                " scan thread(s))" );
+        return count;
+    }
+
+    /**
+     * The scanning threads claim {@link #RANGE_SIZE} ids at a time and hand
+     * over what they find per range to the calling thread, which is the only
+     * one adding to the index since a {@link BatchInserterIndex} isn't safe
+     * for concurrent use.
+     */
+    private long scan( BatchInserterIndex index, final boolean nodes, final Set<String> keys,
+            final long highId )
+    {
+        final BlockingQueue<List<Pair<Long, Map<String, Object>>>> queue =
+                new ArrayBlockingQueue<List<Pair<Long, Map<String, Object>>>>( scanThreads * 2 );
+        final AtomicLong nextRange = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread[] scanners = new Thread[scanThreads];
+        for ( int i = 0; i < scanners.length; i++ )
+        {
+            scanners[i] = new Thread( "Index repopulation scanner " + i )
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        long start;
+                        while ( failure.get() == null &&
+                                (start = nextRange.getAndAdd( RANGE_SIZE )) < highId )
+                        {
+                            List<Pair<Long, Map<String, Object>>> found =
+                                    new ArrayList<Pair<Long, Map<String, Object>>>();
+                            long end = Math.min( start + RANGE_SIZE, highId );
+                            for ( long id = start; id < end; id++ )
+                            {
+                                Map<String, Object> properties = nodes ?
+                                        inserter.getNodeProperties( id, keys ) :
+                                        inserter.getRelationshipProperties( id, keys );
+                                if ( properties != null && !properties.isEmpty() )
+                                {
+                                    found.add( Pair.of( id, properties ) );
+                                }
+                            }
+                            if ( !found.isEmpty() && !hand( found ) )
+                            {
+                                return;
+                            }
+                        }
+                    }
+                    catch ( Throwable t )
+                    {
+                        failure.compareAndSet( null, t );
+                    }
+                    finally
+                    {
+                        hand( END_OF_SCAN );
+                    }
+                }
+
+                private boolean hand( List<Pair<Long, Map<String, Object>>> found )
+                {
+                    try
+                    {
+                        while ( !queue.offer( found, 100, TimeUnit.MILLISECONDS ) )
+                        {
+                            if ( done.get() )
+                            {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.interrupted();
+                        return false;
+                    }
+                }
+            };
+            scanners[i].start();
+        }
+
+        long count = 0;
+        try
+        {
+            for ( int running = scanners.length; running > 0; )
+            {
+                List<Pair<Long, Map<String, Object>>> found = queue.take();
+                if ( found == END_OF_SCAN )
+                {
+                    running--;
+                    continue;
+                }
+                for ( Pair<Long, Map<String, Object>> entity : found )
+                {
+                    index.add( entity.first(), entity.other() );
+                }
+                count += found.size();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.interrupted();
+            throw new RuntimeException( e );
+        }
+        finally
+        {
+            done.set( true );
+            for ( Thread scanner : scanners )
+            {
+                try
+                {
+                    scanner.join();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.interrupted();
+                }
+            }
+        }
+        if ( failure.get() != null )
+        {
+            throw new RuntimeException( "Failed to scan the store", failure.get() );
+        }
+        return count;
+    }
+
+    public static void main( String[] args )
+    {
+        if ( args.length < 4 || !(args[1].equals( "node" ) || args[1].equals( "relationship" )) )
+        {
+            System.out.println( "Usage: " + LuceneIndexRepopulator.class.getSimpleName() +
+                    " <store dir> node|relationship <index name>|auto <key>[,<key>...]" );
+            System.exit( 1 );
+        }
+        boolean nodes = args[1].equals( "node" );
+        String indexName = args[2];
+        Collection<String> keys = Arrays.asList( args[3].split( "," ) );
+        BatchInserterImpl inserter = new BatchInserterImpl( args[0] );
+        try
+        {
+            LuceneIndexRepopulator repopulator = new LuceneIndexRepopulator( inserter );
+            long count;
+            if ( indexName.equals( "auto" ) )
+            {
+                count = nodes ? repopulator.repopulateNodeAutoIndex( keys ) :
+                        repopulator.repopulateRelationshipAutoIndex( keys );
+            }
+            else
+            {
+                count = nodes ? repopulator.repopulateNodeIndex( indexName, null, keys ) :
+                        repopulator.repopulateRelationshipIndex( indexName, null, keys );
+            }
+            repopulator.shutdown();
+            System.out.println( "Indexed " + count + " " + (nodes ? "nodes" : "relationships") );
+        }
+        finally
+        {
+            inserter.shutdown();
+        }
+    }
+}
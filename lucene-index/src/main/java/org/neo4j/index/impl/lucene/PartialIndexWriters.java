@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.neo4j.helpers.Pair;
+
+/**
+ * Used by {@link LuceneBatchInserterIndex} to build and analyze documents on
+ * a number of worker threads. Each worker owns an {@link IndexWriter} writing
+ * into a partial index of its own, so that the workers never contend for the
+ * same writer. The partial indexes are merged into the real index when done,
+ * see {@link #mergeInto(IndexWriter)}.
+ */
+class PartialIndexWriters
+{
+    private static final int QUEUE_SIZE_PER_WORKER = 10000;
+    private static final Pair<Document, Collection<Pair<String, Object>>> DONE =
+            Pair.<Document, Collection<Pair<String, Object>>>of( null, null );
+
+    private final IndexType type;
+    private final int commitBatchSize;
+    private final Worker[] workers;
+    private final Object pendingLock = new Object();
+    private int pending;
+    private volatile Throwable failure;
+
+    PartialIndexWriters( IndexType type, IndexWriter[] writers, int commitBatchSize )
+    {
+        this.type = type;
+        this.commitBatchSize = commitBatchSize;
+        this.workers = new Worker[writers.length];
+        for ( int i = 0; i < writers.length; i++ )
+        {
+            workers[i] = new Worker( i, writers[i] );
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Hands over a document to be completed with the key/value pairs in
+     * {@code values} and written by one of the workers. Blocks if that worker
+     * is too far behind.
+     */
+    void add( long entityId, Document document, Collection<Pair<String, Object>> values )
+    {
+        assertNoFailure();
+        synchronized ( pendingLock )
+        {
+            pending++;
+        }
+        try
+        {
+            workers[(int) (entityId % workers.length)].queue.put(
+                    Pair.of( document, values ) );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.interrupted();
+            throw new RuntimeException( e );
+        }
+    }
+
+    /**
+     * Waits for all documents handed over so far to have been written.
+     */
+    void drain()
+    {
+        synchronized ( pendingLock )
+        {
+            while ( pending > 0 && failure == null )
+            {
+                try
+                {
+                    pendingLock.wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.interrupted();
+                    throw new RuntimeException( e );
+                }
+            }
+        }
+        assertNoFailure();
+    }
+
+    void deleteDocuments( Query query ) throws IOException
+    {
+        drain();
+        for ( Worker worker : workers )
+        {
+            worker.writer.deleteDocuments( query );
+        }
+    }
+
+    /**
+     * @return near real-time readers of all the partial indexes, as they
+     * look after all documents handed over so far have been written.
+     */
+    IndexReader[] openReaders() throws IOException
+    {
+        drain();
+        IndexReader[] readers = new IndexReader[workers.length];
+        for ( int i = 0; i < workers.length; i++ )
+        {
+            readers[i] = IndexReader.open( workers[i].writer, true );
+        }
+        return readers;
+    }
+
+    /**
+     * Stops the workers, closes the partial indexes and adds them to
+     * {@code target}.
+     *
+     * @return the directories of the partial indexes, which can be deleted
+     * since their contents now lives in {@code target}.
+     */
+    Directory[] mergeInto( IndexWriter target ) throws IOException
+    {
+        drain();
+        Directory[] directories = new Directory[workers.length];
+        for ( int i = 0; i < workers.length; i++ )
+        {
+            Worker worker = workers[i];
+            stop( worker );
+            directories[i] = worker.writer.getDirectory();
+            worker.writer.close();
+        }
+        assertNoFailure();
+        target.addIndexes( directories );
+        return directories;
+    }
+
+    private void stop( Worker worker )
+    {
+        try
+        {
+            worker.queue.put( DONE );
+            worker.join();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.interrupted();
+            throw new RuntimeException( e );
+        }
+    }
+
+    private void assertNoFailure()
+    {
+        if ( failure != null )
+        {
+            throw new RuntimeException( "Batch indexing failed", failure );
+        }
+    }
+
+    private void done()
+    {
+        synchronized ( pendingLock )
+        {
+            if ( --pending == 0 )
+            {
+                pendingLock.notifyAll();
+            }
+        }
+    }
+
+    private void failed( Throwable cause )
+    {
+        failure = cause;
+        synchronized ( pendingLock )
+        {
+            pendingLock.notifyAll();
+        }
+    }
+
+    private class Worker extends Thread
+    {
+        private final IndexWriter writer;
+        private final BlockingQueue<Pair<Document, Collection<Pair<String, Object>>>> queue =
+                new ArrayBlockingQueue<Pair<Document, Collection<Pair<String, Object>>>>( QUEUE_SIZE_PER_WORKER );
+        private int updateCount;
+
+        Worker( int number, IndexWriter writer )
+        {
+            super( "Lucene batch indexer " + number );
+            this.writer = writer;
+            setDaemon( true );
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while ( true )
+                {
+                    Pair<Document, Collection<Pair<String, Object>>> item = queue.take();
+                    if ( item == DONE )
+                    {
+                        break;
+                    }
+                    try
+                    {
+                        if ( failure == null )
+                        {
+                            write( item.first(), item.other() );
+                        }
+                    }
+                    catch ( Throwable t )
+                    {
+                        failed( t );
+                    }
+                    finally
+                    {
+                        done();
+                    }
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                failed( e );
+            }
+        }
+
+        private void write( Document document, Collection<Pair<String, Object>> values )
+                throws IOException
+        {
+            for ( Pair<String, Object> value : values )
+            {
+                type.addToDocument( document, value.first(), value.other() );
+            }
+            writer.addDocument( document );
+            if ( ++updateCount == commitBatchSize )
+            {
+                writer.commit();
+                updateCount = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,718 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.neo4j.index.lucene.QueryContext;
+import org.neo4j.index.lucene.ValueContext;
+
+/**
+ * Transaction state which keeps an in-memory inverted map of
+ * field -> term -> entity ids instead of a whole Lucene index in a
+ * {@link org.apache.lucene.store.RAMDirectory}, like {@link FullTxData} does.
+ *
+ * Values are turned into terms the same way as they are when written to the
+ * real index, i.e. via {@link IndexType#addToDocument(Document, String, Object)}
+ * and the {@link IndexType#analyzer} of the index. This makes it possible to
+ * match the most common queries (term, prefix, wildcard, range and boolean
+ * combinations of those) directly against the transaction state. Any other
+ * query makes this data convert itself into a {@link FullTxData} and let it
+ * answer instead.
+ */
+class TermTxData extends TxData
+{
+    private final Map<Long, EntityState> entities = new HashMap<Long, EntityState>();
+    private final Map<String, Map<String, Set<Long>>> terms =
+            new HashMap<String, Map<String, Set<Long>>>();
+    private final Map<String, Map<Number, Set<Long>>> numbers =
+            new HashMap<String, Map<Number, Set<Long>>>();
+    private final Set<Long> orphans = new HashSet<Long>();
+    private final Map<String, Set<Long>> keyOrphans = new HashMap<String, Set<Long>>();
+
+    TermTxData( LuceneIndex index )
+    {
+        super( index );
+    }
+
+    @Override
+    void add( TxDataHolder holder, Object entityId, String key, Object value )
+    {
+        long id = idOf( entityId );
+        EntityState entity = entities.get( id );
+        if ( entity == null )
+        {
+            entity = new EntityState( entityId );
+            entities.put( id, entity );
+        }
+
+        if ( key == null && value == null )
+        {
+            entity.orphan = true;
+            orphans.add( id );
+        }
+        else if ( value == null )
+        {
+            entity.orphanKeys.add( key );
+            idSet( keyOrphans, key, true ).add( id );
+        }
+        else
+        {
+            Collection<Object> values = entity.values.get( key );
+            if ( values == null )
+            {
+                values = new ArrayList<Object>();
+                entity.values.put( key, values );
+            }
+            values.add( value );
+            indexValue( id, key, value );
+        }
+    }
+
+    @Override
+    void remove( TxDataHolder holder, Object entityId, String key, Object value )
+    {
+        long id = idOf( entityId );
+        EntityState entity = entities.get( id );
+        if ( entity == null )
+        {
+            return;
+        }
+
+        if ( key == null && value == null )
+        {
+            for ( Map.Entry<String, Collection<Object>> entry : entity.values.entrySet() )
+            {
+                unindexValues( id, entry.getKey(), entry.getValue() );
+            }
+            entity.values.clear();
+            for ( String orphanKey : entity.orphanKeys )
+            {
+                removeId( keyOrphans, orphanKey, id );
+            }
+            entity.orphanKeys.clear();
+            entity.orphan = false;
+            orphans.remove( id );
+        }
+        else
+        {
+            Collection<Object> values = entity.values.get( key );
+            if ( values != null )
+            {
+                unindexValues( id, key, values );
+                if ( value == null )
+                {
+                    values.clear();
+                }
+                else
+                {
+                    while ( values.remove( value ) )
+                    {
+                        // Remove all occurrences, the same way the document does
+                    }
+                }
+
+                if ( values.isEmpty() )
+                {
+                    entity.values.remove( key );
+                }
+                else
+                {
+                    for ( Object remaining : values )
+                    {
+                        indexValue( id, key, remaining );
+                    }
+                }
+            }
+        }
+
+        if ( entity.isEmpty() )
+        {
+            entities.remove( id );
+        }
+    }
+
+    @Override
+    Collection<Long> query( TxDataHolder holder, Query query, QueryContext contextOrNull )
+    {
+        Set<Long> result = match( query );
+        if ( result == null )
+        {
+            TxData fullTxData = toFullTxData();
+            holder.set( fullTxData );
+            return fullTxData.query( holder, query, contextOrNull );
+        }
+        result.addAll( orphans );
+        return result;
+    }
+
+    @Override
+    Collection<Long> get( TxDataHolder holder, String key, Object value )
+    {
+        value = value instanceof ValueContext ? ((ValueContext) value).getCorrectValue() : value.toString();
+        Set<Long> result = new HashSet<Long>();
+        if ( value instanceof Number && numbers.containsKey( key ) )
+        {
+            Set<Long> ids = numbers.get( key ).get( value );
+            if ( ids != null )
+            {
+                result.addAll( ids );
+            }
+        }
+        else
+        {
+            Term term = ((TermQuery) index.type.get( key, value )).getTerm();
+            Set<Long> ids = termIds( term.field(), term.text() );
+            if ( ids != null )
+            {
+                result.addAll( ids );
+            }
+        }
+        return result;
+    }
+
+    @Override
+    Collection<Long> getOrphans( String key )
+    {
+        Set<Long> ids = keyOrphans.get( key );
+        if ( orphans.isEmpty() && ids == null )
+        {
+            return null;
+        }
+        Set<Long> result = new HashSet<Long>( orphans );
+        if ( ids != null )
+        {
+            result.addAll( ids );
+        }
+        return result;
+    }
+
+    @Override
+    void close()
+    {
+    }
+
+    @Override
+    IndexSearcher asSearcher( TxDataHolder holder, QueryContext context )
+    {
+        TxData fullTxData = toFullTxData();
+        holder.set( fullTxData );
+        return fullTxData.asSearcher( holder, context );
+    }
+
+    private TxData toFullTxData()
+    {
+        FullTxData data = new FullTxData( index );
+        for ( EntityState entity : entities.values() )
+        {
+            for ( Map.Entry<String, Collection<Object>> entry : entity.values.entrySet() )
+            {
+                for ( Object value : entry.getValue() )
+                {
+                    data.add( null, entity.entityId, entry.getKey(), value );
+                }
+            }
+            for ( String orphanKey : entity.orphanKeys )
+            {
+                data.add( null, entity.entityId, orphanKey, null );
+            }
+            if ( entity.orphan )
+            {
+                data.add( null, entity.entityId, null, null );
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Returns the ids matching {@code query}, including the orphans of the
+     * keys the query refers to, or {@code null} if the query is of a kind
+     * which can't be matched against the terms in here.
+     */
+    private Set<Long> match( Query query )
+    {
+        if ( query instanceof BooleanQuery )
+        {
+            return matchBoolean( (BooleanQuery) query );
+        }
+        else if ( query instanceof MatchAllDocsQuery )
+        {
+            return new HashSet<Long>( entities.keySet() );
+        }
+        else if ( query instanceof NumericRangeQuery )
+        {
+            NumericRangeQuery<?> range = (NumericRangeQuery<?>) query;
+            return withKeyOrphans( range.getField(), matchNumericRange( range ) );
+        }
+
+        String field = null;
+        TermMatcher matcher = null;
+        if ( query instanceof TermQuery )
+        {
+            Term term = ((TermQuery) query).getTerm();
+            field = term.field();
+            if ( !numbers.containsKey( field ) )
+            {
+                Set<Long> ids = termIds( field, term.text() );
+                return withKeyOrphans( field, ids != null ? new HashSet<Long>( ids ) : new HashSet<Long>() );
+            }
+        }
+        else if ( query instanceof PrefixQuery )
+        {
+            final Term prefix = ((PrefixQuery) query).getPrefix();
+            field = prefix.field();
+            matcher = new TermMatcher()
+            {
+                public boolean matches( String term )
+                {
+                    return term.startsWith( prefix.text() );
+                }
+            };
+        }
+        else if ( query instanceof WildcardQuery )
+        {
+            Term wildcard = ((WildcardQuery) query).getTerm();
+            field = wildcard.field();
+            final Pattern pattern = wildcardToPattern( wildcard.text() );
+            matcher = new TermMatcher()
+            {
+                public boolean matches( String term )
+                {
+                    return pattern.matcher( term ).matches();
+                }
+            };
+        }
+        else if ( query instanceof TermRangeQuery && ((TermRangeQuery) query).getCollator() == null )
+        {
+            final TermRangeQuery range = (TermRangeQuery) query;
+            field = range.getField();
+            matcher = new TermMatcher()
+            {
+                public boolean matches( String term )
+                {
+                    return inRange( term, range.getLowerTerm(), range.includesLower(),
+                            range.getUpperTerm(), range.includesUpper() );
+                }
+            };
+        }
+
+        if ( matcher == null || numbers.containsKey( field ) )
+        {
+            return null;
+        }
+        return withKeyOrphans( field, matchTerms( field, matcher ) );
+    }
+
+    private Set<Long> matchBoolean( BooleanQuery query )
+    {
+        if ( query.getMinimumNumberShouldMatch() > 0 )
+        {
+            return null;
+        }
+
+        Set<Long> required = null;
+        Set<Long> optional = new HashSet<Long>();
+        Set<Long> prohibited = new HashSet<Long>();
+        boolean hasOptional = false;
+        for ( BooleanClause clause : query.clauses() )
+        {
+            Set<Long> ids = match( clause.getQuery() );
+            if ( ids == null )
+            {
+                return null;
+            }
+
+            Occur occur = clause.getOccur();
+            if ( occur == Occur.MUST )
+            {
+                if ( required == null )
+                {
+                    required = ids;
+                }
+                else
+                {
+                    required.retainAll( ids );
+                }
+            }
+            else if ( occur == Occur.MUST_NOT )
+            {
+                prohibited.addAll( ids );
+            }
+            else
+            {
+                optional.addAll( ids );
+                hasOptional = true;
+            }
+        }
+
+        // Same as in Lucene: a query with only prohibited clauses matches nothing
+        Set<Long> result = required != null ? required : (hasOptional ? optional : new HashSet<Long>());
+        result.removeAll( prohibited );
+        return result;
+    }
+
+    private Set<Long> matchTerms( String field, TermMatcher matcher )
+    {
+        Set<Long> result = new HashSet<Long>();
+        Map<String, Set<Long>> fieldTerms = terms.get( field );
+        if ( fieldTerms != null )
+        {
+            for ( Map.Entry<String, Set<Long>> entry : fieldTerms.entrySet() )
+            {
+                if ( matcher.matches( entry.getKey() ) )
+                {
+                    result.addAll( entry.getValue() );
+                }
+            }
+        }
+        return result;
+    }
+
+    private Set<Long> matchNumericRange( NumericRangeQuery<?> range )
+    {
+        Set<Long> result = new HashSet<Long>();
+        Map<Number, Set<Long>> fieldNumbers = numbers.get( range.getField() );
+        if ( fieldNumbers == null )
+        {
+            return result;
+        }
+
+        Number min = range.getMin();
+        Number max = range.getMax();
+        NumericKind kind = min != null ? NumericKind.of( min ) : max != null ? NumericKind.of( max ) : null;
+        for ( Map.Entry<Number, Set<Long>> entry : fieldNumbers.entrySet() )
+        {
+            Number number = entry.getKey();
+            // Lucene only matches numeric fields of the same type as the query
+            if ( kind != null && NumericKind.of( number ) != kind )
+            {
+                continue;
+            }
+            if ( min != null && compare( number, min ) < (range.includesMin() ? 0 : 1) )
+            {
+                continue;
+            }
+            if ( max != null && compare( number, max ) > (range.includesMax() ? 0 : -1) )
+            {
+                continue;
+            }
+            result.addAll( entry.getValue() );
+        }
+        return result;
+    }
+
+    private static int compare( Number number, Number bound )
+    {
+        return NumericKind.of( number ).isIntegral() ?
+                compareLongs( number.longValue(), bound.longValue() ) :
+                Double.compare( number.doubleValue(), bound.doubleValue() );
+    }
+
+    private static int compareLongs( long first, long other )
+    {
+        return first < other ? -1 : (first == other ? 0 : 1);
+    }
+
+    private static boolean inRange( String term, String lower, boolean includeLower,
+            String upper, boolean includeUpper )
+    {
+        if ( lower != null )
+        {
+            int comparison = term.compareTo( lower );
+            if ( comparison < 0 || (comparison == 0 && !includeLower) )
+            {
+                return false;
+            }
+        }
+        if ( upper != null )
+        {
+            int comparison = term.compareTo( upper );
+            if ( comparison > 0 || (comparison == 0 && !includeUpper) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Pattern wildcardToPattern( String wildcard )
+    {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for ( char c : wildcard.toCharArray() )
+        {
+            if ( c == '*' || c == '?' )
+            {
+                if ( literal.length() > 0 )
+                {
+                    regex.append( Pattern.quote( literal.toString() ) );
+                    literal.setLength( 0 );
+                }
+                regex.append( c == '*' ? ".*" : "." );
+            }
+            else
+            {
+                literal.append( c );
+            }
+        }
+        if ( literal.length() > 0 )
+        {
+            regex.append( Pattern.quote( literal.toString() ) );
+        }
+        return Pattern.compile( regex.toString(), Pattern.DOTALL );
+    }
+
+    private Set<Long> termIds( String field, String term )
+    {
+        Map<String, Set<Long>> fieldTerms = terms.get( field );
+        return fieldTerms != null ? fieldTerms.get( term ) : null;
+    }
+
+    private Set<Long> withKeyOrphans( String field, Set<Long> ids )
+    {
+        Set<Long> orphanIds = keyOrphans.get( field );
+        if ( orphanIds != null )
+        {
+            ids.addAll( orphanIds );
+        }
+        return ids;
+    }
+
+    private void indexValue( long id, String key, Object value )
+    {
+        for ( Fieldable field : fieldsOf( key, value ) )
+        {
+            if ( field instanceof NumericField )
+            {
+                Number number = ((NumericField) field).getNumericValue();
+                idSet( numbers, field.name(), number, true ).add( id );
+            }
+            else
+            {
+                for ( String term : termsOf( field ) )
+                {
+                    idSet( terms, field.name(), term, true ).add( id );
+                }
+            }
+        }
+    }
+
+    private void unindexValues( long id, String key, Collection<Object> values )
+    {
+        for ( Object value : values )
+        {
+            for ( Fieldable field : fieldsOf( key, value ) )
+            {
+                if ( field instanceof NumericField )
+                {
+                    Number number = ((NumericField) field).getNumericValue();
+                    removeId( numbers, field.name(), number, id );
+                }
+                else
+                {
+                    for ( String term : termsOf( field ) )
+                    {
+                        removeId( terms, field.name(), term, id );
+                    }
+                }
+            }
+        }
+    }
+
+    private Collection<Fieldable> fieldsOf( String key, Object value )
+    {
+        Document document = new Document();
+        index.type.addToDocument( document, key, value );
+        Collection<Fieldable> result = new ArrayList<Fieldable>();
+        for ( Fieldable field : document.getFields() )
+        {
+            if ( field.isIndexed() )
+            {
+                result.add( field );
+            }
+        }
+        return result;
+    }
+
+    private Collection<String> termsOf( Fieldable field )
+    {
+        Collection<String> result = new ArrayList<String>();
+        if ( !field.isTokenized() )
+        {
+            result.add( field.stringValue() );
+            return result;
+        }
+
+        try
+        {
+            TokenStream stream = index.type.analyzer.tokenStream( field.name(),
+                    new StringReader( field.stringValue() ) );
+            CharTermAttribute termAttribute = stream.addAttribute( CharTermAttribute.class );
+            stream.reset();
+            while ( stream.incrementToken() )
+            {
+                result.add( termAttribute.toString() );
+            }
+            stream.end();
+            stream.close();
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+        return result;
+    }
+
+    private static <K> Set<Long> idSet( Map<String, Map<K, Set<Long>>> map, String field, K key,
+            boolean create )
+    {
+        Map<K, Set<Long>> inner = map.get( field );
+        if ( inner == null )
+        {
+            if ( !create )
+            {
+                return null;
+            }
+            inner = new HashMap<K, Set<Long>>();
+            map.put( field, inner );
+        }
+        Set<Long> ids = inner.get( key );
+        if ( ids == null && create )
+        {
+            ids = new HashSet<Long>();
+            inner.put( key, ids );
+        }
+        return ids;
+    }
+
+    private static Set<Long> idSet( Map<String, Set<Long>> map, String key, boolean create )
+    {
+        Set<Long> ids = map.get( key );
+        if ( ids == null && create )
+        {
+            ids = new HashSet<Long>();
+            map.put( key, ids );
+        }
+        return ids;
+    }
+
+    private static <K> void removeId( Map<String, Map<K, Set<Long>>> map, String field, K key, long id )
+    {
+        Map<K, Set<Long>> inner = map.get( field );
+        Set<Long> ids = inner != null ? inner.get( key ) : null;
+        if ( ids != null && ids.remove( id ) && ids.isEmpty() )
+        {
+            inner.remove( key );
+            if ( inner.isEmpty() )
+            {
+                map.remove( field );
+            }
+        }
+    }
+
+    private static void removeId( Map<String, Set<Long>> map, String key, long id )
+    {
+        Set<Long> ids = map.get( key );
+        if ( ids != null && ids.remove( id ) && ids.isEmpty() )
+        {
+            map.remove( key );
+        }
+    }
+
+    private static long idOf( Object entityId )
+    {
+        return entityId instanceof Long ? (Long) entityId : ((RelationshipId) entityId).id;
+    }
+
+    private static interface TermMatcher
+    {
+        boolean matches( String term );
+    }
+
+    private static enum NumericKind
+    {
+        INT( true ),
+        LONG( true ),
+        FLOAT( false ),
+        DOUBLE( false );
+
+        private final boolean integral;
+
+        private NumericKind( boolean integral )
+        {
+            this.integral = integral;
+        }
+
+        boolean isIntegral()
+        {
+            return integral;
+        }
+
+        static NumericKind of( Number number )
+        {
+            // Same mapping as IndexType#instantiateField
+            return number instanceof Long ? LONG : number instanceof Float ? FLOAT :
+                    number instanceof Double ? DOUBLE : INT;
+        }
+    }
+
+    private static class EntityState
+    {
+        private final Object entityId;
+        private final Map<String, Collection<Object>> values = new HashMap<String, Collection<Object>>();
+        private final Set<String> orphanKeys = new HashSet<String>();
+        private boolean orphan;
+
+        EntityState( Object entityId )
+        {
+            this.entityId = entityId;
+        }
+
+        boolean isEmpty()
+        {
+            return values.isEmpty() && orphanKeys.isEmpty() && !orphan;
+        }
+    }
+}
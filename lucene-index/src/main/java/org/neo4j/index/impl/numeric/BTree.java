@@ -0,0 +1,528 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A B+tree of fixed size entries, each made up of three longs compared
+ * lexicographically. Pages live in a {@link PageFile}, leaves are linked in
+ * both directions so that ranges can be scanned either way.
+ *
+ * Removal doesn't rebalance the tree, emptied leaves stay where they are
+ * and are skipped by scans. For the kind of data kept in here, where
+ * values mostly come and rarely go, that is a cheap and fair trade.
+ *
+ * Not thread safe, the owner is expected to synchronize access.
+ */
+class BTree
+{
+    private static final long MAGIC = 0x4e554d4254524545L; // "NUMBTREE"
+    private static final int VERSION = 1;
+    private static final long NO_PAGE = -1;
+
+    // Header page layout
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 8;
+    private static final int HEADER_PAGE_SIZE = 12;
+    private static final int HEADER_ROOT = 16;
+    private static final int HEADER_PAGE_COUNT = 24;
+    private static final int HEADER_ENTRY_COUNT = 32;
+
+    // Node page layout
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+    private static final int NODE_TYPE = 0;
+    private static final int NODE_COUNT = 1;
+    private static final int NODE_PREV = 5;
+    private static final int NODE_NEXT = 13;
+    private static final int NODE_HEADER_ENTRY_COUNT = 21;
+
+    static final int ENTRY_SIZE = 24;
+    private static final int CHILD_SIZE = 8;
+
+    private final PageFile file;
+    private final int leafCapacity;
+    private final int internalCapacity;
+
+    // Scratch state for insert, saves allocating on every split
+    private boolean inserted;
+    private final long[] split = new long[4];
+
+    BTree( PageFile file ) throws IOException
+    {
+        this.file = file;
+        int pageSize = file.pageSize();
+        this.leafCapacity = (pageSize - NODE_HEADER_ENTRY_COUNT) / ENTRY_SIZE;
+        this.internalCapacity = (pageSize - NODE_HEADER_ENTRY_COUNT - CHILD_SIZE) / (ENTRY_SIZE + CHILD_SIZE);
+        ByteBuffer header = file.page( 0 );
+        if ( header.getLong( HEADER_MAGIC ) == 0 )
+        {
+            header.putLong( HEADER_MAGIC, MAGIC );
+            header.putInt( HEADER_VERSION, VERSION );
+            header.putInt( HEADER_PAGE_SIZE, pageSize );
+            header.putLong( HEADER_PAGE_COUNT, 1 );
+            header.putLong( HEADER_ENTRY_COUNT, 0 );
+            file.markDirty( 0 );
+            long root = allocate( LEAF );
+            header.putLong( HEADER_ROOT, root );
+            file.flush();
+        }
+        else if ( header.getLong( HEADER_MAGIC ) != MAGIC )
+        {
+            throw new IOException( file.getFile() + " isn't a numeric index file" );
+        }
+        else if ( header.getInt( HEADER_VERSION ) != VERSION || header.getInt( HEADER_PAGE_SIZE ) != pageSize )
+        {
+            throw new IOException( "Unsupported version/page size of " + file.getFile() );
+        }
+    }
+
+    /**
+     * @return the number of entries in this tree.
+     */
+    long size() throws IOException
+    {
+        return file.page( 0 ).getLong( HEADER_ENTRY_COUNT );
+    }
+
+    /**
+     * Adds an entry, unless it already exists.
+     *
+     * @return {@code true} if the entry was added.
+     */
+    boolean insert( long k0, long k1, long k2 ) throws IOException
+    {
+        inserted = false;
+        ByteBuffer header = file.page( 0 );
+        long root = header.getLong( HEADER_ROOT );
+        boolean rootWasSplit = insert( root, k0, k1, k2 );
+        header = file.page( 0 );
+        if ( rootWasSplit )
+        {
+            long newRoot = allocate( INTERNAL );
+            ByteBuffer page = file.page( newRoot );
+            page.putInt( NODE_COUNT, 1 );
+            putChild( page, 0, root );
+            putKey( page, 0, split[0], split[1], split[2] );
+            putChild( page, 1, split[3] );
+            file.markDirty( newRoot );
+            header.putLong( HEADER_ROOT, newRoot );
+        }
+        if ( inserted )
+        {
+            header.putLong( HEADER_ENTRY_COUNT, header.getLong( HEADER_ENTRY_COUNT ) + 1 );
+        }
+        file.markDirty( 0 );
+        return inserted;
+    }
+
+    /**
+     * Removes an entry if it exists.
+     *
+     * @return {@code true} if the entry was removed.
+     */
+    boolean remove( long k0, long k1, long k2 ) throws IOException
+    {
+        long pageId = findLeaf( k0, k1, k2 );
+        ByteBuffer page = file.page( pageId );
+        int count = page.getInt( NODE_COUNT );
+        int pos = search( page, count, k0, k1, k2 );
+        if ( pos < 0 )
+        {
+            return false;
+        }
+        int offset = entryOffset( pos );
+        System.arraycopy( page.array(), offset + ENTRY_SIZE, page.array(), offset,
+                (count - pos - 1) * ENTRY_SIZE );
+        page.putInt( NODE_COUNT, count - 1 );
+        file.markDirty( pageId );
+        ByteBuffer header = file.page( 0 );
+        header.putLong( HEADER_ENTRY_COUNT, header.getLong( HEADER_ENTRY_COUNT ) - 1 );
+        file.markDirty( 0 );
+        return true;
+    }
+
+    /**
+     * Visits all entries between {@code from} and {@code to}, both inclusive,
+     * in ascending order, or descending if {@code reversed}. Scanning stops
+     * when the visitor returns {@code false}.
+     */
+    void scan( long[] from, long[] to, boolean reversed, EntryVisitor visitor ) throws IOException
+    {
+        if ( compare( from[0], from[1], from[2], to ) > 0 )
+        {
+            return;
+        }
+        if ( !reversed )
+        {
+            long pageId = findLeaf( from[0], from[1], from[2] );
+            ByteBuffer page = file.page( pageId );
+            int pos = search( page, page.getInt( NODE_COUNT ), from[0], from[1], from[2] );
+            pos = pos < 0 ? -pos - 1 : pos;
+            while ( true )
+            {
+                int count = page.getInt( NODE_COUNT );
+                for ( ; pos < count; pos++ )
+                {
+                    int offset = entryOffset( pos );
+                    long k0 = page.getLong( offset );
+                    long k1 = page.getLong( offset + 8 );
+                    long k2 = page.getLong( offset + 16 );
+                    if ( compare( k0, k1, k2, to ) > 0 || !visitor.visit( k0, k1, k2 ) )
+                    {
+                        return;
+                    }
+                }
+                pageId = page.getLong( NODE_NEXT );
+                if ( pageId == NO_PAGE )
+                {
+                    return;
+                }
+                page = file.page( pageId );
+                pos = 0;
+            }
+        }
+        else
+        {
+            long pageId = findLeaf( to[0], to[1], to[2] );
+            ByteBuffer page = file.page( pageId );
+            int pos = search( page, page.getInt( NODE_COUNT ), to[0], to[1], to[2] );
+            pos = pos < 0 ? -pos - 2 : pos;
+            while ( true )
+            {
+                for ( ; pos >= 0; pos-- )
+                {
+                    int offset = entryOffset( pos );
+                    long k0 = page.getLong( offset );
+                    long k1 = page.getLong( offset + 8 );
+                    long k2 = page.getLong( offset + 16 );
+                    if ( compare( k0, k1, k2, from ) < 0 || !visitor.visit( k0, k1, k2 ) )
+                    {
+                        return;
+                    }
+                }
+                pageId = page.getLong( NODE_PREV );
+                if ( pageId == NO_PAGE )
+                {
+                    return;
+                }
+                page = file.page( pageId );
+                pos = page.getInt( NODE_COUNT ) - 1;
+            }
+        }
+    }
+
+    interface EntryVisitor
+    {
+        boolean visit( long k0, long k1, long k2 );
+    }
+
+    private long allocate( byte type ) throws IOException
+    {
+        ByteBuffer header = file.page( 0 );
+        long id = header.getLong( HEADER_PAGE_COUNT );
+        header.putLong( HEADER_PAGE_COUNT, id + 1 );
+        file.markDirty( 0 );
+        ByteBuffer page = file.page( id );
+        page.put( NODE_TYPE, type );
+        page.putInt( NODE_COUNT, 0 );
+        page.putLong( NODE_PREV, NO_PAGE );
+        page.putLong( NODE_NEXT, NO_PAGE );
+        file.markDirty( id );
+        return id;
+    }
+
+    private long findLeaf( long k0, long k1, long k2 ) throws IOException
+    {
+        long pageId = file.page( 0 ).getLong( HEADER_ROOT );
+        ByteBuffer page = file.page( pageId );
+        while ( page.get( NODE_TYPE ) == INTERNAL )
+        {
+            pageId = page.getLong( childOffset( childIndex( page, k0, k1, k2 ) ) );
+            page = file.page( pageId );
+        }
+        return pageId;
+    }
+
+    /**
+     * Inserts into the subtree rooted at {@code pageId}. Returns {@code true}
+     * if that page was split, in which case {@link #split} holds the
+     * separator key and the id of the new right sibling.
+     */
+    private boolean insert( long pageId, long k0, long k1, long k2 ) throws IOException
+    {
+        ByteBuffer page = file.page( pageId );
+        int count = page.getInt( NODE_COUNT );
+        if ( page.get( NODE_TYPE ) == LEAF )
+        {
+            int pos = search( page, count, k0, k1, k2 );
+            if ( pos >= 0 )
+            {
+                return false;
+            }
+            inserted = true;
+            pos = -pos - 1;
+            if ( count < leafCapacity )
+            {
+                insertEntry( page, count, pos, k0, k1, k2 );
+                file.markDirty( pageId );
+                return false;
+            }
+            return splitLeaf( pageId, page, count, pos, k0, k1, k2 );
+        }
+
+        int index = childIndex( page, k0, k1, k2 );
+        if ( !insert( page.getLong( childOffset( index ) ), k0, k1, k2 ) )
+        {
+            return false;
+        }
+
+        // The child was split, add its new sibling here
+        long sk0 = split[0], sk1 = split[1], sk2 = split[2], sibling = split[3];
+        page = file.page( pageId );
+        if ( count < internalCapacity )
+        {
+            insertChild( page, count, index, sk0, sk1, sk2, sibling );
+            file.markDirty( pageId );
+            return false;
+        }
+        return splitInternal( pageId, page, count, index, sk0, sk1, sk2, sibling );
+    }
+
+    private boolean splitLeaf( long pageId, ByteBuffer page, int count, int pos,
+            long k0, long k1, long k2 ) throws IOException
+    {
+        long rightId = allocate( LEAF );
+        ByteBuffer right = file.page( rightId );
+        page = file.page( pageId );
+        file.markDirty( pageId );
+        int leftCount = (count + 1) / 2;
+        int rightCount = count - leftCount;
+        System.arraycopy( page.array(), entryOffset( leftCount ), right.array(), entryOffset( 0 ),
+                rightCount * ENTRY_SIZE );
+        page.putInt( NODE_COUNT, leftCount );
+        right.putInt( NODE_COUNT, rightCount );
+        if ( pos <= leftCount )
+        {
+            insertEntry( page, leftCount, pos, k0, k1, k2 );
+        }
+        else
+        {
+            insertEntry( right, rightCount, pos - leftCount, k0, k1, k2 );
+        }
+
+        long nextId = page.getLong( NODE_NEXT );
+        right.putLong( NODE_PREV, pageId );
+        right.putLong( NODE_NEXT, nextId );
+        page.putLong( NODE_NEXT, rightId );
+        if ( nextId != NO_PAGE )
+        {
+            file.markDirty( nextId );
+            file.page( nextId ).putLong( NODE_PREV, rightId );
+        }
+
+        int offset = entryOffset( 0 );
+        split[0] = right.getLong( offset );
+        split[1] = right.getLong( offset + 8 );
+        split[2] = right.getLong( offset + 16 );
+        split[3] = rightId;
+        return true;
+    }
+
+    private boolean splitInternal( long pageId, ByteBuffer page, int count, int index,
+            long k0, long k1, long k2, long child ) throws IOException
+    {
+        // Lay out all keys/children in one place, then divide them
+        long[] keys = new long[(count + 1) * 3];
+        long[] children = new long[count + 2];
+        for ( int i = 0, j = 0; i <= count; i++ )
+        {
+            if ( i == index )
+            {
+                keys[i * 3] = k0;
+                keys[i * 3 + 1] = k1;
+                keys[i * 3 + 2] = k2;
+                continue;
+            }
+            int offset = keyOffset( j++ );
+            keys[i * 3] = page.getLong( offset );
+            keys[i * 3 + 1] = page.getLong( offset + 8 );
+            keys[i * 3 + 2] = page.getLong( offset + 16 );
+        }
+        for ( int i = 0, j = 0; i <= count + 1; i++ )
+        {
+            children[i] = i == index + 1 ? child : page.getLong( childOffset( j++ ) );
+        }
+
+        int middle = (count + 1) / 2;
+        long rightId = allocate( INTERNAL );
+        ByteBuffer right = file.page( rightId );
+        page = file.page( pageId );
+        file.markDirty( pageId );
+        page.putInt( NODE_COUNT, middle );
+        for ( int i = 0; i < middle; i++ )
+        {
+            putChild( page, i, children[i] );
+            putKey( page, i, keys[i * 3], keys[i * 3 + 1], keys[i * 3 + 2] );
+        }
+        putChild( page, middle, children[middle] );
+        int rightCount = count - middle;
+        right.putInt( NODE_COUNT, rightCount );
+        for ( int i = 0; i < rightCount; i++ )
+        {
+            int source = middle + 1 + i;
+            putChild( right, i, children[source] );
+            putKey( right, i, keys[source * 3], keys[source * 3 + 1], keys[source * 3 + 2] );
+        }
+        putChild( right, rightCount, children[count + 1] );
+
+        split[0] = keys[middle * 3];
+        split[1] = keys[middle * 3 + 1];
+        split[2] = keys[middle * 3 + 2];
+        split[3] = rightId;
+        return true;
+    }
+
+    private void insertEntry( ByteBuffer page, int count, int pos, long k0, long k1, long k2 )
+    {
+        int offset = entryOffset( pos );
+        System.arraycopy( page.array(), offset, page.array(), offset + ENTRY_SIZE,
+                (count - pos) * ENTRY_SIZE );
+        page.putLong( offset, k0 );
+        page.putLong( offset + 8, k1 );
+        page.putLong( offset + 16, k2 );
+        page.putInt( NODE_COUNT, count + 1 );
+    }
+
+    private void insertChild( ByteBuffer page, int count, int index,
+            long k0, long k1, long k2, long child )
+    {
+        // Key 'index' and child 'index + 1' go in, the rest shifts one step right
+        int offset = keyOffset( index );
+        System.arraycopy( page.array(), offset, page.array(), offset + ENTRY_SIZE + CHILD_SIZE,
+                (count - index) * (ENTRY_SIZE + CHILD_SIZE) );
+        putKey( page, index, k0, k1, k2 );
+        putChild( page, index + 1, child );
+        page.putInt( NODE_COUNT, count + 1 );
+    }
+
+    /**
+     * @return the position of the entry if found, otherwise
+     * {@code -(insertion point) - 1}.
+     */
+    private static int search( ByteBuffer page, int count, long k0, long k1, long k2 )
+    {
+        int low = 0;
+        int high = count - 1;
+        while ( low <= high )
+        {
+            int mid = (low + high) >>> 1;
+            int offset = entryOffset( mid );
+            int result = compare( page.getLong( offset ), page.getLong( offset + 8 ),
+                    page.getLong( offset + 16 ), k0, k1, k2 );
+            if ( result < 0 )
+            {
+                low = mid + 1;
+            }
+            else if ( result > 0 )
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return the index of the child to descend into, i.e. the number of
+     * keys less than or equal to the given one.
+     */
+    private static int childIndex( ByteBuffer page, long k0, long k1, long k2 )
+    {
+        int low = 0;
+        int high = page.getInt( NODE_COUNT ) - 1;
+        while ( low <= high )
+        {
+            int mid = (low + high) >>> 1;
+            int offset = keyOffset( mid );
+            if ( compare( page.getLong( offset ), page.getLong( offset + 8 ),
+                    page.getLong( offset + 16 ), k0, k1, k2 ) <= 0 )
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static int entryOffset( int pos )
+    {
+        return NODE_HEADER_ENTRY_COUNT + pos * ENTRY_SIZE;
+    }
+
+    private static int childOffset( int index )
+    {
+        return NODE_HEADER_ENTRY_COUNT + index * (ENTRY_SIZE + CHILD_SIZE);
+    }
+
+    private static int keyOffset( int index )
+    {
+        return childOffset( index ) + CHILD_SIZE;
+    }
+
+    private static void putChild( ByteBuffer page, int index, long child )
+    {
+        page.putLong( childOffset( index ), child );
+    }
+
+    private static void putKey( ByteBuffer page, int index, long k0, long k1, long k2 )
+    {
+        int offset = keyOffset( index );
+        page.putLong( offset, k0 );
+        page.putLong( offset + 8, k1 );
+        page.putLong( offset + 16, k2 );
+    }
+
+    private static int compare( long k0, long k1, long k2, long[] other )
+    {
+        return compare( k0, k1, k2, other[0], other[1], other[2] );
+    }
+
+    static int compare( long a0, long a1, long a2, long b0, long b1, long b2 )
+    {
+        if ( a0 != b0 )
+        {
+            return a0 < b0 ? -1 : 1;
+        }
+        if ( a1 != b1 )
+        {
+            return a1 < b1 ? -1 : 1;
+        }
+        return a2 < b2 ? -1 : a2 == b2 ? 0 : 1;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of value/entity id pairs, kept as primitives.
+ */
+class EntryList
+{
+    private long[] values = new long[16];
+    private long[] ids = new long[16];
+    private int size;
+
+    void add( long value, long id )
+    {
+        if ( size == values.length )
+        {
+            values = Arrays.copyOf( values, size * 2 );
+            ids = Arrays.copyOf( ids, size * 2 );
+        }
+        values[size] = value;
+        ids[size] = id;
+        size++;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    long value( int index )
+    {
+        return values[index];
+    }
+
+    long id( int index )
+    {
+        return ids[index];
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import org.neo4j.index.impl.lucene.AbstractIndexHits;
+
+/**
+ * Entity ids of a numeric index query, already in result order.
+ */
+class IdHits extends AbstractIndexHits<Long>
+{
+    private final long[] ids;
+    private final int size;
+    private int position;
+
+    IdHits( long[] ids, int size )
+    {
+        this.ids = ids;
+        this.size = size;
+    }
+
+    @Override
+    protected Long fetchNextOrNull()
+    {
+        return position < size ? ids[position++] : null;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public float currentScore()
+    {
+        return Float.NaN;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+
+class IndexIdentifier
+{
+    final byte entityTypeByte;
+    final String indexName;
+    private final int hashCode;
+
+    IndexIdentifier( byte entityTypeByte, String indexName )
+    {
+        this.entityTypeByte = entityTypeByte;
+        this.indexName = indexName;
+        this.hashCode = 17 + 7 * entityTypeByte + 7 * indexName.hashCode();
+    }
+
+    Class<? extends PropertyContainer> getEntityType()
+    {
+        return entityTypeByte == NumericCommand.NODE ? Node.class : Relationship.class;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( o == null || !getClass().equals( o.getClass() ) )
+        {
+            return false;
+        }
+        IndexIdentifier i = (IndexIdentifier) o;
+        return entityTypeByte == i.entityTypeByte && indexName.equals( i.indexName );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Index[" + indexName + ", " + (entityTypeByte == NumericCommand.NODE ? "node" : "relationship") + "]";
+    }
+}
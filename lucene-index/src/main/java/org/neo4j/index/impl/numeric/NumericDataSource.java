@@ -0,0 +1,443 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.helpers.UTF8;
+import org.neo4j.helpers.collection.ClosableIterable;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.impl.index.IndexProviderStore;
+import org.neo4j.kernel.impl.index.IndexStore;
+import org.neo4j.kernel.impl.transaction.xaframework.LogBackedXaDataSource;
+import org.neo4j.kernel.impl.transaction.xaframework.XaCommand;
+import org.neo4j.kernel.impl.transaction.xaframework.XaCommandFactory;
+import org.neo4j.kernel.impl.transaction.xaframework.XaConnection;
+import org.neo4j.kernel.impl.transaction.xaframework.XaContainer;
+import org.neo4j.kernel.impl.transaction.xaframework.XaDataSource;
+import org.neo4j.kernel.impl.transaction.xaframework.XaTransaction;
+import org.neo4j.kernel.impl.transaction.xaframework.XaTransactionFactory;
+
+/**
+ * An {@link XaDataSource} for the {@link NumericIndexImplementation}, keeping
+ * one {@link NumericTree} per index under {@code index/numeric} in the store
+ * directory. Trees are flushed as part of every commit, so the logical log
+ * only needs replaying for transactions which didn't get that far.
+ * This class is public because the XA framework requires it.
+ */
+public class NumericDataSource extends LogBackedXaDataSource
+{
+    public static final String DEFAULT_NAME = "numeric-index";
+    public static final byte[] DEFAULT_BRANCH_ID = UTF8.encode( "284723" );
+
+    static final int PAGE_SIZE = 8192;
+    static final String KEY_CACHED_PAGES = "numeric_index_cached_pages";
+    static final int DEFAULT_CACHED_PAGES = 1024;
+
+    private final XaContainer xaContainer;
+    private final String baseStorePath;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    final IndexStore indexStore;
+    private final IndexProviderStore providerStore;
+    private final int cachedPages;
+    private final Map<IndexIdentifier, NumericTree> trees = new HashMap<IndexIdentifier, NumericTree>();
+    final Map<IndexIdentifier, NumericIndex<? extends PropertyContainer>> indexes =
+            new HashMap<IndexIdentifier, NumericIndex<? extends PropertyContainer>>();
+    private boolean closed;
+
+    /**
+     * Constructs this data source.
+     *
+     * @param params XA parameters.
+     * @throws InstantiationException if the data source couldn't be
+     * instantiated
+     */
+    public NumericDataSource( Map<Object,Object> params )
+        throws InstantiationException
+    {
+        super( params );
+        String storeDir = (String) params.get( "store_dir" );
+        this.baseStorePath = getStoreDir( storeDir );
+        this.indexStore = (IndexStore) params.get( IndexStore.class );
+        this.providerStore = new IndexProviderStore( new File( baseStorePath, "numeric-store.db" ) );
+        Object cachedPagesParam = params.get( KEY_CACHED_PAGES );
+        this.cachedPages = cachedPagesParam != null ?
+                Integer.parseInt( cachedPagesParam.toString() ) : DEFAULT_CACHED_PAGES;
+        boolean isReadOnly = false;
+        if ( params.containsKey( "read_only" ) )
+        {
+            Object readOnly = params.get( "read_only" );
+            if ( readOnly instanceof Boolean )
+            {
+                isReadOnly = (Boolean) readOnly;
+            }
+            else
+            {
+                isReadOnly = Boolean.parseBoolean( (String) readOnly );
+            }
+        }
+
+        XaCommandFactory cf = new NumericCommandFactory();
+        XaTransactionFactory tf = new NumericTransactionFactory();
+        xaContainer = XaContainer.create( this, this.baseStorePath + File.separator + "numeric.log", cf, tf, params );
+
+        if ( !isReadOnly )
+        {
+            try
+            {
+                xaContainer.openLogicalLog();
+            }
+            catch ( IOException e )
+            {
+                throw new RuntimeException( "Unable to open numeric index log in " +
+                        this.baseStorePath, e );
+            }
+
+            xaContainer.getLogicalLog().setKeepLogs(
+                    shouldKeepLog( (String) params.get( Config.KEEP_LOGICAL_LOGS ), DEFAULT_NAME ) );
+            setLogicalLogAtCreationTime( xaContainer.getLogicalLog() );
+        }
+    }
+
+    static String getStoreDir( String dbStoreDir )
+    {
+        File dir = new File( new File( new File( dbStoreDir ), "index" ), "numeric" );
+        if ( !dir.exists() && !dir.mkdirs() )
+        {
+            throw new RuntimeException( "Unable to create directory path["
+                + dir.getAbsolutePath() + "] for Neo4j store." );
+        }
+        return dir.getAbsolutePath();
+    }
+
+    static File getFileDirectory( String storeDir, IndexIdentifier identifier )
+    {
+        String type = identifier.entityTypeByte == NumericCommand.NODE ? "node" : "relationship";
+        return new File( new File( storeDir, type ), identifier.indexName );
+    }
+
+    Map<String, String> getConfig( IndexIdentifier identifier )
+    {
+        return indexStore.get( identifier.getEntityType(), identifier.indexName );
+    }
+
+    synchronized NumericTree getTree( IndexIdentifier identifier ) throws IOException
+    {
+        if ( closed )
+        {
+            throw new IllegalStateException( "Index has been shut down" );
+        }
+        NumericTree tree = trees.get( identifier );
+        if ( tree == null )
+        {
+            tree = new NumericTree( getFileDirectory( baseStorePath, identifier ), PAGE_SIZE, cachedPages );
+            trees.put( identifier, tree );
+        }
+        return tree;
+    }
+
+    /**
+     * @return the tree for {@code identifier} or {@code null} if nothing has
+     * been committed to that index yet.
+     */
+    synchronized NumericTree getTreeIfExists( IndexIdentifier identifier ) throws IOException
+    {
+        NumericTree tree = trees.get( identifier );
+        if ( tree == null && new File( getFileDirectory( baseStorePath, identifier ),
+                NumericTree.TREE_FILE_NAME ).exists() )
+        {
+            tree = getTree( identifier );
+        }
+        return tree;
+    }
+
+    synchronized void discardChanges( IndexIdentifier identifier )
+    {
+        NumericTree tree = trees.get( identifier );
+        if ( tree != null )
+        {
+            tree.discardChanges();
+        }
+    }
+
+    synchronized void deleteIndex( IndexIdentifier identifier, boolean recovery ) throws IOException
+    {
+        NumericTree tree = trees.remove( identifier );
+        if ( tree != null )
+        {
+            tree.close();
+        }
+        deleteFileOrDirectory( getFileDirectory( baseStorePath, identifier ) );
+        boolean removeFromIndexStore = !recovery ||
+                indexStore.has( identifier.getEntityType(), identifier.indexName );
+        if ( removeFromIndexStore )
+        {
+            indexStore.remove( identifier.getEntityType(), identifier.indexName );
+        }
+        synchronized ( indexes )
+        {
+            NumericIndex<? extends PropertyContainer> index = indexes.remove( identifier );
+            if ( index != null )
+            {
+                index.markAsDeleted();
+            }
+        }
+    }
+
+    private static void deleteFileOrDirectory( File file )
+    {
+        if ( file.exists() )
+        {
+            if ( file.isDirectory() )
+            {
+                for ( File child : file.listFiles() )
+                {
+                    deleteFileOrDirectory( child );
+                }
+            }
+            file.delete();
+        }
+    }
+
+    void getReadLock()
+    {
+        lock.readLock().lock();
+    }
+
+    void releaseReadLock()
+    {
+        lock.readLock().unlock();
+    }
+
+    void getWriteLock()
+    {
+        lock.writeLock().lock();
+    }
+
+    void releaseWriteLock()
+    {
+        lock.writeLock().unlock();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if ( closed )
+        {
+            return;
+        }
+        for ( Map.Entry<IndexIdentifier, NumericTree> entry : trees.entrySet() )
+        {
+            try
+            {
+                entry.getValue().close();
+            }
+            catch ( IOException e )
+            {
+                throw new RuntimeException( "Unable to close " + entry.getKey(), e );
+            }
+        }
+        trees.clear();
+        if ( xaContainer != null )
+        {
+            xaContainer.close();
+        }
+        providerStore.close();
+        closed = true;
+    }
+
+    @Override
+    public XaConnection getXaConnection()
+    {
+        return new NumericXaConnection( baseStorePath, xaContainer.getResourceManager(), getBranchId() );
+    }
+
+    private class NumericCommandFactory extends XaCommandFactory
+    {
+        @Override
+        public XaCommand readCommand( ReadableByteChannel channel,
+            ByteBuffer buffer ) throws IOException
+        {
+            return NumericCommand.readCommand( channel, buffer );
+        }
+    }
+
+    private class NumericTransactionFactory extends XaTransactionFactory
+    {
+        @Override
+        public XaTransaction create( int identifier )
+        {
+            return new NumericTransaction( identifier, this.getLogicalLog(), NumericDataSource.this );
+        }
+
+        @Override
+        public void flushAll()
+        {
+            synchronized ( NumericDataSource.this )
+            {
+                for ( Map.Entry<IndexIdentifier, NumericTree> entry : trees.entrySet() )
+                {
+                    try
+                    {
+                        entry.getValue().flush();
+                    }
+                    catch ( IOException e )
+                    {
+                        throw new RuntimeException( "unable to flush " + entry.getKey(), e );
+                    }
+                }
+            }
+        }
+
+        @Override
+        public long getCurrentVersion()
+        {
+            return providerStore.getVersion();
+        }
+
+        @Override
+        public long getAndSetNewVersion()
+        {
+            return providerStore.incrementVersion();
+        }
+
+        @Override
+        public long getLastCommittedTx()
+        {
+            return providerStore.getLastCommittedTx();
+        }
+    }
+
+    @Override
+    public long getCreationTime()
+    {
+        return providerStore.getCreationTime();
+    }
+
+    @Override
+    public long getRandomIdentifier()
+    {
+        return providerStore.getRandomNumber();
+    }
+
+    @Override
+    public long getCurrentLogVersion()
+    {
+        return providerStore.getVersion();
+    }
+
+    @Override
+    public long getLastCommittedTxId()
+    {
+        return providerStore.getLastCommittedTx();
+    }
+
+    @Override
+    public void setLastCommittedTxId( long txId )
+    {
+        providerStore.setLastCommittedTx( txId );
+    }
+
+    @Override
+    public XaContainer getXaContainer()
+    {
+        return this.xaContainer;
+    }
+
+    /**
+     * Commits are held off until the returned iterable is closed, so that
+     * the listed files stay consistent while they are being copied.
+     */
+    @Override
+    public ClosableIterable<File> listStoreFiles() throws IOException
+    {
+        final Collection<File> files = new ArrayList<File>();
+        getReadLock();
+        try
+        {
+            for ( String name : numericIndexNames( Node.class ) )
+            {
+                addTreeFiles( files, new IndexIdentifier( NumericCommand.NODE, name ) );
+            }
+            for ( String name : numericIndexNames( Relationship.class ) )
+            {
+                addTreeFiles( files, new IndexIdentifier( NumericCommand.RELATIONSHIP, name ) );
+            }
+            files.add( providerStore.getFile() );
+        }
+        catch ( IOException e )
+        {
+            releaseReadLock();
+            throw e;
+        }
+        return new ClosableIterable<File>()
+        {
+            public Iterator<File> iterator()
+            {
+                return files.iterator();
+            }
+
+            public void close()
+            {
+                releaseReadLock();
+            }
+        };
+    }
+
+    private void addTreeFiles( Collection<File> files, IndexIdentifier identifier ) throws IOException
+    {
+        NumericTree tree = getTreeIfExists( identifier );
+        if ( tree != null )
+        {
+            tree.flush();
+            for ( File file : tree.getFiles() )
+            {
+                files.add( file );
+            }
+        }
+    }
+
+    private Collection<String> numericIndexNames( Class<? extends PropertyContainer> cls )
+    {
+        Collection<String> result = new ArrayList<String>();
+        for ( String name : indexStore.getNames( cls ) )
+        {
+            Map<String, String> config = indexStore.get( cls, name );
+            if ( NumericIndexImplementation.SERVICE_NAME.equals( config.get( IndexManager.PROVIDER ) ) )
+            {
+                result.add( name );
+            }
+        }
+        return result;
+    }
+}
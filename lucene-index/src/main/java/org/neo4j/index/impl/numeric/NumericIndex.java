@@ -0,0 +1,388 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.index.impl.lucene.IdToEntityIterator;
+import org.neo4j.index.numeric.NumericRange;
+import org.neo4j.kernel.impl.core.ReadOnlyDbException;
+
+abstract class NumericIndex<T extends PropertyContainer> implements Index<T>
+{
+    final NumericIndexImplementation service;
+    private final IndexIdentifier identifier;
+    final ValueType valueType;
+    private volatile boolean deleted;
+
+    // Will contain ids which were found to be missing from the graph when doing queries
+    // Write transactions can fetch from this list and add to their transactions to
+    // allow for self-healing properties.
+    final Set<Long> abandonedIds = new CopyOnWriteArraySet<Long>();
+
+    NumericIndex( NumericIndexImplementation service, IndexIdentifier identifier )
+    {
+        this.service = service;
+        this.identifier = identifier;
+        this.valueType = ValueType.of( service.dataSource().getConfig( identifier ) );
+    }
+
+    IndexIdentifier getIdentifier()
+    {
+        return identifier;
+    }
+
+    NumericXaConnection getConnection()
+    {
+        assertNotDeleted();
+        if ( service.broker() == null )
+        {
+            throw new ReadOnlyDbException();
+        }
+        return service.broker().acquireResourceConnection();
+    }
+
+    NumericXaConnection getReadOnlyConnection()
+    {
+        assertNotDeleted();
+        return service.broker() == null ? null :
+                service.broker().acquireReadOnlyResourceConnection();
+    }
+
+    private void assertNotDeleted()
+    {
+        if ( deleted )
+        {
+            throw new IllegalStateException( "This index (" + identifier + ") has been deleted" );
+        }
+    }
+
+    void markAsDeleted()
+    {
+        this.deleted = true;
+        this.abandonedIds.clear();
+    }
+
+    public String getName()
+    {
+        return identifier.indexName;
+    }
+
+    /**
+     * Adds {@code value}, which must be a number (or a string or
+     * {@code ValueContext} holding one), for {@code key} to {@code entity}.
+     */
+    public void add( T entity, String key, Object value )
+    {
+        long sortable = valueType.toSortable( value );
+        getConnection().add( this, entity, key, sortable );
+    }
+
+    public void remove( T entity, String key, Object value )
+    {
+        long sortable = valueType.toSortable( value );
+        getConnection().remove( this, entity, key, sortable );
+    }
+
+    public void remove( T entity, String key )
+    {
+        getConnection().remove( this, entity, key, null );
+    }
+
+    public void remove( T entity )
+    {
+        getConnection().remove( this, entity, null, null );
+    }
+
+    public void delete()
+    {
+        getConnection().deleteIndex( this );
+    }
+
+    public IndexHits<T> get( String key, Object value )
+    {
+        return query( key, value );
+    }
+
+    /**
+     * @param queryOrQueryObject a {@link NumericRange} or a single value to
+     * match exactly.
+     */
+    public IndexHits<T> query( String key, Object queryOrQueryObject )
+    {
+        return query( key, queryOrQueryObject, null, null );
+    }
+
+    /**
+     * @param queryOrQueryObject a {@link NumericRange} with a key.
+     */
+    public IndexHits<T> query( Object queryOrQueryObject )
+    {
+        return query( null, queryOrQueryObject );
+    }
+
+    protected IndexHits<T> query( String key, Object queryOrQueryObject,
+            Node startNodeOrNull, Node endNodeOrNull )
+    {
+        if ( queryOrQueryObject instanceof NumericRange )
+        {
+            NumericRange range = (NumericRange) queryOrQueryObject;
+            return query( key != null ? key : range.getKey(), range, null,
+                    startNodeOrNull, endNodeOrNull );
+        }
+        return query( key, NumericRange.all( key ), queryOrQueryObject,
+                startNodeOrNull, endNodeOrNull );
+    }
+
+    /**
+     * Either {@code range} or, if not {@code null}, {@code exactValueOrNull}
+     * decides which values match.
+     */
+    private IndexHits<T> query( String key, NumericRange range, Object exactValueOrNull,
+            Node startNodeOrNull, Node endNodeOrNull )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException( "No key given for " + range );
+        }
+        long from;
+        long to;
+        if ( exactValueOrNull != null )
+        {
+            from = to = valueType.toSortable( exactValueOrNull );
+        }
+        else
+        {
+            from = range.getFrom() != null ? valueType.toSortable( range.getFrom() ) : Long.MIN_VALUE;
+            to = range.getTo() != null ? valueType.toSortable( range.getTo() ) : Long.MAX_VALUE;
+            if ( range.getFrom() != null && !range.isFromInclusive() )
+            {
+                if ( from == Long.MAX_VALUE )
+                {
+                    return newEntityIterator( new IdHits( new long[0], 0 ) );
+                }
+                from++;
+            }
+            if ( range.getTo() != null && !range.isToInclusive() )
+            {
+                if ( to == Long.MIN_VALUE )
+                {
+                    return newEntityIterator( new IdHits( new long[0], 0 ) );
+                }
+                to--;
+            }
+        }
+        boolean reversed = range.isReversed();
+        boolean filtered = startNodeOrNull != null || endNodeOrNull != null;
+        int top = range.getTop();
+
+        NumericXaConnection con = getReadOnlyConnection();
+        NumericTxData txData = con != null ? con.getNumericTx().getTxData( this, false ) : null;
+        EntryList committed = null;
+        service.dataSource().getReadLock();
+        try
+        {
+            NumericTree tree = service.dataSource().getTreeIfExists( identifier );
+            int max = filtered || (txData != null && txData.hasRemovals()) ? -1 : top;
+            committed = tree != null ? tree.range( key, from, to, reversed, max ) : new EntryList();
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "Unable to query " + identifier, e );
+        }
+        finally
+        {
+            service.dataSource().releaseReadLock();
+        }
+        EntryList added = txData != null ? txData.added( key, from, to, reversed ) : new EntryList();
+
+        // Merge the two ordered lists, minus what this transaction has removed
+        long[] ids = new long[committed.size() + added.size()];
+        int count = 0;
+        int c = 0;
+        int a = 0;
+        int limit = top == -1 ? Integer.MAX_VALUE : top;
+        while ( count < limit && (c < committed.size() || a < added.size()) )
+        {
+            boolean takeCommitted = a == added.size() || (c < committed.size() &&
+                    isBefore( committed, c, added, a, reversed ));
+            EntryList source = takeCommitted ? committed : added;
+            int index = takeCommitted ? c++ : a++;
+            long id = source.id( index );
+            if ( takeCommitted && txData != null && txData.isRemoved( key, source.value( index ), id ) )
+            {
+                continue;
+            }
+            if ( filtered && !relationshipMatches( id, startNodeOrNull, endNodeOrNull ) )
+            {
+                continue;
+            }
+            ids[count++] = id;
+        }
+        return newEntityIterator( new IdHits( Arrays.copyOf( ids, count ), count ) );
+    }
+
+    private static boolean isBefore( EntryList list1, int index1, EntryList list2, int index2,
+            boolean reversed )
+    {
+        int result = BTree.compare( 0, list1.value( index1 ), list1.id( index1 ),
+                0, list2.value( index2 ), list2.id( index2 ) );
+        return reversed ? result >= 0 : result <= 0;
+    }
+
+    /**
+     * Only relationship indexes can be queried for start/end nodes.
+     */
+    boolean relationshipMatches( long id, Node startNodeOrNull, Node endNodeOrNull )
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean isWriteable()
+    {
+        return true;
+    }
+
+    private IndexHits<T> newEntityIterator( IndexHits<Long> idIterator )
+    {
+        return new IdToEntityIterator<T>( idIterator )
+        {
+            @Override
+            protected T underlyingObjectToObject( Long id )
+            {
+                return getById( id );
+            }
+
+            @Override
+            protected void itemDodged( Long item )
+            {
+                abandonedIds.add( item );
+            }
+        };
+    }
+
+    protected abstract T getById( long id );
+
+    protected abstract long getEntityId( T entity );
+
+    @Override
+    public String toString()
+    {
+        return identifier.toString();
+    }
+
+    static class NodeIndex extends NumericIndex<Node>
+    {
+        NodeIndex( NumericIndexImplementation service, IndexIdentifier identifier )
+        {
+            super( service, identifier );
+        }
+
+        @Override
+        protected Node getById( long id )
+        {
+            return service.graphDb().getNodeById( id );
+        }
+
+        @Override
+        protected long getEntityId( Node entity )
+        {
+            return entity.getId();
+        }
+
+        public Class<Node> getEntityType()
+        {
+            return Node.class;
+        }
+    }
+
+    static class RelationshipIndex extends NumericIndex<Relationship>
+            implements org.neo4j.graphdb.index.RelationshipIndex
+    {
+        RelationshipIndex( NumericIndexImplementation service, IndexIdentifier identifier )
+        {
+            super( service, identifier );
+        }
+
+        @Override
+        protected Relationship getById( long id )
+        {
+            return service.graphDb().getRelationshipById( id );
+        }
+
+        @Override
+        protected long getEntityId( Relationship entity )
+        {
+            return entity.getId();
+        }
+
+        public IndexHits<Relationship> get( String key, Object valueOrNull, Node startNodeOrNull,
+                Node endNodeOrNull )
+        {
+            return query( key, valueOrNull != null ? valueOrNull : NumericRange.all( key ),
+                    startNodeOrNull, endNodeOrNull );
+        }
+
+        @Override
+        public IndexHits<Relationship> query( String key, Object queryOrQueryObjectOrNull,
+                Node startNodeOrNull, Node endNodeOrNull )
+        {
+            return super.query( key, queryOrQueryObjectOrNull != null ? queryOrQueryObjectOrNull :
+                    NumericRange.all( key ), startNodeOrNull, endNodeOrNull );
+        }
+
+        public IndexHits<Relationship> query( Object queryOrQueryObjectOrNull,
+                Node startNodeOrNull, Node endNodeOrNull )
+        {
+            return query( null, queryOrQueryObjectOrNull, startNodeOrNull, endNodeOrNull );
+        }
+
+        @Override
+        boolean relationshipMatches( long id, Node startNodeOrNull, Node endNodeOrNull )
+        {
+            Relationship relationship;
+            try
+            {
+                relationship = getById( id );
+            }
+            catch ( NotFoundException e )
+            {
+                abandonedIds.add( id );
+                return false;
+            }
+            return (startNodeOrNull == null || relationship.getStartNode().equals( startNodeOrNull )) &&
+                    (endNodeOrNull == null || relationship.getEndNode().equals( endNodeOrNull ));
+        }
+
+        public Class<Relationship> getEntityType()
+        {
+            return Relationship.class;
+        }
+    }
+}
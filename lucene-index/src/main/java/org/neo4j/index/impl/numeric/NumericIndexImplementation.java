@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexImplementation;
+import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.graphdb.index.RelationshipIndex;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.impl.index.IndexConnectionBroker;
+import org.neo4j.kernel.impl.index.ReadOnlyIndexConnectionBroker;
+import org.neo4j.kernel.impl.transaction.TxModule;
+
+/**
+ * Indexes numeric values in B+trees, with the same transactional guarantees
+ * as the Lucene indexes but without any of the document and searcher
+ * overhead for what is only a range lookup. Values of an index are either
+ * all integers or all floating point numbers, see {@link #LONG_CONFIG} and
+ * {@link #DOUBLE_CONFIG}.
+ */
+public class NumericIndexImplementation extends IndexImplementation
+{
+    static final String KEY_VALUE_TYPE = "value_type";
+    public static final String SERVICE_NAME = "numeric";
+
+    public static final Map<String, String> LONG_CONFIG =
+            Collections.unmodifiableMap( MapUtil.stringMap(
+                    IndexManager.PROVIDER, SERVICE_NAME, KEY_VALUE_TYPE, "long" ) );
+
+    public static final Map<String, String> DOUBLE_CONFIG =
+            Collections.unmodifiableMap( MapUtil.stringMap(
+                    IndexManager.PROVIDER, SERVICE_NAME, KEY_VALUE_TYPE, "double" ) );
+
+    private static final String DATA_SOURCE_NAME = NumericDataSource.DEFAULT_NAME;
+
+    private final IndexConnectionBroker<NumericXaConnection> broker;
+    private final NumericDataSource dataSource;
+    private final GraphDatabaseService graphDb;
+
+    public NumericIndexImplementation( GraphDatabaseService db, Config config )
+    {
+        this.graphDb = db;
+        TxModule txModule = config.getTxModule();
+        boolean isReadOnly = config.isReadOnly();
+        Map<Object, Object> params = new HashMap<Object, Object>( config.getParams() );
+        params.put( "read_only", isReadOnly );
+        dataSource = (NumericDataSource) txModule.registerDataSource( DATA_SOURCE_NAME,
+                NumericDataSource.class.getName(), NumericDataSource.DEFAULT_BRANCH_ID, params, true );
+        broker = isReadOnly ? new ReadOnlyIndexConnectionBroker<NumericXaConnection>( txModule.getTxManager() )
+                : new ConnectionBroker( txModule.getTxManager(), dataSource );
+    }
+
+    IndexConnectionBroker<NumericXaConnection> broker()
+    {
+        return this.broker;
+    }
+
+    NumericDataSource dataSource()
+    {
+        return this.dataSource;
+    }
+
+    GraphDatabaseService graphDb()
+    {
+        return this.graphDb;
+    }
+
+    static byte entityTypeByte( Class<? extends PropertyContainer> entityType )
+    {
+        if ( Node.class.isAssignableFrom( entityType ) )
+        {
+            return NumericCommand.NODE;
+        }
+        else if ( Relationship.class.isAssignableFrom( entityType ) )
+        {
+            return NumericCommand.RELATIONSHIP;
+        }
+        throw new IllegalArgumentException( "Unknown entity type " + entityType );
+    }
+
+    @Override
+    public Index<Node> nodeIndex( String indexName, Map<String, String> config )
+    {
+        IndexIdentifier identifier = new IndexIdentifier( NumericCommand.NODE, indexName );
+        synchronized ( dataSource.indexes )
+        {
+            NumericIndex<? extends PropertyContainer> index = dataSource.indexes.get( identifier );
+            if ( index == null )
+            {
+                NumericIndex.NodeIndex created = new NumericIndex.NodeIndex( this, identifier );
+                dataSource.indexes.put( identifier, created );
+                return created;
+            }
+            return (NumericIndex.NodeIndex) index;
+        }
+    }
+
+    @Override
+    public RelationshipIndex relationshipIndex( String indexName, Map<String, String> config )
+    {
+        IndexIdentifier identifier = new IndexIdentifier( NumericCommand.RELATIONSHIP, indexName );
+        synchronized ( dataSource.indexes )
+        {
+            NumericIndex<? extends PropertyContainer> index = dataSource.indexes.get( identifier );
+            if ( index == null )
+            {
+                NumericIndex.RelationshipIndex created = new NumericIndex.RelationshipIndex( this, identifier );
+                dataSource.indexes.put( identifier, created );
+                return created;
+            }
+            return (NumericIndex.RelationshipIndex) index;
+        }
+    }
+
+    @Override
+    public Map<String, String> fillInDefaults( Map<String, String> source )
+    {
+        Map<String, String> result = source != null ?
+                new HashMap<String, String>( source ) : new HashMap<String, String>();
+        String type = result.get( KEY_VALUE_TYPE );
+        result.put( KEY_VALUE_TYPE, type != null ? ValueType.valueOf( type.toUpperCase() ).name().toLowerCase() : "long" );
+        return result;
+    }
+
+    @Override
+    public boolean configMatches( Map<String, String> storedConfig, Map<String, String> config )
+    {
+        return ValueType.of( storedConfig ) == ValueType.of( config );
+    }
+
+    @Override
+    public String getDataSourceName()
+    {
+        return DATA_SOURCE_NAME;
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.index.impl.numeric.NumericCommand.AddCommand;
+import org.neo4j.index.impl.numeric.NumericCommand.CreateIndexCommand;
+import org.neo4j.index.impl.numeric.NumericCommand.DeleteCommand;
+import org.neo4j.index.impl.numeric.NumericCommand.RemoveCommand;
+import org.neo4j.kernel.impl.transaction.xaframework.XaCommand;
+import org.neo4j.kernel.impl.transaction.xaframework.XaLogicalLog;
+import org.neo4j.kernel.impl.transaction.xaframework.XaTransaction;
+
+class NumericTransaction extends XaTransaction
+{
+    private final NumericDataSource dataSource;
+    private final Map<IndexIdentifier, NumericTxData> txData =
+            new HashMap<IndexIdentifier, NumericTxData>();
+    private final List<NumericCommand> commands = new ArrayList<NumericCommand>();
+
+    NumericTransaction( int identifier, XaLogicalLog xaLog, NumericDataSource dataSource )
+    {
+        super( identifier, xaLog );
+        this.dataSource = dataSource;
+    }
+
+    <T extends PropertyContainer> void add( NumericIndex<T> index, T entity, String key, long value )
+    {
+        long id = index.getEntityId( entity );
+        getTxData( index, true ).add( key, value, id );
+        commands.add( new AddCommand( index.getIdentifier(), id, key, value ) );
+    }
+
+    <T extends PropertyContainer> void remove( NumericIndex<T> index, T entity, String key, Long value )
+    {
+        long id = index.getEntityId( entity );
+        NumericTxData data = getTxData( index, true );
+        if ( key == null )
+        {
+            data.remove( id );
+        }
+        else if ( value == null )
+        {
+            data.remove( key, id );
+        }
+        else
+        {
+            data.remove( key, value, id );
+        }
+        commands.add( new RemoveCommand( index.getIdentifier(), id, key, value ) );
+    }
+
+    <T extends PropertyContainer> void delete( NumericIndex<T> index )
+    {
+        txData.remove( index.getIdentifier() );
+        commands.add( new DeleteCommand( index.getIdentifier() ) );
+    }
+
+    void createIndex( Class<? extends PropertyContainer> entityType, String name,
+            Map<String, String> config )
+    {
+        byte entityTypeByte = NumericIndexImplementation.entityTypeByte( entityType );
+        commands.add( new CreateIndexCommand( new IndexIdentifier( entityTypeByte, name ), config ) );
+    }
+
+    NumericTxData getTxData( NumericIndex<?> index, boolean createIfNotExists )
+    {
+        NumericTxData data = txData.get( index.getIdentifier() );
+        if ( data == null && createIfNotExists )
+        {
+            data = new NumericTxData( index );
+            txData.put( index.getIdentifier(), data );
+        }
+        return data;
+    }
+
+    @Override
+    protected void doAddCommand( XaCommand command )
+    { // we override inject command and manage our own in memory command list
+    }
+
+    @Override
+    protected void injectCommand( XaCommand command )
+    {
+        commands.add( (NumericCommand) command );
+    }
+
+    @Override
+    protected void doPrepare()
+    {
+        boolean containsDeleteCommand = false;
+        for ( NumericCommand command : commands )
+        {
+            containsDeleteCommand |= command instanceof DeleteCommand;
+            addCommand( command );
+        }
+        if ( !containsDeleteCommand )
+        { // unless an index is deleted
+            addAbandonedEntitiesToTheTx();
+        }
+    }
+
+    private void addAbandonedEntitiesToTheTx()
+    {
+        for ( Map.Entry<IndexIdentifier, NumericTxData> entry : txData.entrySet() )
+        {
+            Set<Long> abandonedIds = entry.getValue().index.abandonedIds;
+            for ( Long id : abandonedIds )
+            {
+                RemoveCommand command = new RemoveCommand( entry.getKey(), id, null, null );
+                addCommand( command );
+                commands.add( command );
+            }
+            abandonedIds.clear();
+        }
+    }
+
+    @Override
+    protected void doCommit()
+    {
+        dataSource.getWriteLock();
+        Set<IndexIdentifier> modified = new LinkedHashSet<IndexIdentifier>();
+        try
+        {
+            for ( NumericCommand command : commands )
+            {
+                if ( command instanceof DeleteCommand )
+                {
+                    modified.remove( command.indexId );
+                    dataSource.deleteIndex( command.indexId, isRecovered() );
+                }
+                else
+                {
+                    command.perform( dataSource );
+                    if ( !(command instanceof CreateIndexCommand) )
+                    {
+                        modified.add( command.indexId );
+                    }
+                }
+            }
+            for ( IndexIdentifier identifier : modified )
+            {
+                dataSource.getTree( identifier ).flush();
+            }
+            dataSource.setLastCommittedTxId( getCommitTxId() );
+            modified.clear();
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "Unable to apply numeric index transaction " + getIdentifier(), e );
+        }
+        finally
+        {
+            for ( IndexIdentifier identifier : modified )
+            {
+                dataSource.discardChanges( identifier );
+            }
+            txData.clear();
+            dataSource.releaseWriteLock();
+        }
+    }
+
+    @Override
+    protected void doRollback()
+    {
+        commands.clear();
+        txData.clear();
+    }
+
+    @Override
+    public boolean isReadOnly()
+    {
+        return commands.isEmpty();
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.helpers.UTF8;
+
+/**
+ * The committed state of one numeric index. Every key/value/entity triple is
+ * stored twice in a {@link BTree}: once ordered by value, for range queries,
+ * and once ordered by entity, so that an entity can be removed without
+ * knowing its values. Keys are mapped to small integers which are kept in a
+ * separate, append-only file.
+ */
+class NumericTree
+{
+    static final String TREE_FILE_NAME = "tree";
+    static final String KEYS_FILE_NAME = "keys";
+
+    private final File directory;
+    private final PageFile pageFile;
+    private final BTree tree;
+    private final Map<String, Integer> keyIds = new HashMap<String, Integer>();
+    private final List<String> keys = new ArrayList<String>();
+    private final RandomAccessFile keysFile;
+
+    NumericTree( File directory, int pageSize, int maxCachedPages ) throws IOException
+    {
+        this.directory = directory;
+        if ( !directory.exists() && !directory.mkdirs() )
+        {
+            throw new IOException( "Unable to create directory " + directory );
+        }
+        this.keysFile = new RandomAccessFile( new File( directory, KEYS_FILE_NAME ), "rw" );
+        readKeys();
+        this.pageFile = new PageFile( new File( directory, TREE_FILE_NAME ), pageSize, maxCachedPages );
+        this.tree = new BTree( pageFile );
+    }
+
+    File getDirectory()
+    {
+        return directory;
+    }
+
+    File[] getFiles()
+    {
+        return new File[] { pageFile.getFile(), new File( directory, KEYS_FILE_NAME ) };
+    }
+
+    synchronized void add( String key, long value, long entityId ) throws IOException
+    {
+        int keyId = keyId( key, true );
+        tree.insert( valueClass( keyId ), value, entityId );
+        tree.insert( entityClass( keyId ), entityId, value );
+    }
+
+    synchronized void remove( String key, long value, long entityId ) throws IOException
+    {
+        int keyId = keyId( key, false );
+        if ( keyId != -1 )
+        {
+            tree.remove( valueClass( keyId ), value, entityId );
+            tree.remove( entityClass( keyId ), entityId, value );
+        }
+    }
+
+    synchronized void remove( String key, long entityId ) throws IOException
+    {
+        int keyId = keyId( key, false );
+        if ( keyId != -1 )
+        {
+            removeEntity( keyId, entityId );
+        }
+    }
+
+    synchronized void remove( long entityId ) throws IOException
+    {
+        for ( int keyId = 0; keyId < keys.size(); keyId++ )
+        {
+            removeEntity( keyId, entityId );
+        }
+    }
+
+    private void removeEntity( int keyId, long entityId ) throws IOException
+    {
+        final EntryList values = new EntryList();
+        long entityClass = entityClass( keyId );
+        tree.scan( new long[] { entityClass, entityId, Long.MIN_VALUE },
+                new long[] { entityClass, entityId, Long.MAX_VALUE }, false, new BTree.EntryVisitor()
+        {
+            public boolean visit( long k0, long k1, long k2 )
+            {
+                values.add( k2, k1 );
+                return true;
+            }
+        } );
+        for ( int i = 0; i < values.size(); i++ )
+        {
+            tree.remove( valueClass( keyId ), values.value( i ), entityId );
+            tree.remove( entityClass, entityId, values.value( i ) );
+        }
+    }
+
+    /**
+     * Collects value/entity pairs for {@code key} with values between
+     * {@code from} and {@code to} (both inclusive), ordered by value.
+     *
+     * @param max the maximum number of entries to collect, or {@code -1}
+     * for all of them.
+     */
+    synchronized EntryList range( String key, long from, long to, boolean reversed, final int max )
+            throws IOException
+    {
+        final EntryList result = new EntryList();
+        int keyId = keyId( key, false );
+        if ( keyId == -1 || max == 0 )
+        {
+            return result;
+        }
+        long valueClass = valueClass( keyId );
+        tree.scan( new long[] { valueClass, from, Long.MIN_VALUE },
+                new long[] { valueClass, to, Long.MAX_VALUE }, reversed, new BTree.EntryVisitor()
+        {
+            public boolean visit( long k0, long k1, long k2 )
+            {
+                result.add( k1, k2 );
+                return max == -1 || result.size() < max;
+            }
+        } );
+        return result;
+    }
+
+    synchronized long size() throws IOException
+    {
+        return tree.size() / 2;
+    }
+
+    /**
+     * Makes all changes since the last flush durable.
+     */
+    synchronized void flush() throws IOException
+    {
+        keysFile.getChannel().force( false );
+        pageFile.flush();
+    }
+
+    /**
+     * Throws away all changes since the last flush, used if applying a
+     * transaction fails half way through. Such a transaction will be
+     * applied again by recovery.
+     */
+    synchronized void discardChanges()
+    {
+        pageFile.discardChanges();
+    }
+
+    synchronized void close() throws IOException
+    {
+        pageFile.close();
+        keysFile.close();
+    }
+
+    private static long valueClass( int keyId )
+    {
+        return keyId * 2L;
+    }
+
+    private static long entityClass( int keyId )
+    {
+        return keyId * 2L + 1;
+    }
+
+    private int keyId( String key, boolean create ) throws IOException
+    {
+        Integer id = keyIds.get( key );
+        if ( id != null )
+        {
+            return id;
+        }
+        if ( !create )
+        {
+            return -1;
+        }
+        byte[] bytes = UTF8.encode( key );
+        ByteBuffer buffer = ByteBuffer.allocate( 4 + bytes.length );
+        buffer.putInt( bytes.length );
+        buffer.put( bytes );
+        buffer.flip();
+        FileChannel channel = keysFile.getChannel();
+        channel.position( channel.size() );
+        while ( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+        keys.add( key );
+        keyIds.put( key, keys.size() - 1 );
+        return keys.size() - 1;
+    }
+
+    private void readKeys() throws IOException
+    {
+        FileChannel channel = keysFile.getChannel();
+        ByteBuffer buffer = ByteBuffer.allocate( (int) channel.size() );
+        while ( buffer.hasRemaining() && channel.read( buffer ) != -1 )
+        {
+            // Keep reading
+        }
+        buffer.flip();
+        int end = 0;
+        while ( buffer.remaining() >= 4 )
+        {
+            int length = buffer.getInt();
+            if ( length < 0 || length > buffer.remaining() )
+            {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get( bytes );
+            String key = UTF8.decode( bytes );
+            keys.add( key );
+            keyIds.put( key, keys.size() - 1 );
+            end = buffer.position();
+        }
+        // Cut off a partially written key, if any
+        channel.truncate( end );
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Additions and removals made to one index in a transaction, kept so that
+ * queries in that transaction see its own modifications.
+ */
+class NumericTxData
+{
+    final NumericIndex<?> index;
+    private final Map<String, TreeMap<Long, Set<Long>>> added =
+            new HashMap<String, TreeMap<Long, Set<Long>>>();
+    private final Map<String, TreeMap<Long, Set<Long>>> removed =
+            new HashMap<String, TreeMap<Long, Set<Long>>>();
+    private final Map<String, Set<Long>> removedForKey = new HashMap<String, Set<Long>>();
+    private final Set<Long> removedEntities = new HashSet<Long>();
+
+    NumericTxData( NumericIndex<?> index )
+    {
+        this.index = index;
+    }
+
+    void add( String key, long value, long entityId )
+    {
+        remove( removed, key, value, entityId );
+        put( added, key, value, entityId );
+    }
+
+    void remove( String key, long value, long entityId )
+    {
+        remove( added, key, value, entityId );
+        put( removed, key, value, entityId );
+    }
+
+    void remove( String key, long entityId )
+    {
+        TreeMap<Long, Set<Long>> values = added.get( key );
+        if ( values != null )
+        {
+            removeEntity( values, entityId );
+        }
+        Set<Long> ids = removedForKey.get( key );
+        if ( ids == null )
+        {
+            ids = new HashSet<Long>();
+            removedForKey.put( key, ids );
+        }
+        ids.add( entityId );
+    }
+
+    void remove( long entityId )
+    {
+        for ( TreeMap<Long, Set<Long>> values : added.values() )
+        {
+            removeEntity( values, entityId );
+        }
+        removedEntities.add( entityId );
+    }
+
+    /**
+     * @return whether or not a committed entry is hidden by removals made
+     * in this transaction.
+     */
+    boolean isRemoved( String key, long value, long entityId )
+    {
+        if ( removedEntities.contains( entityId ) )
+        {
+            return true;
+        }
+        Set<Long> ids = removedForKey.get( key );
+        if ( ids != null && ids.contains( entityId ) )
+        {
+            return true;
+        }
+        TreeMap<Long, Set<Long>> values = removed.get( key );
+        ids = values != null ? values.get( value ) : null;
+        return ids != null && ids.contains( entityId );
+    }
+
+    boolean hasRemovals()
+    {
+        return !removed.isEmpty() || !removedForKey.isEmpty() || !removedEntities.isEmpty();
+    }
+
+    /**
+     * @return the entries added in this transaction for {@code key} with
+     * values between {@code from} and {@code to}, both inclusive, ordered
+     * by value.
+     */
+    EntryList added( String key, long from, long to, boolean reversed )
+    {
+        EntryList result = new EntryList();
+        TreeMap<Long, Set<Long>> values = added.get( key );
+        if ( values == null || from > to )
+        {
+            return result;
+        }
+        NavigableMap<Long, Set<Long>> range = values.subMap( from, true, to, true );
+        for ( Map.Entry<Long, Set<Long>> entry : (reversed ? range.descendingMap() : range).entrySet() )
+        {
+            for ( Long id : entry.getValue() )
+            {
+                result.add( entry.getKey(), id );
+            }
+        }
+        return result;
+    }
+
+    private static void put( Map<String, TreeMap<Long, Set<Long>>> map, String key, long value,
+            long entityId )
+    {
+        TreeMap<Long, Set<Long>> values = map.get( key );
+        if ( values == null )
+        {
+            values = new TreeMap<Long, Set<Long>>();
+            map.put( key, values );
+        }
+        Set<Long> ids = values.get( value );
+        if ( ids == null )
+        {
+            ids = new HashSet<Long>();
+            values.put( value, ids );
+        }
+        ids.add( entityId );
+    }
+
+    private static void remove( Map<String, TreeMap<Long, Set<Long>>> map, String key, long value,
+            long entityId )
+    {
+        TreeMap<Long, Set<Long>> values = map.get( key );
+        Set<Long> ids = values != null ? values.get( value ) : null;
+        if ( ids != null && ids.remove( entityId ) && ids.isEmpty() )
+        {
+            values.remove( value );
+        }
+    }
+
+    private static void removeEntity( TreeMap<Long, Set<Long>> values, long entityId )
+    {
+        for ( Iterator<Set<Long>> ids = values.values().iterator(); ids.hasNext(); )
+        {
+            Set<Long> set = ids.next();
+            if ( set.remove( entityId ) && set.isEmpty() )
+            {
+                ids.remove();
+            }
+        }
+    }
+}
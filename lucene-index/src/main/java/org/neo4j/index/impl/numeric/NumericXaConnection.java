@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.util.Map;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.kernel.impl.index.IndexXaConnection;
+import org.neo4j.kernel.impl.transaction.xaframework.XaResourceHelpImpl;
+import org.neo4j.kernel.impl.transaction.xaframework.XaResourceManager;
+
+/**
+ * An XA connection used with {@link NumericDataSource}.
+ */
+class NumericXaConnection extends IndexXaConnection
+{
+    private final NumericXaResource xaResource;
+    private NumericTransaction tx;
+
+    NumericXaConnection( Object identifier, XaResourceManager xaRm,
+        byte[] branchId )
+    {
+        super( xaRm );
+        xaResource = new NumericXaResource( identifier, xaRm, branchId );
+    }
+
+    @Override
+    public XAResource getXaResource()
+    {
+        return xaResource;
+    }
+
+    private static class NumericXaResource extends XaResourceHelpImpl
+    {
+        private final Object identifier;
+
+        NumericXaResource( Object identifier, XaResourceManager xaRm,
+            byte[] branchId )
+        {
+            super( xaRm, branchId );
+            this.identifier = identifier;
+        }
+
+        @Override
+        public boolean isSameRM( XAResource xares )
+        {
+            if ( xares instanceof NumericXaResource )
+            {
+                return identifier.equals(
+                    ((NumericXaResource) xares).identifier );
+            }
+            return false;
+        }
+    }
+
+    NumericTransaction getNumericTx()
+    {
+        if ( tx == null )
+        {
+            try
+            {
+                tx = (NumericTransaction) getTransaction();
+            }
+            catch ( XAException e )
+            {
+                throw new RuntimeException( "Unable to get numeric index tx", e );
+            }
+        }
+        return tx;
+    }
+
+    <T extends PropertyContainer> void add( NumericIndex<T> index, T entity, String key, long value )
+    {
+        getNumericTx().add( index, entity, key, value );
+    }
+
+    <T extends PropertyContainer> void remove( NumericIndex<T> index, T entity, String key, Long value )
+    {
+        getNumericTx().remove( index, entity, key, value );
+    }
+
+    <T extends PropertyContainer> void deleteIndex( NumericIndex<T> index )
+    {
+        getNumericTx().delete( index );
+    }
+
+    public void createIndex( Class<? extends PropertyContainer> entityType,
+            String name, Map<String, String> config )
+    {
+        getNumericTx().createIndex( entityType, name, config );
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A file of fixed size pages with an LRU cache of pages in front of it.
+ * Modified pages are kept in memory until {@link #flush()} which first
+ * writes them to a journal file and then in place, so that a crash in the
+ * middle of a flush never leaves a mix of old and new pages behind. An
+ * existing, complete journal is applied when the file is opened again.
+ */
+class PageFile
+{
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private final File file;
+    private final File journalFile;
+    private final int pageSize;
+    private final int maxCachedPages;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final Set<Long> dirty = new HashSet<Long>();
+    private final LinkedHashMap<Long, ByteBuffer> cache;
+
+    PageFile( File file, int pageSize, int maxCachedPages ) throws IOException
+    {
+        this.file = file;
+        this.journalFile = new File( file.getPath() + JOURNAL_SUFFIX );
+        this.pageSize = pageSize;
+        this.maxCachedPages = maxCachedPages;
+        this.cache = new LinkedHashMap<Long, ByteBuffer>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Long, ByteBuffer> eldest )
+            {
+                return size() > PageFile.this.maxCachedPages && !dirty.contains( eldest.getKey() );
+            }
+        };
+        this.raf = new RandomAccessFile( file, "rw" );
+        this.channel = raf.getChannel();
+        applyJournal();
+    }
+
+    int pageSize()
+    {
+        return pageSize;
+    }
+
+    /**
+     * @return {@code true} if nothing has ever been written to this file.
+     */
+    boolean isEmpty() throws IOException
+    {
+        return channel.size() == 0 && cache.isEmpty();
+    }
+
+    /**
+     * Returns the page with the given id. The returned buffer is shared,
+     * use absolute get/put only and call {@link #markDirty(long)} after
+     * modifying it.
+     */
+    ByteBuffer page( long id ) throws IOException
+    {
+        ByteBuffer page = cache.get( id );
+        if ( page == null )
+        {
+            page = ByteBuffer.allocate( pageSize );
+            long position = id * pageSize;
+            while ( page.hasRemaining() && position + page.position() < channel.size() )
+            {
+                if ( channel.read( page, position + page.position() ) == -1 )
+                {
+                    break;
+                }
+            }
+            page.clear();
+            cache.put( id, page );
+        }
+        return page;
+    }
+
+    void markDirty( long id )
+    {
+        dirty.add( id );
+    }
+
+    /**
+     * Writes all modified pages, going through the journal.
+     */
+    void flush() throws IOException
+    {
+        if ( dirty.isEmpty() )
+        {
+            return;
+        }
+
+        writeJournal();
+        for ( Long id : dirty )
+        {
+            writePage( id, cache.get( id ) );
+        }
+        channel.force( false );
+        truncateJournal();
+        dirty.clear();
+        evictOverflow();
+    }
+
+    /**
+     * Forgets all modifications made since the last {@link #flush()}.
+     */
+    void discardChanges()
+    {
+        for ( Long id : dirty )
+        {
+            cache.remove( id );
+        }
+        dirty.clear();
+    }
+
+    void close() throws IOException
+    {
+        flush();
+        channel.close();
+        raf.close();
+    }
+
+    File getFile()
+    {
+        return file;
+    }
+
+    private void evictOverflow()
+    {
+        Iterator<Long> ids = cache.keySet().iterator();
+        while ( cache.size() > maxCachedPages && ids.hasNext() )
+        {
+            ids.next();
+            ids.remove();
+        }
+    }
+
+    private void writePage( long id, ByteBuffer page ) throws IOException
+    {
+        page.clear();
+        long position = id * pageSize;
+        while ( page.hasRemaining() )
+        {
+            channel.write( page, position + page.position() );
+        }
+        page.clear();
+    }
+
+    private void writeJournal() throws IOException
+    {
+        ByteBuffer journal = ByteBuffer.allocate( 4 + dirty.size() * (8 + pageSize) + 8 );
+        journal.putInt( dirty.size() );
+        for ( Long id : dirty )
+        {
+            ByteBuffer page = cache.get( id );
+            journal.putLong( id );
+            journal.put( page.array(), 0, pageSize );
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update( journal.array(), 0, journal.position() );
+        journal.putLong( checksum.getValue() );
+        journal.flip();
+
+        RandomAccessFile journalRaf = new RandomAccessFile( journalFile, "rw" );
+        try
+        {
+            FileChannel journalChannel = journalRaf.getChannel();
+            journalChannel.truncate( 0 );
+            while ( journal.hasRemaining() )
+            {
+                journalChannel.write( journal );
+            }
+            journalChannel.force( false );
+        }
+        finally
+        {
+            journalRaf.close();
+        }
+    }
+
+    private void truncateJournal() throws IOException
+    {
+        RandomAccessFile journalRaf = new RandomAccessFile( journalFile, "rw" );
+        try
+        {
+            journalRaf.getChannel().truncate( 0 );
+            journalRaf.getChannel().force( false );
+        }
+        finally
+        {
+            journalRaf.close();
+        }
+    }
+
+    private void applyJournal() throws IOException
+    {
+        if ( !journalFile.exists() )
+        {
+            return;
+        }
+        if ( journalFile.length() > 0 )
+        {
+            ByteBuffer journal = ByteBuffer.allocate( (int) journalFile.length() );
+            RandomAccessFile journalRaf = new RandomAccessFile( journalFile, "r" );
+            try
+            {
+                FileChannel journalChannel = journalRaf.getChannel();
+                while ( journal.hasRemaining() && journalChannel.read( journal ) != -1 )
+                {
+                    // Keep reading
+                }
+            }
+            finally
+            {
+                journalRaf.close();
+            }
+            journal.flip();
+            if ( isComplete( journal ) )
+            {
+                int count = journal.getInt( 0 );
+                journal.position( 4 );
+                for ( int i = 0; i < count; i++ )
+                {
+                    long id = journal.getLong();
+                    ByteBuffer page = ByteBuffer.allocate( pageSize );
+                    journal.get( page.array() );
+                    writePage( id, page );
+                }
+                channel.force( false );
+            }
+            // else the flush never got to touch the file itself
+        }
+        truncateJournal();
+    }
+
+    private boolean isComplete( ByteBuffer journal )
+    {
+        if ( journal.limit() < 12 )
+        {
+            return false;
+        }
+        int count = journal.getInt( 0 );
+        long expectedLength = 4 + (long) count * (8 + pageSize) + 8;
+        if ( count < 0 || journal.limit() != expectedLength )
+        {
+            return false;
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update( journal.array(), 0, journal.limit() - 8 );
+        return checksum.getValue() == journal.getLong( journal.limit() - 8 );
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import java.util.Map;
+
+import org.neo4j.index.lucene.ValueContext;
+
+/**
+ * How values of a numeric index are turned into the {@code long}s which are
+ * stored and compared in the tree. The type is decided by the
+ * {@link NumericIndexImplementation#KEY_VALUE_TYPE} configuration of the index.
+ */
+enum ValueType
+{
+    LONG
+    {
+        @Override
+        long toSortable( Number number )
+        {
+            if ( number instanceof Double || number instanceof Float )
+            {
+                double value = number.doubleValue();
+                if ( value != Math.rint( value ) || Double.isInfinite( value ) )
+                {
+                    throw new IllegalArgumentException( number + " isn't an integer value, " +
+                            "use a numeric index with " + NumericIndexImplementation.KEY_VALUE_TYPE +
+                            "=double for such values" );
+                }
+            }
+            return number.longValue();
+        }
+
+        @Override
+        Number parse( String value )
+        {
+            return Long.valueOf( value );
+        }
+    },
+    DOUBLE
+    {
+        @Override
+        long toSortable( Number number )
+        {
+            // Flips the bits of negative numbers so that the long
+            // representations sort the same way as the doubles do.
+            long bits = Double.doubleToLongBits( number.doubleValue() );
+            return bits ^ ((bits >> 63) & 0x7fffffffffffffffL);
+        }
+
+        @Override
+        Number parse( String value )
+        {
+            return Double.valueOf( value );
+        }
+    };
+
+    abstract long toSortable( Number number );
+
+    abstract Number parse( String value );
+
+    /**
+     * Accepts {@link Number}s, {@link ValueContext}s wrapping numbers and
+     * strings which parse as numbers of this type.
+     */
+    long toSortable( Object value )
+    {
+        if ( value instanceof ValueContext )
+        {
+            value = ((ValueContext) value).getValue();
+        }
+        if ( value instanceof Number )
+        {
+            return toSortable( (Number) value );
+        }
+        if ( value instanceof String )
+        {
+            try
+            {
+                return toSortable( parse( (String) value ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                throw new IllegalArgumentException( "'" + value + "' isn't a number" );
+            }
+        }
+        throw new IllegalArgumentException( "Numeric indexes only accept numbers, not " + value +
+                (value != null ? " (" + value.getClass().getSimpleName() + ")" : "") );
+    }
+
+    static ValueType of( Map<String, String> config )
+    {
+        String type = config != null ? config.get( NumericIndexImplementation.KEY_VALUE_TYPE ) : null;
+        return type == null ? LONG : valueOf( type.toUpperCase() );
+    }
+}
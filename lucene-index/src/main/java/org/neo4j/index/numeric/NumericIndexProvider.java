@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.numeric;
+
+import org.neo4j.graphdb.index.IndexImplementation;
+import org.neo4j.graphdb.index.IndexProvider;
+import org.neo4j.index.impl.numeric.NumericIndexImplementation;
+import org.neo4j.kernel.KernelData;
+
+/**
+ * Provides indexes of numeric values, stored in B+trees and queried with
+ * {@link NumericRange}s. Create one with
+ * {@link NumericIndexImplementation#LONG_CONFIG} or
+ * {@link NumericIndexImplementation#DOUBLE_CONFIG}.
+ */
+public class NumericIndexProvider extends IndexProvider
+{
+    public NumericIndexProvider()
+    {
+        super( NumericIndexImplementation.SERVICE_NAME );
+    }
+
+    @Override
+    public IndexImplementation load( KernelData kernel )
+    {
+        return new NumericIndexImplementation( kernel.graphDatabase(), kernel.getConfig() );
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.numeric;
+
+import org.neo4j.graphdb.index.Index;
+
+/**
+ * A range query for numeric indexes, i.e. indexes created with the
+ * {@link NumericIndexProvider}. Pass it to {@link Index#query(Object)} or
+ * {@link Index#query(String, Object)}. Hits are returned ordered by value,
+ * lowest first unless {@link #reversed()} is set.
+ *
+ * <pre>
+ * index.query( NumericRange.range( "timestamp", from, to ).top( 10 ) );
+ * </pre>
+ */
+public class NumericRange
+{
+    private final String key;
+    private final Number from;
+    private final Number to;
+    private final boolean includeFrom;
+    private final boolean includeTo;
+    private boolean reversed;
+    private int top = -1;
+
+    private NumericRange( String key, Number from, Number to, boolean includeFrom,
+            boolean includeTo )
+    {
+        this.key = key;
+        this.from = from;
+        this.to = to;
+        this.includeFrom = includeFrom;
+        this.includeTo = includeTo;
+    }
+
+    /**
+     * Returns a range with both bounds inclusive.
+     *
+     * @param key the key to query, may be {@code null} if the key is given
+     * in the call to {@link Index#query(String, Object)}.
+     * @param fromOrNull the lower bound, or {@code null} for no lower bound.
+     * @param toOrNull the upper bound, or {@code null} for no upper bound.
+     * @return a new range.
+     */
+    public static NumericRange range( String key, Number fromOrNull, Number toOrNull )
+    {
+        return range( key, fromOrNull, toOrNull, true, true );
+    }
+
+    /**
+     * Returns a range where each bound can be inclusive or exclusive.
+     *
+     * @param key the key to query, may be {@code null} if the key is given
+     * in the call to {@link Index#query(String, Object)}.
+     * @param fromOrNull the lower bound, or {@code null} for no lower bound.
+     * @param toOrNull the upper bound, or {@code null} for no upper bound.
+     * @param includeFrom whether or not {@code fromOrNull} is inclusive.
+     * @param includeTo whether or not {@code toOrNull} is inclusive.
+     * @return a new range.
+     */
+    public static NumericRange range( String key, Number fromOrNull, Number toOrNull,
+            boolean includeFrom, boolean includeTo )
+    {
+        return new NumericRange( key, fromOrNull, toOrNull, includeFrom, includeTo );
+    }
+
+    /**
+     * @param key the key to query.
+     * @return a range matching all values for {@code key}.
+     */
+    public static NumericRange all( String key )
+    {
+        return range( key, null, null );
+    }
+
+    /**
+     * Makes the hits come back with the highest value first.
+     *
+     * @return this range.
+     */
+    public NumericRange reversed()
+    {
+        this.reversed = true;
+        return this;
+    }
+
+    /**
+     * Limits the result to the first {@code n} hits, in the order of the
+     * result. With a limit the scan stops early which makes for example
+     * finding the lowest or highest value cheap.
+     *
+     * @param n the maximum number of hits to return.
+     * @return this range.
+     */
+    public NumericRange top( int n )
+    {
+        this.top = n;
+        return this;
+    }
+
+    public String getKey()
+    {
+        return key;
+    }
+
+    public Number getFrom()
+    {
+        return from;
+    }
+
+    public Number getTo()
+    {
+        return to;
+    }
+
+    public boolean isFromInclusive()
+    {
+        return includeFrom;
+    }
+
+    public boolean isToInclusive()
+    {
+        return includeTo;
+    }
+
+    public boolean isReversed()
+    {
+        return reversed;
+    }
+
+    /**
+     * @return the maximum number of hits, or {@code -1} for no limit.
+     */
+    public int getTop()
+    {
+        return top;
+    }
+
+    @Override
+    public String toString()
+    {
+        return (key != null ? key + ":" : "") + (includeFrom ? "[" : "{") + from + " TO " + to +
+                (includeTo ? "]" : "}") + (reversed ? " reversed" : "") + (top != -1 ? " top " + top : "");
+    }
+}
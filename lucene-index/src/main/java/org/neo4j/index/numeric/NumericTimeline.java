@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.numeric;
+
+import java.util.Map;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.index.impl.numeric.NumericIndexImplementation;
+import org.neo4j.index.lucene.TimelineIndex;
+
+/**
+ * A {@link TimelineIndex} on top of a numeric index, see
+ * {@link NumericIndexProvider}. The first and last entities are found by
+ * walking to the edge of the tree, no sorting is involved.
+ */
+public class NumericTimeline<T extends PropertyContainer> implements TimelineIndex<T>
+{
+    private static final String FIELD = "timestamp";
+    private final Index<T> index;
+
+    public NumericTimeline( GraphDatabaseService db, Index<T> index )
+    {
+        assertIsNumericIndex( db, index );
+        this.index = index;
+    }
+
+    private void assertIsNumericIndex( GraphDatabaseService db, Index<T> index )
+    {
+        Map<String, String> config = db.index().getConfiguration( index );
+        if ( !NumericIndexImplementation.SERVICE_NAME.equals( config.get( IndexManager.PROVIDER ) ) )
+        {
+            throw new IllegalArgumentException( index + " isn't a numeric index" );
+        }
+    }
+
+    private T getSingle( boolean reversed )
+    {
+        NumericRange range = NumericRange.all( FIELD ).top( 1 );
+        return index.query( reversed ? range.reversed() : range ).getSingle();
+    }
+
+    @Override
+    public T getLast()
+    {
+        return getSingle( true );
+    }
+
+    @Override
+    public T getFirst()
+    {
+        return getSingle( false );
+    }
+
+    @Override
+    public void remove( T entity, long timestamp )
+    {
+        index.remove( entity, FIELD, timestamp );
+    }
+
+    @Override
+    public void add( T entity, long timestamp )
+    {
+        index.add( entity, FIELD, timestamp );
+    }
+
+    @Override
+    public IndexHits<T> getBetween( Long startTimestampOrNull, Long endTimestampOrNull )
+    {
+        return getBetween( startTimestampOrNull, endTimestampOrNull, false );
+    }
+
+    @Override
+    public IndexHits<T> getBetween( Long startTimestampOrNull, Long endTimestampOrNull, boolean reversed )
+    {
+        NumericRange range = NumericRange.range( FIELD, startTimestampOrNull, endTimestampOrNull );
+        return index.query( reversed ? range.reversed() : range );
+    }
+}
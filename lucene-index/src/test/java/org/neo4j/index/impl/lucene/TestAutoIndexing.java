@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -663,4 +664,38 @@ public class TestAutoIndexing
         { // good
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAsynchronousAutoIndexingCatchesUp() throws Exception
+    {
+        stopDb();
+        config = new HashMap<String, String>();
+        config.put( Config.NODE_KEYS_INDEXABLE, "nodeProp" );
+        config.put( Config.NODE_AUTO_INDEXING, "true" );
+        config.put( Config.AUTO_INDEXING_ASYNC, "true" );
+        config.put( Config.AUTO_INDEXING_MAX_LAG, "10" );
+        startDb();
+
+        AutoIndexer<Node> autoIndexer = graphDb.index().getNodeAutoIndexer();
+        newTransaction();
+        Node changed = graphDb.createNode();
+        changed.setProperty( "nodeProp", "before" );
+        Node removed = graphDb.createNode();
+        removed.setProperty( "nodeProp", "removed" );
+        for ( int i = 0; i < 100; i++ )
+        {
+            graphDb.createNode().setProperty( "nodeProp", "value" + i );
+        }
+        newTransaction();
+        changed.setProperty( "nodeProp", "after" );
+        removed.removeProperty( "nodeProp" );
+        newTransaction();
+
+        assertTrue( autoIndexer.awaitIndexing( 10, TimeUnit.SECONDS ) );
+        ReadableIndex<Node> nodeIndex = autoIndexer.getAutoIndex();
+        assertEquals( changed, nodeIndex.get( "nodeProp", "after" ).getSingle() );
+        assertFalse( nodeIndex.get( "nodeProp", "before" ).hasNext() );
+        assertFalse( nodeIndex.get( "nodeProp", "removed" ).hasNext() );
+        assertEquals( 1, nodeIndex.get( "nodeProp", "value99" ).size() );
+    }
+}
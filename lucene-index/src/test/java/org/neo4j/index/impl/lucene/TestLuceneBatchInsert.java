@@ -36,6 +36,7 @@ import static org.neo4j.index.lucene.ValueContext.numeric;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -54,6 +55,7 @@ import org.neo4j.graphdb.index.BatchInserterIndexProvider;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.graphdb.index.ReadableIndex;
 import org.neo4j.index.Neo4jTestCase;
 import org.neo4j.index.lucene.ValueContext;
 import org.neo4j.kernel.EmbeddedGraphDatabase;
@@ -388,6 +390,89 @@ public class TestLuceneBatchInsert
         inserter.shutdown();
     }
 
+    @Test
+    public void testParallelIndexing()
+    {
+        String path = new File( PATH, "10" ).getAbsolutePath();
+        BatchInserter inserter = new BatchInserterImpl( path );
+        BatchInserterIndexProvider provider = new LuceneBatchInserterIndexProvider( inserter, 4 );
+        BatchInserterIndex index = provider.nodeIndex( "users", stringMap( "type", "fulltext" ) );
+        long[] ids = new long[1000];
+        for ( int i = 0; i < ids.length; i++ )
+        {
+            Map<String, Object> properties = map( "name", "User " + i, "group", "" + (i % 10) );
+            ids[i] = inserter.createNode( properties );
+            index.add( ids[i], properties );
+        }
+        index.flush();
+        assertContains( index.get( "name", "User 10" ), ids[10] );
+        assertEquals( 100, count( (Iterator<Long>) index.get( "group", "3" ) ) );
+        assertEquals( ids.length, count( (Iterator<Long>) index.query( "name", "user" ) ) );
+
+        index.updateOrAdd( ids[10], map( "name", "Someone else" ) );
+        index.flush();
+        assertContains( index.get( "name", "User 10" ) );
+        assertContains( index.query( "name", "someone" ), ids[10] );
+
+        provider.shutdown();
+        inserter.shutdown();
+        assertTrue( !new File( path, "index/lucene-partial/node/users" ).exists() );
+
+        GraphDatabaseService db = new EmbeddedGraphDatabase( path );
+        Index<Node> dbIndex = db.index().forNodes( "users" );
+        assertEquals( ids.length - 1, count( (Iterator<Node>) dbIndex.query( "name", "user" ) ) );
+        assertContains( dbIndex.query( "name", "someone" ), db.getNodeById( ids[10] ) );
+        db.shutdown();
+    }
+
+    @Test
+    public void testRepopulateIndexesFromStore()
+    {
+        String path = new File( PATH, "11" ).getAbsolutePath();
+        BatchInserterImpl inserter = new BatchInserterImpl( path );
+        long[] ids = new long[25000];
+        for ( int i = 0; i < ids.length; i++ )
+        {
+            ids[i] = inserter.createNode( i % 2 == 0 ? map( "name", "User " + i, "age", i ) :
+                    map( "age", i ) );
+        }
+        long relId = inserter.createRelationship( ids[0], ids[1], EdgeType.KNOWS,
+                map( "since", 2010 ) );
+        LuceneIndexRepopulator repopulator = new LuceneIndexRepopulator( inserter, 3, 2 );
+        assertEquals( ids.length / 2, repopulator.repopulateNodeAutoIndex( Arrays.asList( "name" ) ) );
+        assertEquals( ids.length, repopulator.repopulateNodeIndex( "ages", EXACT_CONFIG,
+                Arrays.asList( "age", "name" ) ) );
+        assertEquals( 1, repopulator.repopulateRelationshipIndex( "since", EXACT_CONFIG,
+                Arrays.asList( "since" ) ) );
+        repopulator.shutdown();
+        inserter.shutdown();
+
+        GraphDatabaseService db = new EmbeddedGraphDatabase( path );
+        ReadableIndex<Node> autoIndex = db.index().getNodeAutoIndexer().getAutoIndex();
+        assertContains( autoIndex.get( "name", "User 10" ), db.getNodeById( ids[10] ) );
+        assertContains( autoIndex.get( "name", "User 11" ) );
+        Index<Node> ages = db.index().forNodes( "ages" );
+        assertContains( ages.get( "age", 11 ), db.getNodeById( ids[11] ) );
+        assertContains( ages.get( "name", "User 24998" ), db.getNodeById( ids[24998] ) );
+        assertContains( db.index().forRelationships( "since" ).get( "since", 2010 ),
+                db.getRelationshipById( relId ) );
+        db.shutdown();
+
+        // Repopulating again replaces what was there
+        inserter = new BatchInserterImpl( path );
+        inserter.setNodeProperties( ids[10], map( "name", "Someone else" ) );
+        repopulator = new LuceneIndexRepopulator( inserter );
+        repopulator.repopulateNodeAutoIndex( Arrays.asList( "name" ) );
+        repopulator.shutdown();
+        inserter.shutdown();
+
+        db = new EmbeddedGraphDatabase( path );
+        autoIndex = db.index().getNodeAutoIndexer().getAutoIndex();
+        assertContains( autoIndex.get( "name", "User 10" ) );
+        assertContains( autoIndex.get( "name", "Someone else" ), db.getNodeById( ids[10] ) );
+        db.shutdown();
+    }
+
     private enum EdgeType implements RelationshipType
     {
         KNOWS
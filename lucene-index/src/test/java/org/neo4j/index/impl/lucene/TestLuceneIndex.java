@@ -373,6 +373,41 @@ public class TestLuceneIndex extends AbstractLuceneIndexTest
         index.delete();
     }
 
+    @Test
+    public void makeSureFulltextQueriesSeeTxModifications()
+    {
+        Index<Node> index = nodeIndex( "index", LuceneIndexImplementation.FULLTEXT_CONFIG );
+        Node neo = graphDb.createNode();
+        Node trinity = graphDb.createNode();
+        index.add( neo, "name", "Thomas Anderson" );
+        index.add( trinity, "name", "Trinity" );
+        index.add( trinity, "age", numeric( 30 ) );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            assertThat( index.query( "name", "thomas" ), contains( neo ) );
+            assertThat( index.query( "name", "t*" ), contains( neo, trinity ) );
+            assertThat( index.query( "name", "tr?nity" ), contains( trinity ) );
+            assertThat( index.query( "name:t* AND NOT name:trinity" ), contains( neo ) );
+            assertThat( index.query( "name:[a TO m]" ), contains( neo ) );
+            assertThat( index.query( numericRange( "age", 20, 40 ) ), contains( trinity ) );
+            assertThat( index.query( numericRange( "age", 31, 40 ) ), isEmpty() );
+            restartTx();
+        }
+
+        index.remove( neo, "name", "Thomas Anderson" );
+        index.add( neo, "name", "Neo" );
+        for ( int i = 0; i < 2; i++ )
+        {
+            assertThat( index.query( "name", "thomas" ), isEmpty() );
+            assertThat( index.query( "name", "neo" ), contains( neo ) );
+            assertThat( index.query( "name", "t*" ), contains( trinity ) );
+            assertThat( index.query( "name", "\"Thomas Anderson\"" ), isEmpty() );
+            restartTx();
+        }
+        index.delete();
+    }
+
     @SuppressWarnings( "unchecked" )
     private <T extends PropertyContainer> void doSomeRandomUseCaseTestingWithExactIndex(
             Index<T> index, EntityCreator<T> creator )
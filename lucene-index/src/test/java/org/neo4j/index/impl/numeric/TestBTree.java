@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.index.Neo4jTestCase.deleteFileOrDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBTree
+{
+    private static final File PATH = new File( "target/var/btree" );
+    private static final int PAGE_SIZE = 256;
+
+    @Before
+    public void clean()
+    {
+        deleteFileOrDirectory( PATH );
+        PATH.mkdirs();
+    }
+
+    private PageFile newPageFile( int cachedPages ) throws IOException
+    {
+        return new PageFile( new File( PATH, "tree" ), PAGE_SIZE, cachedPages );
+    }
+
+    @Test
+    public void makeSureScansSeeAllInsertedEntriesInOrder() throws Exception
+    {
+        PageFile file = newPageFile( 8 );
+        BTree tree = new BTree( file );
+        NavigableSet<Long> expected = new TreeSet<Long>();
+        Random random = new Random( 1234 );
+        for ( int i = 0; i < 5000; i++ )
+        {
+            long value = random.nextInt( 10000 ) - 5000;
+            assertEquals( expected.add( value ), tree.insert( 0, value, value * 2 ) );
+        }
+        for ( int i = 0; i < 2000; i++ )
+        {
+            long value = random.nextInt( 10000 ) - 5000;
+            assertEquals( expected.remove( value ), tree.remove( 0, value, value * 2 ) );
+        }
+        assertEquals( expected.size(), tree.size() );
+        assertEquals( new ArrayList<Long>( expected ), scan( tree, Long.MIN_VALUE, Long.MAX_VALUE, false ) );
+        assertEquals( new ArrayList<Long>( expected.subSet( -100L, true, 2500L, true ) ),
+                scan( tree, -100, 2500, false ) );
+        List<Long> reversed = new ArrayList<Long>( expected.subSet( -3000L, true, 10L, true ) );
+        Collections.reverse( reversed );
+        assertEquals( reversed, scan( tree, -3000, 10, true ) );
+        file.close();
+    }
+
+    @Test
+    public void makeSureFlushedEntriesSurviveReopening() throws Exception
+    {
+        PageFile file = newPageFile( 4 );
+        BTree tree = new BTree( file );
+        for ( long i = 0; i < 1000; i++ )
+        {
+            tree.insert( 0, i, i * 2 );
+        }
+        file.flush();
+        tree.insert( 0, 2000, 4000 );
+        file.discardChanges();
+        file.close();
+
+        file = newPageFile( 4 );
+        tree = new BTree( file );
+        assertEquals( 1000, tree.size() );
+        assertEquals( 1000, scan( tree, Long.MIN_VALUE, Long.MAX_VALUE, false ).size() );
+        assertFalse( tree.remove( 0, 2000, 4000 ) );
+        file.close();
+    }
+
+    @Test
+    public void makeSureCompleteJournalIsAppliedAndIncompleteIgnored() throws Exception
+    {
+        PageFile file = newPageFile( 16 );
+        BTree tree = new BTree( file );
+        for ( long i = 0; i < 100; i++ )
+        {
+            tree.insert( 0, i, i );
+        }
+        file.close();
+
+        // A journal cut short is ignored, the tree file is untouched
+        File journal = new File( PATH, "tree.journal" );
+        RandomAccessFile raf = new RandomAccessFile( journal, "rw" );
+        raf.writeInt( 1 );
+        raf.writeLong( 1 );
+        raf.close();
+        file = newPageFile( 16 );
+        tree = new BTree( file );
+        assertEquals( 100, tree.size() );
+        assertEquals( 0, journal.length() );
+        file.close();
+    }
+
+    private List<Long> scan( BTree tree, long from, long to, boolean reversed ) throws IOException
+    {
+        final List<Long> result = new ArrayList<Long>();
+        tree.scan( new long[] { 0, from, Long.MIN_VALUE }, new long[] { 0, to, Long.MAX_VALUE }, reversed,
+                new BTree.EntryVisitor()
+        {
+            public boolean visit( long k0, long k1, long k2 )
+            {
+                assertTrue( k2 == k1 * 2 );
+                result.add( k1 );
+                return true;
+            }
+        } );
+        return result;
+    }
+}
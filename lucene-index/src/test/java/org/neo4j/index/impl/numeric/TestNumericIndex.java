@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.numeric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.neo4j.helpers.collection.IteratorUtil.asCollection;
+import static org.neo4j.index.Neo4jTestCase.deleteFileOrDirectory;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.RelationshipIndex;
+import org.neo4j.index.numeric.NumericRange;
+import org.neo4j.index.numeric.NumericTimeline;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+
+public class TestNumericIndex
+{
+    private static final String PATH = "target/var/numeric";
+    private GraphDatabaseService db;
+    private Transaction tx;
+
+    @Before
+    public void startDb()
+    {
+        deleteFileOrDirectory( new File( PATH ) );
+        db = new EmbeddedGraphDatabase( PATH );
+    }
+
+    @After
+    public void stopDb()
+    {
+        finishTx( false );
+        db.shutdown();
+    }
+
+    private void beginTx()
+    {
+        tx = db.beginTx();
+    }
+
+    private void finishTx( boolean success )
+    {
+        if ( tx != null )
+        {
+            if ( success )
+            {
+                tx.success();
+            }
+            tx.finish();
+            tx = null;
+        }
+    }
+
+    private Index<Node> nodeIndex( String name )
+    {
+        return db.index().forNodes( name, NumericIndexImplementation.LONG_CONFIG );
+    }
+
+    private Node[] createNodes( Index<Node> index, String key, long... values )
+    {
+        Node[] nodes = new Node[values.length];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            nodes[i] = db.createNode();
+            index.add( nodes[i], key, values[i] );
+        }
+        return nodes;
+    }
+
+    @Test
+    public void makeSureRangesAreReturnedInOrder()
+    {
+        Index<Node> index = nodeIndex( "ranges" );
+        beginTx();
+        Node[] nodes = createNodes( index, "time", 30, 10, 50, 20, 40 );
+        finishTx( true );
+
+        assertEquals( Arrays.asList( nodes[1], nodes[3], nodes[0], nodes[4], nodes[2] ),
+                asCollection( index.query( NumericRange.all( "time" ) ) ) );
+        assertEquals( Arrays.asList( nodes[0], nodes[3] ),
+                asCollection( index.query( "time", NumericRange.range( null, 20, 30 ).reversed() ) ) );
+        assertEquals( Arrays.asList( nodes[0] ),
+                asCollection( index.query( NumericRange.range( "time", 20, 40, false, false ) ) ) );
+        assertEquals( Arrays.asList( nodes[2], nodes[4] ),
+                asCollection( index.query( NumericRange.range( "time", 25, null ).reversed().top( 2 ) ) ) );
+        assertEquals( nodes[3], index.get( "time", 20 ).getSingle() );
+        assertEquals( 0, index.get( "other", 20 ).size() );
+    }
+
+    @Test
+    public void makeSureTransactionStateIsMergedWithCommittedState()
+    {
+        Index<Node> index = nodeIndex( "tx" );
+        beginTx();
+        Node[] nodes = createNodes( index, "time", 10, 20, 30 );
+        finishTx( true );
+
+        beginTx();
+        Node added = createNodes( index, "time", 15 )[0];
+        index.remove( nodes[1], "time", 20 );
+        index.remove( nodes[2] );
+        assertEquals( Arrays.asList( nodes[0], added ),
+                asCollection( index.query( NumericRange.all( "time" ) ) ) );
+        assertEquals( added, index.query( NumericRange.all( "time" ).reversed().top( 1 ) ).getSingle() );
+        finishTx( false );
+        assertEquals( Arrays.asList( nodes[0], nodes[1], nodes[2] ),
+                asCollection( index.query( NumericRange.all( "time" ) ) ) );
+
+        beginTx();
+        index.remove( nodes[0], "time" );
+        finishTx( true );
+        assertEquals( Arrays.asList( nodes[1], nodes[2] ),
+                asCollection( index.query( NumericRange.all( "time" ) ) ) );
+    }
+
+    @Test
+    public void makeSureCommittedEntriesSurviveRestart()
+    {
+        Index<Node> index = nodeIndex( "restart" );
+        beginTx();
+        Node[] nodes = createNodes( index, "time", 3, 1, 2 );
+        finishTx( true );
+        db.shutdown();
+
+        db = new EmbeddedGraphDatabase( PATH );
+        index = nodeIndex( "restart" );
+        assertEquals( Arrays.asList( nodes[1].getId(), nodes[2].getId(), nodes[0].getId() ),
+                Arrays.asList( index.query( NumericRange.all( "time" ) ).next().getId(),
+                        index.get( "time", 2 ).getSingle().getId(),
+                        index.get( "time", 3 ).getSingle().getId() ) );
+    }
+
+    @Test
+    public void makeSureDoubleValuesAreOrdered()
+    {
+        Index<Node> index = db.index().forNodes( "doubles", NumericIndexImplementation.DOUBLE_CONFIG );
+        beginTx();
+        Node[] nodes = new Node[4];
+        double[] values = { 1.5, -2.25, 0d, -0.5 };
+        for ( int i = 0; i < values.length; i++ )
+        {
+            nodes[i] = db.createNode();
+            index.add( nodes[i], "score", values[i] );
+        }
+        finishTx( true );
+        assertEquals( Arrays.asList( nodes[1], nodes[3], nodes[2], nodes[0] ),
+                asCollection( index.query( NumericRange.all( "score" ) ) ) );
+        assertEquals( Arrays.asList( nodes[3], nodes[2] ),
+                asCollection( index.query( NumericRange.range( "score", -1, 1 ) ) ) );
+    }
+
+    @Test
+    public void makeSureRelationshipsCanBeFilteredOnNodes()
+    {
+        RelationshipIndex index = db.index().forRelationships( "rels", NumericIndexImplementation.LONG_CONFIG );
+        beginTx();
+        Node node = db.createNode();
+        Relationship r1 = node.createRelationshipTo( db.createNode(), DynamicRelationshipType.withName( "A" ) );
+        Relationship r2 = db.createNode().createRelationshipTo( db.createNode(),
+                DynamicRelationshipType.withName( "A" ) );
+        index.add( r1, "weight", 5 );
+        index.add( r2, "weight", 5 );
+        finishTx( true );
+        assertEquals( Collections.singletonList( r1 ),
+                asCollection( index.get( "weight", 5, node, null ) ) );
+        assertEquals( 2, index.get( "weight", 5 ).size() );
+    }
+
+    @Test
+    public void makeSureTimelineWorksOnNumericIndex()
+    {
+        NumericTimeline<Node> timeline = new NumericTimeline<Node>( db, nodeIndex( "timeline" ) );
+        assertNull( timeline.getFirst() );
+        beginTx();
+        Node[] nodes = { db.createNode(), db.createNode(), db.createNode() };
+        timeline.add( nodes[0], 200 );
+        timeline.add( nodes[1], 100 );
+        timeline.add( nodes[2], 300 );
+        finishTx( true );
+        assertEquals( nodes[1], timeline.getFirst() );
+        assertEquals( nodes[2], timeline.getLast() );
+        assertEquals( Arrays.asList( nodes[2], nodes[0] ),
+                asCollection( timeline.getBetween( 150L, null, true ) ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void makeSureNonNumericValuesAreRejected()
+    {
+        Index<Node> index = nodeIndex( "strict" );
+        beginTx();
+        index.add( db.createNode(), "time", "yesterday" );
+    }
+}
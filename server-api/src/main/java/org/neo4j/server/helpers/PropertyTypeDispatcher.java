@@ -48,7 +48,13 @@ public abstract class PropertyTypeDispatcher<K, T>
     public static void consumeProperties( PropertyTypeDispatcher<String, Void> dispatcher,
             PropertyContainer entity )
     {
-        for ( String key : entity.getPropertyKeys() )
+        consumeProperties( dispatcher, entity, entity.getPropertyKeys() );
+    }
+
+    public static void consumeProperties( PropertyTypeDispatcher<String, Void> dispatcher,
+            PropertyContainer entity, Iterable<String> keys )
+    {
+        for ( String key : keys )
         {
             Object property = entity.getProperty( key, null );
             if ( property == null ) continue;
@@ -19,11 +19,14 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Iterator;
 
 import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.collection.ClosableIterator;
 import org.neo4j.helpers.collection.IterableWrapper;
 import org.neo4j.helpers.collection.PrefetchingIterator;
 
@@ -53,11 +56,44 @@ public final class ListRepresentation extends Representation
         return format.complete( writer );
     }
 
+    @Override
+    void serialize( RepresentationFormat format, URI baseUri, ExtensionInjector extensions,
+            OutputStream output ) throws IOException
+    {
+        ListWriter writer = format.serializeList( type, output );
+        try
+        {
+            serialize( new ListSerializer( writer, baseUri, extensions ) );
+        }
+        catch ( RuntimeException e )
+        {
+            writer.failed( e );
+            throw e;
+        }
+        writer.done();
+    }
+
+    /*
+     * Lists of index hits and the like hold on to resources until they are
+     * read to the end. Their iterators are closed here however serializing
+     * ends, so that an aborted response doesn't leak them.
+     */
     void serialize( ListSerializer serializer )
     {
-        for ( Representation repr : content )
+        Iterator<? extends Representation> items = content.iterator();
+        try
         {
-            repr.addTo( serializer );
+            while ( items.hasNext() )
+            {
+                items.next().addTo( serializer );
+            }
+        }
+        finally
+        {
+            if ( items instanceof ClosableIterator<?> )
+            {
+                ( (ClosableIterator<?>) items ).close();
+            }
         }
     }
 
@@ -78,4 +78,15 @@ public abstract class ListWriter
     protected abstract void writeValue( String type, Object value );
 
     protected abstract void done();
+
+    /**
+     * Invoked instead of {@link #done()} on the writer of a list which is
+     * written straight to the output, when serializing the list fails part
+     * way through. Writers which have already written part of the list can
+     * end it here, so that the client gets a complete document rather than a
+     * truncated one. The exception is rethrown once this returns.
+     */
+    protected void failed( RuntimeException cause )
+    {
+    }
 }
@@ -19,6 +19,8 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 
 public abstract class Representation
@@ -80,6 +82,17 @@ public abstract class Representation
     abstract String serialize( RepresentationFormat format, URI baseUri,
             ExtensionInjector extensions ) ;
 
+    /*
+     * Writes this representation straight to the output. Formats that can't
+     * produce strings get all their responses written this way.
+     */
+    void serialize( RepresentationFormat format, URI baseUri, ExtensionInjector extensions,
+            OutputStream output ) throws IOException
+    {
+        output.write( serialize( format, baseUri, extensions ).getBytes( "UTF-8" ) );
+        output.flush();
+    }
+
     abstract void addTo( ListSerializer serializer );
 
     abstract void putTo( MappingSerializer serializer, String key );
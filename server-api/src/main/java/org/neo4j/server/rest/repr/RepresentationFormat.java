@@ -19,6 +19,8 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 
@@ -70,6 +72,49 @@ public abstract class RepresentationFormat implements InputFormat
 
     protected abstract ListWriter serializeList( String type );
 
+    ListWriter serializeList( RepresentationType type, OutputStream output ) throws IOException
+    {
+        if ( type.listName == null )
+            throw new IllegalStateException( "Invalid list type: " + type );
+        return serializeList( type.listName, output );
+    }
+
+    /**
+     * Formats that can write a list to the output as it is being serialized,
+     * instead of building the complete result first, return <code>true</code>
+     * here and implement {@link #serializeList(String, OutputStream)}.
+     */
+    protected boolean supportsStreaming()
+    {
+        return false;
+    }
+
+    /**
+     * Only invoked if {@link #supportsStreaming()} returns <code>true</code>.
+     * The returned writer should write everything it gets to
+     * <code>output</code> right away, and flush it when
+     * {@link ListWriter#done()} is invoked, {@link #complete(ListWriter)} is
+     * never invoked for it.
+     */
+    protected ListWriter serializeList( String type, OutputStream output ) throws IOException
+    {
+        throw new UnsupportedOperationException( this + " does not support streaming" );
+    }
+
+    /**
+     * Formats that can't represent what they produce as a {@link String}, such
+     * as binary formats, return <code>true</code> here. Every response is then
+     * written to the output stream, through
+     * {@link #serializeList(String, OutputStream)},
+     * {@link #serializeMapping(String, OutputStream)} and
+     * {@link #serializeValue(String, Object, OutputStream)}. Implies
+     * {@link #supportsStreaming()}.
+     */
+    protected boolean requiresStreaming()
+    {
+        return false;
+    }
+
     MappingWriter serializeMapping( RepresentationType type )
     {
         return serializeMapping( type.valueName );
@@ -77,6 +122,35 @@ public abstract class RepresentationFormat implements InputFormat
 
     protected abstract MappingWriter serializeMapping( String type );
 
+    MappingWriter serializeMapping( RepresentationType type, OutputStream output ) throws IOException
+    {
+        return serializeMapping( type.valueName, output );
+    }
+
+    /**
+     * Only invoked if {@link #requiresStreaming()} returns <code>true</code>,
+     * with the same contract as {@link #serializeList(String, OutputStream)}.
+     */
+    protected MappingWriter serializeMapping( String type, OutputStream output ) throws IOException
+    {
+        throw new UnsupportedOperationException( this + " does not support streaming" );
+    }
+
+    void serializeValue( RepresentationType type, Object value, OutputStream output ) throws IOException
+    {
+        serializeValue( type.valueName, value, output );
+    }
+
+    /**
+     * Writes a single value to <code>output</code>. By default this is the
+     * result of {@link #serializeValue(String, Object)}, encoded as UTF-8.
+     */
+    protected void serializeValue( String type, Object value, OutputStream output ) throws IOException
+    {
+        output.write( serializeValue( type, value ).getBytes( "UTF-8" ) );
+        output.flush();
+    }
+
     /**
      * Will be invoked (when serialization is done) with the result retrieved
      * from invoking {@link #serializeList(String)}, it is therefore safe for
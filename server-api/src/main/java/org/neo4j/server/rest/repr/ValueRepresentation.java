@@ -19,6 +19,8 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 
 import org.neo4j.graphdb.RelationshipType;
@@ -41,6 +43,13 @@ public class ValueRepresentation extends Representation
         return format.serializeValue( type, value );
     }
 
+    @Override
+    void serialize( RepresentationFormat format, URI baseUri, ExtensionInjector extensions, OutputStream output )
+            throws IOException
+    {
+        format.serializeValue( type, value, output );
+    }
+
     @Override
     void addTo( ListSerializer serializer )
     {
@@ -96,6 +105,13 @@ public class ValueRepresentation extends Representation
                 return Serializer.joinBaseWithRelativePath( baseUri, path );
             }
 
+            @Override
+            void serialize( RepresentationFormat format, URI baseUri, ExtensionInjector extensions,
+                    OutputStream output ) throws IOException
+            {
+                format.serializeValue( type, Serializer.joinBaseWithRelativePath( baseUri, path ), output );
+            }
+
             @Override
             void addTo( ListSerializer serializer )
             {
@@ -120,6 +136,13 @@ public class ValueRepresentation extends Representation
                 return Serializer.joinBaseWithRelativePath( baseUri, path );
             }
 
+            @Override
+            void serialize( RepresentationFormat format, URI baseUri, ExtensionInjector extensions,
+                    OutputStream output ) throws IOException
+            {
+                format.serializeValue( type, Serializer.joinBaseWithRelativePath( baseUri, path ), output );
+            }
+
             @Override
             void addTo( ListSerializer serializer )
             {
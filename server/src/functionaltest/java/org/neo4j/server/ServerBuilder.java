@@ -49,7 +49,6 @@ import org.neo4j.server.modules.ThirdPartyJAXRSModule;
 import org.neo4j.server.modules.WebAdminModule;
 import org.neo4j.server.rest.paging.Clock;
 import org.neo4j.server.rest.paging.FakeClock;
-import org.neo4j.server.rest.paging.LeaseManagerProvider;
 import org.neo4j.server.startup.healthcheck.StartupHealthCheck;
 import org.neo4j.server.startup.healthcheck.StartupHealthCheckRule;
 import org.neo4j.server.web.Jetty6WebServer;
@@ -105,14 +104,22 @@ public class ServerBuilder
             when( startupHealthCheck.run() ).thenReturn( true );
         }
 
-        if ( clock != null )
-        {
-            LeaseManagerProvider.setClock( clock );
-        }
-
+        final Clock leaseClock = clock;
         return new NeoServerWithEmbeddedWebServer( new NeoServerBootstrapper(), addressResolver, startupHealthCheck,
                 new PropertyFileConfigurator( new Validator( new DatabaseLocationMustBeSpecifiedRule() ), configFile ),
-                new Jetty6WebServer(), serverModules );
+                new Jetty6WebServer(), serverModules )
+        {
+            @Override
+            public void start()
+            {
+                super.start();
+                // The lease manager is created as the server starts
+                if ( leaseClock != null && getLeaseManager() != null )
+                {
+                    getLeaseManager().setClock( leaseClock );
+                }
+            }
+        };
     }
 
     public File createPropertiesFiles() throws IOException
@@ -26,6 +26,8 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import javax.ws.rs.core.MediaType;
+
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -38,9 +40,11 @@ import org.neo4j.server.helpers.ServerHelper;
 import org.neo4j.server.rest.domain.GraphDbHelper;
 import org.neo4j.server.rest.domain.JsonHelper;
 import org.neo4j.server.rest.domain.JsonParseException;
+import org.neo4j.server.rest.web.BatchOperationService;
 import org.neo4j.test.TestData;
 
 import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.UniformInterfaceException;
 
 public class BatchOperationFunctionalTest
@@ -286,6 +290,9 @@ public class BatchOperationFunctionalTest
         assertEquals(4, results.size());
         assertEquals(1, helper.getIndexedRelationships("my_rels", "name", "bob")
                 .size());
+        // "from" is the path the operation was sent to, with the
+        // placeholders replaced
+        assertEquals(results.get(0).get("location") + "/relationships", results.get(2).get("from"));
 
         gen.get()
                 .payload(jsonString)
@@ -420,4 +427,117 @@ public class BatchOperationFunctionalTest
         assertEquals(originalNodeCount, helper.getNumberOfNodes());
 
     }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void shouldStreamResultsWhenAsked() throws Exception
+    {
+        int originalNodeCount = helper.getNumberOfNodes();
+
+        String jsonString = new PrettyJSON().array()
+                .object()
+                .key( "method" ).value( "POST" )
+                .key( "to" ).value( "/node" )
+                .key( "body" ).object().key( "age" ).value( 1 ).endObject()
+                .key( "id" ).value( 0 )
+                .endObject()
+
+                .object()
+                .key( "method" ).value( "PUT" )
+                .key( "to" ).value( "{0}/properties/name" )
+                .key( "body" ).value( "streamed" )
+                .key( "id" ).value( 1 )
+                .endObject()
+
+                .object()
+                .key( "method" ).value( "GET" )
+                .key( "to" ).value( "{0}" )
+                .key( "id" ).value( 2 )
+                .endObject()
+                .endArray()
+                .toString();
+
+        ClientResponse response = streamedBatch( jsonString );
+
+        assertEquals( 200, response.getStatus() );
+        List<Map<String, Object>> results = JsonHelper.jsonToList( response.getEntity( String.class ) );
+        assertEquals( 3, results.size() );
+        assertEquals( 201, results.get( 0 ).get( "status" ) );
+        assertTrue( ( (String) results.get( 0 ).get( "location" ) ).length() > 0 );
+        assertEquals( 204, results.get( 1 ).get( "status" ) );
+        assertEquals( 200, results.get( 2 ).get( "status" ) );
+        assertEquals( results.get( 0 ).get( "location" ), results.get( 2 ).get( "from" ) );
+        Map<String, Object> node = (Map<String, Object>) results.get( 2 ).get( "body" );
+        Map<String, Object> data = (Map<String, Object>) node.get( "data" );
+        assertEquals( "streamed", data.get( "name" ) );
+        assertEquals( originalNodeCount + 1, helper.getNumberOfNodes() );
+    }
+
+    @Test
+    public void shouldRollbackAndReportTheFailureWhenStreaming() throws Exception
+    {
+        int originalNodeCount = helper.getNumberOfNodes();
+
+        String jsonString = "[" + "{ " + "\"method\":\"POST\"," + "\"to\":\"/node\", " + "\"body\":{ \"age\":1 }"
+                + "}," + "{ " + "\"method\":\"GET\"," + "\"to\":\"/node/987654321\"" + "}," + "{ "
+                + "\"method\":\"POST\"," + "\"to\":\"/node\"" + "}" + "]";
+
+        ClientResponse response = streamedBatch( jsonString );
+
+        assertEquals( 200, response.getStatus() );
+        List<Map<String, Object>> results = JsonHelper.jsonToList( response.getEntity( String.class ) );
+        assertEquals( 2, results.size() );
+        assertEquals( 201, results.get( 0 ).get( "status" ) );
+        assertEquals( 404, results.get( 1 ).get( "status" ) );
+        assertEquals( "/node/987654321", results.get( 1 ).get( "from" ) );
+        assertTrue( results.get( 1 ).containsKey( "body" ) );
+        assertEquals( originalNodeCount, helper.getNumberOfNodes() );
+    }
+
+    @Test
+    public void shouldReturnEveryResultOfABatchTooBigToKeepInMemory() throws Exception
+    {
+        int originalNodeCount = helper.getNumberOfNodes();
+        // Big enough for the results to be written to disk before the
+        // response is sent
+        int operations = 2000;
+
+        StringBuilder jsonString = new StringBuilder( "[" );
+        for ( int i = 0; i < operations; i++ )
+        {
+            jsonString.append( i == 0 ? "" : "," )
+                    .append( "{\"method\":\"POST\",\"to\":\"/node\",\"body\":{\"index\":" )
+                    .append( i )
+                    .append( "},\"id\":" )
+                    .append( i )
+                    .append( "}" );
+        }
+        jsonString.append( "]" );
+
+        ClientResponse response = FunctionalTestHelper.CLIENT.resource( functionalTestHelper.dataUri() + "batch" )
+                .type( MediaType.APPLICATION_JSON )
+                .accept( MediaType.APPLICATION_JSON )
+                .entity( jsonString.toString() )
+                .post( ClientResponse.class );
+
+        assertEquals( 200, response.getStatus() );
+        List<Map<String, Object>> results = JsonHelper.jsonToList( response.getEntity( String.class ) );
+        assertEquals( operations, results.size() );
+        for ( int i = 0; i < operations; i++ )
+        {
+            assertEquals( i, results.get( i ).get( "id" ) );
+            assertTrue( ( (String) results.get( i ).get( "location" ) ).length() > 0 );
+        }
+        assertEquals( originalNodeCount + operations, helper.getNumberOfNodes() );
+    }
+
+    private ClientResponse streamedBatch( String jsonString )
+    {
+        return FunctionalTestHelper.CLIENT.resource( functionalTestHelper.dataUri() + "batch" )
+                .type( MediaType.APPLICATION_JSON )
+                .accept( MediaType.APPLICATION_JSON )
+                .header( BatchOperationService.STREAM_HEADER, "true" )
+                .entity( jsonString )
+                .post( ClientResponse.class );
+    }
 }
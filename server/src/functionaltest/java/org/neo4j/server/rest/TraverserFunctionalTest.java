@@ -170,6 +170,19 @@ public class TraverserFunctionalTest extends AbstractRestFunctionalTestBase
         expectNodes( entity, getNodes( "Root", "Mattias", "Johan", "Emil" ) );
     }
 
+    @Test
+    @Graph( "I know you" )
+    public void shouldGet400WhenTheReturnFilterScriptIsBroken()
+            throws PropertyValueException
+    {
+        String description = JsonHelper.createJsonFrom( MapUtil.map( "return_filter", MapUtil.map( "language",
+                "javascript", "body", "position.endNode(.getProperty('name'" ) ) );
+        String entity = gen.get().expectedStatus( Status.BAD_REQUEST.getStatusCode() ).payload( description ).post(
+                getTraverseUriNodes( getNode( "I" ) ) ).entity();
+        Map<?, ?> error = (Map<?, ?>) JsonHelper.jsonToSingleValue( entity );
+        assertTrue( error.get( "exception" ).toString().contains( "EvaluationException" ) );
+    }
+
     @Test
     @Graph( "I know you" )
     public void shouldGet400WhenSupplyingInvalidTraverserDescriptionFormat()
@@ -178,7 +178,7 @@ public class PagedTraverserFunctionalTest
         JaxRsResponse postResponse = createPagedTraverser();
         assertEquals(201, postResponse.getStatus());
 
-        FakeClock clock = (FakeClock) LeaseManagerProvider.getClock();
+        FakeClock clock = (FakeClock) server.getLeaseManager().getClock();
         final int TEN_MINUTES = 10;
         clock.forwardMinutes(TEN_MINUTES);
 
@@ -226,7 +226,7 @@ public class PagedTraverserFunctionalTest
 
         URI traverserLocation = createPagedTraverserWithTimeoutInMinutes( 10 ).getLocation();
 
-        ( (FakeClock) LeaseManagerProvider.getClock() ).forwardMinutes( 11 );
+        ( (FakeClock) server.getLeaseManager().getClock() ).forwardMinutes( 11 );
 
         JaxRsResponse response = new RestRequest(traverserLocation).get();
         assertEquals( 404, response.getStatus() );
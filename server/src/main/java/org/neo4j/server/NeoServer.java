@@ -28,6 +28,7 @@ import org.neo4j.server.configuration.Configurator;
 import org.neo4j.server.database.Database;
 import org.neo4j.server.plugins.Injectable;
 import org.neo4j.server.plugins.PluginManager;
+import org.neo4j.server.rest.paging.LeaseManager;
 
 public interface NeoServer
 {
@@ -43,6 +44,12 @@ public interface NeoServer
 
     PluginManager getExtensionManager();
 
+    /**
+     * The leases of paged traversers and cursors, or null if the REST API
+     * isn't running.
+     */
+    LeaseManager getLeaseManager();
+
     Collection<Injectable<?>> getInjectables( List<String> packageNames );
 
     URI baseUri();
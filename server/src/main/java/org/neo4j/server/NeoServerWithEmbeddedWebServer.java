@@ -37,6 +37,7 @@ import org.neo4j.server.modules.RESTApiModule;
 import org.neo4j.server.modules.ServerModule;
 import org.neo4j.server.plugins.Injectable;
 import org.neo4j.server.plugins.PluginManager;
+import org.neo4j.server.rest.paging.LeaseManager;
 import org.neo4j.server.startup.healthcheck.StartupHealthCheck;
 import org.neo4j.server.startup.healthcheck.StartupHealthCheckFailedException;
 import org.neo4j.server.web.WebServer;
@@ -181,9 +182,22 @@ public class NeoServerWithEmbeddedWebServer implements NeoServer
         log.info( "Starting Neo Server on port [%s] with [%d] threads available", webServerPort, maxThreads );
         webServer.setPort( webServerPort );
         webServer.setMaxThreads( maxThreads );
+        webServer.setCompressionThreshold( getCompressionThreshold() );
         webServer.init();
     }
 
+    private int getCompressionThreshold()
+    {
+        if ( !configurator.configuration()
+                .getBoolean( Configurator.WEBSERVER_COMPRESSION_PROPERTY_KEY, true ) )
+        {
+            return -1;
+        }
+        return configurator.configuration()
+                .getInt( Configurator.WEBSERVER_COMPRESSION_THRESHOLD_PROPERTY_KEY,
+                        Configurator.DEFAULT_WEBSERVER_COMPRESSION_THRESHOLD );
+    }
+
     private int getMaxThreads()
     {
         return configurator.configuration()
@@ -337,6 +351,19 @@ public class NeoServerWithEmbeddedWebServer implements NeoServer
         }
     }
 
+    @Override
+    public LeaseManager getLeaseManager()
+    {
+        if ( hasModule( RESTApiModule.class ) )
+        {
+            return getModule( RESTApiModule.class ).getLeaseManager();
+        }
+        else
+        {
+            return null;
+        }
+    }
+
     @Override
     public Collection<Injectable<?>> getInjectables( List<String> packageNames )
     {
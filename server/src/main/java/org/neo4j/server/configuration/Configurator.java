@@ -36,6 +36,10 @@ public interface Configurator
     int DEFAULT_WEBSERVER_PORT = 7474;
     String WEBSERVER_PORT_PROPERTY_KEY = "org.neo4j.server.webserver.port";
     String WEBSERVER_MAX_THREADS_PROPERTY_KEY = "org.neo4j.server.webserver.maxthreads";
+    String WEBSERVER_RESPONSE_CACHE_BYTES_PROPERTY_KEY = "org.neo4j.server.webserver.response_cache_bytes";
+    String WEBSERVER_COMPRESSION_PROPERTY_KEY = "org.neo4j.server.webserver.compression";
+    String WEBSERVER_COMPRESSION_THRESHOLD_PROPERTY_KEY = "org.neo4j.server.webserver.compression_threshold";
+    int DEFAULT_WEBSERVER_COMPRESSION_THRESHOLD = 1024;
 
     String REST_API_PATH_PROPERTY_KEY = "org.neo4j.server.webadmin.data.uri";
     String REST_API_PACKAGE = "org.neo4j.server.rest.web";
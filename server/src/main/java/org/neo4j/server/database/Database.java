@@ -39,12 +39,14 @@ public class Database
     public AbstractGraphDatabase graph;
 
     private final String databaseStoreDirectory;
+    private final EntityVersions entityVersions = new EntityVersions();
     private RrdDb rrdDb;
 
     public Database( AbstractGraphDatabase db )
     {
         this.databaseStoreDirectory = db.getStoreDir();
         graph = db;
+        graph.registerTransactionEventHandler( entityVersions );
     }
 
     public Database( GraphDatabaseFactory factory, String databaseStoreDirectory )
@@ -156,6 +158,11 @@ public class Database
         this.rrdDb = rrdDb;
     }
 
+    public EntityVersions getEntityVersions()
+    {
+        return entityVersions;
+    }
+
     public IndexManager getIndexManager()
     {
         return graph.index();
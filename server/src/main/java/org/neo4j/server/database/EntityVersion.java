@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.database;
+
+/**
+ * The version of a node or relationship as last changed by a committed
+ * transaction, as tracked by {@link EntityVersions}.
+ */
+public final class EntityVersion
+{
+    private final long epoch;
+    private final long number;
+    private final long lastModified;
+
+    EntityVersion( long epoch, long number, long lastModified )
+    {
+        this.epoch = epoch;
+        this.number = number;
+        this.lastModified = lastModified;
+    }
+
+    long number()
+    {
+        return number;
+    }
+
+    /**
+     * @return a string that differs between any two versions of the same
+     *         entity, also across server restarts.
+     */
+    public String tag()
+    {
+        return Long.toString( epoch, Character.MAX_RADIX ) + "." + Long.toString( number, Character.MAX_RADIX );
+    }
+
+    /**
+     * @return when the version was committed, in milliseconds.
+     */
+    public long lastModified()
+    {
+        return lastModified;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "EntityVersion[" + tag() + "]";
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+/**
+ * Keeps track of which committed transaction last touched each node and
+ * relationship, so that responses can be tagged with a version and
+ * conditional requests answered without looking at the entity.
+ *
+ * Only the most recently changed entities are tracked. Every entity that
+ * isn't tracked is given the newest version that has been forgotten, which
+ * is at least as new as its real version. Forgetting an entity thereby only
+ * changes its version, it never makes a stale version look current.
+ */
+public class EntityVersions implements TransactionEventHandler<Void>
+{
+    public static final int DEFAULT_MAX_TRACKED_ENTITIES = 100000;
+
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong lastVersion = new AtomicLong();
+    private final TrackedVersions nodes;
+    private final TrackedVersions relationships;
+
+    public EntityVersions()
+    {
+        this( DEFAULT_MAX_TRACKED_ENTITIES );
+    }
+
+    public EntityVersions( int maxTrackedEntities )
+    {
+        EntityVersion initial = new EntityVersion( epoch, 0, epoch );
+        this.nodes = new TrackedVersions( maxTrackedEntities, initial );
+        this.relationships = new TrackedVersions( maxTrackedEntities, initial );
+    }
+
+    public EntityVersion nodeVersion( long nodeId )
+    {
+        return nodes.versionOf( nodeId );
+    }
+
+    public EntityVersion relationshipVersion( long relationshipId )
+    {
+        return relationships.versionOf( relationshipId );
+    }
+
+    @Override
+    public Void beforeCommit( TransactionData data ) throws Exception
+    {
+        return null;
+    }
+
+    /*
+     * Versions are bumped only after the changes are visible, so a version
+     * read before an entity is serialized is never newer than what gets
+     * serialized.
+     */
+    @Override
+    public void afterCommit( TransactionData data, Void state )
+    {
+        EntityVersion version = new EntityVersion( epoch, lastVersion.incrementAndGet(), System.currentTimeMillis() );
+        for ( Node node : data.createdNodes() )
+        {
+            nodes.touch( node.getId(), version );
+        }
+        for ( Node node : data.deletedNodes() )
+        {
+            nodes.touch( node.getId(), version );
+        }
+        for ( PropertyEntry<Node> entry : data.assignedNodeProperties() )
+        {
+            nodes.touch( entry.entity().getId(), version );
+        }
+        for ( PropertyEntry<Node> entry : data.removedNodeProperties() )
+        {
+            nodes.touch( entry.entity().getId(), version );
+        }
+        for ( Relationship relationship : data.createdRelationships() )
+        {
+            relationships.touch( relationship.getId(), version );
+        }
+        for ( Relationship relationship : data.deletedRelationships() )
+        {
+            relationships.touch( relationship.getId(), version );
+        }
+        for ( PropertyEntry<Relationship> entry : data.assignedRelationshipProperties() )
+        {
+            relationships.touch( entry.entity().getId(), version );
+        }
+        for ( PropertyEntry<Relationship> entry : data.removedRelationshipProperties() )
+        {
+            relationships.touch( entry.entity().getId(), version );
+        }
+    }
+
+    @Override
+    public void afterRollback( TransactionData data, Void state )
+    {
+    }
+
+    /*
+     * Kept in order of modification, so the eldest entry is always the oldest
+     * version and the floor only ever moves forward.
+     */
+    @SuppressWarnings( "serial" )
+    private static class TrackedVersions extends LinkedHashMap<Long, EntityVersion>
+    {
+        private final int maxSize;
+        private EntityVersion floor;
+
+        TrackedVersions( int maxSize, EntityVersion floor )
+        {
+            this.maxSize = maxSize;
+            this.floor = floor;
+        }
+
+        synchronized EntityVersion versionOf( long id )
+        {
+            EntityVersion version = get( id );
+            return version != null ? version : floor;
+        }
+
+        synchronized void touch( long id, EntityVersion version )
+        {
+            remove( id );
+            put( id, version );
+        }
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<Long, EntityVersion> eldest )
+        {
+            if ( size() > maxSize )
+            {
+                if ( eldest.getValue().number() > floor.number() )
+                {
+                    floor = eldest.getValue();
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -21,19 +21,27 @@ package org.neo4j.server.modules;
 
 import static org.neo4j.server.JAXRSHelper.listFrom;
 
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
 
+import javax.management.ObjectName;
+
 import org.neo4j.server.NeoServerWithEmbeddedWebServer;
 import org.neo4j.server.configuration.Configurator;
 import org.neo4j.server.logging.Logger;
 import org.neo4j.server.plugins.PluginManager;
+import org.neo4j.server.rest.paging.LeaseManager;
+import org.neo4j.server.rest.paging.RealClock;
 
 public class RESTApiModule implements ServerModule
 {
 
     private static final Logger log = Logger.getLogger( RESTApiModule.class );
+    private static final long LEASE_SWEEP_INTERVAL_IN_MILLISECONDS = 10 * 1000;
+    private static final String LEASES_MBEAN_NAME = "org.neo4j.server:name=Leases";
     private PluginManager plugins;
+    private LeaseManager leaseManager;
 
     public void start( NeoServerWithEmbeddedWebServer neoServer )
     {
@@ -45,6 +53,7 @@ public class RESTApiModule implements ServerModule
                     .addJAXRSPackages( listFrom( new String[] { Configurator.REST_API_PACKAGE } ),
                             restApiUri.toString() );
             loadPlugins( neoServer );
+            startLeaseManager();
 
             log.info( "Mounted REST API at [%s]", restApiUri.toString() );
         }
@@ -56,7 +65,45 @@ public class RESTApiModule implements ServerModule
 
     public void stop()
     {
-        // Do nothing.
+        stopLeaseManager();
+    }
+
+    /*
+     * Paged traversers and cursors are leased from here, the leases are
+     * swept in the background and visible over JMX while the module runs.
+     */
+    private void startLeaseManager()
+    {
+        leaseManager = new LeaseManager( new RealClock() );
+        leaseManager.startSweeping( LEASE_SWEEP_INTERVAL_IN_MILLISECONDS );
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean( leaseManager, new ObjectName( LEASES_MBEAN_NAME ) );
+        }
+        catch ( Exception e )
+        {
+            log.warn( "Could not register %s, leases won't be visible over JMX: %s", LEASES_MBEAN_NAME, e );
+        }
+    }
+
+    private void stopLeaseManager()
+    {
+        if ( leaseManager == null )
+        {
+            return;
+        }
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer()
+                    .unregisterMBean( new ObjectName( LEASES_MBEAN_NAME ) );
+        }
+        catch ( Exception e )
+        {
+            log.warn( "Could not unregister %s: %s", LEASES_MBEAN_NAME, e );
+        }
+        leaseManager.shutdown();
+        leaseManager = null;
     }
 
     private URI restApiUri( NeoServerWithEmbeddedWebServer neoServer ) throws URISyntaxException
@@ -74,4 +121,9 @@ public class RESTApiModule implements ServerModule
     {
         return plugins;
     }
+
+    public LeaseManager getLeaseManager()
+    {
+        return leaseManager;
+    }
 }
@@ -21,14 +21,11 @@ package org.neo4j.server.rest.domain;
 
 import java.util.Map;
 
-import javax.script.Compilable;
-import javax.script.CompiledScript;
 import javax.script.ScriptContext;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import javax.script.SimpleScriptContext;
 
+import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.traversal.PruneEvaluator;
 import org.neo4j.helpers.Predicate;
@@ -38,7 +35,8 @@ import org.neo4j.kernel.Traversal;
  * This factory can instantiate or get {@link PruneEvaluator}s and
  * {@link ReturnFilter}s from a description. Either it returns built-in
  * evaluators, or instantiates wrappers around user-supplied scripts, f.ex.
- * javascript.
+ * javascript. Engines and compiled scripts are shared by the whole server and
+ * the number of engines is bounded, see {@link ScriptPool}.
  */
 abstract class EvaluatorFactory
 {
@@ -46,6 +44,10 @@ abstract class EvaluatorFactory
     private static final String KEY_LANGUAGE = "language";
     private static final String KEY_BODY = "body";
     private static final String KEY_NAME = "name";
+    private static final String KEY_MIN_DEPTH = "min_depth";
+    private static final String KEY_MAX_DEPTH = "max_depth";
+    private static final String KEY_PROPERTY = "property";
+    private static final String KEY_VALUE = "value";
 
     public static PruneEvaluator pruneEvaluator( Map<String, Object> description )
     {
@@ -55,7 +57,7 @@ abstract class EvaluatorFactory
         }
         else
         {
-            return new ScriptedPruneEvaluator( scriptEngine( description ), (String) description.get( KEY_BODY ) );
+            return new ScriptedPruneEvaluator( scriptPool( description ), (String) description.get( KEY_BODY ) );
         }
     }
 
@@ -67,7 +69,7 @@ abstract class EvaluatorFactory
         }
         else
         {
-            return new ScriptedReturnEvaluator( scriptEngine( description ), (String) description.get( KEY_BODY ) );
+            return new ScriptedReturnEvaluator( scriptPool( description ), (String) description.get( KEY_BODY ) );
         }
     }
 
@@ -85,6 +87,21 @@ abstract class EvaluatorFactory
         {
             return PruneEvaluator.NONE;
         }
+        else if ( name.equalsIgnoreCase( "depth" ) )
+        {
+            return Traversal.pruneAfterDepth( intParameter( description, KEY_MAX_DEPTH ) );
+        }
+        else if ( name.equalsIgnoreCase( "property_equals" ) )
+        {
+            final PropertyEquals equals = new PropertyEquals( description );
+            return new PruneEvaluator()
+            {
+                public boolean pruneAfter( Path position )
+                {
+                    return equals.accept( position );
+                }
+            };
+        }
         else
         {
             throw new EvaluationException( "Unrecognized prune evaluator name '" + name + "'" );
@@ -103,152 +120,153 @@ abstract class EvaluatorFactory
         {
             return Traversal.returnAllButStartNode();
         }
+        else if ( name.equalsIgnoreCase( "depth" ) )
+        {
+            final int minDepth = description.containsKey( KEY_MIN_DEPTH ) ? intParameter( description,
+                    KEY_MIN_DEPTH ) : 0;
+            final int maxDepth = description.containsKey( KEY_MAX_DEPTH ) ? intParameter( description,
+                    KEY_MAX_DEPTH ) : Integer.MAX_VALUE;
+            return new Predicate<Path>()
+            {
+                public boolean accept( Path position )
+                {
+                    int depth = position.length();
+                    return depth >= minDepth && depth <= maxDepth;
+                }
+            };
+        }
+        else if ( name.equalsIgnoreCase( "property_equals" ) )
+        {
+            return new PropertyEquals( description );
+        }
         else
         {
             throw new EvaluationException( "Unrecognized return evaluator name '" + name + "'" );
         }
     }
 
-    private static ScriptEngine scriptEngine( Map<String, Object> description )
+    private static Object requiredParameter( Map<String, Object> description, String key )
     {
-        String language = (String) description.get( KEY_LANGUAGE );
-        ScriptEngine engine = new ScriptEngineManager().getEngineByName( language );
-        if ( engine == null )
+        Object value = description.get( key );
+        if ( value == null )
         {
-            throw new EvaluationException( "Unknown script language '" + language + "'" );
+            throw new EvaluationException( "Built-in evaluator '" + description.get( KEY_NAME ) + "' requires '"
+                                           + key + "'" );
         }
-        return engine;
+        return value;
     }
 
-    /**
-     * An abstract for {@link ScriptEngine} and {@link CompiledScript}. They
-     * have no common interface... other than this one.
-     */
-    private static abstract class ScriptExecutor
+    private static int intParameter( Map<String, Object> description, String key )
     {
-        abstract Object eval( Path position );
+        Object value = requiredParameter( description, key );
+        if ( !( value instanceof Number ) )
+        {
+            throw new EvaluationException( "'" + key + "' must be a number, not '" + value + "'" );
+        }
+        return ( (Number) value ).intValue();
     }
 
-    private static class EvalScriptExecutor extends ScriptExecutor
+    private static ScriptPool scriptPool( Map<String, Object> description )
     {
-        private final ScriptEngine script;
-        private final String body;
+        return ScriptPool.forLanguage( (String) description.get( KEY_LANGUAGE ) );
+    }
+
+    /**
+     * Accepts paths whose end node has a property with the given value.
+     * Numbers are compared by value, so that f.ex. an int property matches
+     * the long that JSON parsing gives us.
+     */
+    private static class PropertyEquals implements Predicate<Path>
+    {
+        private final String key;
+        private final Object value;
 
-        EvalScriptExecutor( ScriptEngine script, String body )
+        PropertyEquals( Map<String, Object> description )
         {
-            this.script = script;
-            this.body = body;
+            this.key = (String) requiredParameter( description, KEY_PROPERTY );
+            this.value = requiredParameter( description, KEY_VALUE );
         }
 
-        @Override
-        Object eval( Path position )
+        public boolean accept( Path position )
         {
-            try
+            Node node = position.endNode();
+            Object actual = node.getProperty( key, null );
+            if ( actual == null )
             {
-                this.script.getContext()
-                        .setAttribute( "position", position, ScriptContext.ENGINE_SCOPE );
-                return this.script.eval( body );
+                return false;
             }
-            catch ( ScriptException e )
+            if ( actual instanceof Number && value instanceof Number )
             {
-                throw new EvaluationException( e );
+                return numbersEqual( (Number) actual, (Number) value );
             }
+            return actual.equals( value );
         }
-    }
-
-    private static class CompiledScriptExecutor extends ScriptExecutor
-    {
-        private final CompiledScript script;
-        private final ScriptContext context;
 
-        CompiledScriptExecutor( CompiledScript script, ScriptContext context )
+        private static boolean numbersEqual( Number first, Number second )
         {
-            this.script = script;
-            this.context = context;
+            if ( isIntegral( first ) && isIntegral( second ) )
+            {
+                return first.longValue() == second.longValue();
+            }
+            return first.doubleValue() == second.doubleValue();
         }
 
-        @Override
-        Object eval( Path position )
+        private static boolean isIntegral( Number number )
         {
-            try
-            {
-                this.context.setAttribute( "position", position, ScriptContext.ENGINE_SCOPE );
-                return this.script.eval( this.context );
-            }
-            catch ( ScriptException e )
-            {
-                throw new EvaluationException( e );
-            }
+            return number instanceof Long || number instanceof Integer || number instanceof Short
+                   || number instanceof Byte;
         }
     }
 
     private static abstract class ScriptedEvaluator
     {
-        private final ScriptEngine engine;
+        private final ScriptPool pool;
         private final String body;
-        private ScriptExecutor executor;
+        private final ScriptContext context = new SimpleScriptContext();
 
-        ScriptedEvaluator( ScriptEngine engine, String body )
+        ScriptedEvaluator( ScriptPool pool, String body )
         {
-            this.engine = engine;
+            this.pool = pool;
             this.body = body;
         }
 
-        protected ScriptExecutor executor( Path position )
+        protected boolean eval( Path position )
         {
-            // We'll have to decide between evaluated script or compiled script
-            // the first time we execute it, else the compiled script can't be
-            // compiled (since position must be a valid object).
-            if ( this.executor == null )
+            try
             {
-                try
-                {
-                    ScriptContext context = new SimpleScriptContext();
-                    context.setAttribute( "position", position, ScriptContext.ENGINE_SCOPE );
-                    this.engine.setContext( context );
-                    if ( this.engine instanceof Compilable )
-                    {
-                        this.executor = new CompiledScriptExecutor( ( (Compilable) engine ).compile( body ), context );
-                    }
-                    else
-                    {
-                        this.executor = new EvalScriptExecutor( engine, body );
-                    }
-                    return executor;
-                }
-                catch ( ScriptException e )
-                {
-                    throw new EvaluationException( e );
-                }
+                context.setAttribute( "position", position, ScriptContext.ENGINE_SCOPE );
+                return (Boolean) pool.eval( body, context );
+            }
+            catch ( ScriptException e )
+            {
+                throw new EvaluationException( e );
             }
-            return this.executor;
         }
     }
 
     private static class ScriptedPruneEvaluator extends ScriptedEvaluator implements PruneEvaluator
     {
-        ScriptedPruneEvaluator( ScriptEngine engine, String body )
+        ScriptedPruneEvaluator( ScriptPool pool, String body )
         {
-            super( engine, body );
+            super( pool, body );
         }
 
         public boolean pruneAfter( Path position )
         {
-            return (Boolean) executor( position ).eval( position );
+            return eval( position );
         }
     }
 
     private static class ScriptedReturnEvaluator extends ScriptedEvaluator implements Predicate<Path>
     {
-        ScriptedReturnEvaluator( ScriptEngine engine, String body )
+        ScriptedReturnEvaluator( ScriptPool pool, String body )
         {
-            super( engine, body );
+            super( pool, body );
         }
 
         public boolean accept( Path position )
         {
-            return (Boolean) this.executor( position )
-                    .eval( position );
+            return eval( position );
         }
     }
 }
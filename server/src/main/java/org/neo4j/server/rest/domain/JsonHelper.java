@@ -20,11 +20,13 @@
 package org.neo4j.server.rest.domain;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.neo4j.server.rest.web.PropertyValueException;
@@ -92,6 +94,17 @@ public class JsonHelper
         return jsonObject;
     }
 
+    /**
+     * A generator writing UTF-8 encoded JSON straight to the given stream,
+     * formatted the same way as {@link #createJsonFrom(Object)}.
+     */
+    public static JsonGenerator createJsonGenerator( OutputStream output ) throws IOException
+    {
+        return OBJECT_MAPPER.getJsonFactory()
+                .createJsonGenerator( output, JsonEncoding.UTF8 )
+                .useDefaultPrettyPrinter();
+    }
+
     public static String createJsonFrom( Object data ) throws JsonBuildRuntimeException
     {
         try
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.domain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+/**
+ * Script engines are expensive to create and scripts are expensive to
+ * compile, so both are shared by all traversals in the server, per language.
+ * Engines which say they can be used from several threads at once (see the
+ * "THREADING" parameter of {@link javax.script.ScriptEngineFactory}) are
+ * created once, and every script is compiled once for the whole server.
+ * Other engines are pooled and borrowed for one evaluation at a time. A
+ * compiled script can only run on the engine that compiled it, so each of
+ * those engines keeps the scripts it has compiled. There are at most
+ * {@link #MAX_ENGINES} of them per language, evaluations wait for one to be
+ * returned when they're all in use.
+ */
+final class ScriptPool
+{
+    private static final int MAX_COMPILED_SCRIPTS = 512;
+    private static final int MAX_ENGINES = Math.max( 4, Runtime.getRuntime().availableProcessors() * 2 );
+    private static final ScriptEngineManager MANAGER = new ScriptEngineManager();
+    private static final ConcurrentMap<String, ScriptPool> POOLS = new ConcurrentHashMap<String, ScriptPool>();
+
+    private final String language;
+    // The engine used by everyone, if it's thread safe
+    private final PooledEngine shared;
+    // Engines that nobody is using at the moment, if they aren't
+    private final Queue<PooledEngine> engines = new ConcurrentLinkedQueue<PooledEngine>();
+    private final Semaphore available = new Semaphore( MAX_ENGINES );
+
+    private ScriptPool( String language )
+    {
+        this.language = language;
+        // Fails for unknown languages, before the pool is published
+        PooledEngine first = newEngine();
+        if ( first.isThreadSafe() )
+        {
+            this.shared = first;
+        }
+        else
+        {
+            this.shared = null;
+            engines.offer( first );
+        }
+    }
+
+    static ScriptPool forLanguage( String language )
+    {
+        ScriptPool pool = POOLS.get( language );
+        if ( pool == null )
+        {
+            ScriptPool created = new ScriptPool( language );
+            pool = POOLS.putIfAbsent( language, created );
+            if ( pool == null )
+            {
+                pool = created;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Evaluates <code>body</code> with the bindings in <code>context</code>,
+     * on an engine nobody else is using at the moment unless the engine is
+     * thread safe.
+     */
+    Object eval( String body, ScriptContext context ) throws ScriptException
+    {
+        if ( shared != null )
+        {
+            return shared.eval( body, context );
+        }
+        try
+        {
+            available.acquire();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new EvaluationException( "Interrupted while waiting for a " + language + " engine", e );
+        }
+        try
+        {
+            PooledEngine engine = engines.poll();
+            if ( engine == null )
+            {
+                engine = newEngine();
+            }
+            try
+            {
+                return engine.eval( body, context );
+            }
+            finally
+            {
+                engines.offer( engine );
+            }
+        }
+        finally
+        {
+            available.release();
+        }
+    }
+
+    private PooledEngine newEngine()
+    {
+        ScriptEngine engine;
+        synchronized ( MANAGER )
+        {
+            engine = MANAGER.getEngineByName( language );
+        }
+        if ( engine == null )
+        {
+            throw new EvaluationException( "Unknown script language '" + language + "'" );
+        }
+        return new PooledEngine( engine );
+    }
+
+    private static final class PooledEngine
+    {
+        private final ScriptEngine engine;
+        private final Map<String, CompiledScript> compiled = new LinkedHashMap<String, CompiledScript>( 16, 0.75f,
+                true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CompiledScript> eldest )
+            {
+                return size() > MAX_COMPILED_SCRIPTS;
+            }
+        };
+
+        PooledEngine( ScriptEngine engine )
+        {
+            this.engine = engine;
+        }
+
+        boolean isThreadSafe()
+        {
+            // null if not thread safe, otherwise "MULTITHREADED",
+            // "THREAD-ISOLATED" or "STATELESS"
+            return engine.getFactory().getParameter( "THREADING" ) != null;
+        }
+
+        Object eval( String body, ScriptContext context ) throws ScriptException
+        {
+            if ( !( engine instanceof Compilable ) )
+            {
+                return engine.eval( body, context );
+            }
+            CompiledScript script;
+            synchronized ( compiled )
+            {
+                script = compiled.get( body );
+            }
+            if ( script == null )
+            {
+                // Two threads may compile the same script, which is cheaper
+                // than making everyone wait for the compilation
+                script = ( (Compilable) engine ).compile( body );
+                synchronized ( compiled )
+                {
+                    compiled.put( body, script );
+                }
+            }
+            return script.eval( context );
+        }
+    }
+}
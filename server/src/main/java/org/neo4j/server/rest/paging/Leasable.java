@@ -19,7 +19,21 @@
  */
 package org.neo4j.server.rest.paging;
 
+/**
+ * Something kept on the server between requests, under a {@link Lease}.
+ */
 public interface Leasable
 {
+    /**
+     * Releases whatever resources this item holds on to. Invoked when its
+     * lease is removed or has expired.
+     */
+    void close();
 
+    /**
+     * A rough estimate, in bytes, of the memory this item holds on to. Used
+     * by the {@link LeaseManager} to keep the total of all leased items under
+     * a cap.
+     */
+    long estimatedMemoryUsage();
 }
@@ -21,15 +21,22 @@ package org.neo4j.server.rest.paging;
 
 import java.util.UUID;
 
+/**
+ * A lease on a {@link Leasable}. Requests paging through the leased item
+ * should hold the lock of the lease while doing so and check that it isn't
+ * {@link #isClosed() closed}, the {@link LeaseManager} closes leases under
+ * the same lock so that items aren't closed while they are being paged.
+ */
 public class Lease
 {
     private long startTime;
-    public final PagedTraverser leasedTraverser;
+    private boolean closed;
+    public final Leasable leasedItem;
     private final String id;
     private long leasePeriod;
     private final Clock clock;
 
-    Lease( PagedTraverser leasedTraverser, long leasePeriodInSeconds, Clock clock ) throws LeaseAlreadyExpiredException
+    Lease( Leasable leasedItem, long leasePeriodInSeconds, Clock clock ) throws LeaseAlreadyExpiredException
     {
         if ( leasePeriodInSeconds < 0 )
         {
@@ -38,7 +45,7 @@ public class Lease
         }
 
         this.clock = clock;
-        this.leasedTraverser = leasedTraverser;
+        this.leasedItem = leasedItem;
         this.startTime = clock.currentTimeInMilliseconds();
         this.leasePeriod = leasePeriodInSeconds * 1000;
         this.id = toHexOnly( UUID.randomUUID() );
@@ -55,10 +62,10 @@ public class Lease
                 .replaceAll( "-", "" );
     }
 
-    public PagedTraverser getLeasedItemAndRenewLease()
+    public Leasable getLeasedItemAndRenewLease()
     {
         renew();
-        return leasedTraverser;
+        return leasedItem;
     }
 
     public void renew()
@@ -74,6 +81,23 @@ public class Lease
         return startTime + leasePeriod < clock.currentTimeInMilliseconds();
     }
 
+    public synchronized boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Closes the leased item, waiting for anyone paging through it to finish.
+     */
+    synchronized void close()
+    {
+        if ( !closed )
+        {
+            closed = true;
+            leasedItem.close();
+        }
+    }
+
     public long getStartTime()
     {
         return startTime;
@@ -19,27 +19,72 @@
  */
 package org.neo4j.server.rest.paging;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class LeaseManager
+import org.neo4j.server.logging.Logger;
+
+/**
+ * Keeps track of the leases of paged traversers and cursors. Expired leases
+ * are removed when leases are looked up and by a sweeper running in the
+ * background, so that abandoned items don't stay in memory. The estimated
+ * memory usage of all leased items is kept under a cap by removing the
+ * leases that have been idle the longest.
+ */
+public class LeaseManager implements LeaseManagerMBean
 {
-    private Clock clock;
+    public static final long DEFAULT_MEMORY_CAP = Runtime.getRuntime()
+            .maxMemory() / 10;
+
+    private static final Comparator<Lease> LEAST_RECENTLY_USED_FIRST = new Comparator<Lease>()
+    {
+        public int compare( Lease first, Lease second )
+        {
+            long difference = first.getStartTime() - second.getStartTime();
+            return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+        }
+    };
+
+    private final Logger logger = Logger.getLogger( LeaseManager.class );
+    private volatile Clock clock;
+    private final long memoryCap;
     private Map<String, Lease> leases = new ConcurrentHashMap<String, Lease>();
+    private final AtomicLong expiredLeases = new AtomicLong();
+    private final AtomicLong evictedLeases = new AtomicLong();
+    private Timer sweeper;
 
     public LeaseManager( Clock clock )
+    {
+        this( clock, DEFAULT_MEMORY_CAP );
+    }
+
+    /**
+     * @param memoryCap the most memory, in bytes, that all leased items
+     *            together are estimated to use before leases are evicted.
+     */
+    public LeaseManager( Clock clock, long memoryCap )
     {
         this.clock = clock;
+        this.memoryCap = memoryCap;
     }
 
-    public Lease createLease( long seconds, PagedTraverser leasedTraverser ) throws LeaseAlreadyExpiredException
+    public Lease createLease( long seconds, Leasable leasedItem ) throws LeaseAlreadyExpiredException
     {
         if ( seconds < 1 )
         {
             return null;
         }
 
-        Lease lease = new Lease( leasedTraverser, seconds, clock );
+        Lease lease = new Lease( leasedItem, seconds, clock );
+        // Make room before adding the lease, so that it's never evicted itself
+        evictLeastRecentlyUsedLeasesOverMemoryCap( leasedItem.estimatedMemoryUsage() );
         leases.put( lease.getId(), lease );
 
         return lease;
@@ -47,7 +92,7 @@ public class LeaseManager
 
     public Lease getLeaseById( String id )
     {
-        pruneOldLeasesByNaivelyIteratingThroughAllOfThem();
+        removeExpiredLeases();
         Lease lease = leases.get( id );
 
         if ( lease != null )
@@ -58,7 +103,18 @@ public class LeaseManager
         return lease;
     }
 
-    private void pruneOldLeasesByNaivelyIteratingThroughAllOfThem()
+    /**
+     * Removes expired leases, then the least recently used ones until the
+     * leased items fit under the memory cap. Run periodically once
+     * {@link #startSweeping(long)} has been invoked.
+     */
+    public void sweep()
+    {
+        removeExpiredLeases();
+        evictLeastRecentlyUsedLeasesOverMemoryCap( 0 );
+    }
+
+    private void removeExpiredLeases()
     {
         for ( String key : leases.keySet() )
         {
@@ -67,7 +123,10 @@ public class LeaseManager
                 Lease lease = leases.get( key );
                 if ( lease.getStartTime() + lease.getPeriod() < clock.currentTimeInMilliseconds() )
                 {
-                    remove( key );
+                    if ( removeLease( key ) )
+                    {
+                        expiredLeases.incrementAndGet();
+                    }
                 }
             }
             catch ( Exception e )
@@ -78,6 +137,87 @@ public class LeaseManager
         }
     }
 
+    /**
+     * Evicts the least recently used leases until the leased items, and
+     * <code>reserved</code> bytes more, fit under the memory cap.
+     */
+    private synchronized void evictLeastRecentlyUsedLeasesOverMemoryCap( long reserved )
+    {
+        long usage = getEstimatedMemoryUsage() + reserved;
+        if ( usage <= memoryCap )
+        {
+            return;
+        }
+        List<Lease> candidates = new ArrayList<Lease>( leases.values() );
+        Collections.sort( candidates, LEAST_RECENTLY_USED_FIRST );
+        int evicted = 0;
+        for ( Lease lease : candidates )
+        {
+            if ( usage <= memoryCap )
+            {
+                break;
+            }
+            long leaseUsage = lease.leasedItem.estimatedMemoryUsage();
+            if ( removeLease( lease.getId() ) )
+            {
+                evicted++;
+                usage -= leaseUsage;
+            }
+        }
+        if ( evicted > 0 )
+        {
+            evictedLeases.addAndGet( evicted );
+            logger.warn( "Leased items exceeded the memory cap of %d bytes, evicted %d least recently used leases",
+                    memoryCap, evicted );
+        }
+    }
+
+    /**
+     * Starts a daemon thread that invokes {@link #sweep()} every
+     * <code>intervalInMilliseconds</code>.
+     */
+    public synchronized void startSweeping( long intervalInMilliseconds )
+    {
+        stopSweeping();
+        sweeper = new Timer( "Lease sweeper", true );
+        sweeper.scheduleAtFixedRate( new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    sweep();
+                }
+                catch ( Exception e )
+                {
+                    logger.warn( e );
+                }
+            }
+        }, intervalInMilliseconds, intervalInMilliseconds );
+    }
+
+    public synchronized void stopSweeping()
+    {
+        if ( sweeper != null )
+        {
+            sweeper.cancel();
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Stops sweeping and closes all leased items, for when the server stops.
+     */
+    public void shutdown()
+    {
+        stopSweeping();
+        for ( String key : leases.keySet() )
+        {
+            removeLease( key );
+        }
+    }
+
     public Clock getClock()
     {
         return clock;
@@ -90,9 +230,47 @@ public class LeaseManager
 
     public void remove( String key )
     {
-        if ( leases.containsKey( key ) )
+        removeLease( key );
+    }
+
+    private boolean removeLease( String key )
+    {
+        Lease lease = leases.remove( key );
+        if ( lease == null )
         {
-            leases.remove( key );
+            return false;
         }
+        lease.close();
+        return true;
+    }
+
+    public int getActiveLeases()
+    {
+        return leases.size();
+    }
+
+    public long getEstimatedMemoryUsage()
+    {
+        long usage = 0;
+        for ( Lease lease : leases.values() )
+        {
+            usage += lease.leasedItem.estimatedMemoryUsage();
+        }
+        return usage;
+    }
+
+    public long getMemoryCap()
+    {
+        return memoryCap;
+    }
+
+    public long getExpiredLeases()
+    {
+        return expiredLeases.get();
+    }
+
+    public long getEvictedLeases()
+    {
+        return evictedLeases.get();
     }
 }
@@ -25,27 +25,17 @@ import com.sun.jersey.api.core.HttpContext;
 
 public class LeaseManagerProvider extends AbstractInjectableProvider<LeaseManager>
 {
-    private static final LeaseManager leaseManager = new LeaseManager( new RealClock() );
+    private final LeaseManager leaseManager;
 
-    public static void setClock( Clock clock )
-    {
-        leaseManager.setClock( clock );
-    }
-
-    static Clock getClock()
-    {
-        return leaseManager.getClock();
-    }
-
-    public LeaseManagerProvider()
+    public LeaseManagerProvider( LeaseManager leaseManager )
     {
         super( LeaseManager.class );
+        this.leaseManager = leaseManager;
     }
 
     @Override
     public LeaseManager getValue( HttpContext arg0 )
     {
-
         return leaseManager;
     }
 }
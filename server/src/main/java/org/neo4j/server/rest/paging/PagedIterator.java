@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.paging;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.neo4j.graphdb.index.IndexHits;
+
+/**
+ * Hands out the items of an underlying iterator one page at a time, so that
+ * a client can go through a large result over several requests. Only the
+ * page being returned is held in memory, the rest is pulled from the
+ * underlying iterator as it's asked for.
+ */
+public class PagedIterator<T> implements Iterator<List<T>>, Iterable<List<T>>, Leasable
+{
+    private static final long FIXED_OVERHEAD = 1024;
+    private static final long BYTES_PER_PAGED_ITEM = 64;
+
+    private final int pageSize;
+    private volatile long itemsReturned;
+    private final Iterator<T> iterator;
+    private final IndexHits<?> hits;
+    private boolean closed;
+
+    public PagedIterator( Iterator<T> iterator, int pageSize )
+    {
+        this( iterator, null, pageSize );
+    }
+
+    /**
+     * Pages through index hits, which are closed once they have all been
+     * returned or the lease of this iterator goes away.
+     */
+    public PagedIterator( IndexHits<T> hits, int pageSize )
+    {
+        this( hits, hits, pageSize );
+    }
+
+    private PagedIterator( Iterator<T> iterator, IndexHits<?> hits, int pageSize )
+    {
+        this.iterator = iterator;
+        this.hits = hits;
+        this.pageSize = pageSize;
+    }
+
+    public List<T> next()
+    {
+        if ( !iterator.hasNext() )
+        {
+            return null;
+        }
+
+        List<T> result = new ArrayList<T>( pageSize );
+        for ( int i = 0; i < pageSize && iterator.hasNext(); i++ )
+        {
+            result.add( iterator.next() );
+        }
+        itemsReturned += result.size();
+        if ( !iterator.hasNext() )
+        {
+            close();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public void remove()
+    {
+        iterator.remove();
+    }
+
+    @Override
+    public Iterator<List<T>> iterator()
+    {
+        return this;
+    }
+
+    /**
+     * The underlying iterator is assumed to be lazy, so this is the overhead
+     * of the page being built.
+     */
+    @Override
+    public long estimatedMemoryUsage()
+    {
+        return FIXED_OVERHEAD + pageSize * BYTES_PER_PAGED_ITEM;
+    }
+
+    protected long itemsReturned()
+    {
+        return itemsReturned;
+    }
+
+    @Override
+    public void close()
+    {
+        if ( hits != null && !closed )
+        {
+            closed = true;
+            hits.close();
+        }
+    }
+}
@@ -19,65 +19,25 @@
  */
 package org.neo4j.server.rest.paging;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.traversal.Traverser;
 
-public class PagedTraverser implements Iterator<List<Path>>, Iterable<List<Path>>, Leasable
+public class PagedTraverser extends PagedIterator<Path>
 {
-
-    private final int pageSize;
-    private Iterator<Path> iterator;
+    /*
+     * Uniqueness and the branches of the traversal keep growing with every
+     * path the traverser has found, this is about what each of them costs.
+     */
+    private static final long BYTES_PER_TRAVERSED_PATH = 128;
 
     public PagedTraverser( Traverser traverser, int pageSize )
     {
-        iterator = traverser.iterator();
-        this.pageSize = pageSize;
-    }
-
-    public List<Path> next()
-    {
-        if ( !iterator.hasNext() )
-        {
-            return null;
-        }
-
-        ArrayList<Path> result = new ArrayList<Path>();
-
-        for ( int i = 0; i < pageSize; i++ )
-        {
-            if ( !iterator.hasNext() )
-            {
-                break;
-            }
-            else
-            {
-                result.add( iterator.next() );
-            }
-        }
-
-        return result;
+        super( traverser.iterator(), pageSize );
     }
 
     @Override
-    public boolean hasNext()
+    public long estimatedMemoryUsage()
     {
-        return iterator.hasNext();
+        return super.estimatedMemoryUsage() + itemsReturned() * BYTES_PER_TRAVERSED_PATH;
     }
-
-    @Override
-    public void remove()
-    {
-        iterator.remove();
-    }
-
-    @Override
-    public Iterator<List<Path>> iterator()
-    {
-        return this;
-    }
-
 }
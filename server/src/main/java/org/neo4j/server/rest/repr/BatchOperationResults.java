@@ -19,13 +19,20 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
-import java.util.ArrayList;
+import java.io.Writer;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.lang.StringUtils;
 import org.neo4j.server.rest.domain.JsonHelper;
 
 /*
@@ -36,24 +43,49 @@ import org.neo4j.server.rest.domain.JsonHelper;
  * Doing so would require us to de-serialize each JSON response we get from
  * each operation, and we would have to extend our current type safe serialization
  * system to incorporate arbitrary responses.
+ *
+ * The results are written as JSON as they are added. Up to a limit they are
+ * kept in memory, anything beyond that goes to a temporary file until the
+ * response is written, so a big batch doesn't have to fit on the heap.
  */
 public class BatchOperationResults
 {
+    public static final int DEFAULT_MAX_BUFFERED_BYTES = 1024 * 1024;
+
+    private static final String UTF8 = "UTF-8";
     private static final String CLOSING_BRACKET = "]";
     private static final String OPENING_BRACKET = "[";
     private static final String OPENING_CURLY = "{";
     private static final String CLOSING_CURLY = "}";
     private static final String COMMA = ",";
 
-    private List<String> operationResults;
+    private final int maxBufferedBytes;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private Writer results;
+    private File spillFile;
+    private boolean first = true;
     private Map<Integer, String> locations = new HashMap<Integer, String>();
 
-    public BatchOperationResults( int numOperations )
+    public BatchOperationResults()
+    {
+        this( DEFAULT_MAX_BUFFERED_BYTES );
+    }
+
+    public BatchOperationResults( int maxBufferedBytes )
     {
-        operationResults = new ArrayList<String>( numOperations );
+        this.maxBufferedBytes = maxBufferedBytes;
+        try
+        {
+            this.results = new OutputStreamWriter( buffer, UTF8 );
+            results.write( OPENING_BRACKET );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
     }
 
-    public void addOperationResult( String from, Integer id, String body, String location )
+    public void addOperationResult( String from, Integer id, String body, String location ) throws IOException
     {
         StringWriter wt = new StringWriter();
 
@@ -86,7 +118,29 @@ public class BatchOperationResults
 
         wt.append( CLOSING_CURLY );
 
-        operationResults.add( wt.toString() );
+        if ( !first )
+        {
+            results.write( COMMA );
+        }
+        results.write( wt.toString() );
+        first = false;
+        if ( spillFile == null )
+        {
+            results.flush();
+            if ( buffer.size() > maxBufferedBytes )
+            {
+                spill();
+            }
+        }
+    }
+
+    private void spill() throws IOException
+    {
+        spillFile = File.createTempFile( "neo4j-batch-results", ".json" );
+        OutputStream file = new FileOutputStream( spillFile );
+        buffer.writeTo( file );
+        buffer.reset();
+        results = new BufferedWriter( new OutputStreamWriter( file, UTF8 ) );
     }
 
     public Map<Integer, String> getLocations()
@@ -94,8 +148,66 @@ public class BatchOperationResults
         return locations;
     }
 
-    public String toJSON()
+    /**
+     * Writes the results to the given stream as a JSON list, and then
+     * releases them. This can only be done once.
+     */
+    public void writeJSON( OutputStream output ) throws IOException
+    {
+        try
+        {
+            results.write( CLOSING_BRACKET );
+            results.close();
+            if ( spillFile == null )
+            {
+                buffer.writeTo( output );
+            }
+            else
+            {
+                InputStream input = new FileInputStream( spillFile );
+                try
+                {
+                    byte[] bytes = new byte[8192];
+                    for ( int read; ( read = input.read( bytes ) ) != -1; )
+                    {
+                        output.write( bytes, 0, read );
+                    }
+                }
+                finally
+                {
+                    input.close();
+                }
+            }
+            output.flush();
+        }
+        finally
+        {
+            release();
+        }
+    }
+
+    /**
+     * Drops the results, deleting the temporary file they were written to, if
+     * any. For batches that fail, and so never write their results.
+     */
+    public void release()
+    {
+        try
+        {
+            results.close();
+        }
+        catch ( IOException e )
+        {   // We're throwing the results away anyway
+        }
+        buffer.reset();
+        if ( spillFile != null )
+        {
+            spillFile.delete();
+        }
+    }
+
+    File getSpillFile()
     {
-        return OPENING_BRACKET + StringUtils.join( operationResults, "," ) + CLOSING_BRACKET;
+        return spillFile;
     }
 }
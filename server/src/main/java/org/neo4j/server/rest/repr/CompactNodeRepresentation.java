@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr;
+
+import java.util.Collection;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.helpers.collection.IterableWrapper;
+
+/**
+ * A node without any of the links of {@link NodeRepresentation}, only its id
+ * and properties. Meant for clients that fetch many nodes at once and know how
+ * to build the URIs themselves.
+ */
+public final class CompactNodeRepresentation extends MappingRepresentation
+{
+    private final Node node;
+    private final Collection<String> propertyKeys;
+
+    public CompactNodeRepresentation( Node node, Collection<String> propertyKeys )
+    {
+        super( RepresentationType.NODE );
+        this.node = node;
+        this.propertyKeys = propertyKeys;
+    }
+
+    @Override
+    protected void serialize( MappingSerializer serializer )
+    {
+        serializer.putNumber( "id", node.getId() );
+        serializer.putMapping( "data", new PropertiesRepresentation( node, propertyKeys ) );
+    }
+
+    public static ListRepresentation list( Iterable<Node> nodes, final Collection<String> propertyKeys )
+    {
+        return new ListRepresentation( RepresentationType.NODE, new IterableWrapper<Representation, Node>( nodes )
+        {
+            @Override
+            protected Representation underlyingObjectToObject( Node node )
+            {
+                return new CompactNodeRepresentation( node, propertyKeys );
+            }
+        } );
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr;
+
+import java.util.Collection;
+
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.helpers.collection.IterableWrapper;
+
+/**
+ * A relationship without any of the links of
+ * {@link RelationshipRepresentation}. The start and end nodes are given as
+ * ids rather than URIs.
+ */
+public final class CompactRelationshipRepresentation extends MappingRepresentation
+{
+    private final Relationship rel;
+    private final Collection<String> propertyKeys;
+
+    public CompactRelationshipRepresentation( Relationship rel, Collection<String> propertyKeys )
+    {
+        super( RepresentationType.RELATIONSHIP );
+        this.rel = rel;
+        this.propertyKeys = propertyKeys;
+    }
+
+    @Override
+    protected void serialize( MappingSerializer serializer )
+    {
+        serializer.putNumber( "id", rel.getId() );
+        serializer.putString( "type", rel.getType()
+                .name() );
+        serializer.putNumber( "start", rel.getStartNode()
+                .getId() );
+        serializer.putNumber( "end", rel.getEndNode()
+                .getId() );
+        serializer.putMapping( "data", new PropertiesRepresentation( rel, propertyKeys ) );
+    }
+
+    public static ListRepresentation list( Iterable<Relationship> relationships,
+            final Collection<String> propertyKeys )
+    {
+        return new ListRepresentation( RepresentationType.RELATIONSHIP,
+                new IterableWrapper<Representation, Relationship>( relationships )
+                {
+                    @Override
+                    protected Representation underlyingObjectToObject( Relationship relationship )
+                    {
+                        return new CompactRelationshipRepresentation( relationship, propertyKeys );
+                    }
+                } );
+    }
+}
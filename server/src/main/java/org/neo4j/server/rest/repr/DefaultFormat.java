@@ -19,6 +19,8 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.Collection;
 import java.util.List;
@@ -60,6 +62,36 @@ public class DefaultFormat extends RepresentationFormat
         return inner.serializeList( type );
     }
 
+    @Override
+    protected boolean supportsStreaming()
+    {
+        return inner.supportsStreaming();
+    }
+
+    @Override
+    protected ListWriter serializeList( String type, OutputStream output ) throws IOException
+    {
+        return inner.serializeList( type, output );
+    }
+
+    @Override
+    protected boolean requiresStreaming()
+    {
+        return inner.requiresStreaming();
+    }
+
+    @Override
+    protected MappingWriter serializeMapping( String type, OutputStream output ) throws IOException
+    {
+        return inner.serializeMapping( type, output );
+    }
+
+    @Override
+    protected void serializeValue( String type, Object value, OutputStream output ) throws IOException
+    {
+        inner.serializeValue( type, value, output );
+    }
+
     @Override
     protected MappingWriter serializeMapping( String type )
     {
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr;
+
+import java.util.Iterator;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.helpers.collection.ClosableIterator;
+
+/**
+ * Wraps {@link IndexHits} so that they are turned into representations while
+ * a list of them is being written. The iterator is a
+ * {@link ClosableIterator}, which {@link ListRepresentation} closes however
+ * the serialization ends. Hits that aren't read to the end, because the
+ * client went away or a representation failed, still give back their index
+ * searcher.
+ *
+ * @param <T> the type of hits to wrap
+ */
+public abstract class IndexHitsWrapper<T> implements Iterable<Representation>
+{
+    private final IndexHits<T> hits;
+
+    public IndexHitsWrapper( IndexHits<T> hits )
+    {
+        this.hits = hits;
+    }
+
+    protected abstract Representation underlyingObjectToObject( T hit );
+
+    public Iterator<Representation> iterator()
+    {
+        return new ClosableIterator<Representation>()
+        {
+            public boolean hasNext()
+            {
+                return hits.hasNext();
+            }
+
+            public Representation next()
+            {
+                return underlyingObjectToObject( hits.next() );
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            public void close()
+            {
+                hits.close();
+            }
+        };
+    }
+
+    public static ListRepresentation nodes( IndexHits<Node> hits )
+    {
+        return new ListRepresentation( RepresentationType.NODE, new IndexHitsWrapper<Node>( hits )
+        {
+            @Override
+            protected Representation underlyingObjectToObject( Node node )
+            {
+                return new NodeRepresentation( node );
+            }
+        } );
+    }
+
+    public static ListRepresentation relationships( IndexHits<Relationship> hits )
+    {
+        return new ListRepresentation( RepresentationType.RELATIONSHIP, new IndexHitsWrapper<Relationship>( hits )
+        {
+            @Override
+            protected Representation underlyingObjectToObject( Relationship relationship )
+            {
+                return new RelationshipRepresentation( relationship );
+            }
+        } );
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.util.Collection;
+
 import org.neo4j.graphdb.Node;
 import org.neo4j.helpers.collection.IterableWrapper;
 
@@ -26,11 +28,22 @@ public final class NodeRepresentation extends ObjectRepresentation implements Ex
         EntityRepresentation
 {
     private final Node node;
+    private final Collection<String> propertyKeys;
 
     public NodeRepresentation( Node node )
+    {
+        this( node, null );
+    }
+
+    /**
+     * @param propertyKeys the properties to include in the data of this
+     *            representation, or <code>null</code> for all of them.
+     */
+    public NodeRepresentation( Node node, Collection<String> propertyKeys )
     {
         super( RepresentationType.NODE );
         this.node = node;
+        this.propertyKeys = propertyKeys;
     }
 
     @Override
@@ -131,7 +144,7 @@ public final class NodeRepresentation extends ObjectRepresentation implements Ex
     {
         MappingWriter writer = serializer.writer;
         MappingWriter properties = writer.newMapping( RepresentationType.PROPERTIES, "data" );
-        new PropertiesRepresentation( node ).serialize( properties );
+        new PropertiesRepresentation( node, propertyKeys ).serialize( properties );
         if ( writer.isInteractive() )
         {
             serializer.putList( "relationship_types", ListRepresentation.relationshipTypes( node.getGraphDatabase()
@@ -151,4 +164,16 @@ public final class NodeRepresentation extends ObjectRepresentation implements Ex
             }
         } );
     }
+
+    public static ListRepresentation list( Iterable<Node> nodes, final Collection<String> propertyKeys )
+    {
+        return new ListRepresentation( RepresentationType.NODE, new IterableWrapper<Representation, Node>( nodes )
+        {
+            @Override
+            protected Representation underlyingObjectToObject( Node node )
+            {
+                return new NodeRepresentation( node, propertyKeys );
+            }
+        } );
+    }
 }
@@ -19,14 +19,24 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
+import java.util.Date;
 
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.neo4j.server.database.EntityVersion;
+import org.neo4j.server.rest.repr.formats.JsonFormat;
+
+import com.sun.jersey.api.core.HttpRequestContext;
 
 public class OutputFormat
 {
@@ -34,12 +44,28 @@ public class OutputFormat
     private final RepresentationFormat format;
     private final ExtensionInjector extensions;
     private final URI baseUri;
+    private final HttpRequestContext request;
+    private final ResponseCache responseCache;
 
     public OutputFormat( RepresentationFormat format, URI baseUri, ExtensionInjector extensions )
+    {
+        this( format, baseUri, extensions, null, null );
+    }
+
+    /**
+     * @param request the request being responded to, used for answering
+     *            conditional requests, or null.
+     * @param responseCache where to keep serialized responses of versioned
+     *            entities, or null to serialize them on every request.
+     */
+    public OutputFormat( RepresentationFormat format, URI baseUri, ExtensionInjector extensions,
+            HttpRequestContext request, ResponseCache responseCache )
     {
         this.format = format;
         this.baseUri = baseUri;
         this.extensions = extensions;
+        this.request = request;
+        this.responseCache = responseCache;
     }
 
     public final Response ok( Representation representation )
@@ -48,12 +74,81 @@ public class OutputFormat
         return response( Response.ok(), representation );
     }
 
+    /**
+     * Responds with a representation of an entity at a known version. The
+     * response is tagged with the version, and a conditional request for a
+     * version the client already has is answered with 304 Not Modified
+     * without serializing anything.
+     */
+    public final Response ok( Representation representation, EntityVersion version )
+    {
+        EntityTag tag = new EntityTag( version.tag() + "-"
+                                       + Integer.toString( ( format.mediaType + " " + baseUri ).hashCode(),
+                                               Character.MAX_RADIX ) );
+        Date lastModified = dateOf( version );
+        if ( request != null )
+        {
+            ResponseBuilder notModified = request.evaluatePreconditions( lastModified, tag );
+            if ( notModified != null )
+            {
+                return withLastModified( notModified, lastModified ).tag( tag )
+                        .header( HttpHeaders.VARY, HttpHeaders.ACCEPT )
+                        .build();
+            }
+        }
+        if ( representation.isEmpty() ) return noContent();
+
+        ResponseBuilder response = withLastModified( Response.ok(), lastModified ).tag( tag )
+                .header( HttpHeaders.VARY, HttpHeaders.ACCEPT );
+        if ( request == null || responseCache == null || format.requiresStreaming() )
+        {
+            return response( response, representation );
+        }
+        String key = format.mediaType + " " + request.getRequestUri();
+        byte[] entity = responseCache.get( key, tag.getValue() );
+        if ( entity == null )
+        {
+            entity = utf8( format( representation ) );
+            responseCache.put( key, tag.getValue(), entity );
+        }
+        return typed( response.entity( entity ) );
+    }
+
+    /*
+     * HTTP dates only have one second resolution, so the version is dated at
+     * the start of the next second, which is never before the change. Two
+     * changes within the same second get the same date though, so the date
+     * is only sent once that second has passed and any later change is
+     * certain to get a later date. Conditional requests are still evaluated
+     * against it, If-Modified-Since from an earlier response is always older.
+     */
+    private static Date dateOf( EntityVersion version )
+    {
+        return new Date( ( version.lastModified() / 1000 + 1 ) * 1000 );
+    }
+
+    private static ResponseBuilder withLastModified( ResponseBuilder response, Date lastModified )
+    {
+        return lastModified.getTime() <= System.currentTimeMillis() ? response.lastModified( lastModified )
+                : response;
+    }
+
     public final <REPR extends Representation & EntityRepresentation> Response created( REPR representation )
             throws BadInputException
     {
         return response( Response.created( uri( representation ) ), representation );
     }
 
+    /**
+     * Responds with 201 Created for something that isn't an entity of its
+     * own, such as a paged traverser, which can be found at
+     * <code>location</code>.
+     */
+    public final Response created( URI location, Representation representation )
+    {
+        return response( Response.created( location ), representation );
+    }
+
     public final Response response( Status status, Representation representation ) throws BadInputException
     {
         return response( Response.status( status ), representation );
@@ -97,20 +192,62 @@ public class OutputFormat
 
     protected Response response( ResponseBuilder response, Representation representation )
     {
-        String entity = format( representation );
-        byte[] entityAsBytes;
+        return typed( response.entity( entity( representation ) ) );
+    }
+
+    private Response typed( ResponseBuilder response )
+    {
+        response.type( getMediaType() );
+        if ( !format.requiresStreaming() )
+        {
+            response.header( HttpHeaders.CONTENT_ENCODING, UTF8 );
+        }
+        return response.build();
+    }
+
+    /*
+     * Lists can be arbitrarily long, so if the format allows it they are
+     * written to the response as they are serialized rather than being built
+     * up in memory first. Formats that can't produce strings have everything
+     * written that way. The status is committed before the list is
+     * serialized, so a failure part way through ends the list with a mapping
+     * describing the failure instead, see ListWriter#failed.
+     */
+    private Object entity( final Representation representation )
+    {
+        if ( format.requiresStreaming() )
+        {
+            return new StreamingOutput()
+            {
+                public void write( OutputStream output ) throws IOException
+                {
+                    representation.serialize( format, baseUri, extensions, output );
+                }
+            };
+        }
+        if ( representation instanceof ListRepresentation && format.supportsStreaming() )
+        {
+            return new StreamingOutput()
+            {
+                public void write( OutputStream output ) throws IOException
+                {
+                    ( (ListRepresentation) representation ).serialize( format, baseUri, extensions, output );
+                }
+            };
+        }
+        return utf8( format( representation ) );
+    }
+
+    private static byte[] utf8( String entity )
+    {
         try
         {
-            entityAsBytes = entity.getBytes( UTF8 );
+            return entity.getBytes( UTF8 );
         }
         catch ( UnsupportedEncodingException e )
         {
             throw new RuntimeException( "Could not encode string as UTF-8", e );
         }
-        return response.entity( entityAsBytes )
-                .header( HttpHeaders.CONTENT_ENCODING, UTF8 )
-                .type( getMediaType() )
-                .build();
     }
 
     public MediaType getMediaType()
@@ -123,6 +260,16 @@ public class OutputFormat
         return representation.serialize( format, baseUri, extensions );
     }
 
+    /**
+     * This output format, but always writing JSON. For responses that are
+     * JSON documents regardless of what the client accepts and embed
+     * serialized representations, such as batch results.
+     */
+    public OutputFormat json()
+    {
+        return new OutputFormat( new JsonFormat(), baseUri, extensions );
+    }
+
     public Response noContent()
     {
         return Response.status( Status.NO_CONTENT )
@@ -30,11 +30,22 @@ import com.sun.jersey.api.core.HttpContext;
 public final class OutputFormatProvider extends AbstractInjectableProvider<OutputFormat>
 {
     private final RepresentationFormatRepository repository;
+    private final ResponseCache responseCache;
 
     public OutputFormatProvider( RepresentationFormatRepository repository )
+    {
+        this( repository, null );
+    }
+
+    /**
+     * @param responseCache where to keep serialized responses of versioned
+     *            entities, or null for no caching.
+     */
+    public OutputFormatProvider( RepresentationFormatRepository repository, ResponseCache responseCache )
     {
         super( OutputFormat.class );
         this.repository = repository;
+        this.responseCache = responseCache;
     }
 
     @Override
@@ -44,7 +55,7 @@ public final class OutputFormatProvider extends AbstractInjectableProvider<Outpu
         {
             return repository.outputFormat( context.getRequest()
                     .getAcceptableMediaTypes(), context.getRequest()
-                    .getBaseUri() );
+                    .getBaseUri(), context.getRequest(), responseCache );
         }
         catch ( MediaTypeNotSupportedException e )
         {
@@ -19,21 +19,45 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.util.Collection;
+
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.server.helpers.PropertyTypeDispatcher;
 
 public final class PropertiesRepresentation extends MappingRepresentation
 {
     private final PropertyContainer entity;
+    private final Collection<String> keys;
 
     public PropertiesRepresentation( PropertyContainer entity )
+    {
+        this( entity, null );
+    }
+
+    /**
+     * @param keys the keys of the properties to include, or <code>null</code>
+     *            to include all properties of the entity.
+     */
+    public PropertiesRepresentation( PropertyContainer entity, Collection<String> keys )
     {
         super( RepresentationType.PROPERTIES );
         this.entity = entity;
+        this.keys = keys;
     }
 
     public boolean isEmpty()
     {
+        if ( keys != null )
+        {
+            for ( String key : keys )
+            {
+                if ( entity.hasProperty( key ) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
         return !entity.getPropertyKeys()
                 .iterator()
                 .hasNext();
@@ -47,7 +71,14 @@ public final class PropertiesRepresentation extends MappingRepresentation
 
     void serialize( MappingWriter writer )
     {
-        PropertyTypeDispatcher.consumeProperties( new Consumer( writer ), entity );
+        if ( keys == null )
+        {
+            PropertyTypeDispatcher.consumeProperties( new Consumer( writer ), entity );
+        }
+        else
+        {
+            PropertyTypeDispatcher.consumeProperties( new Consumer( writer ), entity, keys );
+        }
     }
 
     private static class Consumer extends PropertyTypeDispatcher<String, Void>
@@ -19,6 +19,8 @@
  */
 package org.neo4j.server.rest.repr;
 
+import java.util.Collection;
+
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.helpers.collection.IterableWrapper;
 
@@ -26,11 +28,22 @@ public final class RelationshipRepresentation extends ObjectRepresentation imple
         EntityRepresentation
 {
     private final Relationship rel;
+    private final Collection<String> propertyKeys;
 
     public RelationshipRepresentation( Relationship rel )
+    {
+        this( rel, null );
+    }
+
+    /**
+     * @param propertyKeys the properties to include in the data of this
+     *            representation, or <code>null</code> for all of them.
+     */
+    public RelationshipRepresentation( Relationship rel, Collection<String> propertyKeys )
     {
         super( RepresentationType.RELATIONSHIP );
         this.rel = rel;
+        this.propertyKeys = propertyKeys;
     }
 
     @Override
@@ -94,7 +107,7 @@ public final class RelationshipRepresentation extends ObjectRepresentation imple
     void extraData( MappingSerializer serializer )
     {
         MappingWriter properties = serializer.writer.newMapping( RepresentationType.PROPERTIES, "data" );
-        new PropertiesRepresentation( rel ).serialize( properties );
+        new PropertiesRepresentation( rel, propertyKeys ).serialize( properties );
         properties.done();
     }
 
@@ -110,4 +123,18 @@ public final class RelationshipRepresentation extends ObjectRepresentation imple
                     }
                 } );
     }
+
+    public static ListRepresentation list( Iterable<Relationship> relationships,
+            final Collection<String> propertyKeys )
+    {
+        return new ListRepresentation( RepresentationType.RELATIONSHIP,
+                new IterableWrapper<Representation, Relationship>( relationships )
+                {
+                    @Override
+                    protected Representation underlyingObjectToObject( Relationship relationship )
+                    {
+                        return new RelationshipRepresentation( relationship, propertyKeys );
+                    }
+                } );
+    }
 }
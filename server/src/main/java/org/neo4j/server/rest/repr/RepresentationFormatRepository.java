@@ -29,6 +29,8 @@ import javax.ws.rs.core.MediaType;
 import org.neo4j.helpers.Service;
 import org.neo4j.server.rest.repr.formats.JsonFormat;
 
+import com.sun.jersey.api.core.HttpRequestContext;
+
 public final class RepresentationFormatRepository
 {
     private final Map<MediaType, RepresentationFormat> formats;
@@ -45,17 +47,23 @@ public final class RepresentationFormatRepository
     }
 
     public OutputFormat outputFormat( List<MediaType> acceptable, URI baseUri )
+    {
+        return outputFormat( acceptable, baseUri, null, null );
+    }
+
+    public OutputFormat outputFormat( List<MediaType> acceptable, URI baseUri, HttpRequestContext request,
+            ResponseCache responseCache )
     {
         for ( MediaType type : acceptable )
         {
             RepresentationFormat format = formats.get( type );
             if ( format != null )
             {
-                return new OutputFormat( format, baseUri, injector );
+                return new OutputFormat( format, baseUri, injector, request, responseCache );
             }
         }
 
-        return new OutputFormat( useDefault( acceptable ), baseUri, injector );
+        return new OutputFormat( useDefault( acceptable ), baseUri, injector, request, responseCache );
     }
 
     public InputFormat inputFormat( MediaType type )
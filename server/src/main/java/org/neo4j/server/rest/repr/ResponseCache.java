@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the serialized responses for the most recently requested entities,
+ * each together with the entity tag it was serialized at. A cached response
+ * is only ever handed out for the same tag, so entries go stale rather than
+ * wrong and are replaced the next time the entity is requested. The least
+ * recently used responses are dropped to keep the cached responses under a
+ * number of bytes.
+ */
+public class ResponseCache
+{
+    public static final int MAX_CACHED_RESPONSE_SIZE = 64 * 1024;
+
+    private final Map<String, CachedResponse> responses = new LinkedHashMap<String, CachedResponse>( 16, 0.75f,
+            true );
+    private final long maxBytes;
+    private long bytes;
+
+    /**
+     * @param maxBytes the most bytes the cached responses may take together.
+     */
+    public ResponseCache( long maxBytes )
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the cached response for {@code key} if it was serialized at
+     *         {@code tag}, otherwise null.
+     */
+    public synchronized byte[] get( String key, String tag )
+    {
+        CachedResponse cached = responses.get( key );
+        return cached != null && cached.tag.equals( tag ) ? cached.entity : null;
+    }
+
+    public synchronized void put( String key, String tag, byte[] entity )
+    {
+        remove( key );
+        if ( entity.length > MAX_CACHED_RESPONSE_SIZE || entity.length > maxBytes )
+        {
+            return;
+        }
+        responses.put( key, new CachedResponse( tag, entity ) );
+        bytes += entity.length;
+        Iterator<CachedResponse> leastRecentlyUsedFirst = responses.values()
+                .iterator();
+        while ( bytes > maxBytes )
+        {
+            bytes -= leastRecentlyUsedFirst.next().entity.length;
+            leastRecentlyUsedFirst.remove();
+        }
+    }
+
+    private void remove( String key )
+    {
+        CachedResponse removed = responses.remove( key );
+        if ( removed != null )
+        {
+            bytes -= removed.entity.length;
+        }
+    }
+
+    public synchronized int size()
+    {
+        return responses.size();
+    }
+
+    /**
+     * @return the number of bytes the cached responses take together.
+     */
+    public synchronized long bytes()
+    {
+        return bytes;
+    }
+
+    private static class CachedResponse
+    {
+        private final String tag;
+        private final byte[] entity;
+
+        CachedResponse( String tag, byte[] entity )
+        {
+            this.tag = tag;
+            this.entity = entity;
+        }
+    }
+}
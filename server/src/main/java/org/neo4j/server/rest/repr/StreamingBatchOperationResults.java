@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.neo4j.server.rest.repr.formats.JsonFormat;
+
+/**
+ * Writes the results of batch operations to a stream as JSON, one at a time
+ * as they complete, instead of collecting them in memory like
+ * {@link BatchOperationResults} does. Each result carries the status of its
+ * operation, a failed operation is the last one in the list.
+ */
+public class StreamingBatchOperationResults
+{
+    private static final String RESULT = "batch-result";
+
+    private final ListWriter results;
+    private final URI baseUri;
+    private final ExtensionInjector extensions;
+    private final Map<Integer, String> locations = new HashMap<Integer, String>();
+
+    public StreamingBatchOperationResults( OutputStream output, URI baseUri, ExtensionInjector extensions )
+            throws IOException
+    {
+        RepresentationFormat format = new JsonFormat();
+        this.results = format.serializeList( "batch-results", output );
+        this.baseUri = baseUri;
+        this.extensions = extensions;
+    }
+
+    public void addOperationResult( String from, Integer id, int status, Representation body, String location )
+    {
+        MappingWriter result = start( id, status, location );
+        if ( body != null && !body.isEmpty() )
+        {
+            body.putTo( new MappingSerializer( result, baseUri, extensions ), "body" );
+        }
+        end( result, from );
+    }
+
+    /**
+     * For results of operations that went through the web server, where the
+     * body already is serialized.
+     * 
+     * @param body the body, read back from JSON.
+     */
+    public void addOperationResult( String from, Integer id, int status, Object body, String location )
+    {
+        MappingWriter result = start( id, status, location );
+        if ( body != null )
+        {
+            result.writeValue( RESULT, "body", body );
+        }
+        end( result, from );
+    }
+
+    public void addOperationFailure( String from, Integer id, int status, Throwable failure )
+    {
+        addOperationResult( from, id, status, new ExceptionRepresentation( failure ), null );
+    }
+
+    private MappingWriter start( Integer id, int status, String location )
+    {
+        MappingWriter result = results.newMapping( RESULT );
+        if ( id != null )
+        {
+            result.writeInteger( RepresentationType.INTEGER, "id", id.intValue() );
+        }
+        if ( location != null )
+        {
+            locations.put( id, location );
+            result.writeString( "location", location );
+        }
+        result.writeInteger( RepresentationType.INTEGER, "status", status );
+        return result;
+    }
+
+    private void end( MappingWriter result, String from )
+    {
+        result.writeString( "from", from );
+        result.done();
+    }
+
+    public Map<Integer, String> getLocations()
+    {
+        return locations;
+    }
+
+    /**
+     * Ends the list of results and flushes it to the stream.
+     */
+    public void close()
+    {
+        results.done();
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr.formats;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.neo4j.server.rest.repr.Representation;
+
+/**
+ * Shrinks links to nodes and relationships down to the ids of the entities,
+ * for formats where size matters more than self-describing responses. Links
+ * to things under an entity, like its properties or relationships, are left
+ * out of mappings altogether since clients can build them from the id.
+ */
+final class EntityLinks
+{
+    private static final Pattern ENTITY = Pattern.compile( ".*/(?:node|relationship)/(\\d+)(/.*)?" );
+
+    /**
+     * Returned by {@link #compact(String, Object)} for links that should be
+     * left out.
+     */
+    static final Object OMITTED = new Object();
+
+    private EntityLinks()
+    {
+    }
+
+    static Object compact( String type, Object value )
+    {
+        if ( !Representation.URI.equals( type ) && !Representation.URI_TEMPLATE.equals( type ) )
+        {
+            return value;
+        }
+        Matcher matcher = ENTITY.matcher( value.toString() );
+        if ( !matcher.matches() )
+        {
+            return value;
+        }
+        if ( matcher.group( 2 ) != null )
+        {
+            return OMITTED;
+        }
+        return Long.valueOf( matcher.group( 1 ) );
+    }
+}
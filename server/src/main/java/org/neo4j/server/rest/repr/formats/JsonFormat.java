@@ -19,6 +19,8 @@
  */
 package org.neo4j.server.rest.repr.formats;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -29,6 +31,7 @@ import java.util.Map;
 
 import javax.ws.rs.core.MediaType;
 
+import org.codehaus.jackson.JsonGenerator;
 import org.neo4j.server.rest.domain.JsonHelper;
 import org.neo4j.server.rest.domain.JsonParseException;
 import org.neo4j.server.rest.repr.BadInputException;
@@ -43,6 +46,11 @@ public class JsonFormat extends RepresentationFormat
         super( MediaType.APPLICATION_JSON_TYPE );
     }
 
+    protected JsonFormat( MediaType mediaType )
+    {
+        super( mediaType );
+    }
+
     @Override
     protected ListWriter serializeList( String type )
     {
@@ -55,6 +63,20 @@ public class JsonFormat extends RepresentationFormat
         return JsonHelper.createJsonFrom( ( (ListWrappingWriter) serializer ).data );
     }
 
+    @Override
+    protected boolean supportsStreaming()
+    {
+        return true;
+    }
+
+    @Override
+    protected ListWriter serializeList( String type, OutputStream output ) throws IOException
+    {
+        JsonGenerator generator = JsonHelper.createJsonGenerator( output );
+        generator.writeStartArray();
+        return new StreamingListWriter( generator, true );
+    }
+
     @Override
     protected MappingWriter serializeMapping( String type )
     {
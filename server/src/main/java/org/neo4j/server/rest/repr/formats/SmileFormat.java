@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr.formats;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.core.MediaType;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.codehaus.jackson.smile.SmileGenerator;
+import org.neo4j.server.rest.repr.ListWriter;
+import org.neo4j.server.rest.repr.MappingWriter;
+
+/**
+ * Binary JSON, as specified by the Smile format, for clients that read a lot
+ * of data. Everything is streamed to the response, and links to nodes and
+ * relationships are written as their ids, see {@link EntityLinks}.
+ *
+ * Request bodies reach the resources as strings, so input in this format is
+ * read as plain JSON.
+ */
+public class SmileFormat extends JsonFormat
+{
+    public static final MediaType MEDIA_TYPE = new MediaType( "application", "x-jackson-smile" );
+
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper( new SmileFactory().configure(
+            SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true ) );
+
+    public SmileFormat()
+    {
+        super( MEDIA_TYPE );
+    }
+
+    @Override
+    protected boolean requiresStreaming()
+    {
+        return true;
+    }
+
+    @Override
+    protected ListWriter serializeList( String type, OutputStream output ) throws IOException
+    {
+        JsonGenerator generator = createGenerator( output );
+        generator.writeStartArray();
+        return new StreamingListWriter( generator, true, true );
+    }
+
+    @Override
+    protected MappingWriter serializeMapping( String type, OutputStream output ) throws IOException
+    {
+        JsonGenerator generator = createGenerator( output );
+        generator.writeStartObject();
+        return new StreamingMappingWriter( generator, true, true );
+    }
+
+    @Override
+    protected void serializeValue( String type, Object value, OutputStream output ) throws IOException
+    {
+        Object link = EntityLinks.compact( type, value );
+        JsonGenerator generator = createGenerator( output );
+        generator.writeObject( link == EntityLinks.OMITTED ? value : link );
+        generator.flush();
+    }
+
+    private static JsonGenerator createGenerator( OutputStream output ) throws IOException
+    {
+        return SMILE_MAPPER.getJsonFactory()
+                .createJsonGenerator( output, JsonEncoding.UTF8 );
+    }
+}
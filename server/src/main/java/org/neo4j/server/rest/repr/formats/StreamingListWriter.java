@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr.formats;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.util.TokenBuffer;
+import org.neo4j.server.rest.domain.JsonBuildRuntimeException;
+import org.neo4j.server.rest.repr.ListWriter;
+import org.neo4j.server.rest.repr.MappingWriter;
+
+/**
+ * Writes a list straight to a {@link JsonGenerator}, instead of collecting it
+ * in memory like {@link ListWrappingWriter} does. The elements of the
+ * outermost list are buffered one at a time, so that if serializing the list
+ * fails the list can still be ended after the last complete element, with a
+ * mapping describing the failure.
+ */
+public class StreamingListWriter extends ListWriter
+{
+    private final JsonGenerator generator;
+    private final boolean root;
+    private final boolean linksAsIds;
+    // The element of the outermost list being written
+    private TokenBuffer element;
+
+    StreamingListWriter( JsonGenerator generator, boolean root )
+    {
+        this( generator, root, false );
+    }
+
+    /**
+     * @param linksAsIds whether links to entities should be written as ids,
+     *            see {@link EntityLinks}.
+     */
+    StreamingListWriter( JsonGenerator generator, boolean root, boolean linksAsIds )
+    {
+        this.generator = generator;
+        this.root = root;
+        this.linksAsIds = linksAsIds;
+    }
+
+    @Override
+    protected ListWriter newList( String type )
+    {
+        JsonGenerator target;
+        try
+        {
+            target = elementGenerator();
+            target.writeStartArray();
+        }
+        catch ( IOException e )
+        {
+            throw new JsonBuildRuntimeException( e );
+        }
+        return new StreamingListWriter( target, false, linksAsIds );
+    }
+
+    @Override
+    protected MappingWriter newMapping( String type )
+    {
+        JsonGenerator target;
+        try
+        {
+            target = elementGenerator();
+            target.writeStartObject();
+        }
+        catch ( IOException e )
+        {
+            throw new JsonBuildRuntimeException( e );
+        }
+        return new StreamingMappingWriter( target, false, linksAsIds );
+    }
+
+    private JsonGenerator elementGenerator() throws IOException
+    {
+        if ( !root )
+        {
+            return generator;
+        }
+        writeElement();
+        element = new TokenBuffer( generator.getCodec() );
+        return element;
+    }
+
+    private void writeElement() throws IOException
+    {
+        if ( element != null )
+        {
+            element.serialize( generator );
+            element = null;
+        }
+    }
+
+    @Override
+    protected void writeValue( String type, Object value )
+    {
+        try
+        {
+            writeElement();
+            if ( linksAsIds )
+            {
+                Object link = EntityLinks.compact( type, value );
+                generator.writeObject( link == EntityLinks.OMITTED ? value : link );
+            }
+            else
+            {
+                generator.writeObject( value );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new JsonBuildRuntimeException( e );
+        }
+    }
+
+    @Override
+    protected void done()
+    {
+        try
+        {
+            writeElement();
+            generator.writeEndArray();
+            if ( root )
+            {
+                generator.flush();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new JsonBuildRuntimeException( e );
+        }
+    }
+
+    /**
+     * Drops the element that was being written and ends the list with a
+     * mapping with the "message" and "exception" of the failure, like the
+     * body of an error response. This is the only way left to tell the
+     * client, since the 200 status has already been sent, so a list of
+     * results whose last element has an "exception" key failed part way.
+     * Failures that can be found before the response is committed, like
+     * broken traversal scripts, should fail the request instead.
+     */
+    @Override
+    protected void failed( RuntimeException cause )
+    {
+        if ( !root )
+        {
+            return;
+        }
+        element = null;
+        try
+        {
+            generator.writeStartObject();
+            if ( cause.getMessage() != null )
+            {
+                generator.writeStringField( "message", cause.getMessage() );
+            }
+            generator.writeStringField( "exception", cause.toString() );
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.flush();
+        }
+        catch ( IOException e )
+        {   // The client is gone, nothing more to tell it
+        }
+    }
+}
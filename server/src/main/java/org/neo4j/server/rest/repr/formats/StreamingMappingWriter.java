@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr.formats;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.neo4j.server.rest.domain.JsonBuildRuntimeException;
+import org.neo4j.server.rest.repr.ListWriter;
+import org.neo4j.server.rest.repr.MappingWriter;
+
+/**
+ * Writes a mapping straight to a {@link JsonGenerator}, instead of collecting
+ * it in memory like {@link MapWrappingWriter} does.
+ */
+public class StreamingMappingWriter extends MappingWriter
+{
+    private final JsonGenerator generator;
+    private final boolean root;
+    private final boolean linksAsIds;
+
+    /**
+     * @param root whether this is the outermost mapping, which flushes the
+     *            generator when done.
+     * @param linksAsIds whether links to entities should be written as ids,
+     *            see {@link EntityLinks}.
+     */
+    StreamingMappingWriter( JsonGenerator generator, boolean root, boolean linksAsIds )
+    {
+        this.generator = generator;
+        this.root = root;
+        this.linksAsIds = linksAsIds;
+    }
+
+    @Override
+    protected ListWriter newList( String type, String key )
+    {
+        try
+        {
+            generator.writeArrayFieldStart( key );
+        }
+        catch ( IOException e )
+        {
+            throw new JsonBuildRuntimeException( e );
+        }
+        return new StreamingListWriter( generator, false, linksAsIds );
+    }
+
+    @Override
+    protected MappingWriter newMapping( String type, String key )
+    {
+        try
+        {
+            generator.writeObjectFieldStart( key );
+        }
+        catch ( IOException e )
+        {
+            throw new JsonBuildRuntimeException( e );
+        }
+        return new StreamingMappingWriter( generator, false, linksAsIds );
+    }
+
+    @Override
+    protected void writeValue( String type, String key, Object value )
+    {
+        try
+        {
+            Object written = linksAsIds ? EntityLinks.compact( type, value ) : value;
+            if ( written != EntityLinks.OMITTED )
+            {
+                generator.writeObjectField( key, written );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new JsonBuildRuntimeException( e );
+        }
+    }
+
+    @Override
+    protected void done()
+    {
+        try
+        {
+            generator.writeEndObject();
+            if ( root )
+            {
+                generator.flush();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new JsonBuildRuntimeException( e );
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.web;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.Map;
+
+import org.neo4j.server.rest.domain.EndNodeNotFoundException;
+import org.neo4j.server.rest.domain.JsonHelper;
+import org.neo4j.server.rest.domain.StartNodeNotFoundException;
+import org.neo4j.server.rest.repr.BadInputException;
+import org.neo4j.server.rest.repr.EntityRepresentation;
+import org.neo4j.server.rest.repr.OutputFormat;
+import org.neo4j.server.rest.repr.Representation;
+
+/*
+ * Executes the batch operations used the most, creating and updating nodes,
+ * relationships and index entries, straight on DatabaseActions. This skips
+ * writing the body back to JSON and sending it through the web server, only
+ * to have it parsed again on the other side.
+ *
+ * Operations it doesn't know about are left to the web server, dispatch
+ * returns null for them.
+ */
+final class BatchOperationDispatcher
+{
+    static final class Result
+    {
+        final int status;
+        final Representation body;
+        final String location;
+
+        Result( int status, Representation body, String location )
+        {
+            this.status = status;
+            this.body = body;
+            this.location = location;
+        }
+    }
+
+    private static final String GET = "GET";
+    private static final String POST = "POST";
+    private static final String PUT = "PUT";
+    private static final String DELETE = "DELETE";
+
+    private final DatabaseActions actions;
+    private final OutputFormat output;
+
+    BatchOperationDispatcher( DatabaseActions actions, OutputFormat output )
+    {
+        this.actions = actions;
+        this.output = output;
+    }
+
+    /**
+     * @param path the path of the operation, relative to the base uri of
+     *            the server, still url encoded.
+     * @param body the body of the operation, as it was read from the batch.
+     */
+    Result dispatch( String method, String path, Object body ) throws Exception
+    {
+        if ( path.indexOf( '?' ) != -1 )
+        {
+            return null;
+        }
+        String[] segments = segments( path );
+        if ( segments.length == 0 )
+        {
+            return null;
+        }
+        try
+        {
+            if ( "node".equals( segments[0] ) )
+            {
+                return node( method, segments, body );
+            }
+            if ( "relationship".equals( segments[0] ) )
+            {
+                return relationship( method, segments, body );
+            }
+        }
+        catch ( ArrayStoreException e )
+        {
+            // Same message as RestfulGraphDatabase gives for mixed arrays
+            throw new BadInputException( "Invalid JSON array in POST body: " + JsonHelper.createJsonFrom( body ) );
+        }
+        if ( segments.length == 5 && "index".equals( segments[0] ) && POST.equals( method ) )
+        {
+            return addToIndex( segments, body );
+        }
+        return null;
+    }
+
+    private Result node( String method, String[] segments, Object body ) throws Exception
+    {
+        if ( segments.length == 1 )
+        {
+            return POST.equals( method ) ? created( actions.createNode( map( body ) ) ) : null;
+        }
+        long nodeId = id( segments[1] );
+        if ( segments.length == 2 )
+        {
+            if ( GET.equals( method ) )
+            {
+                return ok( actions.getNode( nodeId ) );
+            }
+            if ( DELETE.equals( method ) )
+            {
+                actions.deleteNode( nodeId );
+                return nothing();
+            }
+        }
+        else if ( "properties".equals( segments[2] ) )
+        {
+            if ( segments.length == 3 )
+            {
+                if ( PUT.equals( method ) )
+                {
+                    actions.setAllNodeProperties( nodeId, map( body ) );
+                    return nothing();
+                }
+                if ( DELETE.equals( method ) )
+                {
+                    actions.removeAllNodeProperties( nodeId );
+                    return nothing();
+                }
+            }
+            else if ( segments.length == 4 )
+            {
+                if ( PUT.equals( method ) )
+                {
+                    actions.setNodeProperty( nodeId, segments[3], body );
+                    return nothing();
+                }
+                if ( DELETE.equals( method ) )
+                {
+                    actions.removeNodeProperty( nodeId, segments[3] );
+                    return nothing();
+                }
+            }
+        }
+        else if ( "relationships".equals( segments[2] ) && segments.length == 3 && POST.equals( method ) )
+        {
+            return createRelationship( nodeId, map( body ) );
+        }
+        return null;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private Result createRelationship( long startNodeId, Map<String, Object> data ) throws BadInputException,
+            StartNodeNotFoundException, EndNodeNotFoundException
+    {
+        final long endNodeId;
+        final String type;
+        final Map<String, Object> properties;
+        try
+        {
+            endNodeId = lastId( (String) data.get( "to" ) );
+            type = (String) data.get( "type" );
+            properties = (Map<String, Object>) data.get( "data" );
+        }
+        catch ( ClassCastException e )
+        {
+            throw new BadInputException( e );
+        }
+        return created( actions.createRelationship( startNodeId, endNodeId, type, properties ) );
+    }
+
+    private Result relationship( String method, String[] segments, Object body ) throws Exception
+    {
+        if ( segments.length < 2 )
+        {
+            return null;
+        }
+        long relationshipId = id( segments[1] );
+        if ( segments.length == 2 )
+        {
+            if ( GET.equals( method ) )
+            {
+                return ok( actions.getRelationship( relationshipId ) );
+            }
+            if ( DELETE.equals( method ) )
+            {
+                actions.deleteRelationship( relationshipId );
+                return nothing();
+            }
+        }
+        else if ( "properties".equals( segments[2] ) )
+        {
+            if ( segments.length == 3 )
+            {
+                if ( PUT.equals( method ) )
+                {
+                    actions.setAllRelationshipProperties( relationshipId, map( body ) );
+                    return nothing();
+                }
+                if ( DELETE.equals( method ) )
+                {
+                    actions.removeAllRelationshipProperties( relationshipId );
+                    return nothing();
+                }
+            }
+            else if ( segments.length == 4 )
+            {
+                if ( PUT.equals( method ) )
+                {
+                    actions.setRelationshipProperty( relationshipId, segments[3], body );
+                    return nothing();
+                }
+                if ( DELETE.equals( method ) )
+                {
+                    actions.removeRelationshipProperty( relationshipId, segments[3] );
+                    return nothing();
+                }
+            }
+        }
+        return null;
+    }
+
+    private Result addToIndex( String[] segments, Object body ) throws BadInputException
+    {
+        if ( !( body instanceof String ) )
+        {
+            throw new BadInputException( "Expected the uri of the entity to index, got: " + body );
+        }
+        String indexName = segments[2], key = segments[3], value = segments[4];
+        long id = lastId( (String) body );
+        if ( "node".equals( segments[1] ) )
+        {
+            return created( actions.addToNodeIndex( indexName, key, value, id ) );
+        }
+        if ( "relationship".equals( segments[1] ) )
+        {
+            return created( actions.addToRelationshipIndex( indexName, key, value, id ) );
+        }
+        return null;
+    }
+
+    private <REPR extends Representation & EntityRepresentation> Result created( REPR representation )
+    {
+        return new Result( 201, representation, output.format( representation.selfUri() ) );
+    }
+
+    private static Result ok( Representation representation )
+    {
+        return new Result( 200, representation, null );
+    }
+
+    private static Result nothing()
+    {
+        return new Result( 204, null, null );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static Map<String, Object> map( Object body ) throws BadInputException
+    {
+        if ( body == null )
+        {
+            return Collections.emptyMap();
+        }
+        if ( body instanceof Map )
+        {
+            return (Map<String, Object>) body;
+        }
+        throw new BadInputException( "Expected a map, got: " + body );
+    }
+
+    private static long id( String segment ) throws BadInputException
+    {
+        try
+        {
+            return Long.parseLong( segment );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new BadInputException( e );
+        }
+    }
+
+    private static long lastId( String uri ) throws BadInputException
+    {
+        if ( uri == null )
+        {
+            throw new BadInputException( "Missing uri" );
+        }
+        return id( uri.substring( uri.lastIndexOf( "/" ) + 1 ) );
+    }
+
+    private static String[] segments( String path ) throws UnsupportedEncodingException
+    {
+        int start = 0, end = path.length();
+        while ( start < end && path.charAt( start ) == '/' ) start++;
+        while ( end > start && path.charAt( end - 1 ) == '/' ) end--;
+        if ( start == end )
+        {
+            return new String[0];
+        }
+        String[] segments = path.substring( start, end ).split( "/" );
+        for ( int i = 0; i < segments.length; i++ )
+        {
+            // Path segments use %20 for spaces, a '+' is a plus
+            segments[i] = URLDecoder.decode( segments[i].replace( "+", "%2B" ), "UTF-8" );
+        }
+        return segments;
+    }
+}
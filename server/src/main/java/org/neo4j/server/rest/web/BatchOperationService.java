@@ -20,72 +20,117 @@
 package org.neo4j.server.rest.web;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.servlet.ServletException;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.kernel.AbstractGraphDatabase;
 import org.neo4j.server.database.Database;
+import org.neo4j.server.rest.domain.EndNodeNotFoundException;
 import org.neo4j.server.rest.domain.JsonHelper;
+import org.neo4j.server.rest.domain.JsonParseException;
+import org.neo4j.server.rest.domain.StartNodeNotFoundException;
+import org.neo4j.server.rest.paging.LeaseManager;
+import org.neo4j.server.rest.repr.BadInputException;
 import org.neo4j.server.rest.repr.BatchOperationResults;
 import org.neo4j.server.rest.repr.InputFormat;
 import org.neo4j.server.rest.repr.OutputFormat;
+import org.neo4j.server.rest.repr.Representation;
+import org.neo4j.server.rest.repr.StreamingBatchOperationResults;
 import org.neo4j.server.web.WebServer;
 
 @Path( "/batch" )
 public class BatchOperationService
 {
+    /**
+     * Requests with this header set to <code>true</code> get the result of
+     * each operation written to the response as soon as it completes. The
+     * response status is then always 200, since it's sent before any
+     * operation is executed. Each result carries the status of its own
+     * operation instead. The batch stops at the first operation that fails,
+     * which is the last result, and nothing in the batch is committed.
+     */
+    public static final String STREAM_HEADER = "X-Stream";
 
     private static final String ID_KEY = "id";
     private static final String METHOD_KEY = "method";
     private static final String BODY_KEY = "body";
     private static final String TO_KEY = "to";
     private final OutputFormat output;
+    private final OutputFormat json;
     private final InputFormat input;
     private final WebServer webServer;
     private final Database database;
+    private final BatchOperationDispatcher dispatcher;
 
     public BatchOperationService( @Context Database database, @Context WebServer webServer, @Context InputFormat input,
-            @Context OutputFormat output )
+            @Context OutputFormat output, @Context LeaseManager leaseManager )
     {
         this.input = input;
         this.output = output;
+        // The results are embedded in a JSON document whatever the client
+        // accepts, so they are serialized as JSON too
+        this.json = output.json();
         this.webServer = webServer;
         this.database = database;
+        this.dispatcher = new BatchOperationDispatcher( new DatabaseActions( database, leaseManager ), json );
     }
 
     @POST
-    @SuppressWarnings( "unchecked" )
-    public Response performBatchOperations( @Context UriInfo uriInfo, String body )
+    public Response performBatchOperations( @Context UriInfo uriInfo, @Context HttpHeaders httpHeaders, String body )
     {
+        if ( "true".equalsIgnoreCase( httpHeaders.getRequestHeaders().getFirst( STREAM_HEADER ) ) )
+        {
+            return streamBatchOperations( uriInfo, body );
+        }
 
         AbstractGraphDatabase db = database.graph;
 
         Transaction tx = db.beginTx();
+        // Written as they complete, and kept on disk beyond a limit, so that
+        // a big batch doesn't keep every result on the heap
+        final BatchOperationResults results = new BatchOperationResults();
         try
         {
 
-            List<Object> operations = input.readList( body );
-            BatchOperationResults results = new BatchOperationResults( operations.size() );
+            List<Operation> operations = readOperations( body );
 
-            for ( Object rawOperation : operations )
+            for ( Operation operation : operations )
             {
-                performJob( results, uriInfo, (Map<String, Object>) rawOperation );
+                String path = replaceLocationPlaceholders( operation.to, results.getLocations() );
+                Outcome outcome = perform( operation, path, uriInfo, results.getLocations() );
+                if ( !is2XXStatusCode( outcome.status ) )
+                {
+                    throw new RuntimeException( outcome.entity );
+                }
+                results.addOperationResult( path, operation.id,
+                        outcome.representation != null ? json.format( outcome.representation ) : outcome.entity,
+                        outcome.location );
             }
 
             Response res = Response.ok()
-                    .entity( results.toJSON()
-                            .getBytes( "UTF-8" ) )
+                    .entity( new StreamingOutput()
+                    {
+                        public void write( OutputStream output ) throws IOException
+                        {
+                            results.writeJSON( output );
+                        }
+                    } )
                     .header( HttpHeaders.CONTENT_ENCODING, "UTF-8" )
                     .type( MediaType.APPLICATION_JSON )
                     .build();
@@ -96,6 +141,7 @@ public class BatchOperationService
         catch ( Exception e )
         {
             tx.failure();
+            results.release();
             return output.badRequest( e );
         }
         finally
@@ -104,42 +150,221 @@ public class BatchOperationService
         }
     }
 
-    private void performJob( BatchOperationResults results, UriInfo uriInfo, Map<String, Object> desc )
-            throws IOException, ServletException
+    /*
+     * The operations are executed while the response is written, in one
+     * transaction. The status of the response is decided before anything is
+     * executed, so a failed operation is reported with its own status as the
+     * last result, and the transaction is rolled back.
+     */
+    private Response streamBatchOperations( final UriInfo uriInfo, String body )
     {
+        final List<Operation> operations;
+        try
+        {
+            operations = readOperations( body );
+        }
+        catch ( BadInputException e )
+        {
+            return output.badRequest( e );
+        }
+        catch ( ClassCastException e )
+        {
+            return output.badRequest( e );
+        }
+        return Response.ok()
+                .entity( new StreamingOutput()
+                {
+                    public void write( OutputStream stream ) throws IOException, WebApplicationException
+                    {
+                        StreamingBatchOperationResults results = new StreamingBatchOperationResults( stream,
+                                uriInfo.getBaseUri(), null );
+                        Transaction tx = database.graph.beginTx();
+                        try
+                        {
+                            if ( performAll( operations, uriInfo, results ) )
+                            {
+                                tx.success();
+                            }
+                        }
+                        finally
+                        {
+                            tx.finish();
+                        }
+                        results.close();
+                    }
+                } )
+                .header( HttpHeaders.CONTENT_ENCODING, "UTF-8" )
+                .type( MediaType.APPLICATION_JSON )
+                .build();
+    }
 
-        InternalJettyServletRequest req = new InternalJettyServletRequest();
-        InternalJettyServletResponse res = new InternalJettyServletResponse();
+    private boolean performAll( List<Operation> operations, UriInfo uriInfo, StreamingBatchOperationResults results )
+    {
+        for ( Operation operation : operations )
+        {
+            String path = replaceLocationPlaceholders( operation.to, results.getLocations() );
+            Outcome outcome;
+            try
+            {
+                outcome = perform( operation, path, uriInfo, results.getLocations() );
+            }
+            catch ( Exception e )
+            {
+                results.addOperationFailure( path, operation.id, statusFor( e ), e );
+                return false;
+            }
+            if ( outcome.representation != null )
+            {
+                results.addOperationResult( path, operation.id, outcome.status, outcome.representation,
+                        outcome.location );
+            }
+            else
+            {
+                results.addOperationResult( path, operation.id, outcome.status, readEntity( outcome.entity ),
+                        outcome.location );
+            }
+            if ( !is2XXStatusCode( outcome.status ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        String method = (String) desc.get( METHOD_KEY );
-        String path = (String) desc.get( TO_KEY );
-        String body = desc.containsKey( BODY_KEY ) ? JsonHelper.createJsonFrom( desc.get( BODY_KEY ) ) : "";
-        Integer id = desc.containsKey( ID_KEY ) ? (Integer) desc.get( ID_KEY ) : null;
+    @SuppressWarnings( "unchecked" )
+    private List<Operation> readOperations( String body ) throws BadInputException
+    {
+        List<Object> rawOperations = input.readList( body );
+        List<Operation> operations = new ArrayList<Operation>( rawOperations.size() );
+        for ( Object rawOperation : rawOperations )
+        {
+            operations.add( new Operation( (Map<String, Object>) rawOperation ) );
+        }
+        return operations;
+    }
 
-        // Replace {[ID]} placeholders with location values
-        Map<Integer, String> locations = results.getLocations();
-        path = replaceLocationPlaceholders( path, locations );
-        body = replaceLocationPlaceholders( body, locations );
+    /**
+     * @param path the path of the operation, with the {[ID]} placeholders
+     *            already replaced with location values.
+     */
+    private Outcome perform( Operation operation, String path, UriInfo uriInfo, Map<Integer, String> locations )
+            throws Exception
+    {
+        Object body = replaceLocationPlaceholders( operation.body, locations );
 
         URI targetUri = calculateTargetUri( uriInfo, path );
 
-        req.setup( method, targetUri.toString(), body );
+        String relativePath = relativePath( uriInfo.getBaseUri(), targetUri );
+        if ( relativePath != null )
+        {
+            BatchOperationDispatcher.Result result = dispatcher.dispatch( operation.method, relativePath, body );
+            if ( result != null )
+            {
+                return new Outcome( result.status, result.body, null, result.location );
+            }
+        }
+
+        InternalJettyServletRequest req = new InternalJettyServletRequest();
+        InternalJettyServletResponse res = new InternalJettyServletResponse();
+
+        req.setup( operation.method, targetUri.toString(), operation.hasBody ? JsonHelper.createJsonFrom( body ) : "" );
         res.setup();
 
         webServer.invokeDirectly( targetUri.getPath(), req, res );
 
-        if ( is2XXStatusCode( res.getStatus() ) )
+        return new Outcome( res.getStatus(), null, res.getOutputStream()
+                .toString(), res.getHeader( "Location" ) );
+    }
+
+    private static final class Operation
+    {
+        final String method;
+        final String to;
+        final Object body;
+        final boolean hasBody;
+        final Integer id;
+
+        Operation( Map<String, Object> desc )
+        {
+            this.method = (String) desc.get( METHOD_KEY );
+            this.to = (String) desc.get( TO_KEY );
+            this.body = desc.get( BODY_KEY );
+            this.hasBody = desc.containsKey( BODY_KEY );
+            this.id = desc.containsKey( ID_KEY ) ? (Integer) desc.get( ID_KEY ) : null;
+        }
+    }
+
+    /*
+     * Operations executed in process have a representation, those that went
+     * through the web server have the entity it wrote.
+     */
+    private static final class Outcome
+    {
+        final int status;
+        final Representation representation;
+        final String entity;
+        final String location;
+
+        Outcome( int status, Representation representation, String entity, String location )
+        {
+            this.status = status;
+            this.representation = representation;
+            this.entity = entity;
+            this.location = location;
+        }
+    }
+
+    private static Object readEntity( String entity )
+    {
+        if ( entity == null || entity.length() == 0 )
+        {
+            return null;
+        }
+        try
+        {
+            return JsonHelper.readJson( entity );
+        }
+        catch ( JsonParseException e )
+        {
+            return entity;
+        }
+    }
+
+    private static int statusFor( Exception e )
+    {
+        if ( e instanceof NodeNotFoundException || e instanceof RelationshipNotFoundException
+             || e instanceof StartNodeNotFoundException || e instanceof NoSuchPropertyException
+             || e instanceof NotFoundException )
         {
-            results.addOperationResult( path, id, res.getOutputStream()
-                    .toString(), res.getHeader( "Location" ) );
+            return Response.Status.NOT_FOUND.getStatusCode();
         }
-        else
+        if ( e instanceof BadInputException || e instanceof EndNodeNotFoundException
+             || e instanceof ClassCastException )
         {
-            throw new RuntimeException( res.getOutputStream()
-                    .toString() );
+            return Response.Status.BAD_REQUEST.getStatusCode();
         }
+        if ( e instanceof OperationFailureException )
+        {
+            return Response.Status.CONFLICT.getStatusCode();
+        }
+        if ( e instanceof UnsupportedOperationException )
+        {
+            // Like RestfulGraphDatabase, f.ex. for changes to auto indexes
+            return 405;
+        }
+        return Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
     }
 
+    private static String relativePath( URI baseUri, URI targetUri )
+    {
+        String base = baseUri.getRawPath();
+        String target = targetUri.getRawPath();
+        if ( targetUri.getRawQuery() != null || base == null || target == null || !target.startsWith( base ) )
+        {
+            return null;
+        }
+        return target.substring( base.length() );
+    }
     private URI calculateTargetUri( UriInfo serverUriInfo, String requestedPath )
     {
         URI baseUri = serverUriInfo.getBaseUri();
@@ -158,18 +383,77 @@ public class BatchOperationService
         return baseUri.resolve( "." + requestedPath );
     }
 
-    private String replaceLocationPlaceholders( String str, Map<Integer, String> locations )
+    private static String replaceLocationPlaceholders( String str, Map<Integer, String> locations )
     {
-        // TODO: Potential memory-hog on big requests, write smarter
-        // implementation.
-        for ( Integer jobId : locations.keySet() )
+        // Looks up each {[ID]} in the string, rather than trying each of the
+        // locations on it, which would grow with the size of the batch
+        if ( str == null || locations.isEmpty() || str.indexOf( '{' ) == -1 )
         {
-            str = str.replace( "{" + jobId + "}", locations.get( jobId ) );
+            return str;
+        }
+        StringBuilder result = null;
+        int copied = 0;
+        for ( int start = str.indexOf( '{' ); start != -1; start = str.indexOf( '{', start + 1 ) )
+        {
+            int end = start + 1;
+            while ( end < str.length() && Character.isDigit( str.charAt( end ) ) )
+            {
+                end++;
+            }
+            if ( end == start + 1 || end - start > 10 || end == str.length() || str.charAt( end ) != '}' )
+            {
+                continue;
+            }
+            String location = locations.get( Integer.valueOf( str.substring( start + 1, end ) ) );
+            if ( location == null )
+            {
+                continue;
+            }
+            if ( result == null )
+            {
+                result = new StringBuilder( str.length() + location.length() );
+            }
+            result.append( str, copied, start ).append( location );
+            copied = end + 1;
+            start = end;
+        }
+        return result == null ? str : result.append( str, copied, str.length() ).toString();
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static Object replaceLocationPlaceholders( Object body, Map<Integer, String> locations )
+    {
+        if ( locations.isEmpty() )
+        {
+            return body;
+        }
+        if ( body instanceof String )
+        {
+            return replaceLocationPlaceholders( (String) body, locations );
+        }
+        if ( body instanceof Map )
+        {
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            for ( Map.Entry<String, Object> entry : ( (Map<String, Object>) body ).entrySet() )
+            {
+                result.put( replaceLocationPlaceholders( entry.getKey(), locations ),
+                        replaceLocationPlaceholders( entry.getValue(), locations ) );
+            }
+            return result;
+        }
+        if ( body instanceof List )
+        {
+            List<Object> result = new ArrayList<Object>( ( (List<Object>) body ).size() );
+            for ( Object item : (List<Object>) body )
+            {
+                result.add( replaceLocationPlaceholders( item, locations ) );
+            }
+            return result;
         }
-        return str;
+        return body;
     }
 
-    private boolean is2XXStatusCode( int statusCode )
+    private static boolean is2XXStatusCode( int statusCode )
     {
         return statusCode - 200 >= 0 && statusCode - 200 < 100;
     }
@@ -49,11 +49,16 @@ import org.neo4j.graphdb.index.ReadableIndex;
 import org.neo4j.graphdb.index.ReadableRelationshipIndex;
 import org.neo4j.graphdb.index.RelationshipIndex;
 import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.helpers.collection.FilteringIterable;
 import org.neo4j.helpers.collection.IterableWrapper;
+import org.neo4j.helpers.collection.IteratorUtil;
+import org.neo4j.helpers.collection.PrefetchingIterator;
 import org.neo4j.kernel.AbstractGraphDatabase;
 import org.neo4j.kernel.Traversal;
 import org.neo4j.server.database.Database;
 import org.neo4j.server.database.DatabaseBlockedException;
+import org.neo4j.server.database.EntityVersion;
+import org.neo4j.server.database.EntityVersions;
 import org.neo4j.server.rest.domain.EndNodeNotFoundException;
 import org.neo4j.server.rest.domain.RelationshipExpanderBuilder;
 import org.neo4j.server.rest.domain.StartNodeNotFoundException;
@@ -61,8 +66,12 @@ import org.neo4j.server.rest.domain.TraversalDescriptionBuilder;
 import org.neo4j.server.rest.domain.TraverserReturnType;
 import org.neo4j.server.rest.paging.Lease;
 import org.neo4j.server.rest.paging.LeaseManager;
+import org.neo4j.server.rest.paging.PagedIterator;
 import org.neo4j.server.rest.paging.PagedTraverser;
+import org.neo4j.server.rest.repr.CompactNodeRepresentation;
+import org.neo4j.server.rest.repr.CompactRelationshipRepresentation;
 import org.neo4j.server.rest.repr.DatabaseRepresentation;
+import org.neo4j.server.rest.repr.IndexHitsWrapper;
 import org.neo4j.server.rest.repr.IndexRepresentation;
 import org.neo4j.server.rest.repr.IndexedEntityRepresentation;
 import org.neo4j.server.rest.repr.ListRepresentation;
@@ -83,11 +92,13 @@ public class DatabaseActions
 {
     private final AbstractGraphDatabase graphDb;
     private final LeaseManager leases;
+    private final EntityVersions versions;
 
     public DatabaseActions( Database database, LeaseManager leaseManager )
     {
         this.leases = leaseManager;
         this.graphDb = database.graph;
+        this.versions = database.getEntityVersions();
     }
 
     private Node node( long id ) throws NodeNotFoundException
@@ -116,6 +127,42 @@ public class DatabaseActions
         }
     }
 
+    private static abstract class ExistingEntities<T> implements Iterable<T>
+    {
+        private final Iterable<Long> ids;
+
+        ExistingEntities( Iterable<Long> ids )
+        {
+            this.ids = ids;
+        }
+
+        abstract T lookup( long id );
+
+        public Iterator<T> iterator()
+        {
+            final Iterator<Long> idIterator = ids.iterator();
+            return new PrefetchingIterator<T>()
+            {
+                @Override
+                protected T fetchNextOrNull()
+                {
+                    while ( idIterator.hasNext() )
+                    {
+                        try
+                        {
+                            return lookup( idIterator.next() );
+                        }
+                        catch ( NotFoundException e )
+                        {
+                            // Deleted or never created, leave it out
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+    }
+
     private <T extends PropertyContainer> T set( T entity,
             Map<String, Object> properties ) throws PropertyValueException
     {
@@ -205,6 +252,64 @@ public class DatabaseActions
         return new NodeRepresentation( node( nodeId ) );
     }
 
+    /**
+     * The version of the node and its properties, this should be read before
+     * the node itself so that the version is never newer than the data.
+     */
+    public EntityVersion getNodeVersion( long nodeId )
+    {
+        return versions.nodeVersion( nodeId );
+    }
+
+    /**
+     * The highest id a node can have at the moment, ids above it are
+     * certainly not in use.
+     */
+    public long getHighestPossibleNodeId()
+    {
+        return highestPossibleIdInUse( Node.class );
+    }
+
+    /**
+     * @see #getHighestPossibleNodeId()
+     */
+    public long getHighestPossibleRelationshipId()
+    {
+        return highestPossibleIdInUse( Relationship.class );
+    }
+
+    private long highestPossibleIdInUse( Class<? extends PropertyContainer> type )
+    {
+        return graphDb.getConfig()
+                .getGraphDbModule()
+                .getNodeManager()
+                .getHighestPossibleIdInUse( type );
+    }
+
+    /**
+     * Looks up many nodes at once. Ids of nodes that don't exist are skipped.
+     * The nodes are looked up lazily, as the result is serialized.
+     *
+     * @param propertyKeys the properties to include, or <code>null</code> for
+     *            all properties.
+     * @param compact whether to leave out the links of the full
+     *            representation.
+     */
+    public ListRepresentation getNodes( Iterable<Long> ids,
+            Collection<String> propertyKeys, boolean compact )
+    {
+        Iterable<Node> nodes = new ExistingEntities<Node>( ids )
+        {
+            @Override
+            Node lookup( long id )
+            {
+                return graphDb.getNodeById( id );
+            }
+        };
+        return compact ? CompactNodeRepresentation.list( nodes, propertyKeys )
+                : NodeRepresentation.list( nodes, propertyKeys );
+    }
+
     public void deleteNode( long nodeId ) throws NodeNotFoundException,
             OperationFailureException
     {
@@ -520,6 +625,34 @@ public class DatabaseActions
         return new RelationshipRepresentation( relationship( relationshipId ) );
     }
 
+    /**
+     * @see #getNodeVersion(long)
+     */
+    public EntityVersion getRelationshipVersion( long relationshipId )
+    {
+        return versions.relationshipVersion( relationshipId );
+    }
+
+    /**
+     * Looks up many relationships at once, see
+     * {@link #getNodes(Iterable, Collection, boolean)}.
+     */
+    public ListRepresentation getRelationships( Iterable<Long> ids,
+            Collection<String> propertyKeys, boolean compact )
+    {
+        Iterable<Relationship> relationships = new ExistingEntities<Relationship>( ids )
+        {
+            @Override
+            Relationship lookup( long id )
+            {
+                return graphDb.getRelationshipById( id );
+            }
+        };
+        return compact ? CompactRelationshipRepresentation.list(
+                relationships, propertyKeys )
+                : RelationshipRepresentation.list( relationships, propertyKeys );
+    }
+
     public void deleteRelationship( long relationshipId )
             throws RelationshipNotFoundException
     {
@@ -540,7 +673,13 @@ public class DatabaseActions
             RelationshipDirection direction, Collection<String> types )
             throws NodeNotFoundException
     {
-        Node node = node( nodeId );
+        return RelationshipRepresentation.list( relationships( node( nodeId ),
+                direction, types ) );
+    }
+
+    private Iterable<Relationship> relationships( Node node,
+            RelationshipDirection direction, Collection<String> types )
+    {
         Expander expander;
         if ( types.isEmpty() )
         {
@@ -556,7 +695,7 @@ public class DatabaseActions
                         direction.internal );
             }
         }
-        return RelationshipRepresentation.list( expander.expand( node ) );
+        return expander.expand( node );
     }
 
     // Relationship properties
@@ -848,32 +987,22 @@ public class DatabaseActions
                         Collections.<String, String>emptyMap() ) );
     }
 
-    public ListRepresentation getIndexedNodes( String indexName, String key,
-            String value )
+    public ListRepresentation getIndexedNodes( String indexName, final String key,
+            final String value )
     {
         if ( !graphDb.index().existsForNodes( indexName ) )
             throw new NotFoundException();
         Index<Node> index = graphDb.index().forNodes( indexName );
-        List<IndexedEntityRepresentation> representations = new ArrayList<IndexedEntityRepresentation>();
-
-        Transaction tx = graphDb.beginTx();
-        try
-        {
-            IndexRepresentation indexRepresentation = new NodeIndexRepresentation(
-                    indexName );
-            for ( Node node : index.get( key, value ) )
-            {
-                representations.add( new IndexedEntityRepresentation( node,
-                        key, value, indexRepresentation ) );
-            }
-            tx.success();
-            return new ListRepresentation( RepresentationType.NODE,
-                    representations );
-        }
-        finally
-        {
-            tx.finish();
-        }
+        final IndexRepresentation indexRepresentation = new NodeIndexRepresentation( indexName );
+        return new ListRepresentation( RepresentationType.NODE,
+                new IndexHitsWrapper<Node>( index.get( key, value ) )
+                {
+                    @Override
+                    protected Representation underlyingObjectToObject( Node node )
+                    {
+                        return new IndexedEntityRepresentation( node, key, value, indexRepresentation );
+                    }
+                } );
     }
 
     public ListRepresentation getIndexedNodesByQuery( String indexName,
@@ -888,101 +1017,46 @@ public class DatabaseActions
         if ( !graphDb.index().existsForNodes( indexName ) )
             throw new NotFoundException();
         Index<Node> index = graphDb.index().forNodes( indexName );
-        List<Representation> representations = new ArrayList<Representation>();
-
-        Transaction tx = graphDb.beginTx();
-        try
+        if ( query == null )
         {
-            if ( query != null )
-            {
-                for ( Node node : index.query( key, query ) )
-                {
-                    representations.add( new NodeRepresentation( node ) );
-                }
-            }
-            tx.success();
-            return new ListRepresentation( RepresentationType.NODE,
-                    representations );
-        }
-        finally
-        {
-            tx.finish();
+            return NodeRepresentation.list( Collections.<Node>emptyList() );
         }
+        return IndexHitsWrapper.nodes( index.query( key, query ) );
     }
 
     public Representation getAutoIndexedNodes( String key, String value )
     {
-
-        List<Representation> representations = new ArrayList<Representation>();
         ReadableIndex<Node> index = graphDb.index().getNodeAutoIndexer().getAutoIndex();
-
-        Transaction tx = graphDb.beginTx();
-        try
-        {
-            for ( Node node : index.get( key, value ) )
-            {
-                representations.add( new NodeRepresentation( node ) );
-            }
-            tx.success();
-            return new ListRepresentation( RepresentationType.NODE,
-                    representations );
-        }
-        finally
-        {
-            tx.finish();
-        }
+        return IndexHitsWrapper.nodes( index.get( key, value ) );
     }
 
     public ListRepresentation getAutoIndexedNodesByQuery( String query )
     {
         ReadableIndex<Node> index = graphDb.index().getNodeAutoIndexer().getAutoIndex();
-        List<Representation> representations = new ArrayList<Representation>();
-
-        if ( query != null )
+        if ( query == null )
         {
-            Transaction tx = graphDb.beginTx();
-            try
-            {
-                for ( Node node : index.query( query ) )
-                {
-                    representations.add( new NodeRepresentation( node ) );
-                }
-                tx.success();
-            }
-            finally
-            {
-                tx.finish();
-            }
+            return NodeRepresentation.list( Collections.<Node>emptyList() );
         }
-        return new ListRepresentation( RepresentationType.NODE, representations );
+        return IndexHitsWrapper.nodes( index.query( query ) );
     }
 
     public ListRepresentation getIndexedRelationships( String indexName,
-            String key, String value )
+            final String key, final String value )
     {
         if ( !graphDb.index().existsForRelationships( indexName ) )
             throw new NotFoundException();
-        List<IndexedEntityRepresentation> representations = new ArrayList<IndexedEntityRepresentation>();
         Index<Relationship> index = graphDb.index().forRelationships( indexName );
-
-        Transaction tx = graphDb.beginTx();
-        try
-        {
-            IndexRepresentation indexRepresentation = new RelationshipIndexRepresentation(
-                    indexName );
-            for ( Relationship node : index.get( key, value ) )
-            {
-                representations.add( new IndexedEntityRepresentation( node,
-                        key, value, indexRepresentation ) );
-            }
-            tx.success();
-            return new ListRepresentation( RepresentationType.RELATIONSHIP,
-                    representations );
-        }
-        finally
-        {
-            tx.finish();
-        }
+        final IndexRepresentation indexRepresentation = new RelationshipIndexRepresentation( indexName );
+        return new ListRepresentation( RepresentationType.RELATIONSHIP,
+                new IndexHitsWrapper<Relationship>( index.get( key, value ) )
+                {
+                    @Override
+                    protected Representation underlyingObjectToObject( Relationship relationship )
+                    {
+                        return new IndexedEntityRepresentation( relationship, key, value,
+                                indexRepresentation );
+                    }
+                } );
     }
 
     public ListRepresentation getIndexedRelationshipsByQuery( String indexName,
@@ -996,94 +1070,50 @@ public class DatabaseActions
     {
         if ( !graphDb.index().existsForRelationships( indexName ) )
             throw new NotFoundException();
-        List<Representation> representations = new ArrayList<Representation>();
         Index<Relationship> index = graphDb.index().forRelationships( indexName );
-
-        Transaction tx = graphDb.beginTx();
-        try
-        {
-            for ( Relationship rel : index.query( key, query ) )
-            {
-                representations.add( new RelationshipRepresentation( rel ) );
-            }
-            tx.success();
-            return new ListRepresentation( RepresentationType.RELATIONSHIP,
-                    representations );
-        }
-        finally
-        {
-            tx.finish();
-        }
+        return IndexHitsWrapper.relationships( index.query( key, query ) );
     }
 
     public Representation getAutoIndexedRelationships( String key, String value )
     {
-
-        List<Representation> representations = new ArrayList<Representation>();
         ReadableRelationshipIndex index = graphDb.index().getRelationshipAutoIndexer().getAutoIndex();
-
-        Transaction tx = graphDb.beginTx();
-        try
-        {
-            for ( Relationship rel : index.get( key, value ) )
-            {
-                representations.add( new RelationshipRepresentation( rel ) );
-            }
-            tx.success();
-            return new ListRepresentation( RepresentationType.RELATIONSHIP,
-                    representations );
-        }
-        finally
-        {
-            tx.finish();
-        }
+        return IndexHitsWrapper.relationships( index.get( key, value ) );
     }
 
     public ListRepresentation getAutoIndexedRelationshipsByQuery( String query )
     {
         ReadableRelationshipIndex index = graphDb.index().getRelationshipAutoIndexer().getAutoIndex();
-        List<Representation> representations = new ArrayList<Representation>();
-
-        if ( query != null )
+        if ( query == null )
         {
-            Transaction tx = graphDb.beginTx();
-            try
-            {
-                for ( Relationship rel : index.query( query ) )
-                {
-                    representations.add( new RelationshipRepresentation( rel ) );
-                }
-                tx.success();
-            }
-            finally
-            {
-                tx.finish();
-            }
+            return RelationshipRepresentation.list( Collections.<Relationship>emptyList() );
         }
-        return new ListRepresentation( RepresentationType.RELATIONSHIP,
-                representations );
+        return IndexHitsWrapper.relationships( index.query( query ) );
     }
 
     // Traversal
 
     public ListRepresentation traverse( long startNode,
-            Map<String, Object> description, TraverserReturnType returnType )
+            Map<String, Object> description, final TraverserReturnType returnType )
     {
         Node node = graphDb.getNodeById( startNode );
 
-        List<Representation> result = new ArrayList<Representation>();
-
         TraversalDescription traversalDescription = TraversalDescriptionBuilder.from( description );
-        for ( Path position : traversalDescription.traverse( node ) )
-        {
-            MappingRepresentation representation = returnType.toRepresentation( position );
-            if ( representation != null )
-            {
-                result.add( representation );
-            }
-        }
-
-        return new ListRepresentation( returnType.repType, result );
+        // Traversed while the result is written, so that a big result
+        // doesn't have to fit in memory. The first path is looked for here,
+        // before the response is committed, so that a broken script fails
+        // the request with an error status instead of ending a 200 response.
+        Iterator<Path> paths = traversalDescription.traverse( node )
+                .iterator();
+        paths.hasNext();
+        return new ListRepresentation( returnType.repType, FilteringIterable.notNull(
+                new IterableWrapper<Representation, Path>( IteratorUtil.asIterable( paths ) )
+                {
+                    @Override
+                    protected Representation underlyingObjectToObject( Path position )
+                    {
+                        return returnType.toRepresentation( position );
+                    }
+                } ) );
     }
 
     public ListRepresentation pagedTraverse( String traverserId,
@@ -1096,8 +1126,23 @@ public class DatabaseActions
                     "The traverser with id [%s] was not found", traverserId ) );
         }
 
-        PagedTraverser traverser = lease.getLeasedItemAndRenewLease();
-        List<Path> paths = traverser.next();
+        if ( !( lease.leasedItem instanceof PagedTraverser ) )
+        {
+            throw new NotFoundException( String.format(
+                    "The traverser with id [%s] was not found", traverserId ) );
+        }
+
+        PagedTraverser traverser = (PagedTraverser) lease.getLeasedItemAndRenewLease();
+        List<Path> paths;
+        synchronized ( lease )
+        {
+            if ( lease.isClosed() )
+            {
+                throw new NotFoundException( String.format(
+                        "The traverser with id [%s] was not found", traverserId ) );
+            }
+            paths = traverser.next();
+        }
 
         List<Representation> result = new ArrayList<Representation>();
 
@@ -1148,6 +1193,132 @@ public class DatabaseActions
         }
     }
 
+    // Cursors
+
+    /**
+     * A {@link PagedIterator} over the results of some request, that knows
+     * how to represent each page of those results.
+     */
+    private static abstract class Cursor<T> extends PagedIterator<T>
+    {
+        Cursor( IndexHits<T> hits, int pageSize )
+        {
+            super( hits, pageSize );
+        }
+
+        Cursor( Iterator<T> items, int pageSize )
+        {
+            super( items, pageSize );
+        }
+
+        abstract ListRepresentation represent( List<T> page );
+    }
+
+    private static class NodeCursor extends Cursor<Node>
+    {
+        NodeCursor( IndexHits<Node> hits, int pageSize )
+        {
+            super( hits, pageSize );
+        }
+
+        @Override
+        ListRepresentation represent( List<Node> page )
+        {
+            return NodeRepresentation.list( page );
+        }
+    }
+
+    private static class RelationshipCursor extends Cursor<Relationship>
+    {
+        RelationshipCursor( Iterator<Relationship> relationships, int pageSize )
+        {
+            super( relationships, pageSize );
+        }
+
+        @Override
+        ListRepresentation represent( List<Relationship> page )
+        {
+            return RelationshipRepresentation.list( page );
+        }
+    }
+
+    public String createNodeIndexCursor( String indexName, String key,
+            String query, int pageSize, int leaseTime )
+    {
+        if ( !graphDb.index().existsForNodes( indexName ) )
+            throw new NotFoundException();
+        Index<Node> index = graphDb.index().forNodes( indexName );
+        return leases.createLease( leaseTime,
+                new NodeCursor( index.query( key, query ), pageSize ) ).getId();
+    }
+
+    public String createAutoIndexedNodesCursor( String query, int pageSize,
+            int leaseTime )
+    {
+        ReadableIndex<Node> index = graphDb.index().getNodeAutoIndexer().getAutoIndex();
+        return leases.createLease( leaseTime,
+                new NodeCursor( index.query( query ), pageSize ) ).getId();
+    }
+
+    public String createNodeRelationshipsCursor( long nodeId,
+            RelationshipDirection direction, Collection<String> types,
+            int pageSize, int leaseTime ) throws NodeNotFoundException
+    {
+        Iterable<Relationship> relationships = relationships( node( nodeId ),
+                direction, types );
+        return leases.createLease( leaseTime, new RelationshipCursor(
+                relationships.iterator(), pageSize ) ).getId();
+    }
+
+    /**
+     * The next page of the cursor with the given id. Throws
+     * {@link NotFoundException} if there is no such cursor, or if all its
+     * results have already been returned.
+     */
+    public ListRepresentation nextPage( String cursorId )
+    {
+        Lease lease = leases.getLeaseById( cursorId );
+        if ( lease == null || !( lease.leasedItem instanceof Cursor ) )
+        {
+            throw new NotFoundException( String.format(
+                    "The cursor with id [%s] was not found", cursorId ) );
+        }
+        return nextPage( cursorId, lease, (Cursor<?>) lease.getLeasedItemAndRenewLease() );
+    }
+
+    private <T> ListRepresentation nextPage( String cursorId, Lease lease, Cursor<T> cursor )
+    {
+        List<T> page;
+        synchronized ( lease )
+        {
+            if ( lease.isClosed() )
+            {
+                throw new NotFoundException( String.format(
+                        "The cursor with id [%s] was not found", cursorId ) );
+            }
+            page = cursor.next();
+        }
+        if ( page == null )
+        {
+            leases.remove( cursorId );
+            throw new NotFoundException( String.format(
+                    "The results for cursor with id [%s] have been fully enumerated",
+                    cursorId ) );
+        }
+        return cursor.represent( page );
+    }
+
+    public boolean removeCursor( String cursorId )
+    {
+        Lease lease = leases.getLeaseById( cursorId );
+        if ( lease == null || !( lease.leasedItem instanceof Cursor ) )
+        {
+            return false;
+        }
+        leases.remove( cursorId );
+        return true;
+    }
+
     // Graph algos
 
     @SuppressWarnings( "rawtypes" )
@@ -21,8 +21,12 @@ package org.neo4j.server.rest.web;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 import javax.ws.rs.Consumes;
@@ -40,8 +44,11 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
 import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.helpers.collection.PrefetchingIterator;
 import org.neo4j.server.database.Database;
+import org.neo4j.server.database.EntityVersion;
 import org.neo4j.server.rest.domain.EndNodeNotFoundException;
+import org.neo4j.server.rest.domain.EvaluationException;
 import org.neo4j.server.rest.domain.StartNodeNotFoundException;
 import org.neo4j.server.rest.domain.TraverserReturnType;
 import org.neo4j.server.rest.paging.LeaseManager;
@@ -50,6 +57,8 @@ import org.neo4j.server.rest.repr.InputFormat;
 import org.neo4j.server.rest.repr.ListRepresentation;
 import org.neo4j.server.rest.repr.OutputFormat;
 import org.neo4j.server.rest.repr.PropertiesRepresentation;
+import org.neo4j.server.rest.repr.Representation;
+import org.neo4j.server.rest.repr.RepresentationType;
 import org.neo4j.server.rest.web.DatabaseActions.RelationshipDirection;
 
 @Path( "/" )
@@ -71,12 +80,29 @@ public class RestfulGraphDatabase
         }
     }
 
+    @SuppressWarnings( "serial" )
+    public static class CommaSeparatedCollection extends LinkedHashSet<String>
+    {
+        public CommaSeparatedCollection( String list )
+        {
+            for ( String e : list.split( "," ) )
+            {
+                if ( e.trim()
+                        .length() > 0 )
+                {
+                    add( e.trim() );
+                }
+            }
+        }
+    }
+
     private static final String PATH_NODES = "node";
     private static final String PATH_NODE = PATH_NODES + "/{nodeId}";
     private static final String PATH_NODE_PROPERTIES = PATH_NODE + "/properties";
     private static final String PATH_NODE_PROPERTY = PATH_NODE_PROPERTIES + "/{key}";
     private static final String PATH_NODE_RELATIONSHIPS = PATH_NODE + "/relationships";
-    private static final String PATH_RELATIONSHIP = "relationship/{relationshipId}";
+    private static final String PATH_RELATIONSHIPS = "relationship";
+    private static final String PATH_RELATIONSHIP = PATH_RELATIONSHIPS + "/{relationshipId}";
     private static final String PATH_NODE_RELATIONSHIPS_W_DIR = PATH_NODE_RELATIONSHIPS + "/{direction}";
     private static final String PATH_NODE_RELATIONSHIPS_W_DIR_N_TYPES = PATH_NODE_RELATIONSHIPS_W_DIR + "/{types}";
     private static final String PATH_RELATIONSHIP_PROPERTIES = PATH_RELATIONSHIP + "/properties";
@@ -107,6 +133,20 @@ public class RestfulGraphDatabase
     public static final String PATH_AUTO_RELATIONSHIP_INDEX = "index/auto/relationship";
     protected static final String PATH_AUTO_RELATIONSHIP_INDEX_GET = PATH_AUTO_RELATIONSHIP_INDEX + "/{key}/{value}";
     
+    public static final String PATH_CURSORS = "cursor";
+    protected static final String PATH_CURSOR = PATH_CURSORS + "/{cursorId}";
+    protected static final String PATH_NODE_INDEX_CURSORS = PATH_CURSORS + "/" + PATH_NAMED_NODE_INDEX;
+    protected static final String PATH_AUTO_NODE_INDEX_CURSORS = PATH_CURSORS + "/" + PATH_AUTO_NODE_INDEX;
+    protected static final String PATH_NODE_RELATIONSHIPS_CURSORS = PATH_CURSORS + "/" + PATH_NODE_RELATIONSHIPS_W_DIR;
+    protected static final String PATH_NODE_RELATIONSHIPS_W_TYPES_CURSORS = PATH_CURSORS + "/"
+                                                                            + PATH_NODE_RELATIONSHIPS_W_DIR_N_TYPES;
+
+    /**
+     * The most entities one request to {@link #getNodes} or
+     * {@link #getRelationships} may ask for.
+     */
+    static final int MAX_ENTITIES_PER_REQUEST = 10000;
+
     private static final String SIXTY_SECONDS = "60";
     private static final String FIFTY = "50";
 
@@ -183,13 +223,119 @@ public class RestfulGraphDatabase
                 .build();
     }
 
+    /**
+     * Gets many nodes in one request, either the ones listed in
+     * <code>ids</code> (comma separated) or the ones in the inclusive range
+     * <code>from</code>-<code>to</code>. <code>properties</code> limits which
+     * properties are returned and <code>compact</code> leaves out all links.
+     */
+    @GET
+    @Path( PATH_NODES )
+    public Response getNodes( @QueryParam( "ids" ) String ids, @QueryParam( "from" ) Long from,
+            @QueryParam( "to" ) Long to, @QueryParam( "properties" ) String properties,
+            @QueryParam( "compact" ) @DefaultValue( "false" ) boolean compact )
+    {
+        try
+        {
+            return output.ok( actions.getNodes(
+                    entityIds( ids, from, to, actions.getHighestPossibleNodeId() ), propertyKeys( properties ), compact ) );
+        }
+        catch ( BadInputException e )
+        {
+            return output.badRequest( e );
+        }
+    }
+
+    /**
+     * The ids to look up, at most {@link #MAX_ENTITIES_PER_REQUEST} of them.
+     * A range is clamped to <code>highestId</code>, since there are no
+     * entities above it.
+     */
+    private static Iterable<Long> entityIds( String ids, final Long from, Long to, long highestId )
+            throws BadInputException
+    {
+        if ( ids != null )
+        {
+            if ( from != null || to != null )
+            {
+                throw new BadInputException( "Specify either 'ids' or 'from' and 'to', not both" );
+            }
+            List<Long> result = new ArrayList<Long>();
+            for ( String id : new CommaSeparatedCollection( ids ) )
+            {
+                if ( result.size() == MAX_ENTITIES_PER_REQUEST )
+                {
+                    throw new BadInputException( "At most " + MAX_ENTITIES_PER_REQUEST
+                                                 + " ids can be requested at once" );
+                }
+                try
+                {
+                    result.add( Long.valueOf( id ) );
+                }
+                catch ( NumberFormatException e )
+                {
+                    throw new BadInputException( "Invalid id '" + id + "'", e );
+                }
+            }
+            return result;
+        }
+        if ( from == null || to == null )
+        {
+            throw new BadInputException( "Specify either 'ids' or both 'from' and 'to'" );
+        }
+        if ( from < 0 || to < from )
+        {
+            throw new BadInputException( "Invalid id range " + from + "-" + to );
+        }
+        // from is not negative, so this can't overflow
+        if ( to - from >= MAX_ENTITIES_PER_REQUEST )
+        {
+            throw new BadInputException( "At most " + MAX_ENTITIES_PER_REQUEST
+                                         + " ids can be requested at once, not " + from + "-" + to );
+        }
+        if ( from > highestId )
+        {
+            return Collections.emptyList();
+        }
+        final long last = Math.min( to, highestId );
+        return new Iterable<Long>()
+        {
+            public Iterator<Long> iterator()
+            {
+                return new PrefetchingIterator<Long>()
+                {
+                    private long next = from;
+                    private boolean done;
+
+                    @Override
+                    protected Long fetchNextOrNull()
+                    {
+                        if ( done )
+                        {
+                            return null;
+                        }
+                        // Stop before incrementing, last may be Long.MAX_VALUE
+                        done = next == last;
+                        return Long.valueOf( next++ );
+                    }
+                };
+            }
+        };
+    }
+
+    private static Collection<String> propertyKeys( String properties )
+    {
+        return properties == null ? null : new CommaSeparatedCollection( properties );
+    }
+
     @GET
     @Path( PATH_NODE )
     public Response getNode( @PathParam( "nodeId" ) long nodeId )
     {
         try
         {
-            return output.ok( actions.getNode( nodeId ) );
+            EntityVersion version = actions.getNodeVersion( nodeId );
+            return output.ok( actions.getNode( nodeId ), version );
         }
         catch ( NodeNotFoundException e )
         {
@@ -245,6 +391,7 @@ public class RestfulGraphDatabase
     @Path( PATH_NODE_PROPERTIES )
     public Response getAllNodeProperties( @PathParam( "nodeId" ) long nodeId )
     {
+        final EntityVersion version = actions.getNodeVersion( nodeId );
         final PropertiesRepresentation properties;
         try
         {
@@ -260,7 +407,7 @@ public class RestfulGraphDatabase
             return nothing();
         }
 
-        return output.ok( properties );
+        return output.ok( properties, version );
     }
 
     @PUT
@@ -292,7 +439,8 @@ public class RestfulGraphDatabase
     {
         try
         {
-            return output.ok( actions.getNodeProperty( nodeId, key ) );
+            EntityVersion version = actions.getNodeVersion( nodeId );
+            return output.ok( actions.getNodeProperty( nodeId, key ), version );
         }
         catch ( NodeNotFoundException e )
         {
@@ -386,13 +534,36 @@ public class RestfulGraphDatabase
         }
     }
 
+    /**
+     * Gets many relationships in one request, with the same parameters as
+     * {@link #getNodes(String, Long, Long, String, boolean)}.
+     */
+    @GET
+    @Path( PATH_RELATIONSHIPS )
+    public Response getRelationships( @QueryParam( "ids" ) String ids, @QueryParam( "from" ) Long from,
+            @QueryParam( "to" ) Long to, @QueryParam( "properties" ) String properties,
+            @QueryParam( "compact" ) @DefaultValue( "false" ) boolean compact )
+    {
+        try
+        {
+            return output.ok( actions.getRelationships(
+                    entityIds( ids, from, to, actions.getHighestPossibleRelationshipId() ), propertyKeys( properties ),
+                    compact ) );
+        }
+        catch ( BadInputException e )
+        {
+            return output.badRequest( e );
+        }
+    }
+
     @GET
     @Path( PATH_RELATIONSHIP )
     public Response getRelationship( @PathParam( "relationshipId" ) long relationshipId )
     {
         try
         {
-            return output.ok( actions.getRelationship( relationshipId ) );
+            EntityVersion version = actions.getRelationshipVersion( relationshipId );
+            return output.ok( actions.getRelationship( relationshipId ), version );
         }
         catch ( RelationshipNotFoundException e )
         {
@@ -452,6 +623,7 @@ public class RestfulGraphDatabase
     @Path( PATH_RELATIONSHIP_PROPERTIES )
     public Response getAllRelationshipProperties( @PathParam( "relationshipId" ) long relationshipId )
     {
+        final EntityVersion version = actions.getRelationshipVersion( relationshipId );
         final PropertiesRepresentation properties;
         try
         {
@@ -467,7 +639,7 @@ public class RestfulGraphDatabase
         }
         else
         {
-            return output.ok( properties );
+            return output.ok( properties, version );
         }
     }
 
@@ -478,7 +650,8 @@ public class RestfulGraphDatabase
     {
         try
         {
-            return output.ok( actions.getRelationshipProperty( relationshipId, key ) );
+            EntityVersion version = actions.getRelationshipVersion( relationshipId );
+            return output.ok( actions.getRelationshipProperty( relationshipId, key ), version );
         }
         catch ( RelationshipNotFoundException e )
         {
@@ -1074,6 +1247,10 @@ public class RestfulGraphDatabase
         {
             return output.badRequest( e );
         }
+        catch ( EvaluationException e )
+        {
+            return output.badRequest( e );
+        }
         catch ( NotFoundException e )
         {
             return output.notFound( e );
@@ -1106,11 +1283,7 @@ public class RestfulGraphDatabase
     {
         try
         {
-            ListRepresentation result = actions.pagedTraverse( traverserId, returnType );
-
-            return Response.ok( uriInfo.getRequestUri() )
-                    .entity( output.format( result ) )
-                    .build();
+            return output.ok( actions.pagedTraverse( traverserId, returnType ) );
         }
         catch ( NotFoundException e )
         {
@@ -1133,14 +1306,12 @@ public class RestfulGraphDatabase
             String traverserId = actions.createPagedTraverser( startNode, input.readMap( body ), pageSize,
                     leaseTimeInSeconds );
 
-            String responseBody = output.format( actions.pagedTraverse( traverserId, returnType ) );
+            ListRepresentation firstPage = actions.pagedTraverse( traverserId, returnType );
 
             URI uri = new URI( uriInfo.getBaseUri()
                     .toString() + "node/" + startNode + "/paged/traverse/" + returnType + "/" + traverserId );
 
-            return Response.created( uri.normalize() )
-                    .entity( responseBody )
-                    .build();
+            return output.created( uri.normalize(), firstPage );
         }
         catch ( BadInputException e )
         {
@@ -1172,6 +1343,145 @@ public class RestfulGraphDatabase
         }
     }
 
+    // Cursors
+
+    @POST
+    @Path( PATH_NODE_INDEX_CURSORS )
+    public Response createNodeIndexCursor( @PathParam( "indexName" ) String indexName,
+            @QueryParam( "key" ) String key, @QueryParam( "query" ) String query,
+            @QueryParam( "pageSize" ) @DefaultValue( FIFTY ) int pageSize,
+            @QueryParam( "leaseTime" ) @DefaultValue( SIXTY_SECONDS ) int leaseTimeInSeconds )
+    {
+        try
+        {
+            validateCursor( query, pageSize, leaseTimeInSeconds );
+            return cursorCreated( actions.createNodeIndexCursor( indexName, key, query, pageSize,
+                    leaseTimeInSeconds ), RepresentationType.NODE );
+        }
+        catch ( BadInputException e )
+        {
+            return output.badRequest( e );
+        }
+        catch ( NotFoundException e )
+        {
+            return output.notFound( e );
+        }
+    }
+
+    @POST
+    @Path( PATH_AUTO_NODE_INDEX_CURSORS )
+    public Response createAutoIndexedNodesCursor( @QueryParam( "query" ) String query,
+            @QueryParam( "pageSize" ) @DefaultValue( FIFTY ) int pageSize,
+            @QueryParam( "leaseTime" ) @DefaultValue( SIXTY_SECONDS ) int leaseTimeInSeconds )
+    {
+        try
+        {
+            validateCursor( query, pageSize, leaseTimeInSeconds );
+            return cursorCreated( actions.createAutoIndexedNodesCursor( query, pageSize, leaseTimeInSeconds ),
+                    RepresentationType.NODE );
+        }
+        catch ( BadInputException e )
+        {
+            return output.badRequest( e );
+        }
+    }
+
+    @POST
+    @Path( PATH_NODE_RELATIONSHIPS_CURSORS )
+    public Response createNodeRelationshipsCursor( @PathParam( "nodeId" ) long nodeId,
+            @PathParam( "direction" ) RelationshipDirection direction,
+            @QueryParam( "pageSize" ) @DefaultValue( FIFTY ) int pageSize,
+            @QueryParam( "leaseTime" ) @DefaultValue( SIXTY_SECONDS ) int leaseTimeInSeconds )
+    {
+        return createNodeRelationshipsCursor( nodeId, direction, new AmpersandSeparatedCollection( "" ), pageSize,
+                leaseTimeInSeconds );
+    }
+
+    @POST
+    @Path( PATH_NODE_RELATIONSHIPS_W_TYPES_CURSORS )
+    public Response createNodeRelationshipsCursor( @PathParam( "nodeId" ) long nodeId,
+            @PathParam( "direction" ) RelationshipDirection direction,
+            @PathParam( "types" ) AmpersandSeparatedCollection types,
+            @QueryParam( "pageSize" ) @DefaultValue( FIFTY ) int pageSize,
+            @QueryParam( "leaseTime" ) @DefaultValue( SIXTY_SECONDS ) int leaseTimeInSeconds )
+    {
+        try
+        {
+            validatePageSize( pageSize );
+            validateLeaseTime( leaseTimeInSeconds );
+            return cursorCreated( actions.createNodeRelationshipsCursor( nodeId, direction, types, pageSize,
+                    leaseTimeInSeconds ), RepresentationType.RELATIONSHIP );
+        }
+        catch ( BadInputException e )
+        {
+            return output.badRequest( e );
+        }
+        catch ( NodeNotFoundException e )
+        {
+            return output.notFound( e );
+        }
+    }
+
+    @GET
+    @Path( PATH_CURSOR )
+    public Response nextPage( @PathParam( "cursorId" ) String cursorId )
+    {
+        try
+        {
+            return output.ok( actions.nextPage( cursorId ) );
+        }
+        catch ( NotFoundException e )
+        {
+            return output.notFound( e );
+        }
+    }
+
+    @DELETE
+    @Path( PATH_CURSOR )
+    public Response removeCursor( @PathParam( "cursorId" ) String cursorId )
+    {
+        if ( actions.removeCursor( cursorId ) )
+        {
+            return Response.ok()
+                    .build();
+        }
+        else
+        {
+            return output.notFound();
+        }
+    }
+
+    /*
+     * Like paged traversers, a created cursor comes back with its first page.
+     * If there were no results at all that page is empty and the cursor is
+     * already gone.
+     */
+    private Response cursorCreated( String cursorId, RepresentationType type )
+    {
+        ListRepresentation firstPage;
+        try
+        {
+            firstPage = actions.nextPage( cursorId );
+        }
+        catch ( NotFoundException e )
+        {
+            firstPage = new ListRepresentation( type, Collections.<Representation>emptyList() );
+        }
+        URI uri = URI.create( uriInfo.getBaseUri()
+                .toString() + PATH_CURSORS + "/" + cursorId );
+        return output.created( uri.normalize(), firstPage );
+    }
+
+    private void validateCursor( String query, int pageSize, int leaseTimeInSeconds ) throws BadInputException
+    {
+        if ( query == null )
+        {
+            throw new BadInputException( "A cursor over an index needs a query" );
+        }
+        validatePageSize( pageSize );
+        validateLeaseTime( leaseTimeInSeconds );
+    }
+
     @POST
     @Path( PATH_NODE_PATH )
     public Response singlePath( @PathParam( "nodeId" ) long startNode, String body )
@@ -0,0 +1,521 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Holds back the first bytes of a response until it is known whether it will
+ * be large enough to be worth compressing. Responses that end before that are
+ * sent as they are, with their length, anything larger is compressed as it is
+ * written, so streamed responses stay streamed. The entity tag of a
+ * compressed response is made weak, since the compressed bytes differ from
+ * those the tag was computed for.
+ */
+class CompressingResponse extends HttpServletResponseWrapper
+{
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String ETAG = "ETag";
+    static final String VARY = "Vary";
+    static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+    private final String coding;
+    private final DeflaterPool deflaters;
+    private final int threshold;
+
+    private String contentEncoding;
+    private String entityTag;
+    private int contentLength = -1;
+    private boolean alreadyEncoded;
+    private int status = SC_OK;
+    private CompressingOutputStream stream;
+    private PrintWriter writer;
+
+    CompressingResponse( HttpServletResponse response, String coding, DeflaterPool deflaters, int threshold )
+    {
+        super( response );
+        this.coding = coding;
+        this.deflaters = deflaters;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException
+    {
+        if ( writer != null )
+        {
+            throw new IllegalStateException( "getWriter() has already been called" );
+        }
+        return stream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException
+    {
+        if ( writer == null )
+        {
+            if ( stream != null )
+            {
+                throw new IllegalStateException( "getOutputStream() has already been called" );
+            }
+            writer = new PrintWriter( new OutputStreamWriter( stream(), getCharacterEncoding() ) );
+        }
+        return writer;
+    }
+
+    private CompressingOutputStream stream()
+    {
+        if ( stream == null )
+        {
+            stream = new CompressingOutputStream();
+        }
+        return stream;
+    }
+
+    @Override
+    public void setContentLength( int length )
+    {
+        if ( isDecided() && !stream.isCompressing() )
+        {
+            super.setContentLength( length );
+        }
+        else
+        {
+            contentLength = length;
+        }
+    }
+
+    @Override
+    public void setHeader( String name, String value )
+    {
+        if ( VARY.equalsIgnoreCase( name ) )
+        {
+            // Replacing Vary mustn't drop the Accept-Encoding the filter added
+            super.setHeader( name, varyOnAcceptEncoding( value ) );
+        }
+        else if ( !interceptHeader( name, value ) )
+        {
+            super.setHeader( name, value );
+        }
+    }
+
+    private static String varyOnAcceptEncoding( String vary )
+    {
+        if ( vary == null || vary.trim()
+                .length() == 0 )
+        {
+            return ACCEPT_ENCODING;
+        }
+        for ( String header : vary.split( "," ) )
+        {
+            String trimmed = header.trim();
+            if ( trimmed.equalsIgnoreCase( ACCEPT_ENCODING ) || trimmed.equals( "*" ) )
+            {
+                return vary;
+            }
+        }
+        return vary + ", " + ACCEPT_ENCODING;
+    }
+
+    @Override
+    public void addHeader( String name, String value )
+    {
+        if ( !interceptHeader( name, value ) )
+        {
+            super.addHeader( name, value );
+        }
+    }
+
+    @Override
+    public void setIntHeader( String name, int value )
+    {
+        if ( !interceptHeader( name, Integer.toString( value ) ) )
+        {
+            super.setIntHeader( name, value );
+        }
+    }
+
+    @Override
+    public void addIntHeader( String name, int value )
+    {
+        if ( !interceptHeader( name, Integer.toString( value ) ) )
+        {
+            super.addIntHeader( name, value );
+        }
+    }
+
+    /*
+     * The length, encoding and entity tag headers are held back until it's
+     * decided whether to compress. Some of our representations send the
+     * charset as Content-Encoding, which is replaced by the coding when
+     * compressing.
+     */
+    private boolean interceptHeader( String name, String value )
+    {
+        if ( isDecided() && !stream.isCompressing() )
+        {
+            return false;
+        }
+        if ( CONTENT_LENGTH.equalsIgnoreCase( name ) )
+        {
+            contentLength = Integer.parseInt( value );
+            return true;
+        }
+        if ( CONTENT_ENCODING.equalsIgnoreCase( name ) )
+        {
+            contentEncoding = value;
+            alreadyEncoded |= isContentCoding( value );
+            return true;
+        }
+        if ( ETAG.equalsIgnoreCase( name ) )
+        {
+            if ( isDecided() )
+            {
+                super.setHeader( ETAG, weak( value ) );
+            }
+            else
+            {
+                entityTag = value;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isContentCoding( String value )
+    {
+        return "gzip".equalsIgnoreCase( value ) || "x-gzip".equalsIgnoreCase( value )
+               || "deflate".equalsIgnoreCase( value ) || "compress".equalsIgnoreCase( value )
+               || "x-compress".equalsIgnoreCase( value );
+    }
+
+    @Override
+    public void setStatus( int status )
+    {
+        this.status = status;
+        super.setStatus( status );
+    }
+
+    @SuppressWarnings( "deprecation" )
+    @Override
+    public void setStatus( int status, String message )
+    {
+        this.status = status;
+        super.setStatus( status, message );
+    }
+
+    @Override
+    public void sendError( int status ) throws IOException
+    {
+        this.status = status;
+        super.sendError( status );
+    }
+
+    @Override
+    public void sendError( int status, String message ) throws IOException
+    {
+        this.status = status;
+        super.sendError( status, message );
+    }
+
+    @Override
+    public void flushBuffer() throws IOException
+    {
+        if ( writer != null )
+        {
+            writer.flush();
+        }
+        if ( isDecided() )
+        {
+            stream.flush();
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void resetBuffer()
+    {
+        if ( stream != null && !isDecided() )
+        {
+            stream.buffer.reset();
+        }
+        super.resetBuffer();
+    }
+
+    @Override
+    public void reset()
+    {
+        resetBuffer();
+        contentLength = -1;
+        contentEncoding = null;
+        entityTag = null;
+        alreadyEncoded = false;
+        status = SC_OK;
+        super.reset();
+    }
+
+    private static String weak( String entityTag )
+    {
+        return entityTag.startsWith( "W/" ) ? entityTag : "W/" + entityTag;
+    }
+
+    private boolean isDecided()
+    {
+        return stream != null && stream.decided;
+    }
+
+    private boolean shouldCompress()
+    {
+        if ( alreadyEncoded || isCommitted() || status < 200 || status == SC_NO_CONTENT
+             || status == SC_PARTIAL_CONTENT || status == SC_NOT_MODIFIED )
+        {
+            return false;
+        }
+        return isCompressible( getContentType() );
+    }
+
+    private static boolean isCompressible( String contentType )
+    {
+        if ( contentType == null )
+        {
+            return false;
+        }
+        contentType = contentType.toLowerCase();
+        return contentType.startsWith( "text/" ) || contentType.contains( "json" ) || contentType.contains( "xml" )
+               || contentType.contains( "javascript" ) || contentType.contains( "smile" );
+    }
+
+    /**
+     * Writes out whatever is still held back or buffered by the compressor.
+     * Called once the request has been handled without errors.
+     */
+    void finish() throws IOException
+    {
+        if ( writer != null )
+        {
+            writer.close();
+        }
+        else if ( stream != null )
+        {
+            stream.close();
+        }
+        else if ( contentLength >= 0 || contentEncoding != null || entityTag != null )
+        {
+            sendHeldBackHeaders();
+        }
+    }
+
+    /**
+     * Hands the deflater back to the pool, whether or not the response was
+     * finished.
+     */
+    void release()
+    {
+        if ( stream != null )
+        {
+            stream.releaseDeflater();
+        }
+    }
+
+    private void sendHeldBackHeaders()
+    {
+        if ( entityTag != null )
+        {
+            super.setHeader( ETAG, entityTag );
+        }
+        if ( contentEncoding != null )
+        {
+            super.setHeader( CONTENT_ENCODING, contentEncoding );
+        }
+        if ( contentLength >= 0 )
+        {
+            super.setContentLength( contentLength );
+        }
+    }
+
+    private class CompressingOutputStream extends ServletOutputStream
+    {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream( Math.min( threshold, 8192 ) );
+        private boolean decided;
+        private boolean closed;
+        private OutputStream out;
+        private Deflater deflater;
+        private CompressedOutputStream compressed;
+
+        boolean isCompressing()
+        {
+            return compressed != null;
+        }
+
+        @Override
+        public void write( int b ) throws IOException
+        {
+            write( new byte[] { (byte) b }, 0, 1 );
+        }
+
+        @Override
+        public void write( byte[] bytes, int offset, int length ) throws IOException
+        {
+            if ( closed )
+            {
+                throw new IOException( "Stream closed" );
+            }
+            if ( decided )
+            {
+                out.write( bytes, offset, length );
+                return;
+            }
+            buffer.write( bytes, offset, length );
+            if ( buffer.size() >= threshold )
+            {
+                decide( shouldCompress() );
+            }
+        }
+
+        private void decide( boolean compress ) throws IOException
+        {
+            decided = true;
+            if ( compress )
+            {
+                CompressingResponse.super.setHeader( CONTENT_ENCODING, coding );
+                if ( entityTag != null )
+                {
+                    CompressingResponse.super.setHeader( ETAG, weak( entityTag ) );
+                }
+                deflater = deflaters.acquire();
+                compressed = new CompressedOutputStream( getResponse().getOutputStream(), deflater,
+                        "gzip".equals( coding ) );
+                out = compressed;
+            }
+            else
+            {
+                sendHeldBackHeaders();
+                out = getResponse().getOutputStream();
+            }
+            buffer.writeTo( out );
+            buffer.reset();
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            // Held back until decided, or it would commit the response
+            if ( decided )
+            {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if ( closed )
+            {
+                return;
+            }
+            if ( !decided )
+            {
+                // Ended below the threshold, send it as it is
+                contentLength = buffer.size();
+                decide( false );
+            }
+            closed = true;
+            if ( compressed != null )
+            {
+                compressed.finish();
+            }
+            releaseDeflater();
+            out.flush();
+        }
+
+        void releaseDeflater()
+        {
+            if ( deflater != null )
+            {
+                deflaters.release( deflater );
+                deflater = null;
+            }
+        }
+    }
+
+    /**
+     * Deflates into either a gzip or a zlib stream, using a deflater that is
+     * owned by someone else and thereby not ended when the stream finishes.
+     */
+    private static class CompressedOutputStream extends DeflaterOutputStream
+    {
+        private static final byte[] GZIP_HEADER = new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0,
+                0, 0, 0 };
+
+        private final boolean gzip;
+        private final CRC32 crc = new CRC32();
+
+        CompressedOutputStream( OutputStream out, Deflater deflater, boolean gzip ) throws IOException
+        {
+            super( out, deflater, 8192 );
+            this.gzip = gzip;
+            if ( gzip )
+            {
+                out.write( GZIP_HEADER );
+            }
+        }
+
+        @Override
+        public void write( byte[] bytes, int offset, int length ) throws IOException
+        {
+            super.write( bytes, offset, length );
+            if ( gzip )
+            {
+                crc.update( bytes, offset, length );
+            }
+        }
+
+        @Override
+        public void finish() throws IOException
+        {
+            super.finish();
+            if ( gzip )
+            {
+                writeIntLittleEndian( (int) crc.getValue() );
+                writeIntLittleEndian( (int) def.getBytesRead() );
+            }
+        }
+
+        private void writeIntLittleEndian( int value ) throws IOException
+        {
+            out.write( value & 0xff );
+            out.write( ( value >> 8 ) & 0xff );
+            out.write( ( value >> 16 ) & 0xff );
+            out.write( ( value >> 24 ) & 0xff );
+        }
+    }
+}
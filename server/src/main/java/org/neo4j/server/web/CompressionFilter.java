@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.web;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Compresses responses of at least {@code threshold} bytes with gzip or
+ * deflate, whichever the client prefers according to its Accept-Encoding
+ * header. Every response that passes through is marked as varying on
+ * Accept-Encoding. Compressed responses get weak entity tags, which
+ * conditional GETs still match.
+ */
+class CompressionFilter implements Filter
+{
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private final int threshold;
+    private final DeflaterPool gzipDeflaters;
+    private final DeflaterPool zlibDeflaters;
+
+    CompressionFilter( int threshold, int maxPooledDeflaters )
+    {
+        this.threshold = threshold;
+        this.gzipDeflaters = new DeflaterPool( Deflater.DEFAULT_COMPRESSION, true, maxPooledDeflaters );
+        this.zlibDeflaters = new DeflaterPool( Deflater.DEFAULT_COMPRESSION, false, maxPooledDeflaters );
+    }
+
+    @Override
+    public void init( FilterConfig filterConfig ) throws ServletException
+    {
+    }
+
+    @Override
+    public void doFilter( ServletRequest req, ServletResponse resp, FilterChain chain ) throws IOException,
+            ServletException
+    {
+        HttpServletRequest request = (HttpServletRequest) req;
+        // Whether or not this response is compressed, another request for
+        // the same resource may get a differently encoded one
+        ( (HttpServletResponse) resp ).addHeader( CompressingResponse.VARY, CompressingResponse.ACCEPT_ENCODING );
+        String coding = negotiate( request.getHeader( CompressingResponse.ACCEPT_ENCODING ) );
+        if ( coding == null || "HEAD".equals( request.getMethod() ) || request.getHeader( "Range" ) != null )
+        {
+            chain.doFilter( req, resp );
+            return;
+        }
+
+        CompressingResponse response = new CompressingResponse( (HttpServletResponse) resp, coding,
+                GZIP.equals( coding ) ? gzipDeflaters : zlibDeflaters, threshold );
+        try
+        {
+            chain.doFilter( request, response );
+            response.finish();
+        }
+        finally
+        {
+            response.release();
+        }
+    }
+
+    /**
+     * Picks the content coding to use from an Accept-Encoding header, gzip
+     * being preferred over deflate when the client has no preference.
+     *
+     * @return {@link #GZIP}, {@link #DEFLATE} or null if the response
+     *         shouldn't be compressed.
+     */
+    static String negotiate( String acceptEncoding )
+    {
+        if ( acceptEncoding == null )
+        {
+            return null;
+        }
+        float gzip = -1, deflate = -1, any = -1;
+        for ( String part : acceptEncoding.split( "," ) )
+        {
+            String[] parameters = part.split( ";" );
+            String coding = parameters[0].trim()
+                    .toLowerCase();
+            float quality = quality( parameters );
+            if ( coding.equals( GZIP ) || coding.equals( "x-gzip" ) )
+            {
+                gzip = quality;
+            }
+            else if ( coding.equals( DEFLATE ) )
+            {
+                deflate = quality;
+            }
+            else if ( coding.equals( "*" ) )
+            {
+                any = quality;
+            }
+        }
+        if ( gzip < 0 ) gzip = any;
+        if ( deflate < 0 ) deflate = any;
+        if ( gzip <= 0 && deflate <= 0 )
+        {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    private static float quality( String[] parameters )
+    {
+        for ( int i = 1; i < parameters.length; i++ )
+        {
+            String parameter = parameters[i].trim();
+            if ( parameter.startsWith( "q=" ) )
+            {
+                try
+                {
+                    return Float.parseFloat( parameter.substring( 2 ) );
+                }
+                catch ( NumberFormatException e )
+                {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    @Override
+    public void destroy()
+    {
+    }
+}
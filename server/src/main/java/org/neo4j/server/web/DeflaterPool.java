@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.web;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Keeps {@link Deflater}s around between responses. Each one holds on to
+ * native memory that is only freed by {@link Deflater#end()} or
+ * finalization, so allocating one per response is expensive.
+ */
+public class DeflaterPool
+{
+    private final int level;
+    private final boolean nowrap;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<Deflater> pooled = new ConcurrentLinkedQueue<Deflater>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param nowrap true for raw deflate data, as wrapped in gzip, false for
+     *            the zlib format used by the "deflate" content coding.
+     * @param maxPooled how many idle deflaters to keep, any more are ended
+     *            when released.
+     */
+    public DeflaterPool( int level, boolean nowrap, int maxPooled )
+    {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.maxPooled = maxPooled;
+    }
+
+    public Deflater acquire()
+    {
+        Deflater deflater = pooled.poll();
+        if ( deflater == null )
+        {
+            return new Deflater( level, nowrap );
+        }
+        size.decrementAndGet();
+        return deflater;
+    }
+
+    public void release( Deflater deflater )
+    {
+        deflater.reset();
+        if ( size.incrementAndGet() <= maxPooled )
+        {
+            pooled.offer( deflater );
+        }
+        else
+        {
+            size.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    int size()
+    {
+        return size.get();
+    }
+}
@@ -22,24 +22,32 @@ package org.neo4j.server.web;
 import static java.lang.String.format;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.mortbay.jetty.AbstractConnector;
+import org.mortbay.jetty.Connector;
 import org.mortbay.jetty.Handler;
 import org.mortbay.jetty.Server;
 import org.mortbay.jetty.SessionManager;
 import org.mortbay.jetty.handler.MovedContextHandler;
 import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.FilterHolder;
 import org.mortbay.jetty.servlet.HashSessionManager;
 import org.mortbay.jetty.servlet.ServletHolder;
 import org.mortbay.jetty.servlet.SessionHandler;
@@ -47,6 +55,7 @@ import org.mortbay.jetty.webapp.WebAppContext;
 import org.mortbay.resource.Resource;
 import org.mortbay.thread.QueuedThreadPool;
 import org.neo4j.server.NeoServer;
+import org.neo4j.server.configuration.Configurator;
 import org.neo4j.server.logging.Logger;
 import org.neo4j.server.rest.web.AllowAjaxFilter;
 
@@ -57,15 +66,22 @@ public class Jetty6WebServer implements WebServer
 {
     public static final Logger log = Logger.getLogger( Jetty6WebServer.class );
     public static final int DEFAULT_PORT = 80;
+    private static final long MAX_QUEUE_WAIT_IN_MILLISECONDS = 60 * 1000;
+    private static final int QUEUED_REQUESTS_PER_SLOT = 10;
 
     private Server jetty;
     private int jettyPort = DEFAULT_PORT;
 
     private final HashMap<String, String> staticContent = new HashMap<String, String>();
     private final HashMap<String, ServletHolder> jaxRSPackages = new HashMap<String, ServletHolder>();
+    private final HashMap<String, RequestClass> jaxRSRequestClasses = new HashMap<String, RequestClass>();
+    private final Map<RequestClass, RequestThrottle> throttles = new EnumMap<RequestClass, RequestThrottle>(
+            RequestClass.class );
 
     private NeoServer server;
     private int jettyMaxThreads = tenThreadsPerProcessor();
+    private int compressionThreshold = Configurator.DEFAULT_WEBSERVER_COMPRESSION_THRESHOLD;
+    private CompressionFilter compressionFilter;
 
     private int tenThreadsPerProcessor()
     {
@@ -92,6 +108,7 @@ public class Jetty6WebServer implements WebServer
 
         loadAllMounts();
 
+        registerRequestThrottles();
         startJetty();
     }
 
@@ -142,9 +159,110 @@ public class Jetty6WebServer implements WebServer
         {
             jetty = new Server( jettyPort );
             jetty.setThreadPool( new QueuedThreadPool( jettyMaxThreads ) );
+            createRequestThrottles();
+            if ( compressionThreshold >= 0 )
+            {
+                compressionFilter = new CompressionFilter( compressionThreshold, jettyMaxThreads );
+            }
+        }
+    }
+
+    /**
+     * Splits the threads between the request classes, so that expensive
+     * requests can only ever occupy part of them. The threads the connectors
+     * take for accepting and selecting aren't available to requests at all.
+     * Of the rest, CRUD requests may use all, since they are expected to be
+     * short, and a quarter is kept from traversal, batch and admin requests
+     * together so that CRUD requests are served even when those are busy.
+     * With very few threads each class still gets at least one.
+     */
+    private void createRequestThrottles()
+    {
+        int available = Math.max( 1, jettyMaxThreads - connectorThreads() );
+        int expensive = available - Math.max( 1, available / 4 );
+        throttles.put( RequestClass.CRUD, createThrottle( available ) );
+        throttles.put( RequestClass.TRAVERSAL, createThrottle( expensive / 2 ) );
+        throttles.put( RequestClass.BATCH, createThrottle( expensive / 4 ) );
+        throttles.put( RequestClass.ADMIN, createThrottle( expensive - expensive / 2 - expensive / 4 ) );
+    }
+
+    /*
+     * Each acceptor of a connector holds a thread from the pool, with the
+     * select channel connector the acceptors are its selectors too.
+     */
+    private int connectorThreads()
+    {
+        int threads = 0;
+        Connector[] connectors = jetty.getConnectors();
+        if ( connectors != null )
+        {
+            for ( Connector connector : connectors )
+            {
+                threads += connector instanceof AbstractConnector ? ( (AbstractConnector) connector ).getAcceptors()
+                        : 1;
+            }
+        }
+        return threads;
+    }
+
+    private RequestThrottle createThrottle( int maxConcurrentRequests )
+    {
+        maxConcurrentRequests = Math.max( 1, maxConcurrentRequests );
+        return new RequestThrottle( maxConcurrentRequests, maxConcurrentRequests * QUEUED_REQUESTS_PER_SLOT );
+    }
+
+    public RequestThrottle getRequestThrottle( RequestClass requestClass )
+    {
+        return throttles.get( requestClass );
+    }
+
+    private void registerRequestThrottles()
+    {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        for ( Map.Entry<RequestClass, RequestThrottle> entry : throttles.entrySet() )
+        {
+            String name = throttleMBeanName( entry.getKey() );
+            try
+            {
+                ObjectName objectName = new ObjectName( name );
+                if ( mbeanServer.isRegistered( objectName ) )
+                {
+                    mbeanServer.unregisterMBean( objectName );
+                }
+                mbeanServer.registerMBean( entry.getValue(), objectName );
+            }
+            catch ( Exception e )
+            {
+                log.warn( "Could not register %s, request throttling won't be visible over JMX: %s", name, e );
+            }
+        }
+    }
+
+    private void unregisterRequestThrottles()
+    {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        for ( RequestClass requestClass : throttles.keySet() )
+        {
+            try
+            {
+                ObjectName objectName = new ObjectName( throttleMBeanName( requestClass ) );
+                if ( mbeanServer.isRegistered( objectName ) )
+                {
+                    mbeanServer.unregisterMBean( objectName );
+                }
+            }
+            catch ( Exception e )
+            {
+                log.warn( e );
+            }
         }
     }
 
+    private String throttleMBeanName( RequestClass requestClass )
+    {
+        return "org.neo4j.server:name=RequestThrottle,type=" + requestClass.name();
+    }
+
     protected void startJetty()
     {
         try
@@ -164,6 +282,7 @@ public class Jetty6WebServer implements WebServer
         {
             jetty.stop();
             jetty.join();
+            unregisterRequestThrottles();
         }
         catch ( Exception e )
         {
@@ -183,6 +302,12 @@ public class Jetty6WebServer implements WebServer
         jettyMaxThreads = maxThreads;
     }
 
+    @Override
+    public void setCompressionThreshold( int thresholdInBytes )
+    {
+        compressionThreshold = thresholdInBytes;
+    }
+
     @Override
     public void addJAXRSPackages( List<String> packageNames, String mountPoint )
     {
@@ -199,6 +324,8 @@ public class Jetty6WebServer implements WebServer
         log.debug( "Adding JAXRS packages %s at [%s]", packageNames, mountPoint );
 
         jaxRSPackages.put( mountPoint, servletHolder );
+        jaxRSRequestClasses.put( mountPoint,
+                packageNames.contains( Configurator.MANAGEMENT_API_PACKAGE ) ? RequestClass.ADMIN : RequestClass.CRUD );
     }
 
     private String trimTrailingSlashToKeepJettyHappy( String mountPoint )
@@ -246,6 +373,7 @@ public class Jetty6WebServer implements WebServer
     public void invokeDirectly( String targetPath, HttpServletRequest request, HttpServletResponse response )
             throws IOException, ServletException
     {
+        request.setAttribute( RequestThrottleFilter.INTERNAL_DISPATCH, Boolean.TRUE );
         jetty.handle( targetPath, request, response, Handler.REQUEST );
     }
 
@@ -267,6 +395,7 @@ public class Jetty6WebServer implements WebServer
                         .toURL();
                 final Resource resource = Resource.newResource( url );
                 staticContext.setBaseResource( resource );
+                addCompressionFilter( staticContext );
                 log.debug( "Mounting static content from [%s] at [%s]", url, mountPoint );
                 jetty.addHandler( staticContext );
             }
@@ -291,10 +420,21 @@ public class Jetty6WebServer implements WebServer
         log.debug( "Mounting servlet at [%s]", mountPoint );
         Context jerseyContext = new Context( jetty, mountPoint );
         SessionHandler sh = new SessionHandler( sm );
+        jerseyContext.addFilter( new FilterHolder( new RequestThrottleFilter( throttles,
+                jaxRSRequestClasses.get( mountPoint ), MAX_QUEUE_WAIT_IN_MILLISECONDS ) ), "/*", Handler.DEFAULT );
+        addCompressionFilter( jerseyContext );
         jerseyContext.addServlet( servletHolder, "/*" );
         jerseyContext.setSessionHandler( sh );
     }
 
+    private void addCompressionFilter( Context context )
+    {
+        if ( compressionFilter != null )
+        {
+            context.addFilter( new FilterHolder( compressionFilter ), "/*", Handler.DEFAULT );
+        }
+    }
+
     private String toCommaSeparatedList( List<String> packageNames )
     {
         StringBuilder sb = new StringBuilder();
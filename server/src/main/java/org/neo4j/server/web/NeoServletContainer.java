@@ -26,6 +26,7 @@ import org.neo4j.server.NeoServer;
 import org.neo4j.server.NeoServerProvider;
 import org.neo4j.server.NeoServerWithEmbeddedWebServer;
 import org.neo4j.server.configuration.ConfigurationProvider;
+import org.neo4j.server.configuration.Configurator;
 import org.neo4j.server.database.AbstractInjectableProvider;
 import org.neo4j.server.database.DatabaseProvider;
 import org.neo4j.server.database.GraphDatabaseServiceProvider;
@@ -35,6 +36,7 @@ import org.neo4j.server.rest.paging.LeaseManagerProvider;
 import org.neo4j.server.rest.repr.InputFormatProvider;
 import org.neo4j.server.rest.repr.OutputFormatProvider;
 import org.neo4j.server.rest.repr.RepresentationFormatRepository;
+import org.neo4j.server.rest.repr.ResponseCache;
 import org.neo4j.server.rrd.RrdDbProvider;
 
 import com.sun.jersey.api.core.HttpContext;
@@ -61,7 +63,6 @@ public class NeoServletContainer extends ServletContainer
         super.configure( wc, rc, wa );
 
         Set<Object> singletons = rc.getSingletons();
-        singletons.add( new LeaseManagerProvider() );
         singletons.add( new DatabaseProvider( server.getDatabase() ) );
         singletons.add( new GraphDatabaseServiceProvider( server.getDatabase().graph ) );
         singletons.add( new NeoServerProvider( server ) );
@@ -74,6 +75,11 @@ public class NeoServletContainer extends ServletContainer
                     .rrdDb() ) );
         }
 
+        if ( server.getLeaseManager() != null )
+        {
+            singletons.add( new LeaseManagerProvider( server.getLeaseManager() ) );
+        }
+
         if ( server instanceof NeoServerWithEmbeddedWebServer )
         {
             singletons.add( new WebServerProvider( ( (NeoServerWithEmbeddedWebServer) server ).getWebServer() ) );
@@ -81,7 +87,7 @@ public class NeoServletContainer extends ServletContainer
 
         RepresentationFormatRepository repository = new RepresentationFormatRepository( server.getExtensionManager() );
         singletons.add( new InputFormatProvider( repository ) );
-        singletons.add( new OutputFormatProvider( repository ) );
+        singletons.add( new OutputFormatProvider( repository, createResponseCache() ) );
         singletons.add( new PluginInvocatorProvider( server.getExtensionManager() ) );
 
         for ( final Injectable injectable : injectables )
@@ -90,6 +96,13 @@ public class NeoServletContainer extends ServletContainer
         }
     }
 
+    private ResponseCache createResponseCache()
+    {
+        long maxBytes = server.getConfiguration()
+                .getLong( Configurator.WEBSERVER_RESPONSE_CACHE_BYTES_PROPERTY_KEY, 0 );
+        return maxBytes > 0 ? new ResponseCache( maxBytes ) : null;
+    }
+
     private static class InjectableWrapper extends AbstractInjectableProvider<Object>
     {
         private final Injectable injectable;
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.web;
+
+/**
+ * The classes of requests that get a share of the web server threads of their
+ * own, so that long running traversals or batch jobs can't starve the cheap
+ * CRUD requests of threads.
+ */
+public enum RequestClass
+{
+    CRUD,
+    TRAVERSAL,
+    BATCH,
+    ADMIN;
+
+    /**
+     * Classifies a request to the data API by its path relative to the mount
+     * point, such as <code>/node/12/traverse/node</code>. The path is matched
+     * segment by segment, so that for example a property or index named
+     * "batch" doesn't make a request a batch. Anything not recognized as a
+     * traversal or batch request, and any request to a context that isn't
+     * serving CRUD requests, falls back to {@code defaultClass}, which is the
+     * class of the context the request was mounted under.
+     */
+    public static RequestClass forPath( String pathWithinMountPoint, RequestClass defaultClass )
+    {
+        if ( pathWithinMountPoint == null || defaultClass != CRUD )
+        {
+            return defaultClass;
+        }
+        String[] segments = segments( pathWithinMountPoint );
+        if ( segments.length == 0 )
+        {
+            return defaultClass;
+        }
+        String first = segments[0];
+        if ( first.equals( "batch" ) && segments.length == 1 )
+        {
+            return BATCH;
+        }
+        if ( first.equals( "cursor" ) || first.equals( "ext" ) )
+        {
+            return TRAVERSAL;
+        }
+        // node/{nodeId}/traverse/{returnType}, node/{nodeId}/paged/traverse/...,
+        // node/{nodeId}/path and node/{nodeId}/paths
+        if ( first.equals( "node" ) && segments.length >= 3 )
+        {
+            String operation = segments[2];
+            if ( operation.equals( "traverse" ) || operation.equals( "paged" ) || operation.equals( "path" )
+                 || operation.equals( "paths" ) )
+            {
+                return TRAVERSAL;
+            }
+        }
+        return defaultClass;
+    }
+
+    private static String[] segments( String path )
+    {
+        int start = 0;
+        while ( start < path.length() && path.charAt( start ) == '/' )
+        {
+            start++;
+        }
+        return start == path.length() ? new String[0] : path.substring( start )
+                .split( "/" );
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.web;
+
+import java.util.LinkedList;
+
+import org.mortbay.util.ajax.Continuation;
+
+/**
+ * Limits how many requests of one {@link RequestClass} may run at the same
+ * time. Requests over the limit are parked as suspended continuations, which
+ * don't hold on to a thread while they wait, and are resumed in arrival order
+ * as running requests finish. When the queue is full as well, requests are
+ * rejected straight away.
+ */
+public class RequestThrottle implements RequestThrottleMBean
+{
+    private static final Object PERMIT = new Object();
+
+    private final int maxConcurrentRequests;
+    private final int maxQueuedRequests;
+    private final LinkedList<Continuation> waiting = new LinkedList<Continuation>();
+
+    private int activeRequests;
+    private long completedRequests;
+    private long rejectedRequests;
+    private long timedOutRequests;
+    private long waitedRequests;
+    private long totalQueueTimeInNanoseconds;
+    private long totalLatencyInNanoseconds;
+
+    public RequestThrottle( int maxConcurrentRequests, int maxQueuedRequests )
+    {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+
+    public enum Admission
+    {
+        ENTERED,
+        QUEUED,
+        REJECTED
+    }
+
+    /**
+     * Lets the request in if there is a free slot and no one is waiting for
+     * one already, otherwise queues its continuation or, if the queue is full,
+     * rejects it. A queued request should suspend its continuation and call
+     * {@link #enterAfterWaiting(Continuation, long)} once it runs again.
+     */
+    public synchronized Admission admit( Continuation continuation )
+    {
+        if ( activeRequests < maxConcurrentRequests && waiting.isEmpty() )
+        {
+            activeRequests++;
+            return Admission.ENTERED;
+        }
+        if ( waiting.size() >= maxQueuedRequests )
+        {
+            rejectedRequests++;
+            return Admission.REJECTED;
+        }
+        continuation.setObject( null );
+        waiting.addLast( continuation );
+        return Admission.QUEUED;
+    }
+
+    /**
+     * Called once a queued request gets to run again, either because it was
+     * resumed or because it timed out.
+     *
+     * @return true if the request was handed a slot by a finishing request,
+     *         false if it timed out and has been taken off the queue.
+     */
+    public synchronized boolean enterAfterWaiting( Continuation continuation, long queuedSinceNanoTime )
+    {
+        if ( continuation.getObject() == PERMIT )
+        {
+            continuation.setObject( null );
+            waitedRequests++;
+            totalQueueTimeInNanoseconds += System.nanoTime() - queuedSinceNanoTime;
+            return true;
+        }
+        waiting.remove( continuation );
+        timedOutRequests++;
+        return false;
+    }
+
+    /**
+     * Called when a request that was let in is done. The slot is handed
+     * directly to the oldest waiting request, if there is one, so that new
+     * arrivals can't overtake the queue.
+     */
+    public void exit( long arrivedAtNanoTime )
+    {
+        Continuation next;
+        synchronized ( this )
+        {
+            completedRequests++;
+            totalLatencyInNanoseconds += System.nanoTime() - arrivedAtNanoTime;
+            next = waiting.poll();
+            if ( next != null )
+            {
+                next.setObject( PERMIT );
+            }
+            else
+            {
+                activeRequests--;
+            }
+        }
+        // Resumed outside of our own lock, the continuation synchronizes on
+        // itself and the filter holds that lock while queueing.
+        if ( next != null )
+        {
+            next.resume();
+        }
+    }
+
+    @Override
+    public int getMaxConcurrentRequests()
+    {
+        return maxConcurrentRequests;
+    }
+
+    @Override
+    public int getMaxQueuedRequests()
+    {
+        return maxQueuedRequests;
+    }
+
+    @Override
+    public synchronized int getActiveRequests()
+    {
+        return activeRequests;
+    }
+
+    @Override
+    public synchronized int getQueuedRequests()
+    {
+        return waiting.size();
+    }
+
+    @Override
+    public synchronized long getCompletedRequests()
+    {
+        return completedRequests;
+    }
+
+    @Override
+    public synchronized long getRejectedRequests()
+    {
+        return rejectedRequests;
+    }
+
+    @Override
+    public synchronized long getTimedOutRequests()
+    {
+        return timedOutRequests;
+    }
+
+    @Override
+    public synchronized double getAverageQueueTimeInMilliseconds()
+    {
+        return waitedRequests == 0 ? 0 : totalQueueTimeInNanoseconds / 1000000d / waitedRequests;
+    }
+
+    @Override
+    public synchronized double getAverageLatencyInMilliseconds()
+    {
+        return completedRequests == 0 ? 0 : totalLatencyInNanoseconds / 1000000d / completedRequests;
+    }
+}
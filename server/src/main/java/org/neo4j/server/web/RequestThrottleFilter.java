@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.web;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.mortbay.util.ajax.Continuation;
+import org.mortbay.util.ajax.ContinuationSupport;
+
+/**
+ * Runs each request through the {@link RequestThrottle} of its
+ * {@link RequestClass}. Requests that have to wait for a slot are suspended
+ * rather than blocking a thread, with the select channel connector the
+ * suspend throws a retry request which jetty catches and dispatches the
+ * request again once it is resumed or times out.
+ */
+class RequestThrottleFilter implements Filter
+{
+    /**
+     * Set on requests dispatched from within another request, such as the
+     * operations of a batch. Those already run in the slot of the request
+     * that dispatched them, and have no connection to suspend.
+     */
+    static final String INTERNAL_DISPATCH = RequestThrottleFilter.class.getName() + ".internal";
+    private static final String ARRIVED_AT = RequestThrottleFilter.class.getName() + ".arrivedAt";
+    private static final String QUEUED = RequestThrottleFilter.class.getName() + ".queued";
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final Map<RequestClass, RequestThrottle> throttles;
+    private final RequestClass defaultClass;
+    private final long maxWaitInMilliseconds;
+
+    RequestThrottleFilter( Map<RequestClass, RequestThrottle> throttles, RequestClass defaultClass,
+            long maxWaitInMilliseconds )
+    {
+        this.throttles = throttles;
+        this.defaultClass = defaultClass;
+        this.maxWaitInMilliseconds = maxWaitInMilliseconds;
+    }
+
+    @Override
+    public void init( FilterConfig filterConfig ) throws ServletException
+    {
+    }
+
+    @Override
+    public void doFilter( ServletRequest req, ServletResponse resp, FilterChain chain ) throws IOException,
+            ServletException
+    {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) resp;
+        if ( request.getAttribute( INTERNAL_DISPATCH ) != null )
+        {
+            chain.doFilter( request, response );
+            return;
+        }
+        RequestThrottle throttle = throttles.get( RequestClass.forPath( pathWithinMountPoint( request ),
+                defaultClass ) );
+        Continuation continuation = ContinuationSupport.getContinuation( request, null );
+
+        if ( request.getAttribute( ARRIVED_AT ) == null )
+        {
+            request.setAttribute( ARRIVED_AT, System.nanoTime() );
+            // The continuation is locked while queueing so that a resume from
+            // a finishing request can't slip in before the suspend.
+            synchronized ( continuation )
+            {
+                switch ( throttle.admit( continuation ) )
+                {
+                case ENTERED:
+                    break;
+                case REJECTED:
+                    unavailable( response, "Too many requests are waiting, try again later." );
+                    return;
+                case QUEUED:
+                    request.setAttribute( QUEUED, Boolean.TRUE );
+                    continuation.suspend( maxWaitInMilliseconds );
+                    break;
+                }
+            }
+        }
+        else if ( request.getAttribute( QUEUED ) != null )
+        {
+            // Dispatched again, this clears the pending state of the continuation
+            continuation.suspend( maxWaitInMilliseconds );
+        }
+
+        long arrivedAt = (Long) request.getAttribute( ARRIVED_AT );
+        if ( request.getAttribute( QUEUED ) != null )
+        {
+            request.removeAttribute( QUEUED );
+            if ( !throttle.enterAfterWaiting( continuation, arrivedAt ) )
+            {
+                unavailable( response, "Timed out waiting for the server to process the request." );
+                return;
+            }
+        }
+
+        try
+        {
+            chain.doFilter( request, response );
+        }
+        finally
+        {
+            throttle.exit( arrivedAt );
+        }
+    }
+
+    private static String pathWithinMountPoint( HttpServletRequest request )
+    {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if ( uri == null || contextPath == null || !uri.startsWith( contextPath ) )
+        {
+            return uri;
+        }
+        return uri.substring( contextPath.length() );
+    }
+
+    private void unavailable( HttpServletResponse response, String message ) throws IOException
+    {
+        response.setHeader( "Retry-After", RETRY_AFTER_SECONDS );
+        response.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE, message );
+    }
+
+    @Override
+    public void destroy()
+    {
+    }
+}
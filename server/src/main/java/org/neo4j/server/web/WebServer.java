@@ -43,6 +43,12 @@ public interface WebServer
 
     void setMaxThreads( int maxThreads );
 
+    /**
+     * Responses smaller than this are sent uncompressed, a negative threshold
+     * turns compression off.
+     */
+    void setCompressionThreshold( int thresholdInBytes );
+
     void addJAXRSPackages( List<String> packageNames, String serverMountPoint );
 
     void addStaticContent( String contentLocation, String serverMountPoint );
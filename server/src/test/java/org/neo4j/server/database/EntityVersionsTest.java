@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.ImpermanentGraphDatabase;
+
+public class EntityVersionsTest
+{
+    private ImpermanentGraphDatabase db;
+    private EntityVersions versions;
+
+    @Before
+    public void createDatabase() throws Exception
+    {
+        db = new ImpermanentGraphDatabase();
+        versions = new EntityVersions( 2 );
+        db.registerTransactionEventHandler( versions );
+    }
+
+    @After
+    public void shutdown()
+    {
+        db.shutdown();
+    }
+
+    @Test
+    public void shouldChangeVersionWhenPropertiesChange()
+    {
+        Node node = createNode();
+        Node other = createNode();
+        String nodeVersion = versions.nodeVersion( node.getId() ).tag();
+
+        setProperty( other, "name", "other" );
+        assertEquals( nodeVersion, versions.nodeVersion( node.getId() ).tag() );
+
+        setProperty( node, "name", "node" );
+        assertFalse( nodeVersion.equals( versions.nodeVersion( node.getId() ).tag() ) );
+    }
+
+    @Test
+    public void shouldChangeRelationshipVersionWhenPropertiesChange()
+    {
+        Relationship relationship = createRelationship();
+        String version = versions.relationshipVersion( relationship.getId() ).tag();
+
+        setProperty( relationship, "weight", 2 );
+        assertFalse( version.equals( versions.relationshipVersion( relationship.getId() ).tag() ) );
+    }
+
+    @Test
+    public void shouldNotGoBackToAnOlderVersionWhenNoLongerTracked()
+    {
+        Node node = createNode();
+        setProperty( node, "name", "node" );
+        String version = versions.nodeVersion( node.getId() ).tag();
+
+        createNode();
+        createNode();
+        createNode();
+
+        assertFalse( version.equals( versions.nodeVersion( node.getId() ).tag() ) );
+    }
+
+    private Node createNode()
+    {
+        Transaction tx = db.beginTx();
+        try
+        {
+            Node node = db.createNode();
+            tx.success();
+            return node;
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    private Relationship createRelationship()
+    {
+        Transaction tx = db.beginTx();
+        try
+        {
+            Relationship relationship = db.createNode()
+                    .createRelationshipTo( db.createNode(), DynamicRelationshipType.withName( "KNOWS" ) );
+            tx.success();
+            return relationship;
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    private void setProperty( PropertyContainer entity, String key, Object value )
+    {
+        Transaction tx = db.beginTx();
+        try
+        {
+            entity.setProperty( key, value );
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.domain;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.PruneEvaluator;
+import org.neo4j.helpers.Predicate;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.test.ImpermanentGraphDatabase;
+
+public class EvaluatorFactoryTest
+{
+    private ImpermanentGraphDatabase db;
+    private Path startPath;
+    private Path pathOfLengthOne;
+
+    @Before
+    public void createPath() throws Exception
+    {
+        db = new ImpermanentGraphDatabase();
+        Transaction tx = db.beginTx();
+        Node start = db.createNode();
+        Node end = db.createNode();
+        end.setProperty( "name", "end" );
+        end.setProperty( "weight", 3 );
+        start.createRelationshipTo( end, DynamicRelationshipType.withName( "KNOWS" ) );
+        tx.success();
+        tx.finish();
+        Iterator<Path> paths = Traversal.description().breadthFirst().traverse( start ).iterator();
+        startPath = paths.next();
+        pathOfLengthOne = paths.next();
+    }
+
+    @After
+    public void shutdown()
+    {
+        db.shutdown();
+    }
+
+    @Test
+    public void shouldPruneAfterBuiltInDepth()
+    {
+        PruneEvaluator prune = EvaluatorFactory.pruneEvaluator( MapUtil.map( "language", "builtin", "name", "depth",
+                "max_depth", 1 ) );
+        assertFalse( prune.pruneAfter( startPath ) );
+        assertTrue( prune.pruneAfter( pathOfLengthOne ) );
+    }
+
+    @Test
+    public void shouldReturnWithinBuiltInDepthRange()
+    {
+        Predicate<Path> filter = EvaluatorFactory.returnFilter( MapUtil.map( "language", "builtin", "name",
+                "depth", "min_depth", 1 ) );
+        assertFalse( filter.accept( startPath ) );
+        assertTrue( filter.accept( pathOfLengthOne ) );
+    }
+
+    @Test
+    public void shouldCompareBuiltInPropertyEqualityByValue()
+    {
+        Predicate<Path> byName = EvaluatorFactory.returnFilter( MapUtil.map( "language", "builtin", "name",
+                "property_equals", "property", "name", "value", "end" ) );
+        Predicate<Path> byWeight = EvaluatorFactory.returnFilter( MapUtil.map( "language", "builtin", "name",
+                "property_equals", "property", "weight", "value", 3L ) );
+        assertFalse( byName.accept( startPath ) );
+        assertTrue( byName.accept( pathOfLengthOne ) );
+        assertTrue( byWeight.accept( pathOfLengthOne ) );
+    }
+
+    @Test( expected = EvaluationException.class )
+    public void shouldRequireParametersOfBuiltInEvaluators()
+    {
+        EvaluatorFactory.pruneEvaluator( MapUtil.map( "language", "builtin", "name", "depth" ) );
+    }
+
+    @Test( expected = EvaluationException.class )
+    public void shouldFailOnUnknownScriptLanguage()
+    {
+        EvaluatorFactory.returnFilter( MapUtil.map( "language", "no-such-language", "body", "true;" ) );
+    }
+}
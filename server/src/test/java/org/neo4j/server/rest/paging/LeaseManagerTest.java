@@ -19,9 +19,15 @@
  */
 package org.neo4j.server.rest.paging;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import org.junit.Test;
 
@@ -103,4 +109,108 @@ public class LeaseManagerTest
 
         assertNull( manager.getLeaseById( lease.getId() ) );
     }
+
+    @Test
+    public void shouldCloseTheLeasedItemWhenRemovingALease()
+    {
+        LeaseManager manager = new LeaseManager( new FakeClock() );
+        Leasable leasedItem = mock( Leasable.class );
+        Lease lease = manager.createLease( SIXTY_SECONDS, leasedItem );
+
+        manager.remove( lease.getId() );
+
+        verify( leasedItem ).close();
+    }
+
+    @Test
+    public void shouldRemoveExpiredLeasesWhenSweeping()
+    {
+        FakeClock fakeClock = new FakeClock();
+        LeaseManager manager = new LeaseManager( fakeClock );
+        Leasable leasedItem = mock( Leasable.class );
+        manager.createLease( SIXTY_SECONDS, leasedItem );
+
+        fakeClock.forwardMinutes( 2 );
+        manager.sweep();
+
+        assertEquals( 0, manager.getActiveLeases() );
+        assertEquals( 1, manager.getExpiredLeases() );
+        verify( leasedItem ).close();
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedLeasesOverTheMemoryCap()
+    {
+        FakeClock fakeClock = new FakeClock();
+        LeaseManager manager = new LeaseManager( fakeClock, 150 );
+        Lease leaseA = manager.createLease( SIXTY_SECONDS, leasedItemUsing( 100 ) );
+        fakeClock.forwardSeconds( 1 );
+        Lease leaseB = manager.createLease( SIXTY_SECONDS, leasedItemUsing( 100 ) );
+
+        assertNull( manager.getLeaseById( leaseA.getId() ) );
+        assertNotNull( manager.getLeaseById( leaseB.getId() ) );
+        assertEquals( 1, manager.getEvictedLeases() );
+        assertEquals( 100, manager.getEstimatedMemoryUsage() );
+    }
+
+    @Test
+    public void shouldNeverEvictTheLeaseBeingCreated()
+    {
+        LeaseManager manager = new LeaseManager( new FakeClock(), 150 );
+        Lease leaseA = manager.createLease( SIXTY_SECONDS, leasedItemUsing( 100 ) );
+        Lease leaseB = manager.createLease( SIXTY_SECONDS, leasedItemUsing( 100 ) );
+
+        assertNull( manager.getLeaseById( leaseA.getId() ) );
+        assertNotNull( manager.getLeaseById( leaseB.getId() ) );
+        assertEquals( 1, manager.getEvictedLeases() );
+    }
+
+    @Test
+    public void shouldNotCloseALeasedItemWhileItIsBeingPaged() throws Exception
+    {
+        final LeaseManager manager = new LeaseManager( new FakeClock() );
+        Leasable leasedItem = mock( Leasable.class );
+        final Lease lease = manager.createLease( SIXTY_SECONDS, leasedItem );
+
+        Thread remover = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                manager.remove( lease.getId() );
+            }
+        };
+        synchronized ( lease )
+        {
+            remover.start();
+            remover.join( 100 );
+            verify( leasedItem, never() ).close();
+            assertFalse( lease.isClosed() );
+        }
+        remover.join();
+
+        verify( leasedItem ).close();
+        assertTrue( lease.isClosed() );
+    }
+
+    @Test
+    public void shouldCloseAllLeasedItemsOnShutdown()
+    {
+        LeaseManager manager = new LeaseManager( new FakeClock() );
+        Leasable leasedItem = mock( Leasable.class );
+        manager.createLease( SIXTY_SECONDS, leasedItem );
+        manager.startSweeping( 1000 );
+
+        manager.shutdown();
+
+        assertEquals( 0, manager.getActiveLeases() );
+        verify( leasedItem ).close();
+    }
+
+    private static Leasable leasedItemUsing( long bytes )
+    {
+        Leasable leasedItem = mock( Leasable.class );
+        when( leasedItem.estimatedMemoryUsage() ).thenReturn( bytes );
+        return leasedItem;
+    }
 }
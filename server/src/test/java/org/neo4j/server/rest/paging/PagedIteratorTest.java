@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.paging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.neo4j.graphdb.index.IndexHits;
+
+public class PagedIteratorTest
+{
+    @Test
+    public void shouldReturnPagesUntilTheItemsRunOut()
+    {
+        PagedIterator<Integer> pager = new PagedIterator<Integer>( Arrays.asList( 1, 2, 3, 4, 5 )
+                .iterator(), 2 );
+
+        assertEquals( Arrays.asList( 1, 2 ), pager.next() );
+        assertEquals( Arrays.asList( 3, 4 ), pager.next() );
+        assertEquals( Collections.singletonList( 5 ), pager.next() );
+        assertNull( pager.next() );
+    }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void shouldCloseIndexHitsOnceWhenExhausted()
+    {
+        IndexHits<String> hits = mock( IndexHits.class );
+        when( hits.hasNext() ).thenReturn( true, false );
+        when( hits.next() ).thenReturn( "only" );
+        PagedIterator<String> pager = new PagedIterator<String>( hits, 10 );
+
+        assertEquals( Collections.singletonList( "only" ), pager.next() );
+        pager.close();
+
+        verify( hits, times( 1 ) ).close();
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.neo4j.server.rest.domain.JsonHelper;
+
+public class BatchOperationResultsTest
+{
+    @Test
+    public void shouldKeepSmallBatchesInMemory() throws Exception
+    {
+        BatchOperationResults results = new BatchOperationResults();
+        results.addOperationResult( "/node", 0, "{\"name\":\"first\"}", "http://localhost/db/data/node/1" );
+        results.addOperationResult( "/node/1", 1, null, null );
+        assertNull( results.getSpillFile() );
+
+        List<Map<String, Object>> written = write( results );
+
+        assertEquals( 2, written.size() );
+        assertEquals( 0, written.get( 0 ).get( "id" ) );
+        assertEquals( "http://localhost/db/data/node/1", written.get( 0 ).get( "location" ) );
+        assertEquals( "first", ( (Map<?, ?>) written.get( 0 ).get( "body" ) ).get( "name" ) );
+        assertEquals( "/node/1", written.get( 1 ).get( "from" ) );
+        assertFalse( written.get( 1 ).containsKey( "body" ) );
+        assertEquals( "http://localhost/db/data/node/1", results.getLocations().get( 0 ) );
+    }
+
+    @Test
+    public void shouldSpillBigBatchesToDiskUntilTheyAreWritten() throws Exception
+    {
+        BatchOperationResults results = new BatchOperationResults( 1024 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            results.addOperationResult( "/node", i, "{\"name\":\"node " + i + "\"}", null );
+        }
+        File spillFile = results.getSpillFile();
+        assertNotNull( spillFile );
+        assertTrue( spillFile.exists() );
+
+        List<Map<String, Object>> written = write( results );
+
+        assertEquals( 1000, written.size() );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            assertEquals( i, written.get( i ).get( "id" ) );
+            assertEquals( "node " + i, ( (Map<?, ?>) written.get( i ).get( "body" ) ).get( "name" ) );
+        }
+        assertFalse( spillFile.exists() );
+    }
+
+    @Test
+    public void shouldDeleteSpilledResultsOfFailedBatches() throws Exception
+    {
+        BatchOperationResults results = new BatchOperationResults( 16 );
+        results.addOperationResult( "/node", 0, "{\"name\":\"a node with a long enough name\"}", null );
+        File spillFile = results.getSpillFile();
+        assertTrue( spillFile.exists() );
+
+        results.release();
+
+        assertFalse( spillFile.exists() );
+    }
+
+    private List<Map<String, Object>> write( BatchOperationResults results ) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        results.writeJSON( output );
+        return JsonHelper.jsonToList( output.toString( "UTF-8" ) );
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.junit.Test;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.server.rest.repr.formats.JsonFormat;
+
+public class IndexHitsWrapperTest
+{
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void shouldCloseHitsWhenTheClientGoesAwayPartway() throws Exception
+    {
+        IndexHits<String> hits = mock( IndexHits.class );
+        when( hits.hasNext() ).thenReturn( true );
+        when( hits.next() ).thenReturn( "a hit which is never the last one" );
+
+        try
+        {
+            write( strings( hits ), new OutputStream()
+            {
+                @Override
+                public void write( int b ) throws IOException
+                {
+                    throw new IOException( "Connection reset by peer" );
+                }
+            } );
+            fail( "Should have failed writing to the client" );
+        }
+        catch ( RuntimeException e )
+        {   // Good
+        }
+
+        verify( hits ).close();
+    }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void shouldCloseHitsWhenARepresentationFails() throws Exception
+    {
+        IndexHits<String> hits = mock( IndexHits.class );
+        when( hits.hasNext() ).thenReturn( true );
+        when( hits.next() ).thenReturn( "first hit" )
+                .thenThrow( new IllegalStateException( "expected failure" ) );
+
+        try
+        {
+            write( strings( hits ), new ByteArrayOutputStream() );
+            fail( "Should have rethrown the failure" );
+        }
+        catch ( IllegalStateException e )
+        {   // Good
+        }
+
+        verify( hits ).close();
+    }
+
+    private ListRepresentation strings( IndexHits<String> hits )
+    {
+        return new ListRepresentation( RepresentationType.STRING, new IndexHitsWrapper<String>( hits )
+        {
+            @Override
+            protected Representation underlyingObjectToObject( String hit )
+            {
+                return ValueRepresentation.string( hit );
+            }
+        } );
+    }
+
+    private void write( ListRepresentation list, OutputStream output ) throws Exception
+    {
+        OutputFormat json = new OutputFormat( new JsonFormat(), new URI( "http://localhost/" ), null );
+        ( (StreamingOutput) json.ok( list )
+                .getEntity() ).write( output );
+    }
+}
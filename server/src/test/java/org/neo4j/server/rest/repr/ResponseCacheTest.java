@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class ResponseCacheTest
+{
+    @Test
+    public void shouldOnlyHandOutResponsesForTheSameTag()
+    {
+        ResponseCache cache = new ResponseCache( 1024 );
+        byte[] entity = new byte[10];
+        cache.put( "node/1", "v1", entity );
+
+        assertSame( entity, cache.get( "node/1", "v1" ) );
+        assertNull( cache.get( "node/1", "v2" ) );
+        assertNull( cache.get( "node/2", "v1" ) );
+    }
+
+    @Test
+    public void shouldReplaceTheResponseForANewTag()
+    {
+        ResponseCache cache = new ResponseCache( 1024 );
+        cache.put( "node/1", "v1", new byte[10] );
+        byte[] newer = new byte[20];
+        cache.put( "node/1", "v2", newer );
+
+        assertNull( cache.get( "node/1", "v1" ) );
+        assertSame( newer, cache.get( "node/1", "v2" ) );
+        assertEquals( 1, cache.size() );
+        assertEquals( 20, cache.bytes() );
+    }
+
+    @Test
+    public void shouldDropLeastRecentlyUsedResponsesOverTheByteCap()
+    {
+        ResponseCache cache = new ResponseCache( 100 );
+        cache.put( "node/1", "v1", new byte[40] );
+        cache.put( "node/2", "v1", new byte[40] );
+        cache.get( "node/1", "v1" );
+        cache.put( "node/3", "v1", new byte[40] );
+
+        assertNull( cache.get( "node/2", "v1" ) );
+        assertEquals( 40, cache.get( "node/1", "v1" ).length );
+        assertEquals( 40, cache.get( "node/3", "v1" ).length );
+        assertEquals( 80, cache.bytes() );
+    }
+
+    @Test
+    public void shouldNotCacheResponsesLargerThanTheCap()
+    {
+        ResponseCache cache = new ResponseCache( 100 );
+        cache.put( "node/1", "v1", new byte[40] );
+        cache.put( "node/2", "v1", new byte[101] );
+
+        assertNull( cache.get( "node/2", "v1" ) );
+        assertEquals( 1, cache.size() );
+        assertEquals( 40, cache.bytes() );
+    }
+}
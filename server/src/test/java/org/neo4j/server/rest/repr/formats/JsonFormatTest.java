@@ -20,10 +20,20 @@
 package org.neo4j.server.rest.repr.formats;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -32,6 +42,7 @@ import org.neo4j.server.rest.repr.ListRepresentation;
 import org.neo4j.server.rest.repr.MappingRepresentation;
 import org.neo4j.server.rest.repr.MappingSerializer;
 import org.neo4j.server.rest.repr.OutputFormat;
+import org.neo4j.server.rest.repr.Representation;
 import org.neo4j.server.rest.repr.ValueRepresentation;
 
 public class JsonFormatTest
@@ -59,6 +70,75 @@ public class JsonFormatTest
         assertEquals( expectedString, entity );
     }
 
+    @Test
+    public void streamsListsWrittenToTheResponse() throws Exception
+    {
+        Response response = json.ok( new ListRepresentation( "nested", Arrays.asList(
+                new MappingRepresentation( "data" )
+                {
+                    @Override
+                    protected void serialize( MappingSerializer serializer )
+                    {
+                        serializer.putString( "key", "expected value" );
+                        serializer.putList( "list", ListRepresentation.strings( "hello", "world" ) );
+                    }
+                } ) ) );
+        assertTrue( response.getEntity() instanceof StreamingOutput );
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ( (StreamingOutput) response.getEntity() ).write( output );
+
+        Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put( "key", "expected value" );
+        expected.put( "list", Arrays.asList( "hello", "world" ) );
+        assertEquals( Arrays.asList( expected ), JsonHelper.readJson( output.toString( "UTF-8" ) ) );
+    }
+
+    @Test
+    public void endsStreamedListWithTheFailureIfSerializationFails() throws Exception
+    {
+        final MappingRepresentation element = new MappingRepresentation( "data" )
+        {
+            @Override
+            protected void serialize( MappingSerializer serializer )
+            {
+                serializer.putString( "key", "expected value" );
+            }
+        };
+        final MappingRepresentation failing = new MappingRepresentation( "data" )
+        {
+            @Override
+            protected void serialize( MappingSerializer serializer )
+            {
+                serializer.putString( "key", "half written" );
+                throw new IllegalStateException( "expected failure" );
+            }
+        };
+        Response response = json.ok( new ListRepresentation( "nested", new Iterable<Representation>()
+        {
+            public Iterator<Representation> iterator()
+            {
+                return Arrays.<Representation>asList( element, element, failing, element ).iterator();
+            }
+        } ) );
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try
+        {
+            ( (StreamingOutput) response.getEntity() ).write( output );
+            fail( "Should have rethrown the failure" );
+        }
+        catch ( IllegalStateException e )
+        {   // Good
+        }
+
+        List<?> result = (List<?>) JsonHelper.readJson( output.toString( "UTF-8" ) );
+        assertEquals( 3, result.size() );
+        assertEquals( Collections.singletonMap( "key", "expected value" ), result.get( 0 ) );
+        assertEquals( Collections.singletonMap( "key", "expected value" ), result.get( 1 ) );
+        Map<?, ?> error = (Map<?, ?>) result.get( 2 );
+        assertEquals( "expected failure", error.get( "message" ) );
+        assertTrue( error.get( "exception" ).toString().contains( "IllegalStateException" ) );
+    }
+
     @Test
     public void canFormatInteger() throws Exception
     {
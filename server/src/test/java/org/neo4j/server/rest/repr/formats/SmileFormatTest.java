@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.repr.formats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.server.rest.repr.ListRepresentation;
+import org.neo4j.server.rest.repr.MappingRepresentation;
+import org.neo4j.server.rest.repr.MappingSerializer;
+import org.neo4j.server.rest.repr.OutputFormat;
+import org.neo4j.server.rest.repr.Representation;
+
+public class SmileFormatTest
+{
+    private OutputFormat smile;
+
+    @Before
+    public void createOutputFormat() throws Exception
+    {
+        smile = new OutputFormat( new SmileFormat(), new URI( "http://localhost/db/data/" ), null );
+    }
+
+    @Test
+    public void writesLinksToEntitiesAsIds() throws Exception
+    {
+        Map<?, ?> node = (Map<?, ?>) read( smile.ok( new MappingRepresentation( Representation.NODE )
+        {
+            @Override
+            protected void serialize( MappingSerializer serializer )
+            {
+                serializer.putUri( "self", "node/12" );
+                serializer.putUri( "properties", "node/12/properties" );
+                serializer.putUriTemplate( "property", "node/12/properties/{key}" );
+                serializer.putUri( "extensions", "ext" );
+                serializer.putString( "name", "twelve" );
+            }
+        } ) );
+
+        assertEquals( 12, ( (Number) node.get( "self" ) ).intValue() );
+        assertFalse( node.containsKey( "properties" ) );
+        assertFalse( node.containsKey( "property" ) );
+        assertEquals( "http://localhost/db/data/ext", node.get( "extensions" ) );
+        assertEquals( "twelve", node.get( "name" ) );
+    }
+
+    @Test
+    public void writesEveryResponseToTheStream() throws Exception
+    {
+        Response response = smile.ok( ListRepresentation.strings( "hello", "world" ) );
+        assertTrue( response.getEntity() instanceof StreamingOutput );
+        assertEquals( SmileFormat.MEDIA_TYPE, response.getMetadata()
+                .getFirst( "Content-Type" ) );
+        assertEquals( Arrays.asList( "hello", "world" ), read( response ) );
+    }
+
+    private static Object read( Response response ) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ( (StreamingOutput) response.getEntity() ).write( output );
+        return new ObjectMapper( new SmileFactory() ).readValue( output.toByteArray(), Object.class );
+    }
+}
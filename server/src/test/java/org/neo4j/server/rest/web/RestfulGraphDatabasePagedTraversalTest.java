@@ -27,12 +27,14 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.junit.After;
@@ -91,10 +93,9 @@ public class RestfulGraphDatabasePagedTraversalTest
                 .toString();
         assertThat( responseUri, containsString( "/node/1/paged/traverse/node/" ) );
         assertNotNull( response.getEntity() );
-        System.out.println( response.getEntity()
-                .toString() );
-        assertThat( response.getEntity()
-                .toString(), containsString( "\"name\" : \"19\"" ) );
+        String entity = entityAsString( response );
+        System.out.println( entity );
+        assertThat( entity, containsString( "\"name\" : \"19\"" ) );
     }
 
     @Test
@@ -108,10 +109,9 @@ public class RestfulGraphDatabasePagedTraversalTest
 
         assertEquals( 200, response.getStatus() );
         assertNotNull( response.getEntity() );
-        assertThat( response.getEntity()
-                .toString(), not( containsString( "\"name\" : \"19\"" ) ) );
-        assertThat( response.getEntity()
-                .toString(), containsString( "\"name\" : \"91\"" ) );
+        String entity = entityAsString( response );
+        assertThat( entity, not( containsString( "\"name\" : \"19\"" ) ) );
+        assertThat( entity, containsString( "\"name\" : \"91\"" ) );
     }
 
     @Test
@@ -159,6 +159,21 @@ public class RestfulGraphDatabasePagedTraversalTest
         assertEquals( 404, response.getStatus() );
     }
 
+    private static String entityAsString( Response response )
+    {
+        try
+        {
+            // Pages are streamed, and each page can only be written once
+            ByteArrayOutputStream entity = new ByteArrayOutputStream();
+            ( (StreamingOutput) response.getEntity() ).write( entity );
+            return entity.toString( "UTF-8" );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
     private UriInfo uriInfo()
     {
         UriInfo mockUriInfo = mock( UriInfo.class );
@@ -26,26 +26,37 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.junit.AfterClass;
@@ -63,12 +74,19 @@ import org.neo4j.server.rest.domain.TraverserReturnType;
 import org.neo4j.server.rest.paging.FakeClock;
 import org.neo4j.server.rest.paging.LeaseManager;
 import org.neo4j.server.rest.repr.BadInputException;
+import org.neo4j.server.rest.repr.OutputFormat;
 import org.neo4j.server.rest.repr.RelationshipRepresentationTest;
+import org.neo4j.server.rest.repr.ResponseCache;
 import org.neo4j.server.rest.repr.formats.JsonFormat;
 import org.neo4j.server.rest.web.DatabaseActions.RelationshipDirection;
 import org.neo4j.server.rest.web.RestfulGraphDatabase.AmpersandSeparatedCollection;
 import org.neo4j.test.server.EntityOutputFormat;
 
+import com.sun.jersey.api.core.HttpRequestContext;
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.WebApplication;
+
 public class RestfulGraphDatabaseTest
 {
     private static final String BASE_URI = "http://neo4j.org/";
@@ -128,15 +146,24 @@ public class RestfulGraphDatabaseTest
 
     private static String entityAsString( Response response )
     {
-        byte[] bytes = (byte[]) response.getEntity();
         try
         {
-            return new String( bytes, "UTF-8" );
+            if ( response.getEntity() instanceof StreamingOutput )
+            {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                ( (StreamingOutput) response.getEntity() ).write( output );
+                return output.toString( "UTF-8" );
+            }
+            return new String( (byte[]) response.getEntity(), "UTF-8" );
         }
         catch ( UnsupportedEncodingException e )
         {
             throw new RuntimeException( "Could not decode UTF-8", e );
         }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
     }
 
     @Test
@@ -235,6 +262,193 @@ public class RestfulGraphDatabaseTest
         assertTrue( map.containsKey( "self" ) );
     }
 
+    @Test
+    public void shouldTagNodeResponsesWithAVersionThatChangesWithTheNode() throws Exception
+    {
+        long nodeId = helper.createNode();
+        Object firstTag = service.getNode( nodeId )
+                .getMetadata()
+                .getFirst( HttpHeaders.ETAG );
+        assertNotNull( firstTag );
+        assertEquals( firstTag, service.getNode( nodeId )
+                .getMetadata()
+                .getFirst( HttpHeaders.ETAG ) );
+
+        service.setNodeProperty( nodeId, "name", "\"tagged\"" );
+
+        assertFalse( firstTag.equals( service.getNode( nodeId )
+                .getMetadata()
+                .getFirst( HttpHeaders.ETAG ) ) );
+    }
+
+    @Test
+    public void shouldAnswerIfNoneMatchWithNotModifiedUntilTheNodeChanges() throws Exception
+    {
+        long nodeId = helper.createNode();
+        EntityTag tag = (EntityTag) service.getNode( nodeId )
+                .getMetadata()
+                .getFirst( HttpHeaders.ETAG );
+
+        Response response = conditionalService( nodeId, HttpHeaders.IF_NONE_MATCH, tag.toString(), null ).getNode(
+                nodeId );
+        assertEquals( 304, response.getStatus() );
+        assertNull( response.getEntity() );
+        assertEquals( tag, response.getMetadata()
+                .getFirst( HttpHeaders.ETAG ) );
+
+        service.setNodeProperty( nodeId, "name", "\"changed\"" );
+
+        response = conditionalService( nodeId, HttpHeaders.IF_NONE_MATCH, tag.toString(), null ).getNode( nodeId );
+        assertEquals( 200, response.getStatus() );
+    }
+
+    @Test
+    public void shouldAnswerIfModifiedSinceWithNotModified() throws Exception
+    {
+        long nodeId = helper.createNode();
+        // Last-Modified is rounded up to the next second, and only sent once
+        // that second has passed
+        Date lastModified = null;
+        for ( int attempt = 0; lastModified == null && attempt < 30; attempt++ )
+        {
+            Thread.sleep( 100 );
+            lastModified = (Date) service.getNode( nodeId )
+                    .getMetadata()
+                    .getFirst( HttpHeaders.LAST_MODIFIED );
+        }
+        assertNotNull( lastModified );
+        assertEquals( 0, lastModified.getTime() % 1000 );
+
+        Response response = conditionalService( nodeId, HttpHeaders.IF_MODIFIED_SINCE, httpDate( lastModified ),
+                null ).getNode( nodeId );
+        assertEquals( 304, response.getStatus() );
+        assertNull( response.getEntity() );
+
+        response = conditionalService( nodeId, HttpHeaders.IF_MODIFIED_SINCE,
+                httpDate( new Date( lastModified.getTime() - 1000 ) ), null ).getNode( nodeId );
+        assertEquals( 200, response.getStatus() );
+    }
+
+    @Test
+    public void shouldServeCachedResponsesUntilTheNodeChanges() throws Exception
+    {
+        long nodeId = helper.createNode( MapUtil.map( "name", "cached" ) );
+        ResponseCache cache = new ResponseCache( 1024 * 1024 );
+
+        Object first = conditionalService( nodeId, null, null, cache ).getNode( nodeId )
+                .getEntity();
+        assertEquals( 1, cache.size() );
+        assertSame( first, conditionalService( nodeId, null, null, cache ).getNode( nodeId )
+                .getEntity() );
+
+        service.setNodeProperty( nodeId, "name", "\"changed\"" );
+
+        Response response = conditionalService( nodeId, null, null, cache ).getNode( nodeId );
+        assertNotSame( first, response.getEntity() );
+        assertThat( entityAsString( response ), containsString( "changed" ) );
+        assertEquals( 1, cache.size() );
+    }
+
+    /*
+     * The shared service has no request, so it never evaluates conditional
+     * requests or uses the response cache.
+     */
+    private static RestfulGraphDatabase conditionalService( long nodeId, String header, String value,
+            ResponseCache cache )
+    {
+        InBoundHeaders headers = new InBoundHeaders();
+        if ( header != null )
+        {
+            headers.putSingle( header, value );
+        }
+        URI baseUri = URI.create( BASE_URI );
+        HttpRequestContext request = new ContainerRequest( mock( WebApplication.class ), "GET", baseUri,
+                baseUri.resolve( "node/" + nodeId ), headers, new ByteArrayInputStream( new byte[0] ) );
+        OutputFormat format = new OutputFormat( new JsonFormat(), baseUri, null, request, cache );
+        return new RestfulGraphDatabase( uriInfo(), database, new JsonFormat(), format, leaseManager );
+    }
+
+    private static String httpDate( Date date )
+    {
+        SimpleDateFormat format = new SimpleDateFormat( "EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US );
+        format.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        return format.format( date );
+    }
+
+    @Test
+    public void shouldGetManyNodesWithSelectedPropertiesAndSkipMissingOnes() throws Exception
+    {
+        long first = helper.createNode( MapUtil.map( "name", "first", "age", 1 ) );
+        long second = helper.createNode( MapUtil.map( "name", "second", "age", 2 ) );
+        Response response = service.getNodes( first + "," + 9000000000000L + "," + second, null, null, "name",
+                false );
+        assertEquals( 200, response.getStatus() );
+        List<Map<String, Object>> nodes = JsonHelper.jsonToList( entityAsString( response ) );
+        assertEquals( 2, nodes.size() );
+        assertTrue( nodes.get( 0 )
+                .containsKey( "self" ) );
+        assertEquals( MapUtil.map( "name", "second" ), nodes.get( 1 )
+                .get( "data" ) );
+    }
+
+    @Test
+    public void shouldGetCompactRelationshipsInIdRange() throws Exception
+    {
+        long first = helper.createRelationship( "KNOWS" );
+        long second = helper.createRelationship( "KNOWS" );
+        Response response = service.getRelationships( null, first, second, null, true );
+        assertEquals( 200, response.getStatus() );
+        List<Map<String, Object>> relationships = JsonHelper.jsonToList( entityAsString( response ) );
+        assertEquals( 2, relationships.size() );
+        Map<String, Object> relationship = relationships.get( 1 );
+        assertFalse( relationship.containsKey( "self" ) );
+        assertEquals( second, ( (Number) relationship.get( "id" ) ).longValue() );
+        assertEquals( "KNOWS", relationship.get( "type" ) );
+    }
+
+    @Test
+    public void shouldStopAtTheHighestIdWhenRangeEndsAtMaxLong() throws Exception
+    {
+        long first = helper.createNode();
+        long second = helper.createNode();
+        Response response = service.getNodes( null, Long.MAX_VALUE - 1, Long.MAX_VALUE, null, true );
+        assertEquals( 200, response.getStatus() );
+        assertEquals( 0, JsonHelper.jsonToList( entityAsString( response ) )
+                .size() );
+
+        response = service.getNodes( null, first, second + RestfulGraphDatabase.MAX_ENTITIES_PER_REQUEST - 2,
+                null, true );
+        assertEquals( 200, response.getStatus() );
+        assertEquals( 2, JsonHelper.jsonToList( entityAsString( response ) )
+                .size() );
+    }
+
+    @Test
+    public void shouldRespondWith400WhenBulkFetchAsksForTooManyIds() throws Exception
+    {
+        Response response = service.getNodes( null, 0L, (long) RestfulGraphDatabase.MAX_ENTITIES_PER_REQUEST,
+                null, false );
+        assertEquals( 400, response.getStatus() );
+
+        response = service.getRelationships( null, 0L, Long.MAX_VALUE, null, false );
+        assertEquals( 400, response.getStatus() );
+
+        StringBuilder ids = new StringBuilder( "0" );
+        for ( int i = 1; i <= RestfulGraphDatabase.MAX_ENTITIES_PER_REQUEST; i++ )
+        {
+            ids.append( ',' ).append( i );
+        }
+        response = service.getNodes( ids.toString(), null, null, null, false );
+        assertEquals( 400, response.getStatus() );
+    }
+
+    @Test
+    public void shouldRespondWith400WhenBulkFetchGetsNoIds() throws Exception
+    {
+        Response response = service.getNodes( null, 0L, null, null, false );
+        assertEquals( 400, response.getStatus() );
+    }
+
     @Test
     public void shouldRespondWith404WhenRequestedNodeDoesNotExist() throws Exception
     {
@@ -699,6 +913,34 @@ public class RestfulGraphDatabaseTest
         verifyRelReps( 2, entityAsString( response ) );
     }
 
+    @Test
+    public void shouldPageThroughRelationshipsOfANodeWithACursor() throws Exception
+    {
+        long nodeId = helper.createNode();
+        for ( int i = 0; i < 5; i++ )
+        {
+            helper.createRelationship( "LIKES", nodeId, helper.createNode() );
+        }
+
+        Response response = service.createNodeRelationshipsCursor( nodeId, RelationshipDirection.out, 2, 60 );
+        assertEquals( 201, response.getStatus() );
+        assertEquals( MediaType.APPLICATION_JSON_TYPE, response.getMetadata()
+                .getFirst( HttpHeaders.CONTENT_TYPE ) );
+        verifyRelReps( 2, entityAsString( response ) );
+        String location = response.getMetadata()
+                .getFirst( HttpHeaders.LOCATION )
+                .toString();
+        String cursorId = location.substring( location.lastIndexOf( '/' ) + 1 );
+
+        response = service.nextPage( cursorId );
+        assertEquals( MediaType.APPLICATION_JSON_TYPE, response.getMetadata()
+                .getFirst( HttpHeaders.CONTENT_TYPE ) );
+        verifyRelReps( 2, entityAsString( response ) );
+        verifyRelReps( 1, entityAsString( service.nextPage( cursorId ) ) );
+        assertEquals( 404, service.nextPage( cursorId )
+                .getStatus() );
+    }
+
     @Test
     public void shouldNotReturnDuplicatesIfSameTypeSpecifiedMoreThanOnce() throws DatabaseBlockedException,
             PropertyValueException
@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+public class CompressionFilterTest
+{
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+    @Test
+    public void shouldNegotiateContentCoding()
+    {
+        assertEquals( "gzip", CompressionFilter.negotiate( "gzip, deflate" ) );
+        assertEquals( "deflate", CompressionFilter.negotiate( "deflate" ) );
+        assertEquals( "deflate", CompressionFilter.negotiate( "gzip;q=0.5, deflate" ) );
+        assertEquals( "gzip", CompressionFilter.negotiate( "*" ) );
+        assertNull( CompressionFilter.negotiate( "gzip;q=0" ) );
+        assertNull( CompressionFilter.negotiate( "identity" ) );
+        assertNull( CompressionFilter.negotiate( null ) );
+    }
+
+    @Test
+    public void shouldCompressResponsesOverTheThreshold() throws Exception
+    {
+        HttpServletResponse target = jsonResponse();
+        DeflaterPool deflaters = new DeflaterPool( Deflater.DEFAULT_COMPRESSION, true, 1 );
+        CompressingResponse response = new CompressingResponse( target, "gzip", deflaters, 1024 );
+        byte[] entity = repetitiveJson( 10000 );
+
+        response.setHeader( "Content-Encoding", "UTF-8" );
+        response.setContentLength( entity.length );
+        response.getOutputStream()
+                .write( entity );
+        response.finish();
+        response.release();
+
+        verify( target ).setHeader( "Content-Encoding", "gzip" );
+        verify( target, never() ).setContentLength( entity.length );
+        assertArrayEquals( entity, gunzip( written.toByteArray() ) );
+        assertEquals( 1, deflaters.size() );
+    }
+
+    @Test
+    public void shouldSendResponsesUnderTheThresholdAsTheyAre() throws Exception
+    {
+        HttpServletResponse target = jsonResponse();
+        CompressingResponse response = new CompressingResponse( target, "gzip", new DeflaterPool(
+                Deflater.DEFAULT_COMPRESSION, true, 1 ), 1024 );
+        byte[] entity = repetitiveJson( 10 );
+
+        response.setHeader( "Content-Encoding", "UTF-8" );
+        response.getOutputStream()
+                .write( entity );
+        response.finish();
+        response.release();
+
+        verify( target ).setHeader( "Content-Encoding", "UTF-8" );
+        verify( target ).setContentLength( entity.length );
+        assertArrayEquals( entity, written.toByteArray() );
+    }
+
+    @Test
+    public void shouldCompressWithDeflateWhenThatIsTheNegotiatedCoding() throws Exception
+    {
+        HttpServletResponse target = jsonResponse();
+        DeflaterPool deflaters = new DeflaterPool( Deflater.DEFAULT_COMPRESSION, false, 1 );
+        CompressingResponse response = new CompressingResponse( target, "deflate", deflaters, 1024 );
+        byte[] entity = repetitiveJson( 10000 );
+
+        response.getOutputStream()
+                .write( entity );
+        response.finish();
+        response.release();
+
+        verify( target ).setHeader( "Content-Encoding", "deflate" );
+        assertArrayEquals( entity, read( new InflaterInputStream( new ByteArrayInputStream( written.toByteArray() ) ) ) );
+        assertEquals( 1, deflaters.size() );
+    }
+
+    @Test
+    public void shouldHoldBackLengthAndEncodingHeadersUntilTheResponseIsComplete() throws Exception
+    {
+        HttpServletResponse target = jsonResponse();
+        CompressingResponse response = new CompressingResponse( target, "gzip", new DeflaterPool(
+                Deflater.DEFAULT_COMPRESSION, true, 1 ), 1024 );
+        byte[] entity = repetitiveJson( 10 );
+
+        response.setHeader( "Content-Encoding", "UTF-8" );
+        response.setHeader( "Content-Length", String.valueOf( entity.length ) );
+        response.setContentLength( entity.length );
+        response.getOutputStream()
+                .write( entity );
+        response.flushBuffer();
+
+        verify( target, never() ).setHeader( eq( "Content-Encoding" ), anyString() );
+        verify( target, never() ).setHeader( eq( "Content-Length" ), anyString() );
+        verify( target, never() ).setContentLength( anyInt() );
+        assertEquals( 0, written.size() );
+
+        response.finish();
+        response.release();
+
+        verify( target ).setHeader( "Content-Encoding", "UTF-8" );
+        verify( target ).setContentLength( entity.length );
+        assertArrayEquals( entity, written.toByteArray() );
+    }
+
+    @Test
+    public void shouldWeakenTheEntityTagOfCompressedResponses() throws Exception
+    {
+        HttpServletResponse target = jsonResponse();
+        CompressingResponse response = new CompressingResponse( target, "gzip", new DeflaterPool(
+                Deflater.DEFAULT_COMPRESSION, true, 1 ), 1024 );
+
+        response.setHeader( "ETag", "\"1-2\"" );
+        response.getOutputStream()
+                .write( repetitiveJson( 10000 ) );
+        response.finish();
+        response.release();
+
+        verify( target ).setHeader( "ETag", "W/\"1-2\"" );
+        verify( target, never() ).setHeader( "ETag", "\"1-2\"" );
+    }
+
+    @Test
+    public void shouldKeepTheEntityTagOfResponsesSentAsTheyAre() throws Exception
+    {
+        HttpServletResponse target = jsonResponse();
+        CompressingResponse response = new CompressingResponse( target, "gzip", new DeflaterPool(
+                Deflater.DEFAULT_COMPRESSION, true, 1 ), 1024 );
+
+        response.setHeader( "ETag", "\"1-2\"" );
+        response.getOutputStream()
+                .write( repetitiveJson( 10 ) );
+        response.finish();
+        response.release();
+
+        verify( target ).setHeader( "ETag", "\"1-2\"" );
+    }
+
+    @Test
+    public void shouldVaryOnAcceptEncodingEvenWhenNotCompressing() throws Exception
+    {
+        HttpServletRequest request = mock( HttpServletRequest.class );
+        when( request.getMethod() ).thenReturn( "GET" );
+        HttpServletResponse response = jsonResponse();
+        FilterChain chain = mock( FilterChain.class );
+
+        new CompressionFilter( 1024, 1 ).doFilter( request, response, chain );
+
+        verify( response ).addHeader( "Vary", "Accept-Encoding" );
+        verify( chain ).doFilter( request, response );
+    }
+
+    @Test
+    public void shouldKeepAcceptEncodingInAReplacedVaryHeader() throws Exception
+    {
+        HttpServletResponse target = jsonResponse();
+        CompressingResponse response = new CompressingResponse( target, "gzip", new DeflaterPool(
+                Deflater.DEFAULT_COMPRESSION, true, 1 ), 1024 );
+
+        response.setHeader( "Vary", "Accept" );
+
+        verify( target ).setHeader( "Vary", "Accept, Accept-Encoding" );
+    }
+
+    private HttpServletResponse jsonResponse() throws IOException
+    {
+        HttpServletResponse response = mock( HttpServletResponse.class );
+        when( response.getContentType() ).thenReturn( "application/json" );
+        when( response.getOutputStream() ).thenReturn( new ServletOutputStream()
+        {
+            @Override
+            public void write( int b ) throws IOException
+            {
+                written.write( b );
+            }
+        } );
+        return response;
+    }
+
+    private byte[] repetitiveJson( int entries )
+    {
+        StringBuilder json = new StringBuilder( "[" );
+        for ( int i = 0; i < entries; i++ )
+        {
+            json.append( i == 0 ? "" : "," )
+                    .append( "{\"self\":\"http://localhost:7474/db/data/node/" )
+                    .append( i )
+                    .append( "\"}" );
+        }
+        return json.append( "]" )
+                .toString()
+                .getBytes();
+    }
+
+    private byte[] gunzip( byte[] compressed ) throws IOException
+    {
+        return read( new GZIPInputStream( new ByteArrayInputStream( compressed ) ) );
+    }
+
+    private byte[] read( InputStream input ) throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for ( int read; ( read = input.read( buffer ) ) != -1; )
+        {
+            output.write( buffer, 0, read );
+        }
+        return output.toByteArray();
+    }
+}
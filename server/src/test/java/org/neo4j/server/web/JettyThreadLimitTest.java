@@ -61,6 +61,22 @@ public class JettyThreadLimitTest
         threadPool.stop();
     }
 
+    @Test
+    public void shouldKeepThreadsForCrudRequestsFromExpensiveRequests() throws Exception
+    {
+        Jetty6WebServer server = new Jetty6WebServer();
+        server.setMaxThreads( 40 );
+        server.init();
+        int crud = server.getRequestThrottle( RequestClass.CRUD )
+                .getMaxConcurrentRequests();
+        int expensive = server.getRequestThrottle( RequestClass.TRAVERSAL )
+                .getMaxConcurrentRequests() + server.getRequestThrottle( RequestClass.BATCH )
+                .getMaxConcurrentRequests() + server.getRequestThrottle( RequestClass.ADMIN )
+                .getMaxConcurrentRequests();
+        assertTrue( "connector threads should not be handed out", crud < 40 );
+        assertTrue( "some threads should be kept for CRUD requests", expensive < crud );
+    }
+
     private void loadThreadPool( QueuedThreadPool threadPool )
     {
         final CyclicBarrier cb = new CyclicBarrier( 100 );
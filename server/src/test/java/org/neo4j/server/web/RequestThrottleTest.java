@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mortbay.util.ajax.Continuation;
+import org.neo4j.server.web.RequestThrottle.Admission;
+
+public class RequestThrottleTest
+{
+    @Test
+    public void shouldQueueRequestsOverTheLimitAndRejectWhenTheQueueIsFull()
+    {
+        RequestThrottle throttle = new RequestThrottle( 1, 1 );
+
+        assertEquals( Admission.ENTERED, throttle.admit( mock( Continuation.class ) ) );
+        assertEquals( Admission.QUEUED, throttle.admit( mock( Continuation.class ) ) );
+        assertEquals( Admission.REJECTED, throttle.admit( mock( Continuation.class ) ) );
+
+        assertEquals( 1, throttle.getActiveRequests() );
+        assertEquals( 1, throttle.getQueuedRequests() );
+        assertEquals( 1, throttle.getRejectedRequests() );
+    }
+
+    @Test
+    public void shouldHandTheSlotOfAFinishedRequestToTheOldestWaitingOne()
+    {
+        RequestThrottle throttle = new RequestThrottle( 1, 10 );
+        throttle.admit( mock( Continuation.class ) );
+        Continuation waiting = mock( Continuation.class );
+        throttle.admit( waiting );
+
+        throttle.exit( System.nanoTime() );
+
+        verify( waiting ).resume();
+        assertEquals( 1, throttle.getActiveRequests() );
+        assertEquals( 0, throttle.getQueuedRequests() );
+        assertEquals( 1, throttle.getCompletedRequests() );
+    }
+
+    @Test
+    public void shouldTakeTimedOutRequestsOffTheQueue()
+    {
+        RequestThrottle throttle = new RequestThrottle( 1, 10 );
+        throttle.admit( mock( Continuation.class ) );
+        Continuation waiting = mock( Continuation.class );
+        throttle.admit( waiting );
+
+        assertFalse( throttle.enterAfterWaiting( waiting, System.nanoTime() ) );
+        throttle.exit( System.nanoTime() );
+
+        verify( waiting, never() ).resume();
+        assertEquals( 0, throttle.getActiveRequests() );
+        assertEquals( 0, throttle.getQueuedRequests() );
+        assertEquals( 1, throttle.getTimedOutRequests() );
+    }
+
+    @Test
+    public void shouldLetResumedRequestsIn()
+    {
+        RequestThrottle throttle = new RequestThrottle( 1, 10 );
+        throttle.admit( mock( Continuation.class ) );
+        Continuation waiting = mock( Continuation.class );
+        throttle.admit( waiting );
+        throttle.exit( System.nanoTime() );
+        when( waiting.getObject() ).thenReturn( captureHandedOverPermit( waiting ) );
+
+        assertTrue( throttle.enterAfterWaiting( waiting, System.nanoTime() ) );
+    }
+
+    @Test
+    public void shouldClassifyRequestsByPath()
+    {
+        assertEquals( RequestClass.CRUD, RequestClass.forPath( "/node/12", RequestClass.CRUD ) );
+        assertEquals( RequestClass.BATCH, RequestClass.forPath( "/batch", RequestClass.CRUD ) );
+        assertEquals( RequestClass.TRAVERSAL, RequestClass.forPath( "/node/12/traverse/node", RequestClass.CRUD ) );
+        assertEquals( RequestClass.TRAVERSAL,
+                RequestClass.forPath( "/node/12/paged/traverse/node/abc", RequestClass.CRUD ) );
+        assertEquals( RequestClass.TRAVERSAL, RequestClass.forPath( "/node/12/paths", RequestClass.CRUD ) );
+        assertEquals( RequestClass.TRAVERSAL, RequestClass.forPath( "/cursor/abc", RequestClass.CRUD ) );
+        assertEquals( RequestClass.TRAVERSAL,
+                RequestClass.forPath( "/ext/GremlinPlugin/graphdb/execute_script", RequestClass.CRUD ) );
+        assertEquals( RequestClass.ADMIN, RequestClass.forPath( "/server/console", RequestClass.ADMIN ) );
+    }
+
+    @Test
+    public void shouldOnlyClassifyRequestsByWholePathSegments()
+    {
+        assertEquals( RequestClass.CRUD, RequestClass.forPath( "/node/12/properties/batch", RequestClass.CRUD ) );
+        assertEquals( RequestClass.CRUD, RequestClass.forPath( "/batchjobs", RequestClass.CRUD ) );
+        assertEquals( RequestClass.CRUD, RequestClass.forPath( "/index/node/traverse/path", RequestClass.CRUD ) );
+        assertEquals( RequestClass.CRUD, RequestClass.forPath( "/node/12/traversed", RequestClass.CRUD ) );
+        assertEquals( RequestClass.CRUD, RequestClass.forPath( "/", RequestClass.CRUD ) );
+        assertEquals( RequestClass.ADMIN, RequestClass.forPath( "/batch", RequestClass.ADMIN ) );
+    }
+
+    private Object captureHandedOverPermit( Continuation continuation )
+    {
+        ArgumentCaptor<Object> permit = ArgumentCaptor.forClass( Object.class );
+        verify( continuation, atLeastOnce() ).setObject( permit.capture() );
+        return permit.getValue();
+    }
+}